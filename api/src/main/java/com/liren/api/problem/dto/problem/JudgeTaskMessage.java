@@ -0,0 +1,79 @@
+package com.liren.api.problem.dto.problem;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 判题任务消息 (problem-service -> judge-service)
+ * 携带判题所需的全部信息，判题服务无需再回查提交记录和题目限制；
+ * 只带 submitId 或版本不一致的消息，判题服务会回退到远程查询
+ */
+@Data
+public class JudgeTaskMessage implements Serializable {
+    /**
+     * 当前消息格式版本 (字段有不兼容变更时递增)
+     */
+    public static final int CURRENT_VERSION = 1;
+
+    /**
+     * 消息格式版本
+     */
+    private Integer version;
+
+    private Long submitId;
+    private Long problemId;
+    private Long userId;
+    private Long contestId; // 0 表示平时训练
+    private String language;
+    private String code;
+
+    /**
+     * 时间限制 (ms)
+     */
+    private Integer timeLimit;
+
+    /**
+     * 内存限制 (MB)
+     */
+    private Integer memoryLimit;
+
+    /**
+     * 测试用例版本 (用例变更时递增，判题端据此判断本地缓存是否可用)
+     */
+    private Integer caseVersion;
+
+    /**
+     * 判题模式 (JudgeModeEnum，0-ACM 1-OI)，为空时按 OI 处理
+     */
+    private Integer judgeMode;
+
+    /**
+     * 输出比对方式 (CheckerTypeEnum)，为空时精确比对
+     */
+    private Integer checkerType;
+
+    /**
+     * 比对参数 (浮点误差时为允许误差)
+     */
+    private String checkerArg;
+
+    /**
+     * 特判程序源码 (仅特判题目携带，判题端按源码缓存编译产物)
+     */
+    private String checkerCode;
+
+    /**
+     * 是否为重判 (重判走单独的判题通道)
+     */
+    private Boolean rejudge;
+
+    /**
+     * 只带 submitId 的消息 (兼容旧消息、重判等场景)
+     */
+    public static JudgeTaskMessage ofSubmitId(Long submitId) {
+        JudgeTaskMessage message = new JudgeTaskMessage();
+        message.setSubmitId(submitId);
+        return message;
+    }
+}
@@ -14,4 +14,9 @@ public class ProblemBasicInfoDTO implements Serializable {
     private Integer difficulty;
     private Integer timeLimit;
     private Integer memoryLimit;
+    private Integer caseVersion;
+    private Integer judgeMode;
+    private Integer checkerType;
+    private String checkerArg;
+    private String checkerCode;
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.liren.api.problem.dto.problem;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 判题完成事件 (由题目服务的发件箱投递，排行榜 / 题目统计 / 用户统计各自消费)
+ * 重判改变了已投递的结果时投递更正事件 (correction 为 true)，消费端按更正前后的差值调整，不再计入提交数
+ */
+@Data
+public class SubmitJudgedEvent implements Serializable {
+    /**
+     * 事件ID (判题事件等于提交ID，更正事件另行生成，消费端按此去重)
+     */
+    private Long eventId;
+
+    private Long submitId;
+
+    private Long problemId;
+
+    private Long contestId; // 0 表示非竞赛提交
+
+    private Long userId;
+
+    /**
+     * 判题结果 (对应 JudgeResultEnum)，判题失败时为空
+     */
+    private Integer judgeResult;
+
+    private Integer score;
+
+    /**
+     * 是否为该用户在该题的首次 AC
+     */
+    private Boolean firstAc;
+
+    /**
+     * 是否为重判更正事件
+     */
+    private Boolean correction;
+
+    /**
+     * 更正前的判题结果和得分 (仅更正事件)
+     */
+    private Integer oldJudgeResult;
+
+    private Integer oldScore;
+
+    /**
+     * 更正后用户通过题数的变化：-1 失去了该题唯一的 AC，1 重判后首次 AC，其余为 0 (仅更正事件)
+     */
+    private Integer firstAcDelta;
+}
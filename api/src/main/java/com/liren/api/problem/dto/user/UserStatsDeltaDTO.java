@@ -0,0 +1,27 @@
+package com.liren.api.problem.dto.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 用户做题统计增量 (判题事件按用户合并，同一用户的多次提交合并为一条)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatsDeltaDTO implements Serializable {
+    private Long userId;
+
+    /**
+     * 提交数增量
+     */
+    private Integer submittedDelta;
+
+    /**
+     * 通过数增量 (只统计首次 AC)
+     */
+    private Integer acceptedDelta;
+}
@@ -17,13 +17,103 @@ public class Constants {
      */
     public static final String JUDGE_ROUTING_KEY = "oj.judge";
 
+    /**
+     * 判题通道队列：比赛提交 (消费优先级最高，判题机为其保留容器)
+     */
+    public static final String JUDGE_CONTEST_QUEUE = "oj.judge.queue.contest";
+
+    /**
+     * 判题通道队列：平时练习提交
+     */
+    public static final String JUDGE_PRACTICE_QUEUE = "oj.judge.queue.practice";
+
+    /**
+     * 判题通道队列：重判
+     */
+    public static final String JUDGE_REJUDGE_QUEUE = "oj.judge.queue.rejudge";
+
+    /**
+     * 判题结果队列 (判题服务 -> 题目服务，题目服务批量消费回写)
+     */
+    public static final String JUDGE_RESULT_QUEUE = "oj.judge.result.queue";
+
+    /**
+     * 判题结果交换机 (Direct模式)
+     */
+    public static final String JUDGE_RESULT_EXCHANGE = "oj.judge.result.exchange";
+
+    /**
+     * 判题结果路由键
+     */
+    public static final String JUDGE_RESULT_ROUTING_KEY = "oj.judge.result";
+
+    /**
+     * 判题结果死信队列 (逐条回写仍失败的结果，保留下来人工排查或重新投递)
+     */
+    public static final String JUDGE_RESULT_DLQ = "oj.judge.result.dlq";
+
+    /**
+     * 判题事件交换机 (Fanout模式，每个副作用处理器一个队列)
+     */
+    public static final String SUBMIT_EVENT_EXCHANGE = "oj.submit.event.exchange";
+
+    /**
+     * 判题事件队列：排行榜
+     */
+    public static final String SUBMIT_EVENT_RANK_QUEUE = "oj.submit.event.rank.queue";
+
+    /**
+     * 判题事件队列：题目提交数/通过数
+     */
+    public static final String SUBMIT_EVENT_PROBLEM_STATS_QUEUE = "oj.submit.event.problem-stats.queue";
+
+    /**
+     * 判题事件队列：用户提交数/通过数
+     */
+    public static final String SUBMIT_EVENT_USER_STATS_QUEUE = "oj.submit.event.user-stats.queue";
+
 
 
     // ========= 沙箱配置 =========
     /**
      * 判题机镜像名称
      */
-    public static final String SANDBOX_IMAGE = "liren-oj-sandbox:v1";
+    public static final String SANDBOX_IMAGE = "liren-oj-sandbox:v5";
+
+    /**
+     * 沙箱容器内的工作目录 (代码、输入文件都放在这里)
+     */
+    public static final String SANDBOX_WORK_DIR = "/app";
+
+    /**
+     * 沙箱镜像内的用例启动器 (统计每个用例的资源使用，源码见 deploy/sandbox/runner)
+     */
+    public static final String SANDBOX_RUNNER = "/usr/local/bin/oj-runner";
+
+    /**
+     * 沙箱镜像内 Java 常驻启动器的类路径 (一个 JVM 连续运行多个用例，源码见 deploy/sandbox/runner)
+     */
+    public static final String SANDBOX_WARM_RUNNER_PATH = "/usr/local/lib/oj-warm-runner";
+
+    /**
+     * 沙箱镜像内的判题代理 (每次提交启动一次，通过同一条连接运行所有命令，源码见 deploy/sandbox/runner)
+     */
+    public static final String SANDBOX_AGENT = "/usr/local/bin/oj-agent";
+
+    /**
+     * 用户程序的运行身份 (nobody)，由启动器放弃 root 权限后再执行用户程序
+     */
+    public static final int SANDBOX_RUN_UID = 65534;
+
+    /**
+     * 特判程序的运行身份 (与用户程序不同，同一容器内的用户程序无法通过 /proc 访问它打开的标准输出)
+     */
+    public static final int SANDBOX_CHECKER_UID = 65533;
+
+    /**
+     * 工作目录下只有 root 可读写的判题数据目录 (特判程序、标准输出)，用户程序无法读取
+     */
+    public static final String SANDBOX_JUDGE_DIR = "judge";
 
     /**
      * 沙箱运行超时时间 (毫秒)
@@ -32,10 +122,24 @@ public class Constants {
     public static final Long SANDBOX_TIME_OUT = 10000L;
 
     /**
-     * 沙箱内存限制 (字节)
-     * 100MB = 100 * 1000 * 1000
+     * 用例墙钟上限在题目时间限制上额外放宽的时间 (毫秒)
+     * 用于抵消 JVM 启动、进程创建等与用户代码无关的开销
      */
-    public static final Long SANDBOX_MEMORY_LIMIT = 100 * 1000 * 1000L;
+    public static final Long SANDBOX_TIME_SLACK = 1000L;
+
+    /**
+     * 用例墙钟上限相对题目时间限制的倍数
+     * 超时以 CPU 时间判定，墙钟上限只用来结束 sleep、阻塞读等不消耗 CPU 的程序，
+     * 放宽倍数避免判题机繁忙时正常程序被误杀
+     */
+    public static final Long SANDBOX_WALL_TIME_FACTOR = 3L;
+
+    /**
+     * 沙箱容器内存上限 (字节)
+     * 单个用例的内存限制由启动器按题目限制执行，这里只是整个容器的兜底上限
+     * 512MB = 512 * 1024 * 1024
+     */
+    public static final Long SANDBOX_MEMORY_LIMIT = 512 * 1024 * 1024L;
 
     /**
      * 沙箱 CPU 限制 (核数)
@@ -72,6 +176,11 @@ public class Constants {
     public static final Integer RANK_TOTAL_SIZE = 10; // 排行榜大小
 
 
+    // ========= 判题事件 =========
+    public static final String SUBMIT_EVENT_DONE_PREFIX = "oj:submit_event:done:"; // 事件已处理标记前缀: {handler}:{eventId}
+    public static final Long SUBMIT_EVENT_DONE_EXPIRE_TIME = 7l; // 已处理标记保留时间 (天)，覆盖消息重投的时间窗口
+
+
     // ========= 用户缓存 =========
     /**
      * 登录态缓存 Key 前缀（基于 token）
@@ -95,6 +204,34 @@ public class Constants {
      */
     public static final Long USER_LOGIN_CACHE_EXPIRE_TIME = 7200L;
 
+    /**
+     * 用户信息缓存中的提交数/通过数 (Hash，与 USER_INFO_CACHE_PREFIX 同时写入、过期时间相同)
+     * 完整 Key: user:stats:count:{userId}，Field: submitted / accepted
+     * 判题事件直接 HINCRBY 累加，不再读出整个用户信息修改后写回
+     */
+    public static final String USER_STATS_COUNT_CACHE_PREFIX = "user:stats:count:";
+
+    /**
+     * 用户提交数/通过数的待刷盘增量 (Hash)
+     * Field: {userId}:submitted / {userId}:accepted，Value: 尚未写入数据库的增量
+     */
+    public static final String USER_STATS_DELTA_KEY = "user:stats:delta";
+
+    /**
+     * 正在刷盘的增量 (刷盘时由 USER_STATS_DELTA_KEY 原子改名而来，刷盘成功后删除)
+     */
+    public static final String USER_STATS_FLUSHING_KEY = "user:stats:flushing";
+
+    /**
+     * 用户统计刷盘锁 (多实例部署时只有一个实例刷盘)
+     */
+    public static final String USER_STATS_FLUSH_LOCK_KEY = "user:stats:flush_lock";
+
+    /**
+     * 用户统计刷盘序号 (奇数表示正在刷盘)，加载用户信息缓存时用来判断读取期间是否发生了刷盘
+     */
+    public static final String USER_STATS_FLUSH_SEQ_KEY = "user:stats:flush_seq";
+
     public static final String FORGET_PASS_CODE_PREFIX = "user:forget:code:"; // 忘记密码验证码前缀
     /**
      * 用户密码版本号缓存 Key 前缀（基于 userId）
@@ -123,6 +260,22 @@ public class Constants {
      */
     public static final Long PROBLEM_DETAIL_CACHE_EXPIRE_TIME = 7200L;
 
+    /**
+     * 题目提交数/通过数的待刷盘增量 (Hash)
+     * Field: {problemId}:submit / {problemId}:accepted，Value: 尚未写入数据库的增量
+     */
+    public static final String PROBLEM_STATS_DELTA_KEY = "problem:stats:delta";
+
+    /**
+     * 正在刷盘的增量 (刷盘时由 PROBLEM_STATS_DELTA_KEY 原子改名而来，刷盘成功后删除)
+     */
+    public static final String PROBLEM_STATS_FLUSHING_KEY = "problem:stats:flushing";
+
+    /**
+     * 题目统计刷盘锁 (多实例部署时只有一个实例刷盘)
+     */
+    public static final String PROBLEM_STATS_FLUSH_LOCK_KEY = "problem:stats:flush_lock";
+
 
     // ========= 竞赛缓存 =========
     /**
@@ -0,0 +1,41 @@
+package com.liren.common.core.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 题目的输出比对方式
+ */
+@Getter
+@AllArgsConstructor
+public enum CheckerTypeEnum {
+    // 0-精确比对: 忽略首尾空白后逐字符一致
+    EXACT(0, "精确比对"),
+
+    // 1-忽略空白: 按行比对，忽略行首行尾空白和末尾空行，行内连续空白视为一个
+    WHITESPACE(1, "忽略空白"),
+
+    // 2-逐词比对: 只比较以空白分隔的单词序列，不关心换行
+    TOKEN(2, "逐词比对"),
+
+    // 3-浮点误差: 逐词比对，数字按绝对/相对误差比较 (误差由题目的 checkerArg 指定)
+    FLOAT(3, "浮点误差"),
+
+    // 4-特判程序: 由题目自带的 C++ 特判程序判定 (用于答案不唯一的题目)
+    SPECIAL(4, "特判程序");
+
+    private final Integer code;
+    private final String message;
+
+    /**
+     * 未设置或未知的比对方式按精确比对处理
+     */
+    public static CheckerTypeEnum getByCode(Integer code) {
+        for (CheckerTypeEnum e : values()) {
+            if (e.code.equals(code)) {
+                return e;
+            }
+        }
+        return EXACT;
+    }
+}
@@ -0,0 +1,52 @@
+package com.liren.common.core.enums;
+
+import com.liren.common.core.constant.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 判题通道：不同来源的提交进入不同的队列，互不阻塞
+ */
+@Getter
+@AllArgsConstructor
+public enum JudgeLaneEnum {
+    // 比赛提交 (判题机为其保留容器，练习积压时也能按时出结果)
+    CONTEST("contest", Constants.JUDGE_CONTEST_QUEUE, "比赛"),
+
+    // 平时练习提交
+    PRACTICE("practice", Constants.JUDGE_PRACTICE_QUEUE, "练习"),
+
+    // 重判 (不论来源，都不能挤占新提交)
+    REJUDGE("rejudge", Constants.JUDGE_REJUDGE_QUEUE, "重判");
+
+    private final String code;
+    private final String queue;
+    private final String message;
+
+    /**
+     * 路由键: oj.judge.{code}
+     */
+    public String getRoutingKey() {
+        return Constants.JUDGE_ROUTING_KEY + "." + code;
+    }
+
+    /**
+     * 沙箱繁忙时的延迟重投队列: oj.judge.queue.{code}.retry
+     * 消息在其中等待 TTL 到期后死信回本通道的队列
+     */
+    public String getRetryQueue() {
+        return queue + ".retry";
+    }
+
+    /**
+     * 根据提交来源选择通道
+     * @param contestId 比赛ID (为空或 0 表示平时训练)
+     * @param rejudge 是否为重判
+     */
+    public static JudgeLaneEnum of(Long contestId, boolean rejudge) {
+        if (rejudge) {
+            return REJUDGE;
+        }
+        return contestId != null && contestId > 0 ? CONTEST : PRACTICE;
+    }
+}
@@ -0,0 +1,32 @@
+package com.liren.common.core.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 题目的判题模式
+ */
+@Getter
+@AllArgsConstructor
+public enum JudgeModeEnum {
+    // 0-ACM: 遇到第一个未通过的用例就停止，不再运行后续用例
+    ACM(0, "ACM"),
+
+    // 1-OI: 运行全部用例，按通过的用例数给部分分
+    OI(1, "OI");
+
+    private final Integer code;
+    private final String message;
+
+    /**
+     * 未设置或未知的模式按 OI 处理 (与引入判题模式之前的行为一致)
+     */
+    public static JudgeModeEnum getByCode(Integer code) {
+        for (JudgeModeEnum e : values()) {
+            if (e.code.equals(code)) {
+                return e;
+            }
+        }
+        return OI;
+    }
+}
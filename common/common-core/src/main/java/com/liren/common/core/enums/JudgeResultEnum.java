@@ -18,7 +18,9 @@ public enum JudgeResultEnum {
 
     COMPILE_ERROR(6, "编译错误 (CE)"),
 
-    SYSTEM_ERROR(7, "系统错误 (SE)");
+    SYSTEM_ERROR(7, "系统错误 (SE)"),
+
+    OUTPUT_LIMIT_EXCEEDED(8, "输出超限 (OLE)");
 
     private final Integer code;
     private final String message;
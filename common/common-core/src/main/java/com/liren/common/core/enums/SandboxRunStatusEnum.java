@@ -16,7 +16,16 @@ public enum SandboxRunStatusEnum {
     COMPILE_ERROR(3, "编译错误"),
 
     // 4-沙箱自己崩了 (Docker连接失败等)
-    SYSTEM_ERROR(4, "系统错误");
+    SYSTEM_ERROR(4, "系统错误"),
+
+    // 5-程序输出超过上限 (被沙箱提前结束)
+    OUTPUT_LIMIT_EXCEEDED(5, "输出超限"),
+
+    // 6-程序运行超过时间限制 (被沙箱提前结束)
+    TIME_LIMIT_EXCEEDED(6, "运行超时"),
+
+    // 7-程序运行超过内存限制
+    MEMORY_LIMIT_EXCEEDED(7, "内存超限");
 
     private final Integer code;
     private final String message;
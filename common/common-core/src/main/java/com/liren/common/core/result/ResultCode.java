@@ -54,6 +54,8 @@ public enum ResultCode {
     MAIL_SEND_ERROR(6025, "邮件发送失败"),
     RESET_PASS_CODE_EXPIRED(6026, "验证码已过期，请重新获取"),
     RESET_PASS_CODE_ERROR(6027, "验证码错误"),
+    SANDBOX_BUSY(6028, "判题沙箱繁忙，请稍后重试"),
+    CHECKER_NOT_FOUND(6029, "题目缺少特判程序，无法判题"),
 
     /* ===================== 程序缺陷类（9xxx） ===================== */
     NULL_POINTER(9001, "空指针异常"),
@@ -0,0 +1,26 @@
+package com.liren.common.core.support;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+
+/**
+ * 单元测试用的 MyBatis-Plus 初始化
+ * Lambda 条件构造器按实体的表信息把 getter 解析成列名，正常由 MyBatis-Plus 启动时扫描 Mapper 完成；
+ * 不启动 Spring 的测试在用到 LambdaQueryWrapper / LambdaUpdateWrapper 之前调用 initTableInfo 即可
+ */
+public final class MybatisPlusTestSupport {
+
+    private static final MybatisConfiguration CONFIGURATION = new MybatisConfiguration();
+
+    private MybatisPlusTestSupport() {
+    }
+
+    public static synchronized void initTableInfo(Class<?>... entityClasses) {
+        for (Class<?> entityClass : entityClasses) {
+            if (TableInfoHelper.getTableInfo(entityClass) == null) {
+                TableInfoHelper.initTableInfo(new MapperBuilderAssistant(CONFIGURATION, ""), entityClass);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.liren.common.redis;
+
+import com.liren.common.core.constant.Constants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 事件消费幂等 (同一事件在同一处理器上只处理一次)
+ * 处理前过滤掉已有完成标记的事件，处理成功后才写入完成标记；
+ * 处理失败或进程在处理中崩溃时没有标记，消息重投后会再次处理，不会丢失
+ * (同一事件的两次投递恰好被并发处理时仍可能重复累加，两条投递路径相隔 relay-delay-ms，实际很少发生)
+ */
+@Component
+public class EventDeduplicator {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 过滤出尚未处理过的事件 (同一批内重复的事件只保留一个)
+     * @param handler 处理器名称 (不同处理器互不影响)
+     * @param events 待处理的事件
+     * @param idGetter 事件ID
+     */
+    public <T> List<T> filterUnprocessed(String handler, List<T> events, Function<T, Long> idGetter) {
+        Map<Long, T> unique = new LinkedHashMap<>();
+        for (T event : events) {
+            unique.putIfAbsent(idGetter.apply(event), event);
+        }
+        if (unique.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> keys = new ArrayList<>(unique.size());
+        for (Long eventId : unique.keySet()) {
+            keys.add(key(handler, eventId));
+        }
+        List<Object> marks = redisTemplate.opsForValue().multiGet(keys);
+        List<T> unprocessed = new ArrayList<>(unique.size());
+        int i = 0;
+        for (T event : unique.values()) {
+            if (marks == null || marks.get(i) == null) {
+                unprocessed.add(event);
+            }
+            i++;
+        }
+        return unprocessed;
+    }
+
+    /**
+     * 写入完成标记 (处理成功后调用)
+     */
+    public void markProcessed(String handler, Collection<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (Long eventId : eventIds) {
+                    ops.opsForValue().set(key(handler, eventId), 1, Constants.SUBMIT_EVENT_DONE_EXPIRE_TIME, TimeUnit.DAYS);
+                }
+                return null;
+            }
+        });
+    }
+
+    private static String key(String handler, Long eventId) {
+        return Constants.SUBMIT_EVENT_DONE_PREFIX + handler + ":" + eventId;
+    }
+}
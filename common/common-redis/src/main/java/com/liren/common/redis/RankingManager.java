@@ -2,13 +2,22 @@ package com.liren.common.redis;
 
 import cn.hutool.core.date.LocalDateTimeUtil; // 需要 Hutool 5.x+
 import com.liren.common.core.constant.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
 import java.time.temporal.WeekFields;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -106,6 +115,182 @@ public class RankingManager {
         }
     }
 
+    /**
+     * 批量处理用户 AC (判题结果批量回写时使用)
+     * 与 userAcProblem 语义一致，但所有 SADD 在一个 pipeline 内完成，首次 AC 的榜单加分合并到第二个 pipeline
+     * @param userIds 用户ID列表
+     * @param problemIds 题目ID列表 (与 userIds 一一对应)
+     * @return 每一项是否为首次 AC (同一批次内重复的用户+题目只有第一项为 true)
+     */
+    public List<Boolean> batchUserAcProblem(List<Long> userIds, List<Long> problemIds) {
+        List<Boolean> firstAcList = new ArrayList<>(userIds.size());
+        if (userIds.isEmpty()) {
+            return firstAcList;
+        }
+
+        // 1. 【原子操作去重】一次 pipeline 执行所有 SADD
+        List<Object> addedCounts = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (int i = 0; i < userIds.size(); i++) {
+                    ops.opsForSet().add(Constants.USER_SOLVED_KEY_PREFIX + userIds.get(i), problemIds.get(i));
+                }
+                return null;
+            }
+        });
+
+        // 2. 统计每个用户本批次首次 AC 的题目数
+        Map<Long, Integer> firstAcCount = new LinkedHashMap<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            Object added = addedCounts.get(i);
+            boolean firstAc = added instanceof Number && ((Number) added).longValue() > 0;
+            firstAcList.add(firstAc);
+            if (firstAc) {
+                firstAcCount.merge(userIds.get(i), 1, Integer::sum);
+            }
+        }
+        if (firstAcCount.isEmpty()) {
+            return firstAcList;
+        }
+
+        // 3. 更新各个维度的排行榜 (同一用户的加分合并为一次 ZINCRBY)
+        LocalDateTime now = LocalDateTime.now();
+        String dailyKey = Constants.RANK_DAILY_PREFIX + LocalDateTimeUtil.format(now, "yyyyMMdd");
+        String weeklyKey = Constants.RANK_WEEKLY_PREFIX + now.getYear()
+                + String.format("%02d", now.get(WeekFields.of(Locale.getDefault()).weekOfYear()));
+        String monthlyKey = Constants.RANK_MONTHLY_PREFIX + LocalDateTimeUtil.format(now, "yyyyMM");
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                firstAcCount.forEach((userId, count) -> {
+                    double delta = (double) Constants.RANK_SUBMIT_ADD_COUNT * count;
+                    ops.opsForZSet().incrementScore(Constants.RANK_TOTAL_KEY, userId, delta);
+                    ops.opsForZSet().incrementScore(dailyKey, userId, delta);
+                    ops.opsForZSet().incrementScore(weeklyKey, userId, delta);
+                    ops.opsForZSet().incrementScore(monthlyKey, userId, delta);
+                });
+                ops.expire(dailyKey, Constants.RANK_DAILY_EXPIRE_TIME, TimeUnit.DAYS);
+                ops.expire(weeklyKey, Constants.RANK_WEEKLY_EXPIRE_TIME, TimeUnit.DAYS);
+                ops.expire(monthlyKey, Constants.RANK_MONTHLY_EXPIRE_TIME, TimeUnit.DAYS);
+                return null;
+            }
+        });
+        return firstAcList;
+    }
+
+    /**
+     * 批量更新比赛排行榜 (按分数模式)
+     * 与 updateContestScoreRank 语义一致：同一用户同一题目在批次内先取最高分，
+     * 再一次 pipeline 读出历史最高分，只有提高了分数的项才在第二个 pipeline 中写回
+     */
+    public void batchUpdateContestScoreRank(List<ContestScore> scores) {
+        // 1. 批次内合并：同一比赛+用户+题目只保留最高分
+        Map<String, ContestScore> bestScores = new LinkedHashMap<>();
+        for (ContestScore score : scores) {
+            if (score.getContestId() == null || score.getContestId() <= 0 || score.getScore() == null) continue;
+            String key = score.getContestId() + ":" + score.getUserId() + ":" + score.getProblemId();
+            bestScores.merge(key, score, (a, b) -> b.getScore() > a.getScore() ? b : a);
+        }
+        if (bestScores.isEmpty()) {
+            return;
+        }
+        List<ContestScore> candidates = new ArrayList<>(bestScores.values());
+
+        // 2. 一次 pipeline 读出所有历史最高分
+        List<Object> oldScores = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (ContestScore score : candidates) {
+                    ops.opsForHash().get(CONTEST_USER_SCORE_DETAIL_PREFIX + score.getContestId() + ":" + score.getUserId(),
+                            score.getProblemId().toString());
+                }
+                return null;
+            }
+        });
+
+        // 3. 只写回分数提高了的项
+        Map<ContestScore, Integer> deltas = new HashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            Object oldScoreObj = oldScores.get(i);
+            int oldScore = oldScoreObj == null ? 0 : Integer.parseInt(oldScoreObj.toString());
+            int delta = candidates.get(i).getScore() - oldScore;
+            if (delta > 0) {
+                deltas.put(candidates.get(i), delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                deltas.forEach((score, delta) -> {
+                    String userScoreKey = CONTEST_USER_SCORE_DETAIL_PREFIX + score.getContestId() + ":" + score.getUserId();
+                    String rankKey = Constants.RANK_CONTEST_PREFIX + score.getContestId();
+                    ops.opsForHash().put(userScoreKey, score.getProblemId().toString(), score.getScore().toString());
+                    ops.opsForZSet().incrementScore(rankKey, score.getUserId(), delta);
+                    ops.expire(userScoreKey, Constants.CONTEST_USER_SCORE_DETAIL_EXPIRE_TIME, TimeUnit.DAYS);
+                    ops.expire(rankKey, Constants.CONTEST_RANK_EXPIRE_TIME, TimeUnit.DAYS);
+                });
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 撤销用户对某题的 AC (重判后该用户在该题已没有 AC)
+     * 只有确实从已解决集合中移除时才扣回总榜分数；日榜/周榜/月榜按 AC 当时所在的周期累计，不再调整
+     * @return 是否移除了
+     */
+    public boolean revokeUserAc(Long userId, Long problemId) {
+        Long removed = redisTemplate.opsForSet().remove(Constants.USER_SOLVED_KEY_PREFIX + userId, problemId);
+        if (removed == null || removed == 0) {
+            return false;
+        }
+        redisTemplate.opsForZSet().incrementScore(Constants.RANK_TOTAL_KEY, userId, -Constants.RANK_SUBMIT_ADD_COUNT);
+        return true;
+    }
+
+    /**
+     * 重设比赛中某题的得分 (重判更正，与 updateContestScoreRank 不同，分数可以降低)
+     * @param score 该用户该题所有比赛提交中的最高分
+     */
+    public void resetContestScore(Long contestId, Long userId, Long problemId, int score) {
+        if (contestId == null || contestId <= 0) return;
+
+        String userScoreKey = CONTEST_USER_SCORE_DETAIL_PREFIX + contestId + ":" + userId;
+        Object oldScoreObj = redisTemplate.opsForHash().get(userScoreKey, problemId.toString());
+        int oldScore = oldScoreObj == null ? 0 : Integer.parseInt(oldScoreObj.toString());
+        if (score == oldScore) {
+            return;
+        }
+        String rankKey = Constants.RANK_CONTEST_PREFIX + contestId;
+        redisTemplate.opsForHash().put(userScoreKey, problemId.toString(), String.valueOf(score));
+        redisTemplate.opsForZSet().incrementScore(rankKey, userId, score - oldScore);
+        redisTemplate.expire(userScoreKey, Constants.CONTEST_USER_SCORE_DETAIL_EXPIRE_TIME, TimeUnit.DAYS);
+        redisTemplate.expire(rankKey, Constants.CONTEST_RANK_EXPIRE_TIME, TimeUnit.DAYS);
+    }
+
+    /**
+     * 比赛得分 (批量更新比赛排行榜的参数)
+     */
+    @Data
+    @AllArgsConstructor
+    public static class ContestScore {
+        private Long contestId;
+        private Long userId;
+        private Long problemId;
+        private Integer score;
+    }
+
     /**
      * 获取总榜前 N 名
      */
@@ -80,6 +80,11 @@ CREATE TABLE `tb_problem`  (
   `time_limit` int NOT NULL DEFAULT 1000 COMMENT '时间限制(ms)',
   `memory_limit` int NOT NULL DEFAULT 128 COMMENT '内存限制(MB)',
   `stack_limit` int NULL DEFAULT 128 COMMENT '栈限制(MB)',
+  `case_version` int NOT NULL DEFAULT 1 COMMENT '测试用例版本(用例变更时递增，判题端按此刷新缓存)',
+  `judge_mode` tinyint NOT NULL DEFAULT 1 COMMENT '判题模式：0-ACM(遇到未通过的用例即停止) 1-OI(运行全部用例，按通过数给分)',
+  `checker_type` tinyint NOT NULL DEFAULT 0 COMMENT '输出比对方式：0-精确 1-忽略空白 2-逐词 3-浮点误差 4-特判程序',
+  `checker_arg` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL COMMENT '比对参数(浮点误差时为允许误差，如 1e-6)',
+  `checker_code` text CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL COMMENT '特判程序源码(C++，参数: 输入文件 用户输出 标准输出，返回 0 表示通过)',
   `sample_input` text CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL COMMENT '样例输入(展示用)',
   `sample_output` text CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL COMMENT '样例输出(展示用)',
   `hint` text CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL COMMENT '提示',
@@ -94,6 +99,21 @@ CREATE TABLE `tb_problem`  (
   INDEX `idx_difficulty`(`difficulty` ASC) USING BTREE
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '题目表' ROW_FORMAT = Dynamic;
 
+-- ----------------------------
+-- Table structure for tb_problem_first_ac
+-- ----------------------------
+DROP TABLE IF EXISTS `tb_problem_first_ac`;
+CREATE TABLE `tb_problem_first_ac`  (
+  `user_id` bigint NOT NULL COMMENT '用户ID',
+  `problem_id` bigint NOT NULL COMMENT '题目ID',
+  `submit_id` bigint NOT NULL COMMENT '首次AC的提交ID',
+  `create_time` datetime NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`user_id`, `problem_id`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '首次AC记录 (与判题结果同一事务写入，每个用户每道题只有一条)' ROW_FORMAT = Dynamic;
+
+-- 已有数据迁移: INSERT IGNORE INTO tb_problem_first_ac (user_id, problem_id, submit_id)
+--   SELECT user_id, problem_id, MIN(submit_id) FROM tb_submit_record WHERE judge_result = 1 GROUP BY user_id, problem_id;
+
 -- ----------------------------
 -- Table structure for tb_problem_tag
 -- ----------------------------
@@ -155,7 +175,7 @@ CREATE TABLE `tb_submit_record`  (
   `code` longtext CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '提交的代码',
   `language` varchar(20) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '编程语言(Java/C++/Python)',
   `status` tinyint NOT NULL DEFAULT 10 COMMENT '判题状态: 10-待判题, 20-判题中, 30-结束',
-  `judge_result` tinyint NULL DEFAULT NULL COMMENT '判题结果: 0-AC, 1-WA, 2-TLE, 3-MLE, 4-RE, 5-CE...',
+  `judge_result` tinyint NULL DEFAULT NULL COMMENT '判题结果: 1-AC, 2-WA, 3-TLE, 4-MLE, 5-RE, 6-CE, 7-SE, 8-OLE',
   `time_cost` int NULL DEFAULT NULL COMMENT '最大耗时(ms)',
   `memory_cost` int NULL DEFAULT NULL COMMENT '最大内存(KB)',
   `error_message` text CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL COMMENT '错误信息(编译错误/运行错误)',
@@ -171,6 +191,34 @@ CREATE TABLE `tb_submit_record`  (
   INDEX `idx_contest_id`(`contest_id` ASC) USING BTREE
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '代码提交记录表' ROW_FORMAT = Dynamic;
 
+-- ----------------------------
+-- Table structure for tb_submit_event
+-- ----------------------------
+DROP TABLE IF EXISTS `tb_submit_event`;
+CREATE TABLE `tb_submit_event`  (
+  `event_id` bigint NOT NULL COMMENT '事件ID (判题事件等于提交ID，一个提交只产生一次判题事件；更正事件另行生成)',
+  `submit_id` bigint NULL DEFAULT NULL COMMENT '提交ID',
+  `problem_id` bigint NOT NULL COMMENT '题目ID',
+  `contest_id` bigint NULL DEFAULT 0 COMMENT '竞赛ID (0表示非竞赛提交)',
+  `user_id` bigint NOT NULL COMMENT '用户ID',
+  `judge_result` tinyint NULL DEFAULT NULL COMMENT '判题结果',
+  `score` int NULL DEFAULT 0 COMMENT '得分',
+  `first_ac` tinyint NOT NULL DEFAULT 0 COMMENT '是否为该用户在该题的首次AC: 0-否 1-是',
+  `correction` tinyint NOT NULL DEFAULT 0 COMMENT '是否为重判更正事件: 0-否 1-是',
+  `old_judge_result` tinyint NULL DEFAULT NULL COMMENT '更正前的判题结果',
+  `old_score` int NULL DEFAULT NULL COMMENT '更正前的得分',
+  `first_ac_delta` tinyint NOT NULL DEFAULT 0 COMMENT '更正后用户通过题数的变化: -1/0/1',
+  `sent` tinyint NOT NULL DEFAULT 0 COMMENT '是否已投递: 0-否 1-是 (已投递的保留一段时间，防止重复回写时再次产生事件)',
+  `create_time` datetime NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`event_id`) USING BTREE,
+  INDEX `idx_sent_create_time`(`sent` ASC, `create_time` ASC) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '判题事件发件箱 (与判题结果同一事务写入，投递成功后标记已投递，过期后清理)' ROW_FORMAT = Dynamic;
+
+-- 已有数据迁移: ALTER TABLE tb_submit_event ADD COLUMN submit_id bigint NULL AFTER event_id,
+--   ADD COLUMN correction tinyint NOT NULL DEFAULT 0 AFTER first_ac, ADD COLUMN old_judge_result tinyint NULL AFTER correction,
+--   ADD COLUMN old_score int NULL AFTER old_judge_result, ADD COLUMN first_ac_delta tinyint NOT NULL DEFAULT 0 AFTER old_score;
+--   UPDATE tb_submit_event SET submit_id = event_id;
+
 -- ----------------------------
 -- Table structure for tb_sys_user
 -- ----------------------------
@@ -197,8 +245,15 @@ DROP TABLE IF EXISTS `tb_test_case`;
 CREATE TABLE `tb_test_case`  (
   `case_id` bigint NOT NULL COMMENT '测试用例ID',
   `problem_id` bigint NOT NULL COMMENT '题目ID',
-  `input` longtext CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '输入数据(大文本)',
-  `output` longtext CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '期望输出(大文本)',
+  `case_index` int NULL DEFAULT NULL COMMENT '用例序号(从0开始)',
+  `input` longtext CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL COMMENT '输入数据(旧数据，新数据存放在测试数据存储中)',
+  `output` longtext CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL COMMENT '期望输出(旧数据)',
+  `input_key` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL COMMENT '输入文件存储Key',
+  `input_size` bigint NULL DEFAULT NULL COMMENT '输入文件大小(字节)',
+  `input_sha256` char(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL COMMENT '输入文件SHA-256',
+  `output_key` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL COMMENT '输出文件存储Key',
+  `output_size` bigint NULL DEFAULT NULL COMMENT '输出文件大小(字节)',
+  `output_sha256` char(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL COMMENT '输出文件SHA-256',
   `create_time` datetime NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `update_time` datetime NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   PRIMARY KEY (`case_id`) USING BTREE,
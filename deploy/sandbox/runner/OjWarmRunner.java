@@ -0,0 +1,477 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilePermission;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ReflectPermission;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.LinkPermission;
+import java.security.AccessController;
+import java.security.Permission;
+import java.security.Policy;
+import java.security.ProtectionDomain;
+import java.security.SecurityPermission;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * oj-warm-runner: Java 用例常驻启动器 (在沙箱镜像构建时编译到 /usr/local/lib/oj-warm-runner)
+ *
+ * 用法: java -cp /usr/local/lib/oj-warm-runner OjWarmRunner <CPU上限ms> <墙钟上限ms> <输出上限B> <起始用例> <结束用例(不含)> <遇错停止 0|1>
+ *
+ * 一个 JVM 连续运行多个用例，省去每个用例的 JVM 启动：
+ * 1. 每个用例使用新的类加载器加载工作目录下的 Main，静态变量不会残留到下一个用例
+ * 2. 每个用例重新设置 System.in (input_{i}.txt) / System.out / System.err，输出先写入内存
+ * 3. 在单独的线程里调用 main，CPU 时间取用户线程组内所有线程的 CPU 时间之和；内存取堆峰值增量与常驻内存 (RSS) 峰值增量中较大者，
+ *    都不包含 JVM 启动和启动器自身的开销。main 结束后继续等待用户创建的非守护线程 (与真正的 JVM 一致)
+ * 4. System.exit 被拦截，视为程序结束 (退出码非 0 为运行错误)
+ * 5. 用户代码 (由用例类加载器加载的类出现在调用栈上) 不能直接读写文件描述符、替换 System.in/out/err、
+ *    绕过反射访问检查、执行外部命令、加载本地库、访问 /proc 和 /dev/fd 等，也不能替换安全管理器，
+ *    因此拿不到启动器的 stdout，无法伪造结果帧
+ *
+ * 每个用例结束后向 stdout 写一帧 (用户程序拿不到真正的 stdout，无法伪造):
+ *   __OJ_CASE__ index=<序号> status=<状态> exit=<退出码> cpu=<CPU时间ms> memory=<内存峰值KB> out=<输出字节数> err=<错误输出字节数>\n
+ *   紧跟 out 个字节的用户输出和 err 个字节的错误输出
+ * 状态: 0-正常结束 1-抛出异常 2-超时 3-内存不足 4-输出超限
+ * 超时、内存不足、输出超限后用户线程可能仍在运行或 JVM 已不可靠，写完这一帧立即结束 JVM，由判题服务从下一个用例重新启动；
+ * 程序结束后仍有用户线程 (守护线程、System.exit 之后的线程) 存活时同样结束 JVM，避免影响下一个用例
+ * 判题服务会用 oj-runner 统计的整个 JVM 的 CPU 时间核对各帧 CPU 时间之和
+ */
+public class OjWarmRunner {
+
+    private static final String CASE_MARK = "__OJ_CASE__";
+
+    private static final int NORMAL = 0;
+    private static final int EXCEPTION = 1;
+    private static final int TIMEOUT = 2;
+    private static final int MEMORY = 3;
+    private static final int OUTPUT = 4;
+
+    // 错误输出只保留前 64KB (用于回显运行错误信息)
+    private static final int ERROR_LIMIT = 64 * 1024;
+
+    // 用户代码创建的线程都属于这个线程组，System.exit 只对它们拦截
+    private static final ThreadGroup USER_GROUP = new ThreadGroup("oj-user") {
+        @Override
+        public void uncaughtException(Thread t, Throwable e) {
+            // 其他线程调用 System.exit 时不打印异常
+            if (!(e instanceof ExitException)) {
+                super.uncaughtException(t, e);
+            }
+        }
+    };
+
+    // 当前用例中第一次被拦截的 System.exit (每个用例开始前清空)
+    private static volatile ExitException exited;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        long cpuLimitMs = Long.parseLong(args[0]);
+        long wallLimitMs = Long.parseLong(args[1]);
+        int outputLimit = Integer.parseInt(args[2]);
+        int from = Integer.parseInt(args[3]);
+        int to = Integer.parseInt(args[4]);
+        boolean stopOnFailure = "1".equals(args[5]);
+
+        OutputStream frames = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16);
+        URL[] classPath = {new File(".").getCanonicalFile().toURI().toURL()};
+        Policy.setPolicy(new CasePolicy());
+        System.setSecurityManager(new CaseGuard());
+
+        for (int i = from; i < to; i++) {
+            CaseRun run = runCase(i, classPath, cpuLimitMs, wallLimitMs, outputLimit);
+            writeFrame(frames, i, run);
+            frames.flush();
+            if (run.status >= TIMEOUT || run.lingering) {
+                break;
+            }
+            if (stopOnFailure && (run.status != NORMAL || run.exitCode != 0)) {
+                break;
+            }
+        }
+        frames.flush();
+        // 不等待用户代码留下的非守护线程
+        Runtime.getRuntime().halt(0);
+    }
+
+    private static CaseRun runCase(int index, URL[] classPath, long cpuLimitMs, long wallLimitMs, int outputLimit)
+            throws IOException, InterruptedException {
+        BoundedBuffer stdout = new BoundedBuffer(outputLimit);
+        BoundedBuffer stderr = new BoundedBuffer(ERROR_LIMIT);
+        PrintStream userOut = new PrintStream(stdout, false, "UTF-8");
+        PrintStream userErr = new PrintStream(stderr, true, "UTF-8");
+
+        // 用例开始前回收上一个用例的垃圾，记录堆和常驻内存的基线
+        System.gc();
+        long baseline = resetHeapPeak();
+        boolean rssPeakReset = resetRssPeak();
+        long rssBaseline = readStatusKb("VmRSS:");
+        long rssPeak = rssBaseline;
+        exited = null;
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream("input_" + index + ".txt"));
+             CaseLoader loader = new CaseLoader(classPath)) {
+            System.setIn(in);
+            System.setOut(userOut);
+            System.setErr(userErr);
+
+            CaseThread thread = new CaseThread(loader);
+            thread.setContextClassLoader(loader);
+            long start = System.nanoTime();
+            thread.start();
+
+            // 各用户线程最近一次采样的 CPU 时间 (线程结束后无法再读取，只能取结束前最后一次采样)
+            Map<Long, Long> cpuByThread = new HashMap<>();
+            int status = NORMAL;
+            while (exited == null && (thread.isAlive() || countUserThreads(false) > 0)) {
+                if (thread.isAlive()) {
+                    thread.join(5);
+                } else {
+                    Thread.sleep(5);
+                }
+                long cpuMs = sampleUserCpu(cpuByThread) / 1_000_000;
+                long wallMs = (System.nanoTime() - start) / 1_000_000;
+                if (!rssPeakReset) {
+                    rssPeak = Math.max(rssPeak, readStatusKb("VmRSS:"));
+                }
+                if (stdout.exceeded) {
+                    status = OUTPUT;
+                    break;
+                }
+                if (cpuMs > cpuLimitMs || wallMs > wallLimitMs) {
+                    status = TIMEOUT;
+                    break;
+                }
+            }
+            userOut.flush();
+            // main 线程结束前自己记录的 CPU 时间比最后一次采样更准确
+            if (thread.cpuNanos > 0) {
+                cpuByThread.merge(thread.getId(), thread.cpuNanos, Math::max);
+            }
+            long cpuNanos = sampleUserCpu(cpuByThread);
+            rssPeak = rssPeakReset ? readStatusKb("VmHWM:") : Math.max(rssPeak, readStatusKb("VmRSS:"));
+
+            CaseRun run = new CaseRun();
+            run.cpuMs = cpuNanos / 1_000_000;
+            long rssGrowthKb = rssBaseline >= 0 && rssPeak >= 0 ? rssPeak - rssBaseline : 0;
+            run.memoryKb = Math.max(Math.max(heapPeak() - baseline, 0) / 1024, rssGrowthKb);
+            run.output = stdout.toByteArray();
+            run.lingering = countUserThreads(true) > 0;
+            if (status == NORMAL && stdout.exceeded) {
+                status = OUTPUT;
+            }
+            ExitException exit = exited;
+            if (status == NORMAL && exit != null) {
+                run.exitCode = exit.status;
+            } else if (status == NORMAL && thread.thrown != null) {
+                if (thread.thrown instanceof ExitException) {
+                    run.exitCode = ((ExitException) thread.thrown).status;
+                } else {
+                    status = isOutOfMemory(thread.thrown) ? MEMORY : EXCEPTION;
+                    run.exitCode = 1;
+                    thread.thrown.printStackTrace(userErr);
+                }
+            }
+            userErr.flush();
+            run.status = status;
+            run.error = stderr.toByteArray();
+            return run;
+        }
+    }
+
+    /**
+     * 采样用户线程组内所有存活线程的 CPU 时间，返回各线程 CPU 时间之和 (ns，包含已结束的线程)
+     */
+    private static long sampleUserCpu(Map<Long, Long> cpuByThread) {
+        Thread[] threads = new Thread[USER_GROUP.activeCount() + 16];
+        int count = USER_GROUP.enumerate(threads, true);
+        for (int i = 0; i < count; i++) {
+            long cpu = THREADS.getThreadCpuTime(threads[i].getId());
+            if (cpu > 0) {
+                cpuByThread.merge(threads[i].getId(), cpu, Math::max);
+            }
+        }
+        long total = 0;
+        for (long cpu : cpuByThread.values()) {
+            total += cpu;
+        }
+        return total;
+    }
+
+    /**
+     * 用户线程组内存活的线程数 (includeDaemon 为 false 时只统计非守护线程)
+     */
+    private static int countUserThreads(boolean includeDaemon) {
+        Thread[] threads = new Thread[USER_GROUP.activeCount() + 16];
+        int count = USER_GROUP.enumerate(threads, true);
+        int alive = 0;
+        for (int i = 0; i < count; i++) {
+            if (threads[i].isAlive() && (includeDaemon || !threads[i].isDaemon())) {
+                alive++;
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * 重置进程的常驻内存峰值 (VmHWM)，内核不支持时返回 false
+     */
+    private static boolean resetRssPeak() {
+        try (FileOutputStream out = new FileOutputStream("/proc/self/clear_refs")) {
+            out.write('5');
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 读取 /proc/self/status 中的一项 (KB)，读取失败返回 -1
+     */
+    private static long readStatusKb(String key) {
+        try (BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(key)) {
+                    return Long.parseLong(line.substring(key.length()).trim().split("\\s+")[0]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    private static boolean isOutOfMemory(Throwable thrown) {
+        for (Throwable t = thrown; t != null; t = t.getCause()) {
+            if (t instanceof OutOfMemoryError) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void writeFrame(OutputStream frames, int index, CaseRun run) throws IOException {
+        String header = CASE_MARK + " index=" + index + " status=" + run.status + " exit=" + run.exitCode
+                + " cpu=" + run.cpuMs + " memory=" + run.memoryKb
+                + " out=" + run.output.length + " err=" + run.error.length + "\n";
+        frames.write(header.getBytes(StandardCharsets.US_ASCII));
+        frames.write(run.output);
+        frames.write(run.error);
+    }
+
+    /**
+     * 重置各堆内存池的峰值，返回当前堆使用量
+     */
+    private static long resetHeapPeak() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long heapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * 运行用户 main 方法的线程
+     */
+    private static class CaseThread extends Thread {
+        private final ClassLoader loader;
+        private volatile Throwable thrown;
+        private volatile long cpuNanos = -1;
+
+        CaseThread(ClassLoader loader) {
+            super(USER_GROUP, "main");
+            this.loader = loader;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Class<?> mainClass = Class.forName("Main", true, loader);
+                Method main = mainClass.getMethod("main", String[].class);
+                main.invoke(null, (Object) new String[0]);
+            } catch (InvocationTargetException e) {
+                thrown = e.getCause();
+            } catch (Throwable e) {
+                thrown = e;
+            } finally {
+                System.out.flush();
+                cpuNanos = THREADS.getCurrentThreadCpuTime();
+            }
+        }
+    }
+
+    /**
+     * 用户代码不具备的权限：能拿到启动器的 stdout (伪造结果帧) 或关闭这些限制的操作
+     * 其余权限不做限制 (隔离由容器和 oj-runner 负责)
+     */
+    private static boolean isDenied(Permission perm) {
+        String name = perm.getName();
+        if (perm instanceof RuntimePermission) {
+            return "writeFileDescriptor".equals(name) || "readFileDescriptor".equals(name) || "setIO".equals(name)
+                    || "setSecurityManager".equals(name) || "createSecurityManager".equals(name)
+                    || name.startsWith("loadLibrary.");
+        }
+        if (perm instanceof ReflectPermission) {
+            return "suppressAccessChecks".equals(name);
+        }
+        if (perm instanceof SecurityPermission) {
+            return "setPolicy".equals(name) || "createPolicy.JavaPolicy".equals(name);
+        }
+        if (perm instanceof LinkPermission) {
+            return true;
+        }
+        if (perm instanceof FilePermission) {
+            // 子进程会继承启动器的 stdout
+            return perm.getActions().contains("execute") || isProcessPath(name);
+        }
+        return false;
+    }
+
+    /**
+     * /proc、/dev/fd、/dev/stdout 等可以重新打开本进程文件描述符的路径 (按字面和解析符号链接后的路径判断)
+     */
+    private static boolean isProcessPath(String path) {
+        if (isProcessPrefix(path)) {
+            return true;
+        }
+        try {
+            return isProcessPrefix(new File(path).getCanonicalPath());
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static boolean isProcessPrefix(String path) {
+        return path.equals("/proc") || path.startsWith("/proc/") || path.startsWith("/dev/fd")
+                || path.startsWith("/dev/std");
+    }
+
+    /**
+     * 用例类加载器 (用户代码的类都由它加载，权限检查据此识别用户代码)
+     */
+    private static class CaseLoader extends URLClassLoader {
+        CaseLoader(URL[] classPath) {
+            super(classPath, ClassLoader.getSystemClassLoader().getParent());
+        }
+    }
+
+    /**
+     * 调用栈上出现用户代码时拒绝 isDenied 中的权限；JDK 在 doPrivileged 中代为执行的操作不受影响
+     */
+    private static class CasePolicy extends Policy {
+        @Override
+        public boolean implies(ProtectionDomain domain, Permission perm) {
+            return !(domain.getClassLoader() instanceof CaseLoader && isDenied(perm));
+        }
+    }
+
+    /**
+     * 拦截用户代码的 System.exit；isDenied 中的权限交给 AccessController 按调用栈检查，其余权限直接放行
+     */
+    private static class CaseGuard extends SecurityManager {
+        @Override
+        public void checkPermission(Permission perm) {
+            if (isDenied(perm)) {
+                AccessController.checkPermission(perm);
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission perm, Object context) {
+            checkPermission(perm);
+        }
+
+        @Override
+        public void checkExit(int status) {
+            if (USER_GROUP.parentOf(Thread.currentThread().getThreadGroup())) {
+                ExitException exit = new ExitException(status);
+                if (exited == null) {
+                    exited = exit;
+                }
+                throw exit;
+            }
+        }
+    }
+
+    private static class ExitException extends SecurityException {
+        private final int status;
+
+        ExitException(int status) {
+            super("System.exit(" + status + ")");
+            this.status = status;
+        }
+    }
+
+    /**
+     * 有上限的输出缓冲：超过上限后丢弃后续输出并标记
+     */
+    private static class BoundedBuffer extends ByteArrayOutputStream {
+        private final int limit;
+        private volatile boolean exceeded;
+
+        BoundedBuffer(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (count >= limit) {
+                exceeded = true;
+                return;
+            }
+            super.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            int remaining = limit - count;
+            if (len > remaining) {
+                exceeded = true;
+                len = Math.max(remaining, 0);
+            }
+            super.write(b, off, len);
+        }
+    }
+
+    private static class CaseRun {
+        private int status;
+        private int exitCode;
+        private long cpuMs;
+        private long memoryKb;
+        private boolean lingering;
+        private byte[] output;
+        private byte[] error;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * oj-agent: 容器内判题代理 (在沙箱镜像构建时编译到 /usr/local/bin/oj-agent)
+ *
+ * 用法: oj-agent (工作目录即命令的执行目录)
+ *
+ * 判题服务每次提交只 docker exec 一次本代理，通过同一条 stdin/stdout 连接下发所有命令
+ * (清理、编译、运行用例、特判、结束进程)，省去每条命令的 exec 创建/启动/查询三次 Docker API 调用。
+ *
+ * 请求 (stdin，每行一条):
+ *   run <id> <输出上限B> <命令>   以 sh -c <命令> 运行 (可以同时运行多条)，stdout 与 stderr 合计最多转发输出上限个字节，
+ *                                 超过后 SIGTERM 整个进程组 (oj-runner 随即结束用户程序的全部进程) 并标记 exceeded=1
+ *   exit                          结束所有仍在运行的命令并退出 (stdin 关闭时同样处理)
+ *
+ * 响应 (stdout):
+ *   R\n                           启动完成
+ *   O <id> <长度>\n<字节>         命令的一段 stdout
+ *   E <id> <长度>\n<字节>         命令的一段 stderr
+ *   X <id> <退出码> <0|1>\n       命令结束 (被信号终止时退出码为 128 + 信号值)，最后一项为输出是否超限
+ *   P\n                           心跳 (10 秒没有任何响应时发送，避免连接被判定为空闲)
+ * 输出以长度前缀转发，用户程序的输出无法伪造响应。
+ */
+#define _GNU_SOURCE
+#include <errno.h>
+#include <fcntl.h>
+#include <poll.h>
+#include <signal.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/types.h>
+#include <sys/wait.h>
+#include <time.h>
+#include <unistd.h>
+
+#define MAX_TASKS 64
+#define LINE_MAX_BYTES 65536
+#define CHUNK_BYTES 65536
+#define PING_INTERVAL_SEC 10
+
+struct task {
+    int used;
+    long id;
+    pid_t pid;
+    int fds[2];          /* stdout / stderr 读端，已关闭为 -1 */
+    long forwarded;      /* 已转发的字节数 (stdout + stderr 合计) */
+    long limit;
+    int exceeded;
+    int reaped;
+    int status;
+};
+
+static struct task tasks[MAX_TASKS];
+static int sigchld_pipe[2];
+static time_t last_write;
+
+static void on_sigchld(int sig) {
+    (void) sig;
+    int saved = errno;
+    if (write(sigchld_pipe[1], "c", 1) < 0) {
+        /* 管道已满说明已有未处理的通知 */
+    }
+    errno = saved;
+}
+
+static void write_all(const void *data, size_t len) {
+    const char *p = data;
+    while (len > 0) {
+        ssize_t n = write(STDOUT_FILENO, p, len);
+        if (n < 0) {
+            if (errno == EINTR) {
+                continue;
+            }
+            /* 判题服务已断开连接 */
+            _exit(1);
+        }
+        p += n;
+        len -= (size_t) n;
+    }
+    last_write = time(NULL);
+}
+
+static void write_header(const char *fmt, long a, long b, long c) {
+    char header[96];
+    int n = snprintf(header, sizeof(header), fmt, a, b, c);
+    write_all(header, (size_t) n);
+}
+
+static void set_nonblock(int fd) {
+    fcntl(fd, F_SETFL, fcntl(fd, F_GETFL) | O_NONBLOCK);
+}
+
+static void start_task(long id, long limit, const char *cmd) {
+    struct task *t = NULL;
+    for (int i = 0; i < MAX_TASKS; i++) {
+        if (!tasks[i].used) {
+            t = &tasks[i];
+            break;
+        }
+    }
+    int out[2], err[2];
+    if (t == NULL || pipe2(out, O_CLOEXEC) < 0 || pipe2(err, O_CLOEXEC) < 0) {
+        const char *msg = "oj-agent: cannot start task\n";
+        write_header("E %ld %ld\n", id, (long) strlen(msg), 0);
+        write_all(msg, strlen(msg));
+        write_header("X %ld %ld %ld\n", id, 127, 0);
+        return;
+    }
+
+    pid_t pid = fork();
+    if (pid == 0) {
+        /* 子进程: 独立进程组，便于连同用户程序一起结束 */
+        setpgid(0, 0);
+        signal(SIGCHLD, SIG_DFL);
+        signal(SIGPIPE, SIG_DFL);
+        int devnull = open("/dev/null", O_RDONLY);
+        dup2(devnull, STDIN_FILENO);
+        dup2(out[1], STDOUT_FILENO);
+        dup2(err[1], STDERR_FILENO);
+        execl("/bin/sh", "sh", "-c", cmd, (char *) NULL);
+        _exit(127);
+    }
+    setpgid(pid, pid);
+    close(out[1]);
+    close(err[1]);
+    set_nonblock(out[0]);
+    set_nonblock(err[0]);
+
+    memset(t, 0, sizeof(*t));
+    t->used = 1;
+    t->id = id;
+    t->pid = pid;
+    t->fds[0] = out[0];
+    t->fds[1] = err[0];
+    t->limit = limit;
+}
+
+/*
+ * 读出管道里现有的数据并转发，返回 0 表示管道已关闭
+ */
+static int forward(struct task *t, int stream) {
+    char buf[CHUNK_BYTES];
+    for (;;) {
+        ssize_t n = read(t->fds[stream], buf, sizeof(buf));
+        if (n == 0) {
+            return 0;
+        }
+        if (n < 0) {
+            return errno == EAGAIN || errno == EINTR;
+        }
+        long remaining = t->limit - t->forwarded;
+        long len = n < remaining ? n : remaining;
+        if (len > 0) {
+            write_header(stream == 0 ? "O %ld %ld\n" : "E %ld %ld\n", t->id, len, 0);
+            write_all(buf, (size_t) len);
+            t->forwarded += len;
+        }
+        if (n > remaining && !t->exceeded) {
+            t->exceeded = 1;
+            /* oj-runner 收到 SIGTERM 会结束用户程序的全部进程后退出；其他命令直接结束 */
+            kill(-t->pid, SIGTERM);
+        }
+    }
+}
+
+static void close_stream(struct task *t, int stream) {
+    if (t->fds[stream] >= 0) {
+        close(t->fds[stream]);
+        t->fds[stream] = -1;
+    }
+}
+
+static void finish_if_done(struct task *t) {
+    if (!t->used || !t->reaped) {
+        return;
+    }
+    /* 进程已结束：转发剩余输出 (后台子进程仍持有管道时不再等待) */
+    for (int s = 0; s < 2; s++) {
+        if (t->fds[s] >= 0) {
+            forward(t, s);
+            close_stream(t, s);
+        }
+    }
+    int code = WIFSIGNALED(t->status) ? 128 + WTERMSIG(t->status) : WEXITSTATUS(t->status);
+    write_header("X %ld %ld %ld\n", t->id, code, t->exceeded);
+    t->used = 0;
+}
+
+static void reap_children(void) {
+    int status;
+    pid_t pid;
+    while ((pid = waitpid(-1, &status, WNOHANG)) > 0) {
+        for (int i = 0; i < MAX_TASKS; i++) {
+            if (tasks[i].used && tasks[i].pid == pid) {
+                tasks[i].reaped = 1;
+                tasks[i].status = status;
+                finish_if_done(&tasks[i]);
+                break;
+            }
+        }
+    }
+}
+
+static void kill_all_and_exit(void) {
+    /* 先让 oj-runner 清理各自的用户进程，稍后再 SIGKILL 仍未退出的命令 */
+    for (int i = 0; i < MAX_TASKS; i++) {
+        if (tasks[i].used) {
+            kill(-tasks[i].pid, SIGTERM);
+        }
+    }
+    usleep(100 * 1000);
+    for (int i = 0; i < MAX_TASKS; i++) {
+        if (tasks[i].used) {
+            kill(-tasks[i].pid, SIGKILL);
+        }
+    }
+    while (waitpid(-1, NULL, 0) > 0 || errno == EINTR) {
+    }
+    _exit(0);
+}
+
+static void handle_line(char *line) {
+    if (strcmp(line, "exit") == 0) {
+        kill_all_and_exit();
+    }
+    if (strncmp(line, "run ", 4) != 0) {
+        return;
+    }
+    char *end;
+    long id = strtol(line + 4, &end, 10);
+    long limit = strtol(end, &end, 10);
+    while (*end == ' ') {
+        end++;
+    }
+    start_task(id, limit, end);
+}
+
+int main(void) {
+    signal(SIGPIPE, SIG_IGN);
+    if (pipe(sigchld_pipe) < 0) {
+        return 1;
+    }
+    set_nonblock(sigchld_pipe[0]);
+    set_nonblock(sigchld_pipe[1]);
+    fcntl(sigchld_pipe[0], F_SETFD, FD_CLOEXEC);
+    fcntl(sigchld_pipe[1], F_SETFD, FD_CLOEXEC);
+    signal(SIGCHLD, on_sigchld);
+    for (int i = 0; i < MAX_TASKS; i++) {
+        tasks[i].fds[0] = tasks[i].fds[1] = -1;
+    }
+
+    static char line[LINE_MAX_BYTES];
+    size_t line_len = 0;
+    write_all("R\n", 2);
+
+    for (;;) {
+        struct pollfd pfds[2 + MAX_TASKS * 2];
+        struct task *owners[2 + MAX_TASKS * 2];
+        int streams[2 + MAX_TASKS * 2];
+        int n = 0;
+        pfds[n].fd = STDIN_FILENO;
+        pfds[n].events = POLLIN;
+        n++;
+        pfds[n].fd = sigchld_pipe[0];
+        pfds[n].events = POLLIN;
+        n++;
+        for (int i = 0; i < MAX_TASKS; i++) {
+            for (int s = 0; s < 2; s++) {
+                if (tasks[i].used && tasks[i].fds[s] >= 0) {
+                    pfds[n].fd = tasks[i].fds[s];
+                    pfds[n].events = POLLIN;
+                    owners[n] = &tasks[i];
+                    streams[n] = s;
+                    n++;
+                }
+            }
+        }
+
+        int ready = poll(pfds, (nfds_t) n, 1000);
+        if (ready < 0 && errno != EINTR) {
+            kill_all_and_exit();
+        }
+        if (ready > 0) {
+            for (int i = 2; i < n; i++) {
+                if (pfds[i].revents & (POLLIN | POLLHUP | POLLERR)) {
+                    if (!forward(owners[i], streams[i])) {
+                        close_stream(owners[i], streams[i]);
+                    }
+                }
+            }
+            if (pfds[1].revents & POLLIN) {
+                char drain[64];
+                while (read(sigchld_pipe[0], drain, sizeof(drain)) > 0) {
+                }
+            }
+            if (pfds[0].revents & (POLLIN | POLLHUP | POLLERR)) {
+                ssize_t r = read(STDIN_FILENO, line + line_len, sizeof(line) - 1 - line_len);
+                if (r <= 0) {
+                    kill_all_and_exit();
+                }
+                line_len += (size_t) r;
+                char *start = line;
+                char *nl;
+                while ((nl = memchr(start, '\n', line_len - (size_t) (start - line))) != NULL) {
+                    *nl = '\0';
+                    handle_line(start);
+                    start = nl + 1;
+                }
+                line_len -= (size_t) (start - line);
+                memmove(line, start, line_len);
+                if (line_len == sizeof(line) - 1) {
+                    /* 超长的请求行直接丢弃 */
+                    line_len = 0;
+                }
+            }
+        }
+        reap_children();
+        if (time(NULL) - last_write >= PING_INTERVAL_SEC) {
+            write_all("P\n", 2);
+        }
+    }
+}
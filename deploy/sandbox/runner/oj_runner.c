@@ -0,0 +1,683 @@
+/*
+ * oj-runner: 判题用例启动器 (在沙箱镜像构建时编译到 /usr/local/bin/oj-runner)
+ *
+ * 用法: oj-runner [-t 墙钟上限ms] [-c CPU上限ms] [-m 地址空间上限KB] [-f 文件大小上限B] [-u uid]
+ *                 [-n] [-r] [-R 只读目录]... [-g cgroup目录] [-M cgroup内存上限B] [-P cgroup进程数上限] [-s]
+ *                 <命令> [参数...]
+ *
+ * 以子进程运行用户程序 (stdin/stdout/stderr 原样继承)，子进程结束后
+ * 通过 wait4 取得它的资源使用情况，并在 stderr 末尾追加一行统计:
+ *   __OJ_USAGE__ exit=<退出码> signal=<终止信号> memory=<峰值内存KB> cpu=<CPU时间ms> timeout=<0|1> oom=<0|1>
+ * 判题服务取 stderr 中最后一个统计行 (用户程序已经结束，无法伪造在它之后)。
+ * cpu 为用户态 + 内核态 CPU 时间之和，不受判题机负载和 docker exec 往返影响。
+ * oom=1 表示用户程序被 SIGKILL 结束，且运行期间所在 cgroup 的 oom_kill 计数增加 (内核 OOM Killer 所为)。
+ *
+ * -t: 超过墙钟上限立即 SIGKILL 用户程序，并标记 timeout=1
+ * -c: 通过 RLIMIT_CPU 兜底结束死循环 (按秒向上取整，超过后收到 SIGXCPU)
+ * -m: 通过 RLIMIT_AS 限制用户程序的地址空间 (适用于 C/C++，JVM 请使用 -Xmx)
+ * -f: 通过 RLIMIT_FSIZE 限制写入文件的大小 (输出重定向到文件时使用，超过后收到 SIGXFSZ)
+ * -u: 以该 uid/gid 运行用户程序 (放弃 root 权限，读不到只属于 root 的判题数据)
+ *
+ * 以下选项用于不经过 Docker、直接在判题机上运行用户程序 (需要 root)：
+ * -n: 在新的 mount/pid/net/ipc/uts 命名空间中运行 (无网络、看不到宿主机进程、独立的 /tmp)
+ * -r: (需要 -n) 用户程序 pivot_root 到一个最小根目录：只包含只读的工具链目录 (/usr /bin /lib /etc 等)、
+ *     当前工作目录 (路径不变)、/dev 下的 null/zero/random/urandom、新的 /proc 和独立的 /tmp，
+ *     看不到判题机上的其他文件 (包括其他工作目录)
+ * -R: 追加一个只读绑定到最小根目录的路径 (可多次指定，如安装在 /opt 以外位置的 JDK)
+ * -g: 在该 cgroup v2 目录下为本次运行创建子 cgroup，-M / -P 写入 memory.max / pids.max，
+ *     结束后用 memory.peak 作为峰值内存 (内核支持时)，并删除子 cgroup
+ * -s: 安装 seccomp 过滤器，网络、ptrace、挂载、内核模块等系统调用返回 EPERM
+ *
+ * 结束运行：向启动器发送 SIGTERM (或 SIGINT/SIGHUP)，启动器结束全部用户进程后照常输出统计行并退出。
+ * 全部用户进程指：子 cgroup 内的所有进程 (cgroup.kill)、用户程序的进程组 (用户程序自成一组)，
+ * 以及 -n 时的整个 pid 命名空间 (结束其中的 1 号进程即可)。
+ * 启动器被 SIGKILL 时用户程序 (pid 命名空间的 1 号进程) 通过 PDEATHSIG 随之结束。
+ */
+#define _GNU_SOURCE
+#include <errno.h>
+#include <fcntl.h>
+#include <grp.h>
+#include <poll.h>
+#include <linux/audit.h>
+#include <linux/filter.h>
+#include <linux/seccomp.h>
+#include <sched.h>
+#include <stddef.h>
+#include <signal.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <limits.h>
+#include <sys/mount.h>
+#include <sys/prctl.h>
+#include <sys/resource.h>
+#include <sys/stat.h>
+#include <sys/syscall.h>
+#include <sys/time.h>
+#include <sys/wait.h>
+#include <unistd.h>
+
+#define USAGE_MARK "__OJ_USAGE__"
+
+#if defined(__x86_64__)
+#define OJ_AUDIT_ARCH AUDIT_ARCH_X86_64
+#elif defined(__aarch64__)
+#define OJ_AUDIT_ARCH AUDIT_ARCH_AARCH64
+#endif
+
+#ifndef SECCOMP_RET_KILL_PROCESS
+#define SECCOMP_RET_KILL_PROCESS SECCOMP_RET_KILL
+#endif
+
+/*
+ * -s 时禁止的系统调用 (返回 EPERM，而不是直接杀掉进程，运行时初始化探测这些调用时不会崩溃)
+ * socketpair 不在其中：JDK 的文件通道初始化需要它，且只能创建互相连接的一对本地套接字
+ */
+static const long blocked_syscalls[] = {
+    SYS_socket, SYS_connect, SYS_bind, SYS_listen, SYS_accept, SYS_accept4,
+    SYS_ptrace, SYS_process_vm_readv, SYS_process_vm_writev,
+    SYS_mount, SYS_umount2, SYS_pivot_root, SYS_chroot, SYS_unshare, SYS_setns,
+    SYS_reboot, SYS_kexec_load, SYS_init_module, SYS_finit_module, SYS_delete_module,
+    SYS_swapon, SYS_swapoff, SYS_keyctl, SYS_add_key, SYS_request_key,
+    SYS_bpf, SYS_perf_event_open, SYS_userfaultfd,
+};
+
+static volatile sig_atomic_t timed_out = 0;
+static volatile pid_t child_pid = 0;
+static char cgroup_dir[512];
+/* 预先拼好 cgroup.kill 的路径，信号处理函数里只调用 async-signal-safe 的 open/write/close */
+static char cgroup_kill_path[640];
+
+/*
+ * 结束全部用户进程 (信号处理函数中也会调用)
+ */
+static void kill_all(void) {
+    if (cgroup_kill_path[0] != '\0') {
+        int fd = open(cgroup_kill_path, O_WRONLY | O_CLOEXEC);
+        if (fd >= 0) {
+            if (write(fd, "1", 1) < 0) {
+                /* 内核不支持 cgroup.kill (5.14 以下)，靠下面的进程组和 pid 命名空间兜底 */
+            }
+            close(fd);
+        }
+    }
+    if (child_pid > 0) {
+        kill(-child_pid, SIGKILL);
+        kill(child_pid, SIGKILL);
+    }
+}
+
+static void on_alarm(int sig) {
+    (void) sig;
+    timed_out = 1;
+    kill_all();
+}
+
+static void on_terminate(int sig) {
+    (void) sig;
+    kill_all();
+}
+
+static int write_file(const char *dir, const char *name, const char *value) {
+    char path[640];
+    snprintf(path, sizeof(path), "%s/%s", dir, name);
+    int fd = open(path, O_WRONLY | O_CLOEXEC);
+    if (fd < 0) {
+        return -1;
+    }
+    ssize_t n = write(fd, value, strlen(value));
+    close(fd);
+    return n < 0 ? -1 : 0;
+}
+
+/*
+ * 从 oom 计数文件中读取 oom_kill 行，读不到时返回 -1
+ */
+static long read_oom_kill_file(const char *path) {
+    FILE *fp = fopen(path, "re");
+    if (fp == NULL) {
+        return -1;
+    }
+    char key[64];
+    long value;
+    long result = -1;
+    while (fscanf(fp, "%63s %ld", key, &value) == 2) {
+        if (strcmp(key, "oom_kill") == 0) {
+            result = value;
+            break;
+        }
+    }
+    fclose(fp);
+    return result;
+}
+
+/*
+ * 读取 cgroup 的 OOM Killer 计数 (cgroup v2 的 memory.events 或 v1 的 memory.oom_control 中的 oom_kill 行)
+ * 使用 -g 时读取本次运行的子 cgroup；否则按 /proc/self/cgroup 找到启动器自己所在的 cgroup
+ * (Docker 容器内即整个容器)，读不到时返回 -1
+ */
+static long read_oom_kills(void) {
+    char path[1024];
+    if (cgroup_dir[0] != '\0') {
+        snprintf(path, sizeof(path), "%s/memory.events", cgroup_dir);
+        return read_oom_kill_file(path);
+    }
+    FILE *fp = fopen("/proc/self/cgroup", "re");
+    if (fp == NULL) {
+        return -1;
+    }
+    char line[512];
+    long result = -1;
+    while (result < 0 && fgets(line, sizeof(line), fp) != NULL) {
+        line[strcspn(line, "\n")] = '\0';
+        /* 格式: 层级ID:控制器列表:路径 (v2 为 0::路径) */
+        char *controllers = strchr(line, ':');
+        char *cgroup_path = controllers != NULL ? strchr(controllers + 1, ':') : NULL;
+        if (cgroup_path == NULL) {
+            continue;
+        }
+        *cgroup_path++ = '\0';
+        controllers++;
+        if (strcmp(line, "0") == 0 && controllers[0] == '\0') {
+            snprintf(path, sizeof(path), "/sys/fs/cgroup%s/memory.events", cgroup_path);
+        } else if (strstr(controllers, "memory") != NULL) {
+            snprintf(path, sizeof(path), "/sys/fs/cgroup/memory%s/memory.oom_control", cgroup_path);
+        } else {
+            continue;
+        }
+        result = read_oom_kill_file(path);
+    }
+    fclose(fp);
+    return result;
+}
+
+static long read_cgroup_long(const char *name) {
+    char path[640];
+    char buf[64];
+    snprintf(path, sizeof(path), "%s/%s", cgroup_dir, name);
+    int fd = open(path, O_RDONLY | O_CLOEXEC);
+    if (fd < 0) {
+        return -1;
+    }
+    ssize_t n = read(fd, buf, sizeof(buf) - 1);
+    close(fd);
+    if (n <= 0) {
+        return -1;
+    }
+    buf[n] = '\0';
+    return atol(buf);
+}
+
+/*
+ * 创建本次运行的子 cgroup 并写入限制
+ */
+static int setup_cgroup(const char *parent, long memory_max, long pids_max) {
+    char value[32];
+    snprintf(cgroup_dir, sizeof(cgroup_dir), "%s/oj-%d", parent, (int) getpid());
+    if (mkdir(cgroup_dir, 0755) != 0 && errno != EEXIST) {
+        perror("cgroup mkdir");
+        return -1;
+    }
+    snprintf(cgroup_kill_path, sizeof(cgroup_kill_path), "%s/cgroup.kill", cgroup_dir);
+    if (memory_max > 0) {
+        snprintf(value, sizeof(value), "%ld", memory_max);
+        if (write_file(cgroup_dir, "memory.max", value) != 0) {
+            perror("cgroup memory.max");
+            rmdir(cgroup_dir);
+            return -1;
+        }
+        /* 没有开启 swap 时该文件不存在，忽略 */
+        write_file(cgroup_dir, "memory.swap.max", "0");
+    }
+    if (pids_max > 0) {
+        snprintf(value, sizeof(value), "%ld", pids_max);
+        if (write_file(cgroup_dir, "pids.max", value) != 0) {
+            perror("cgroup pids.max");
+            rmdir(cgroup_dir);
+            return -1;
+        }
+    }
+    return 0;
+}
+
+static void remove_cgroup(void) {
+    /* 用户程序已结束，它留下的后台进程一并结束；这些进程可能还要等一小会儿才全部退出 */
+    kill_all();
+    for (int i = 0; i < 100; i++) {
+        if (rmdir(cgroup_dir) == 0 || errno != EBUSY) {
+            return;
+        }
+        usleep(1000);
+    }
+}
+
+/*
+ * 新建 mount/pid/net/ipc/uts 命名空间 (之后 fork 出的子进程是新 pid 命名空间的 1 号进程)，
+ * 挂载传播改为私有，并换上独立的 /tmp
+ */
+static int setup_namespaces(void) {
+    if (unshare(CLONE_NEWNS | CLONE_NEWPID | CLONE_NEWNET | CLONE_NEWIPC | CLONE_NEWUTS) != 0) {
+        perror("unshare");
+        return -1;
+    }
+    if (mount(NULL, "/", NULL, MS_REC | MS_PRIVATE, NULL) != 0) {
+        perror("mount private");
+        return -1;
+    }
+    if (mount("tmpfs", "/tmp", "tmpfs", MS_NOSUID | MS_NODEV, "size=64m,mode=1777") != 0) {
+        perror("mount /tmp");
+        return -1;
+    }
+    return 0;
+}
+
+/* 最小根目录中只读绑定的工具链路径 (不存在的跳过) */
+static const char *const toolchain_paths[] = {
+    "/usr", "/bin", "/sbin", "/lib", "/lib32", "/lib64", "/libx32", "/etc", "/opt"
+};
+
+/* 最小根目录中可用的设备文件 */
+static const char *const device_paths[] = {"/dev/null", "/dev/zero", "/dev/random", "/dev/urandom"};
+
+#define MAX_EXTRA_PATHS 16
+static const char *extra_paths[MAX_EXTRA_PATHS];
+static int extra_path_count = 0;
+
+/* 最小根目录在构建期间的挂载点 (位于启动器私有的 /tmp 中) */
+#define NEW_ROOT "/tmp/.oj-root"
+
+/* 逐级创建目录 (已存在时忽略) */
+static int make_dirs(const char *path, mode_t mode) {
+    char buf[PATH_MAX];
+    snprintf(buf, sizeof(buf), "%s", path);
+    for (char *p = buf + 1; *p != '\0'; p++) {
+        if (*p == '/') {
+            *p = '\0';
+            if (mkdir(buf, mode) != 0 && errno != EEXIST) {
+                return -1;
+            }
+            *p = '/';
+        }
+    }
+    return mkdir(buf, mode) != 0 && errno != EEXIST ? -1 : 0;
+}
+
+/*
+ * 把宿主机上的 source 绑定到最小根目录中的 path 位置
+ * 符号链接 (如 /bin -> usr/bin) 原样复制；目录和文件绑定挂载，readonly 时再以只读重新挂载
+ */
+static int bind_into_root(const char *source, const char *path, int readonly, unsigned long flags) {
+    struct stat st;
+    if (lstat(source, &st) != 0) {
+        return errno == ENOENT ? 0 : -1;
+    }
+    char target[PATH_MAX];
+    snprintf(target, sizeof(target), "%s%s", NEW_ROOT, path);
+    char *slash = strrchr(target, '/');
+    *slash = '\0';
+    if (make_dirs(target, 0755) != 0) {
+        return -1;
+    }
+    *slash = '/';
+
+    if (S_ISLNK(st.st_mode)) {
+        char link[PATH_MAX];
+        ssize_t len = readlink(source, link, sizeof(link) - 1);
+        if (len < 0) {
+            return -1;
+        }
+        link[len] = '\0';
+        return symlink(link, target) != 0 && errno != EEXIST ? -1 : 0;
+    }
+    if (S_ISDIR(st.st_mode)) {
+        if (mkdir(target, 0755) != 0 && errno != EEXIST) {
+            return -1;
+        }
+    } else {
+        int fd = open(target, O_WRONLY | O_CREAT | O_CLOEXEC, 0644);
+        if (fd < 0) {
+            return -1;
+        }
+        close(fd);
+    }
+    if (mount(source, target, NULL, MS_BIND | MS_REC, NULL) != 0) {
+        return -1;
+    }
+    unsigned long remount = MS_BIND | MS_REMOUNT | flags | (readonly ? MS_RDONLY : 0);
+    return mount(NULL, target, NULL, remount, NULL);
+}
+
+/*
+ * (在子进程中) 进入新的 mount 命名空间并 pivot_root 到最小根目录，工作目录保持不变
+ * 启动器自己留在原来的 mount 命名空间，之后仍能读取和删除 cgroup
+ */
+static int setup_root(void) {
+    char work_dir[PATH_MAX];
+    if (getcwd(work_dir, sizeof(work_dir)) == NULL) {
+        perror("getcwd");
+        return -1;
+    }
+    if (unshare(CLONE_NEWNS) != 0) {
+        perror("unshare");
+        return -1;
+    }
+    if (mkdir(NEW_ROOT, 0755) != 0 && errno != EEXIST) {
+        perror("mkdir root");
+        return -1;
+    }
+    if (mount("tmpfs", NEW_ROOT, "tmpfs", MS_NOSUID | MS_NODEV, "size=1m,mode=0755") != 0) {
+        perror("mount root");
+        return -1;
+    }
+    for (size_t i = 0; i < sizeof(toolchain_paths) / sizeof(toolchain_paths[0]); i++) {
+        if (bind_into_root(toolchain_paths[i], toolchain_paths[i], 1, MS_NOSUID | MS_NODEV) != 0) {
+            perror(toolchain_paths[i]);
+            return -1;
+        }
+    }
+    for (int i = 0; i < extra_path_count; i++) {
+        if (bind_into_root(extra_paths[i], extra_paths[i], 1, MS_NOSUID | MS_NODEV) != 0) {
+            perror(extra_paths[i]);
+            return -1;
+        }
+    }
+    for (size_t i = 0; i < sizeof(device_paths) / sizeof(device_paths[0]); i++) {
+        if (bind_into_root(device_paths[i], device_paths[i], 0, MS_NOSUID | MS_NOEXEC) != 0) {
+            perror(device_paths[i]);
+            return -1;
+        }
+    }
+    if (symlink("/proc/self/fd", NEW_ROOT "/dev/fd") != 0
+        || symlink("/proc/self/fd/0", NEW_ROOT "/dev/stdin") != 0
+        || symlink("/proc/self/fd/1", NEW_ROOT "/dev/stdout") != 0
+        || symlink("/proc/self/fd/2", NEW_ROOT "/dev/stderr") != 0) {
+        perror("symlink /dev");
+        return -1;
+    }
+    if (mkdir(NEW_ROOT "/proc", 0555) != 0 || mkdir(NEW_ROOT "/tmp", 01777) != 0) {
+        perror("mkdir");
+        return -1;
+    }
+    if (mount("tmpfs", NEW_ROOT "/tmp", "tmpfs", MS_NOSUID | MS_NODEV, "size=64m,mode=1777") != 0) {
+        perror("mount /tmp");
+        return -1;
+    }
+    /*
+     * 工作目录最后绑定 (位于 /tmp 下时不会被上面的 tmpfs 遮住)，以 "." 为源：
+     * 启动器在 /tmp 挂载了 tmpfs，按路径可能已经找不到工作目录。
+     * 工作目录可写与否由目录权限决定 (判题服务只在编译期间开放写权限)
+     */
+    if (bind_into_root(".", work_dir, 0, MS_NOSUID | MS_NODEV) != 0) {
+        perror(work_dir);
+        return -1;
+    }
+
+    /* pivot_root(".", ".") 后旧根叠在新根之下，分离卸载即可 */
+    if (chdir(NEW_ROOT) != 0 || syscall(SYS_pivot_root, ".", ".") != 0) {
+        perror("pivot_root");
+        return -1;
+    }
+    if (umount2(".", MNT_DETACH) != 0) {
+        perror("umount old root");
+        return -1;
+    }
+    if (mount(NULL, "/", NULL, MS_BIND | MS_REMOUNT | MS_RDONLY | MS_NOSUID | MS_NODEV, NULL) != 0) {
+        perror("remount root");
+        return -1;
+    }
+    if (chdir(work_dir) != 0) {
+        perror("chdir");
+        return -1;
+    }
+    return 0;
+}
+
+static int install_seccomp(void) {
+#ifdef OJ_AUDIT_ARCH
+    size_t count = sizeof(blocked_syscalls) / sizeof(blocked_syscalls[0]);
+    struct sock_filter filter[8 + 2 * (sizeof(blocked_syscalls) / sizeof(blocked_syscalls[0]))];
+    size_t n = 0;
+    /* 只允许本机架构的系统调用约定，防止通过其他 ABI 绕过 */
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_LD | BPF_W | BPF_ABS, offsetof(struct seccomp_data, arch));
+    filter[n++] = (struct sock_filter) BPF_JUMP(BPF_JMP | BPF_JEQ | BPF_K, OJ_AUDIT_ARCH, 1, 0);
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_RET | BPF_K, SECCOMP_RET_KILL_PROCESS);
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_LD | BPF_W | BPF_ABS, offsetof(struct seccomp_data, nr));
+#ifdef __x86_64__
+    /* x32 ABI */
+    filter[n++] = (struct sock_filter) BPF_JUMP(BPF_JMP | BPF_JGE | BPF_K, 0x40000000, 0, 1);
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_RET | BPF_K, SECCOMP_RET_KILL_PROCESS);
+#endif
+    for (size_t i = 0; i < count; i++) {
+        filter[n++] = (struct sock_filter) BPF_JUMP(BPF_JMP | BPF_JEQ | BPF_K, (unsigned int) blocked_syscalls[i], 0, 1);
+        filter[n++] = (struct sock_filter) BPF_STMT(BPF_RET | BPF_K, SECCOMP_RET_ERRNO | EPERM);
+    }
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_RET | BPF_K, SECCOMP_RET_ALLOW);
+
+    struct sock_fprog prog = {(unsigned short) n, filter};
+    if (prctl(PR_SET_NO_NEW_PRIVS, 1, 0, 0, 0) != 0 || prctl(PR_SET_SECCOMP, SECCOMP_MODE_FILTER, &prog) != 0) {
+        perror("seccomp");
+        return -1;
+    }
+    return 0;
+#else
+    fprintf(stderr, "seccomp: unsupported architecture\n");
+    return -1;
+#endif
+}
+
+int main(int argc, char *argv[]) {
+    long time_limit_ms = 0;
+    long cpu_limit_ms = 0;
+    long memory_limit_kb = 0;
+    long file_limit_bytes = 0;
+    long run_uid = -1;
+    int isolate = 0;
+    const char *cgroup_parent = NULL;
+    long cgroup_memory = 0;
+    long cgroup_pids = 0;
+    int use_seccomp = 0;
+    int minimal_root = 0;
+
+    /* '+': 遇到第一个非选项参数即停止，后面都是用户程序的命令行 */
+    int opt;
+    while ((opt = getopt(argc, argv, "+t:c:m:f:u:nrR:g:M:P:s")) != -1) {
+        switch (opt) {
+            case 't':
+                time_limit_ms = atol(optarg);
+                break;
+            case 'c':
+                cpu_limit_ms = atol(optarg);
+                break;
+            case 'm':
+                memory_limit_kb = atol(optarg);
+                break;
+            case 'f':
+                file_limit_bytes = atol(optarg);
+                break;
+            case 'u':
+                run_uid = atol(optarg);
+                break;
+            case 'n':
+                isolate = 1;
+                break;
+            case 'r':
+                minimal_root = 1;
+                break;
+            case 'R':
+                if (extra_path_count < MAX_EXTRA_PATHS && optarg[0] == '/') {
+                    extra_paths[extra_path_count++] = optarg;
+                }
+                break;
+            case 'g':
+                cgroup_parent = optarg;
+                break;
+            case 'M':
+                cgroup_memory = atol(optarg);
+                break;
+            case 'P':
+                cgroup_pids = atol(optarg);
+                break;
+            case 's':
+                use_seccomp = 1;
+                break;
+            default:
+                fprintf(stderr, "usage: oj-runner [-t ms] [-c ms] [-m kb] [-f bytes] [-u uid] [-n] [-r] [-R dir]... [-g dir] [-M bytes] [-P n] [-s] <cmd> [args...]\n");
+                return 2;
+        }
+    }
+    if (optind >= argc) {
+        fprintf(stderr, "usage: oj-runner [-t ms] [-c ms] [-m kb] [-f bytes] [-u uid] [-n] [-r] [-R dir]... [-g dir] [-M bytes] [-P n] [-s] <cmd> [args...]\n");
+        return 2;
+    }
+
+    if (cgroup_parent != NULL && setup_cgroup(cgroup_parent, cgroup_memory, cgroup_pids) != 0) {
+        return 2;
+    }
+    if (minimal_root && !isolate) {
+        fprintf(stderr, "oj-runner: -r requires -n\n");
+        return 2;
+    }
+    if (isolate && setup_namespaces() != 0) {
+        return 2;
+    }
+
+    long oom_kills_before = read_oom_kills();
+
+    /* 收到结束请求时先结束全部用户进程，再照常输出统计行 */
+    struct sigaction term;
+    memset(&term, 0, sizeof(term));
+    term.sa_handler = on_terminate;
+    sigaction(SIGTERM, &term, NULL);
+    sigaction(SIGINT, &term, NULL);
+    sigaction(SIGHUP, &term, NULL);
+
+    /* 启动器存活检测：子进程持有读端，启动器退出后写端关闭，读端收到 POLLHUP */
+    int alive[2];
+    if (pipe2(alive, O_CLOEXEC) != 0) {
+        perror("pipe");
+        return 2;
+    }
+
+    pid_t pid = fork();
+    if (pid < 0) {
+        perror("fork");
+        return 2;
+    }
+
+    if (pid == 0) {
+        signal(SIGTERM, SIG_DFL);
+        signal(SIGINT, SIG_DFL);
+        signal(SIGHUP, SIG_DFL);
+        close(alive[1]);
+        /* 用户程序自成一个进程组，启动器可以连同它派生的进程一起结束 */
+        setpgid(0, 0);
+        /* 加入子 cgroup ("0" 表示写入者自己)，之后创建的进程都受它限制 */
+        if (cgroup_parent != NULL && write_file(cgroup_dir, "cgroup.procs", "0") != 0) {
+            perror("cgroup.procs");
+            _exit(127);
+        }
+        if (minimal_root && setup_root() != 0) {
+            _exit(127);
+        }
+        /* 新 pid 命名空间里重新挂载 /proc，只能看到自己的进程 */
+        if (isolate && mount("proc", "/proc", "proc", MS_NOSUID | MS_NODEV | MS_NOEXEC, NULL) != 0) {
+            perror("mount /proc");
+            _exit(127);
+        }
+        if (cpu_limit_ms > 0) {
+            struct rlimit rl;
+            rl.rlim_cur = (rlim_t) (cpu_limit_ms + 999) / 1000;
+            rl.rlim_max = rl.rlim_cur + 1;
+            setrlimit(RLIMIT_CPU, &rl);
+        }
+        if (memory_limit_kb > 0) {
+            struct rlimit rl;
+            rl.rlim_cur = rl.rlim_max = (rlim_t) memory_limit_kb * 1024;
+            setrlimit(RLIMIT_AS, &rl);
+        }
+        if (file_limit_bytes > 0) {
+            struct rlimit rl;
+            rl.rlim_cur = rl.rlim_max = (rlim_t) file_limit_bytes;
+            setrlimit(RLIMIT_FSIZE, &rl);
+        }
+        /* 先放弃附加组和 gid，最后放弃 uid (之后再也无法切回 root) */
+        if (run_uid >= 0) {
+            if (setgroups(0, NULL) != 0 || setgid((gid_t) run_uid) != 0 || setuid((uid_t) run_uid) != 0) {
+                perror("setuid");
+                _exit(127);
+            }
+        }
+        /*
+         * 启动器被 kill -9 (如输出超限) 时，用户程序随之结束。
+         * 必须在 setuid 之后设置：改变凭据会清除 PDEATHSIG。设置之前启动器可能已经退出，
+         * 因此再确认一次启动器仍然存活 (pid 命名空间里 getppid() 恒为 0，改用管道判断)
+         */
+        prctl(PR_SET_PDEATHSIG, SIGKILL);
+        struct pollfd parent_fd = {alive[0], POLLIN, 0};
+        if (poll(&parent_fd, 1, 0) != 0) {
+            _exit(127);
+        }
+        /* 最后安装 seccomp：之前的 mount、setuid 等调用都不受影响 */
+        if (use_seccomp && install_seccomp() != 0) {
+            _exit(127);
+        }
+        execvp(argv[optind], argv + optind);
+        perror("execvp");
+        _exit(127);
+    }
+    setpgid(pid, pid);
+    close(alive[0]);
+    child_pid = pid;
+
+    if (time_limit_ms > 0) {
+        struct sigaction sa;
+        memset(&sa, 0, sizeof(sa));
+        sa.sa_handler = on_alarm;
+        sigaction(SIGALRM, &sa, NULL);
+
+        struct itimerval timer;
+        memset(&timer, 0, sizeof(timer));
+        timer.it_value.tv_sec = time_limit_ms / 1000;
+        timer.it_value.tv_usec = (time_limit_ms % 1000) * 1000;
+        setitimer(ITIMER_REAL, &timer, NULL);
+    }
+
+    int status;
+    struct rusage usage;
+    while (wait4(pid, &status, 0, &usage) < 0) {
+        if (errno != EINTR) {
+            perror("wait4");
+            return 2;
+        }
+    }
+
+    int signal_no = WIFSIGNALED(status) ? WTERMSIG(status) : 0;
+    int exit_code = WIFEXITED(status) ? WEXITSTATUS(status) : 128 + signal_no;
+
+    long cpu_ms = (usage.ru_utime.tv_sec + usage.ru_stime.tv_sec) * 1000L
+                  + (usage.ru_utime.tv_usec + usage.ru_stime.tv_usec) / 1000;
+
+    /* 不是启动器超时杀掉的 SIGKILL，并且 OOM 计数增加了，才认为是内存不足 */
+    int oom_killed = 0;
+    if (signal_no == SIGKILL && !timed_out && oom_kills_before >= 0) {
+        long oom_kills_after = read_oom_kills();
+        oom_killed = oom_kills_after > oom_kills_before;
+    }
+
+    /* 用户程序留在进程组里的后台进程一并结束 */
+    kill(-pid, SIGKILL);
+
+    /* Linux 下 ru_maxrss 单位为 KB；使用 cgroup 时取整个 cgroup 的峰值 (包含子进程) */
+    long memory_kb = usage.ru_maxrss;
+    if (cgroup_parent != NULL) {
+        long peak = read_cgroup_long("memory.peak");
+        if (peak > 0) {
+            memory_kb = peak / 1024;
+        }
+        remove_cgroup();
+    }
+
+    fprintf(stderr, "\n%s exit=%d signal=%d memory=%ld cpu=%ld timeout=%d oom=%d\n",
+            USAGE_MARK, exit_code, signal_no, memory_kb, cpu_ms, timed_out ? 1 : 0, oom_killed);
+    return exit_code;
+}
@@ -5,7 +5,9 @@ import com.liren.api.problem.api.user.UserInterface;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+@EnableScheduling
 @EnableFeignClients(clients = {ProblemInterface.class, UserInterface.class})
 @SpringBootApplication
 public class JudgeApplication {
@@ -0,0 +1,174 @@
+package com.liren.judge.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.liren.api.problem.dto.problem.TestCaseDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 判题节点本地测试用例缓存
+ * Key: 题目ID + 用例版本 (题目用例变更时版本递增，旧版本自然失效)
+ * 两级缓存：
+ * 1. 内存 (Caffeine，按字符数限制大小)，命中时不产生任何 IO
+ * 2. 本地磁盘 {dir}/{problemId}/{version}/，重启后仍然有效，写入完成后原子改名，不会读到写了一半的数据
+ * 两级都未命中时才远程拉取 (同一个 Key 并发未命中只拉取一次)
+ */
+@Slf4j
+@Component
+public class TestCaseCache {
+
+    // 写完所有用例后最后写入 manifest，记录用例数量
+    private static final String MANIFEST = "manifest";
+
+    private final Path rootDir;
+
+    private final Cache<String, List<TestCaseDTO>> memoryCache;
+
+    public TestCaseCache(@Value("${oj.judge.case-cache.dir:${java.io.tmpdir}/oj-judge/cases}") String dir,
+                         @Value("${oj.judge.case-cache.memory-max-size-mb:128}") long memoryMaxSizeMb) {
+        this.rootDir = Paths.get(dir);
+        this.memoryCache = Caffeine.newBuilder()
+                .maximumWeight(memoryMaxSizeMb * 1024 * 1024)
+                .weigher((String key, List<TestCaseDTO> cases) -> weigh(cases))
+                .build();
+    }
+
+    /**
+     * 获取题目的测试用例
+     * @param caseVersion 用例版本，为空时无法判断缓存是否过期，直接远程拉取
+     * @param loader 缓存未命中时的远程加载方法
+     */
+    public List<TestCaseDTO> get(Long problemId, Integer caseVersion, Supplier<List<TestCaseDTO>> loader) {
+        if (problemId == null || caseVersion == null) {
+            return loader.get();
+        }
+        String key = problemId + ":" + caseVersion;
+        List<TestCaseDTO> cases = memoryCache.get(key, k -> loadFromDiskOrRemote(problemId, caseVersion, loader));
+        if (cases != null && cases.isEmpty()) {
+            memoryCache.invalidate(key); // 空用例不缓存，下次重新拉取
+        }
+        return cases;
+    }
+
+    private List<TestCaseDTO> loadFromDiskOrRemote(Long problemId, Integer caseVersion, Supplier<List<TestCaseDTO>> loader) {
+        Path versionDir = rootDir.resolve(String.valueOf(problemId)).resolve(String.valueOf(caseVersion));
+        try {
+            List<TestCaseDTO> cases = readFromDisk(versionDir);
+            if (cases != null) {
+                log.info("测试用例命中本地磁盘缓存, problemId: {}, version: {}", problemId, caseVersion);
+                return cases;
+            }
+        } catch (IOException e) {
+            log.warn("读取本地用例缓存失败，重新拉取, problemId: {}", problemId, e);
+        }
+
+        List<TestCaseDTO> cases = loader.get();
+        // 空用例不缓存 (可能是题目还没上传用例)
+        if (cases == null || cases.isEmpty()) {
+            return cases;
+        }
+        try {
+            writeToDisk(problemId, versionDir, cases);
+        } catch (IOException e) {
+            // 磁盘缓存写失败不影响判题
+            log.warn("写入本地用例缓存失败, problemId: {}", problemId, e);
+        }
+        return cases;
+    }
+
+    private List<TestCaseDTO> readFromDisk(Path versionDir) throws IOException {
+        Path manifest = versionDir.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return null;
+        }
+        int count = Integer.parseInt(Files.readString(manifest).trim());
+        List<TestCaseDTO> cases = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TestCaseDTO dto = new TestCaseDTO();
+            dto.setInput(Files.readString(versionDir.resolve(i + ".in"), StandardCharsets.UTF_8));
+            dto.setOutput(Files.readString(versionDir.resolve(i + ".out"), StandardCharsets.UTF_8));
+            cases.add(dto);
+        }
+        return cases;
+    }
+
+    /**
+     * 先写到临时目录，全部写完后原子改名为版本目录，并清理该题目的旧版本
+     */
+    private void writeToDisk(Long problemId, Path versionDir, List<TestCaseDTO> cases) throws IOException {
+        Path problemDir = versionDir.getParent();
+        Files.createDirectories(problemDir);
+        Path tempDir = Files.createTempDirectory(problemDir, ".tmp-");
+        try {
+            for (int i = 0; i < cases.size(); i++) {
+                TestCaseDTO dto = cases.get(i);
+                Files.writeString(tempDir.resolve(i + ".in"), nullToEmpty(dto.getInput()), StandardCharsets.UTF_8);
+                Files.writeString(tempDir.resolve(i + ".out"), nullToEmpty(dto.getOutput()), StandardCharsets.UTF_8);
+            }
+            Files.writeString(tempDir.resolve(MANIFEST), String.valueOf(cases.size()));
+            Files.move(tempDir, versionDir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            // 其他判题进程已经写好了同一版本
+            deleteRecursively(tempDir);
+            return;
+        } catch (IOException e) {
+            deleteRecursively(tempDir);
+            throw e;
+        }
+        log.info("测试用例写入本地磁盘缓存, problemId: {}, 路径: {}", problemId, versionDir);
+
+        // 清理旧版本 (正在写入的临时目录不动)
+        try (Stream<Path> children = Files.list(problemDir)) {
+            children.filter(child -> !child.equals(versionDir))
+                    .filter(child -> !child.getFileName().toString().startsWith(".tmp-"))
+                    .forEach(this::deleteQuietly);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            deleteRecursively(path);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("清理旧用例缓存失败: {}", path, e);
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private static int weigh(List<TestCaseDTO> cases) {
+        long chars = 0;
+        for (TestCaseDTO dto : cases) {
+            chars += nullToEmpty(dto.getInput()).length() + nullToEmpty(dto.getOutput()).length();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, chars * 2); // 按 UTF-16 估算字节数
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
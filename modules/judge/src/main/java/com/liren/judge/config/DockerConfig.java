@@ -6,12 +6,17 @@ import com.github.dockerjava.core.DockerClientBuilder;
 import com.github.dockerjava.httpclient5.ApacheDockerHttpClient;
 import com.github.dockerjava.transport.DockerHttpClient;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
 
+/**
+ * Docker 客户端配置 (只在使用 Docker 沙箱时加载)
+ */
 @Configuration
+@ConditionalOnProperty(name = "oj.judge.sandbox.type", havingValue = "docker", matchIfMissing = true)
 public class DockerConfig {
     @Value("${oj.judge.docker.host}")
     private String dockerHost;
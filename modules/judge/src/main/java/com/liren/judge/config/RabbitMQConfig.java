@@ -1,14 +1,45 @@
 package com.liren.judge.config;
 
+import cn.hutool.core.thread.ExecutorBuilder;
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.liren.common.core.constant.Constants;
+import com.liren.common.core.enums.JudgeLaneEnum;
+import com.liren.judge.mq.JudgeLaneLimiter;
+import com.liren.judge.mq.JudgeReceiver;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class RabbitMQConfig {
 
+    /**
+     * 监听器 ID -> 判题通道
+     */
+    private static final Map<String, JudgeLaneEnum> LANE_LISTENERS = Map.of(
+            JudgeReceiver.CONTEST_LISTENER_ID, JudgeLaneEnum.CONTEST,
+            JudgeReceiver.PRACTICE_LISTENER_ID, JudgeLaneEnum.PRACTICE,
+            JudgeReceiver.REJUDGE_LISTENER_ID, JudgeLaneEnum.REJUDGE);
+
+    /**
+     * 通道拆分前的旧队列只需要一个消费者排空存量消息
+     */
+    private static final int LEGACY_CONSUMERS = 1;
+
     /**
      * 声明队列，防止 Consumer 启动时队列不存在报错
      */
@@ -27,4 +58,102 @@ public class RabbitMQConfig {
                            @Qualifier("judgeExchange") DirectExchange exchange) {
         return BindingBuilder.bind(queue).to(exchange).with(Constants.JUDGE_ROUTING_KEY);
     }
-}
\ No newline at end of file
+
+    /**
+     * 判题通道队列：每个通道一个队列，路由键 oj.judge.{lane}
+     * (上面的 judgeQueue 是通道拆分前的旧队列，保留到存量消息消费完)
+     * 每个通道另有一个延迟重投队列：沙箱繁忙的任务放进去，TTL 到期后死信回本通道，避免立即重投空转
+     * (修改 busy-retry-delay-ms 需要先删除已存在的 retry 队列，否则队列参数不一致无法声明)
+     */
+    @Bean("judgeLaneDeclarables")
+    public Declarables judgeLaneDeclarables(@Qualifier("judgeExchange") DirectExchange exchange,
+                                            @Value("${oj.judge.lane.busy-retry-delay-ms:5000}") long busyRetryDelayMs) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (JudgeLaneEnum lane : JudgeLaneEnum.values()) {
+            Queue queue = QueueBuilder.durable(lane.getQueue()).build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with(lane.getRoutingKey()));
+            declarables.add(QueueBuilder.durable(lane.getRetryQueue())
+                    .ttl((int) busyRetryDelayMs)
+                    .deadLetterExchange(Constants.JUDGE_EXCHANGE)
+                    .deadLetterRoutingKey(lane.getRoutingKey())
+                    .build());
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * 判题结果队列：判题完成后结果投递到这里，由题目服务批量消费回写
+     */
+    @Bean("judgeResultQueue")
+    public Queue judgeResultQueue() {
+        return QueueBuilder.durable(Constants.JUDGE_RESULT_QUEUE).build();
+    }
+
+    @Bean("judgeResultExchange")
+    public DirectExchange judgeResultExchange() {
+        return ExchangeBuilder.directExchange(Constants.JUDGE_RESULT_EXCHANGE).build();
+    }
+
+    @Bean("judgeResultBinding")
+    public Binding judgeResultBinding(@Qualifier("judgeResultQueue") Queue queue,
+                                      @Qualifier("judgeResultExchange") DirectExchange exchange) {
+        return BindingBuilder.bind(queue).to(exchange).with(Constants.JUDGE_RESULT_ROUTING_KEY);
+    }
+
+    /**
+     * 消息统一使用 JSON 序列化 (RabbitTemplate 自动使用该转换器)
+     */
+    @Bean
+    public MessageConverter jsonMessageConverter(ObjectMapper objectMapper) {
+        return new Jackson2JsonMessageConverter(objectMapper);
+    }
+
+    /**
+     * 判题工作线程池：每个消费者占用一个线程，判题在线程内同步完成后再 ack
+     * 常驻线程数为各判题通道消费者上限之和 (按沙箱池推算) 再加旧队列的 1 个；消费者重启、扩缩容时旧线程可能还没退出新线程就已提交，
+     * 最大线程数留出一倍余量，避免 RejectedExecutionException (仍然有界，不额外排队)
+     */
+    @Bean(name = "judgeWorkerExecutor", destroyMethod = "shutdown")
+    public ExecutorService judgeWorkerExecutor(JudgeLaneLimiter judgeLaneLimiter) {
+        int threads = LEGACY_CONSUMERS;
+        for (JudgeLaneEnum lane : JudgeLaneEnum.values()) {
+            threads += judgeLaneLimiter.maxConsumers(lane);
+        }
+        return ExecutorBuilder.create()
+                .setCorePoolSize(threads)
+                .setMaxPoolSize(threads * 2)
+                .setKeepAliveTime(60, TimeUnit.SECONDS)
+                .useSynchronousQueue()
+                .setThreadFactory(new NamedThreadFactory("judge-worker-", false))
+                .build();
+    }
+
+    /**
+     * 判题消费者容器工厂
+     * 各通道的消费者数量由 JudgeLaneLimiter 按沙箱池大小推算 (常驻数-上限)，沙箱池调整后自动跟随；
+     * prefetch = 1，每个消费者手里最多一条未确认的消息，避免消息堆在忙碌的节点上
+     */
+    @Bean("judgeListenerContainerFactory")
+    public SimpleRabbitListenerContainerFactory judgeListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            JudgeLaneLimiter judgeLaneLimiter,
+            @Qualifier("judgeWorkerExecutor") ExecutorService judgeWorkerExecutor) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(1);
+        factory.setTaskExecutor(judgeWorkerExecutor);
+        factory.setContainerCustomizer(container -> {
+            JudgeLaneEnum lane = LANE_LISTENERS.get(container.getListenerId());
+            int min = lane == null ? LEGACY_CONSUMERS : judgeLaneLimiter.minConsumers(lane);
+            int max = lane == null ? LEGACY_CONSUMERS : judgeLaneLimiter.maxConsumers(lane);
+            // 先降到 1 再设置上限和常驻数，避免中间状态出现 常驻数 > 上限
+            container.setConcurrentConsumers(1);
+            container.setMaxConcurrentConsumers(max);
+            container.setConcurrentConsumers(min);
+        });
+        return factory;
+    }
+}
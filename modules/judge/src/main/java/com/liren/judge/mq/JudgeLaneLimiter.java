@@ -0,0 +1,91 @@
+package com.liren.judge.mq;
+
+import com.liren.common.core.enums.JudgeLaneEnum;
+import com.liren.judge.sandbox.pool.SandboxPool;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * 判题通道准入控制 (各通道的消费者数量也由这里按沙箱池大小推算)
+ * 练习和重判共用 (max-size - 保留数) 个名额，剩下的沙箱只留给比赛，
+ * 练习积压再多，比赛提交也总有空闲沙箱可用；比赛通道不受限制，可以用满整个沙箱池。
+ * 保留数最多为池大小的一半，池很小时练习/重判也至少有一半的沙箱可用
+ */
+@Slf4j
+@Component
+public class JudgeLaneLimiter {
+
+    @Autowired
+    private SandboxPool sandboxPool;
+
+    /**
+     * 为比赛保留的沙箱数 (上限为池大小的一半)
+     */
+    @Value("${oj.judge.lane.contest-reserved:4}")
+    private int contestReserved;
+
+    private int nonContestPermits;
+
+    private Semaphore nonContestSemaphore;
+
+    @PostConstruct
+    public void init() {
+        int maxSize = sandboxPool.getMaxSize();
+        int reserved = Math.min(contestReserved, maxSize / 2);
+        nonContestPermits = Math.max(1, maxSize - reserved);
+        nonContestSemaphore = new Semaphore(nonContestPermits, true);
+        log.info("判题通道准入: 练习/重判最多同时使用 {} 个沙箱, 为比赛保留 {} 个", nonContestPermits, maxSize - nonContestPermits);
+    }
+
+    /**
+     * 通道的常驻消费者数
+     */
+    public int minConsumers(JudgeLaneEnum lane) {
+        switch (lane) {
+            case CONTEST:
+                return Math.max(1, sandboxPool.getMinSize());
+            case PRACTICE:
+                return Math.max(1, Math.min(sandboxPool.getMinSize(), nonContestPermits));
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * 通道的消费者上限：比赛可以用满整个池；练习用满非比赛名额；重判最多用一半非比赛名额，不挤占练习
+     * (消费者多于名额也只会阻塞在 acquire 上，这里按名额推算避免空占线程)
+     */
+    public int maxConsumers(JudgeLaneEnum lane) {
+        switch (lane) {
+            case CONTEST:
+                return Math.max(1, sandboxPool.getMaxSize());
+            case PRACTICE:
+                return nonContestPermits;
+            default:
+                return Math.max(1, nonContestPermits / 2);
+        }
+    }
+
+    /**
+     * 获取判题名额 (比赛通道直接通过，其余通道名额用完时阻塞等待)
+     */
+    public void acquire(JudgeLaneEnum lane) throws InterruptedException {
+        if (lane != JudgeLaneEnum.CONTEST) {
+            nonContestSemaphore.acquire();
+        }
+    }
+
+    /**
+     * 归还判题名额 (必须与 acquire 成对调用)
+     */
+    public void release(JudgeLaneEnum lane) {
+        if (lane != JudgeLaneEnum.CONTEST) {
+            nonContestSemaphore.release();
+        }
+    }
+}
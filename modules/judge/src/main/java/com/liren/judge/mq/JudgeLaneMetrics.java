@@ -0,0 +1,93 @@
+package com.liren.judge.mq;
+
+import com.liren.common.core.enums.JudgeLaneEnum;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 判题通道指标 (按 lane 标签区分)
+ * oj.judge.lane.depth: 队列中等待判题的消息数 (定时从 MQ 查询)
+ * oj.judge.lane.wait: 提交从入队到开始判题的等待时间 (依赖生产者设置的消息时间戳)
+ * oj.judge.lane.active: 正在判题的提交数
+ */
+@Slf4j
+@Component
+public class JudgeLaneMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    private final Map<JudgeLaneEnum, AtomicInteger> depths = new EnumMap<>(JudgeLaneEnum.class);
+    private final Map<JudgeLaneEnum, AtomicInteger> actives = new EnumMap<>(JudgeLaneEnum.class);
+    private final Map<JudgeLaneEnum, Timer> waitTimers = new EnumMap<>(JudgeLaneEnum.class);
+
+    @PostConstruct
+    public void registerMetrics() {
+        for (JudgeLaneEnum lane : JudgeLaneEnum.values()) {
+            depths.put(lane, new AtomicInteger());
+            actives.put(lane, new AtomicInteger());
+            Gauge.builder("oj.judge.lane.depth", depths.get(lane), AtomicInteger::get)
+                    .description("判题通道排队中的消息数")
+                    .tag("lane", lane.getCode())
+                    .register(meterRegistry);
+            Gauge.builder("oj.judge.lane.active", actives.get(lane), AtomicInteger::get)
+                    .description("判题通道正在判题的提交数")
+                    .tag("lane", lane.getCode())
+                    .register(meterRegistry);
+            waitTimers.put(lane, Timer.builder("oj.judge.lane.wait")
+                    .description("提交从入队到开始判题的等待时间")
+                    .tag("lane", lane.getCode())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * 开始判题：记录排队时间 (消息没有时间戳时不记录)
+     */
+    public void onStart(JudgeLaneEnum lane, Message message) {
+        actives.get(lane).incrementAndGet();
+        Date timestamp = message.getMessageProperties().getTimestamp();
+        if (timestamp != null) {
+            long waitMillis = Math.max(0, System.currentTimeMillis() - timestamp.getTime());
+            waitTimers.get(lane).record(waitMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void onFinish(JudgeLaneEnum lane) {
+        actives.get(lane).decrementAndGet();
+    }
+
+    /**
+     * 定时刷新各通道的队列深度
+     */
+    @Scheduled(fixedDelayString = "${oj.judge.lane.depth-refresh-ms:5000}")
+    public void refreshDepth() {
+        for (JudgeLaneEnum lane : JudgeLaneEnum.values()) {
+            try {
+                QueueInformation info = amqpAdmin.getQueueInfo(lane.getQueue());
+                depths.get(lane).set(info == null ? 0 : info.getMessageCount());
+            } catch (Exception e) {
+                log.warn("查询判题通道队列深度失败, lane: {}", lane.getCode(), e);
+            }
+        }
+    }
+}
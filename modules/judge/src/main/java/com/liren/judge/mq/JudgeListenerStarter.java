@@ -0,0 +1,51 @@
+package com.liren.judge.mq;
+
+import com.liren.judge.sandbox.pool.SandboxPoolReadyEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 判题消费者启动器
+ * 判题监听器不随容器自动启动 (autoStartup = false)，等应用启动完成且沙箱池至少有一个沙箱就绪后再开始消费，
+ * 其余沙箱在后台继续创建
+ */
+@Slf4j
+@Component
+public class JudgeListenerStarter {
+
+    @Autowired
+    private RabbitListenerEndpointRegistry listenerRegistry;
+
+    private boolean applicationReady;
+    private boolean poolReady;
+
+    @EventListener
+    public synchronized void onApplicationReady(ApplicationReadyEvent event) {
+        applicationReady = true;
+        startIfReady();
+    }
+
+    @EventListener
+    public synchronized void onPoolReady(SandboxPoolReadyEvent event) {
+        poolReady = true;
+        startIfReady();
+    }
+
+    private void startIfReady() {
+        if (!applicationReady || !poolReady) {
+            return;
+        }
+        for (String listenerId : JudgeReceiver.LISTENER_IDS) {
+            MessageListenerContainer container = listenerRegistry.getListenerContainer(listenerId);
+            if (container != null && !container.isRunning()) {
+                container.start();
+                log.info("沙箱已就绪，开始消费判题队列: {}", listenerId);
+            }
+        }
+    }
+}
@@ -1,17 +1,25 @@
 package com.liren.judge.mq;
 
+import cn.hutool.core.util.StrUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.liren.api.problem.api.problem.ProblemInterface;
 import com.liren.api.problem.api.user.UserInterface;
+import com.liren.api.problem.dto.problem.JudgeTaskMessage;
+import com.liren.api.problem.dto.problem.ProblemBasicInfoDTO;
 import com.liren.api.problem.dto.problem.ProblemSubmitUpdateDTO;
 import com.liren.api.problem.dto.problem.SubmitRecordDTO;
 import com.liren.api.problem.dto.problem.TestCaseDTO;
 import com.liren.common.core.constant.Constants;
+import com.liren.common.core.enums.CheckerTypeEnum;
+import com.liren.common.core.enums.JudgeLaneEnum;
+import com.liren.common.core.enums.JudgeModeEnum;
 import com.liren.common.core.enums.JudgeResultEnum;
 import com.liren.common.core.enums.SandboxRunStatusEnum;
 import com.liren.common.core.enums.SubmitStatusEnum;
 import com.liren.common.core.enums.UserStatusEnum;
 import com.liren.common.core.result.Result;
 import com.liren.common.core.result.ResultCode;
+import com.liren.judge.cache.TestCaseCache;
 import com.liren.judge.exception.JudgeException;
 import com.liren.judge.sandbox.CodeSandbox;
 import com.liren.judge.sandbox.model.ExecuteCodeRequest;
@@ -20,7 +28,10 @@ import com.liren.judge.strategy.JudgeContext;
 import com.liren.judge.strategy.JudgeManager;
 import com.rabbitmq.client.Channel;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
 import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.Header;
@@ -33,6 +44,16 @@ import java.util.stream.Collectors;
 @Slf4j
 @Component
 public class JudgeReceiver {
+    /**
+     * 判题监听器 ID (由 JudgeListenerStarter 在容器池就绪后启动)
+     */
+    public static final String CONTEST_LISTENER_ID = "judgeListener-contest";
+    public static final String PRACTICE_LISTENER_ID = "judgeListener-practice";
+    public static final String REJUDGE_LISTENER_ID = "judgeListener-rejudge";
+    public static final String LEGACY_LISTENER_ID = "judgeListener";
+    public static final List<String> LISTENER_IDS =
+            List.of(CONTEST_LISTENER_ID, PRACTICE_LISTENER_ID, REJUDGE_LISTENER_ID, LEGACY_LISTENER_ID);
+
     @Autowired
     private CodeSandbox codeSandbox;
 
@@ -45,44 +66,177 @@ public class JudgeReceiver {
     @Autowired
     private UserInterface userInterface;
 
-    @RabbitListener(queues = Constants.JUDGE_QUEUE, ackMode = "MANUAL")
-    public void receiveJudgeMessage(Long submitId, Channel channel, @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
-        log.info("接收到判题任务, submitId: {}", submitId);
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TestCaseCache testCaseCache;
+
+    @Autowired
+    private JudgeResultSender judgeResultSender;
+
+    @Autowired
+    private JudgeLaneLimiter judgeLaneLimiter;
+
+    @Autowired
+    private JudgeLaneMetrics judgeLaneMetrics;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    // 兼容旧消息 (Java 序列化的 submitId)
+    private final SimpleMessageConverter legacyConverter = createLegacyConverter();
+
+    /**
+     * 比赛通道 (消费者上限为沙箱池上限，并且有保留沙箱)
+     * 各通道的消费者数量由 JudgeLaneLimiter 按沙箱池推算，见 judgeListenerContainerFactory
+     */
+    @RabbitListener(id = CONTEST_LISTENER_ID, queues = Constants.JUDGE_CONTEST_QUEUE, ackMode = "MANUAL",
+            autoStartup = "false", containerFactory = "judgeListenerContainerFactory")
+    public void receiveContestMessage(Message message, Channel channel, @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+        receiveJudgeMessage(JudgeLaneEnum.CONTEST, message, channel, deliveryTag);
+    }
+
+    /**
+     * 练习通道
+     */
+    @RabbitListener(id = PRACTICE_LISTENER_ID, queues = Constants.JUDGE_PRACTICE_QUEUE, ackMode = "MANUAL",
+            autoStartup = "false", containerFactory = "judgeListenerContainerFactory")
+    public void receivePracticeMessage(Message message, Channel channel, @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+        receiveJudgeMessage(JudgeLaneEnum.PRACTICE, message, channel, deliveryTag);
+    }
+
+    /**
+     * 重判通道
+     */
+    @RabbitListener(id = REJUDGE_LISTENER_ID, queues = Constants.JUDGE_REJUDGE_QUEUE, ackMode = "MANUAL",
+            autoStartup = "false", containerFactory = "judgeListenerContainerFactory")
+    public void receiveRejudgeMessage(Message message, Channel channel, @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+        receiveJudgeMessage(JudgeLaneEnum.REJUDGE, message, channel, deliveryTag);
+    }
+
+    /**
+     * 通道拆分前的旧队列 (排空存量消息)，按消息内容归入对应通道
+     */
+    @RabbitListener(id = LEGACY_LISTENER_ID, queues = Constants.JUDGE_QUEUE, ackMode = "MANUAL",
+            autoStartup = "false", containerFactory = "judgeListenerContainerFactory")
+    public void receiveLegacyMessage(Message message, Channel channel, @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+        receiveJudgeMessage(null, message, channel, deliveryTag);
+    }
+
+    /**
+     * @param lane 判题通道，为空时按消息内容判断
+     */
+    private void receiveJudgeMessage(JudgeLaneEnum lane, Message message, Channel channel, long deliveryTag) {
+        JudgeTaskMessage task;
+        try {
+            task = parseTask(message);
+        } catch (Exception e) {
+            // 无法解析的消息重试也没有意义，直接确认丢弃
+            log.error("无法解析的判题消息, 已丢弃: {}", message, e);
+            basicAckQuietly(channel, deliveryTag);
+            return;
+        }
+        if (lane == null) {
+            lane = JudgeLaneEnum.of(task.getContestId(), Boolean.TRUE.equals(task.getRejudge()));
+        }
+
+        try {
+            // 练习/重判名额用完时在这里等待，保留的容器只给比赛使用
+            judgeLaneLimiter.acquire(lane);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("等待判题名额时被中断，消息重新入队, submitId: {}", task.getSubmitId());
+            try {
+                channel.basicNack(deliveryTag, false, true);
+            } catch (IOException ioException) {
+                log.error("重新入队失败, submitId: {}", task.getSubmitId(), ioException);
+            }
+            return;
+        }
+        judgeLaneMetrics.onStart(lane, message); // 排队时间包含等待名额的时间
+        try {
+            judge(lane, task, message, channel, deliveryTag);
+        } finally {
+            judgeLaneLimiter.release(lane);
+            judgeLaneMetrics.onFinish(lane);
+        }
+    }
+
+    private void judge(JudgeLaneEnum lane, JudgeTaskMessage task, Message message, Channel channel, long deliveryTag) {
+        Long submitId = task.getSubmitId();
+        log.info("接收到判题任务, submitId: {}, version: {}", submitId, task.getVersion());
 
         try {
             // ------------------------------------------
-            // 1. 准备数据: 查提交记录(代码)、查测试用例
+            // 1. 准备数据: 代码和题目限制优先取自消息，消息不完整时再远程查询
             // ------------------------------------------
-            Result<SubmitRecordDTO> submitRecord = problemService.getSubmitRecord(submitId);
-            if(submitRecord == null || submitRecord.getData() == null) {
-                // 如果记录都查不到，可能是严重数据不一致，直接确认掉防止死循环
-                log.error("提交记录不存在: {}", submitId);
-                channel.basicAck(deliveryTag, false);
-                return;
+            if (!isSelfContained(task)) {
+                log.info("判题消息不完整，回查提交记录, submitId: {}", submitId);
+                Result<SubmitRecordDTO> submitRecord = problemService.getSubmitRecord(submitId);
+                if(submitRecord == null || submitRecord.getData() == null) {
+                    // 如果记录都查不到，可能是严重数据不一致，直接确认掉防止死循环
+                    log.error("提交记录不存在: {}", submitId);
+                    channel.basicAck(deliveryTag, false);
+                    return;
+                }
+                task.setCode(submitRecord.getData().getCode());
+                task.setLanguage(submitRecord.getData().getLanguage());
+                task.setProblemId(submitRecord.getData().getProblemId());
+                task.setUserId(submitRecord.getData().getUserId());
+
+                // 获取题目的时间/内存限制 (查不到时由沙箱使用默认值)
+                Result<ProblemBasicInfoDTO> basicInfoResult = problemService.getProblemBasicInfo(task.getProblemId());
+                ProblemBasicInfoDTO basicInfo = basicInfoResult != null ? basicInfoResult.getData() : null;
+                if (basicInfo != null) {
+                    task.setTimeLimit(basicInfo.getTimeLimit());
+                    task.setMemoryLimit(basicInfo.getMemoryLimit());
+                    task.setCaseVersion(basicInfo.getCaseVersion());
+                    task.setJudgeMode(basicInfo.getJudgeMode());
+                    task.setCheckerType(basicInfo.getCheckerType());
+                    task.setCheckerArg(basicInfo.getCheckerArg());
+                    task.setCheckerCode(basicInfo.getCheckerCode());
+                }
+            }
+            String userCode = task.getCode();
+            String language = task.getLanguage();
+            Long problemId = task.getProblemId();
+            Long userId = task.getUserId();
+            Integer timeLimit = task.getTimeLimit();
+            Integer memoryLimit = task.getMemoryLimit();
+            JudgeModeEnum judgeMode = JudgeModeEnum.getByCode(task.getJudgeMode());
+            CheckerTypeEnum checkerType = CheckerTypeEnum.getByCode(task.getCheckerType());
+            boolean special = checkerType == CheckerTypeEnum.SPECIAL;
+            if (special && StrUtil.isBlank(task.getCheckerCode())) {
+                throw new JudgeException(ResultCode.CHECKER_NOT_FOUND);
             }
-            String userCode = submitRecord.getData().getCode();
-            String language = submitRecord.getData().getLanguage();
-            Long problemId = submitRecord.getData().getProblemId();
-            Long userId = submitRecord.getData().getUserId();
 
-            // 获取测试用例
-            Result<List<TestCaseDTO>> testCaseResult = problemService.getTestCases(problemId);
-            List<TestCaseDTO> testCases = testCaseResult.getData();
+            // 获取测试用例 (优先使用本地缓存，按题目 + 用例版本命中)
+            List<TestCaseDTO> testCases = testCaseCache.get(problemId, task.getCaseVersion(),
+                    () -> problemService.getTestCases(problemId).getData());
 
             if (testCases == null || testCases.isEmpty()) {
                 throw new JudgeException(ResultCode.TEST_CASE_NOT_FOUND);
             }
 
-            // 提取输入列表给沙箱
+            // 提取输入列表给沙箱 (特判题目还需要标准输出，交给容器内的特判程序)
             List<String> inputList = testCases.stream().map(TestCaseDTO::getInput).collect(Collectors.toList());
+            List<String> answerList = special
+                    ? testCases.stream().map(TestCaseDTO::getOutput).collect(Collectors.toList()) : null;
 
             // ------------------------------------------
-            // 2. 调用沙箱执行
+            // 2. 调用沙箱执行 (每个用例结束时即比对输出，ACM 模式遇到第一个未通过的用例就停止)
             // ------------------------------------------
             ExecuteCodeRequest executeRequest = ExecuteCodeRequest.builder()
                     .code(userCode)
                     .language(language)
                     .inputList(inputList)
+                    .timeLimit(timeLimit)
+                    .memoryLimit(memoryLimit)
+                    .stopOnFirstFailure(judgeMode == JudgeModeEnum.ACM)
+                    .caseChecker(judgeManager.createCaseChecker(testCases, checkerType, task.getCheckerArg()))
+                    .checkerCode(special ? task.getCheckerCode() : null)
+                    .answerList(answerList)
                     .build();
 
             log.info("调用 Docker 沙箱...");
@@ -101,7 +255,7 @@ public class JudgeReceiver {
                 failDTO.setSubmitId(submitId);
                 failDTO.setStatus(SubmitStatusEnum.FAILED.getCode());
                 failDTO.setErrorMessage("系统检测到恶意代码，您的账号已被封禁。原因: " + executeResponse.getMessage());
-                problemService.updateSubmitResult(failDTO);
+                judgeResultSender.send(failDTO);
 
                 // 3. 确认消息并直接返回，不再继续判题
                 channel.basicAck(deliveryTag, false);
@@ -119,6 +273,11 @@ public class JudgeReceiver {
             judgeContext.setSubmitId(submitId);
             judgeContext.setExecuteCodeResponse(executeResponse);
             judgeContext.setTestCases(testCases);
+            judgeContext.setTimeLimit(timeLimit);
+            judgeContext.setMemoryLimit(memoryLimit);
+            judgeContext.setJudgeMode(judgeMode.getCode());
+            judgeContext.setCheckerType(checkerType.getCode());
+            judgeContext.setCheckerArg(task.getCheckerArg());
             log.info("构造 JudgeContext 完成, judgeContext: {}", judgeContext);
 
             // ------------------------------------------
@@ -127,37 +286,110 @@ public class JudgeReceiver {
             ProblemSubmitUpdateDTO updateDTO = judgeManager.doJudge(judgeContext);
 
             // ------------------------------------------
-            // 5. 回写数据库
+            // 5. 投递判题结果 (题目服务批量回写数据库)
             // ------------------------------------------
-            Result<Boolean> updateResult = problemService.updateSubmitResult(updateDTO);
-            if (Boolean.TRUE.equals(updateResult.getData())) {
-                log.info("判题完成并回写成功!，submitId: {}，代码状态：{}", submitId, JudgeResultEnum.getByCode(updateDTO.getJudgeResult()).getMessage());
-            } else {
-                throw new RuntimeException("receiveJudgeMessage: 数据库更新失败: " + updateResult.getMessage());
-            }
+            judgeResultSender.send(updateDTO);
+            log.info("判题完成，submitId: {}，代码状态：{}", submitId, JudgeResultEnum.getByCode(updateDTO.getJudgeResult()).getMessage());
 
             // 手动确认消息
             log.info("判题流程结束, 确认消息...");
             channel.basicAck(deliveryTag, false);
+        } catch (JudgeException e) {
+            if (e.getCode() != ResultCode.SANDBOX_BUSY.getCode()) {
+                handleJudgeFailure(submitId, e, channel, deliveryTag);
+                return;
+            }
+            // 沙箱繁忙不是提交本身的问题，放进延迟队列，过一段时间再回到本通道等待空闲沙箱
+            delayRetry(lane, task, message, channel, deliveryTag);
         } catch (Exception e) {
-            log.error("接收到判题任务失败, submitId: {}", submitId, e);
+            handleJudgeFailure(submitId, e, channel, deliveryTag);
+        }
+    }
+
+    /**
+     * 沙箱繁忙：把原消息放进本通道的延迟重投队列后确认 (TTL 到期后死信回通道队列)，
+     * 不立即重新入队，避免沙箱池饱和时消息在消费者之间空转；放不进延迟队列时退回立即重新入队
+     */
+    private void delayRetry(JudgeLaneEnum lane, JudgeTaskMessage task, Message message, Channel channel, long deliveryTag) {
+        try {
+            rabbitTemplate.send("", lane.getRetryQueue(), message);
+            log.warn("沙箱繁忙，判题任务延迟重投, submitId: {}, 通道: {}", task.getSubmitId(), lane.getCode());
+            channel.basicAck(deliveryTag, false);
+        } catch (Exception e) {
+            log.error("延迟重投失败，判题任务重新入队, submitId: {}", task.getSubmitId(), e);
             try {
-                // 异常情况，尝试回写状态为 FAILED (40)
-                ProblemSubmitUpdateDTO failDTO = new ProblemSubmitUpdateDTO();
-                failDTO.setSubmitId(submitId);
-                failDTO.setStatus(SubmitStatusEnum.FAILED.getCode());
-                failDTO.setErrorMessage("Judge Server Error: " + e.getMessage());
-                problemService.updateSubmitResult(failDTO);
+                channel.basicNack(deliveryTag, false, true);
+            } catch (IOException ioException) {
+                log.error("重新入队失败, submitId: {}", task.getSubmitId(), ioException);
+            }
+        }
+    }
 
-                // 确认消息，避免死循环
-                channel.basicAck(deliveryTag, false);
-            } catch (Exception ex) {
-                // 连回写都失败了，只能 Nack 或者丢弃
-                try {
-                    channel.basicNack(deliveryTag, false, false);
-                } catch (IOException ioException) {
-                    ioException.printStackTrace();
-                }
+    /**
+     * 解析判题消息
+     * JSON 消息为 JudgeTaskMessage；旧版本生产者发送的是 Java 序列化的 submitId
+     */
+    private JudgeTaskMessage parseTask(Message message) throws IOException {
+        String contentType = message.getMessageProperties().getContentType();
+        if (contentType != null && contentType.contains("json")) {
+            return objectMapper.readValue(message.getBody(), JudgeTaskMessage.class);
+        }
+        Object payload = legacyConverter.fromMessage(message);
+        if (payload instanceof Long) {
+            return JudgeTaskMessage.ofSubmitId((Long) payload);
+        }
+        throw new IllegalArgumentException("未知的判题消息类型: " + payload);
+    }
+
+    private static SimpleMessageConverter createLegacyConverter() {
+        SimpleMessageConverter converter = new SimpleMessageConverter();
+        converter.setAllowedListPatterns(List.of("java.lang.*")); // 只允许反序列化基础类型
+        return converter;
+    }
+
+    /**
+     * 消息是否携带了判题所需的全部信息 (版本一致且字段齐全)
+     */
+    private boolean isSelfContained(JudgeTaskMessage task) {
+        return Integer.valueOf(JudgeTaskMessage.CURRENT_VERSION).equals(task.getVersion())
+                && task.getProblemId() != null
+                && task.getUserId() != null
+                && task.getLanguage() != null
+                && task.getCode() != null
+                && task.getTimeLimit() != null
+                && task.getMemoryLimit() != null
+                && (!CheckerTypeEnum.SPECIAL.getCode().equals(task.getCheckerType()) || task.getCheckerCode() != null);
+    }
+
+    private void basicAckQuietly(Channel channel, long deliveryTag) {
+        try {
+            channel.basicAck(deliveryTag, false);
+        } catch (IOException e) {
+            log.error("确认消息失败, deliveryTag: {}", deliveryTag, e);
+        }
+    }
+
+    /**
+     * 判题失败：回写 FAILED 状态并确认消息
+     */
+    private void handleJudgeFailure(Long submitId, Exception e, Channel channel, long deliveryTag) {
+        log.error("接收到判题任务失败, submitId: {}", submitId, e);
+        try {
+            // 异常情况，尝试回写状态为 FAILED (40)
+            ProblemSubmitUpdateDTO failDTO = new ProblemSubmitUpdateDTO();
+            failDTO.setSubmitId(submitId);
+            failDTO.setStatus(SubmitStatusEnum.FAILED.getCode());
+            failDTO.setErrorMessage("Judge Server Error: " + e.getMessage());
+            judgeResultSender.send(failDTO);
+
+            // 确认消息，避免死循环
+            channel.basicAck(deliveryTag, false);
+        } catch (Exception ex) {
+            // 连回写都失败了，只能 Nack 或者丢弃
+            try {
+                channel.basicNack(deliveryTag, false, false);
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
             }
         }
     }
@@ -0,0 +1,28 @@
+package com.liren.judge.mq;
+
+import com.liren.api.problem.dto.problem.ProblemSubmitUpdateDTO;
+import com.liren.common.core.constant.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 判题结果发送者
+ * 判题结果不再逐条同步调用题目服务，而是投递到结果队列，由题目服务按批合并回写
+ */
+@Slf4j
+@Component
+public class JudgeResultSender {
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    /**
+     * 发送判题结果 (JSON，持久化消息)，发送失败时抛出异常由调用方处理
+     */
+    public void send(ProblemSubmitUpdateDTO updateDTO) {
+        rabbitTemplate.convertAndSend(Constants.JUDGE_RESULT_EXCHANGE, Constants.JUDGE_RESULT_ROUTING_KEY, updateDTO);
+        log.info("判题结果已投递, submitId: {}, judgeResult: {}", updateDTO.getSubmitId(), updateDTO.getJudgeResult());
+    }
+}
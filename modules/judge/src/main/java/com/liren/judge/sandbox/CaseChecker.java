@@ -0,0 +1,19 @@
+package com.liren.judge.sandbox;
+
+import com.liren.judge.strategy.comparator.CompareResult;
+
+import java.io.IOException;
+
+/**
+ * 用例输出检查器：沙箱在每个用例运行结束后立即调用，比对完即可丢弃输出，
+ * ACM 模式下据此在第一个答案错误的用例处停止
+ */
+@FunctionalInterface
+public interface CaseChecker {
+    /**
+     * 检查单个用例的输出
+     * @param index 用例序号 (从 0 开始，与 inputList 对应)
+     * @param output 用户输出
+     */
+    CompareResult check(int index, String output) throws IOException;
+}
@@ -0,0 +1,66 @@
+package com.liren.judge.sandbox.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * 编译产物缓存 (内容寻址)
+ * Key: 语言 + 编译命令(含编译参数) + 源码 SHA-256
+ * Value: 编译完成后工作目录的 tar 包 (class 文件 / 可执行文件)
+ * 同一份代码重复提交、重判或提交到其他题目时，直接上传缓存的产物，跳过编译
+ */
+@Slf4j
+@Component
+public class CompileArtifactCache {
+
+    private final Cache<String, byte[]> cache;
+
+    public CompileArtifactCache(@Value("${oj.judge.compile-cache.max-size-mb:256}") long maxSizeMb,
+                                @Value("${oj.judge.compile-cache.expire-minutes:120}") long expireMinutes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSizeMb * 1024 * 1024)
+                .weigher((String key, byte[] value) -> value.length)
+                .expireAfterAccess(Duration.ofMinutes(expireMinutes))
+                .build();
+    }
+
+    /**
+     * 生成缓存 Key
+     */
+    public String buildKey(String language, String compileCmd, String code) {
+        return language + ":" + sha256(compileCmd) + ":" + sha256(code);
+    }
+
+    /**
+     * 获取缓存的编译产物，未命中返回 null
+     */
+    public byte[] get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * 缓存编译产物
+     */
+    public void put(String key, byte[] artifact) {
+        cache.put(key, artifact);
+        log.info("缓存编译产物: {}, 大小: {} bytes", key, artifact.length);
+    }
+
+    private static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
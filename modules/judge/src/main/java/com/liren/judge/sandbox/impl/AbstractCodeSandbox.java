@@ -0,0 +1,1110 @@
+package com.liren.judge.sandbox.impl;
+
+import cn.hutool.core.thread.ExecutorBuilder;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.StrUtil;
+import com.liren.common.core.constant.Constants;
+import com.liren.common.core.enums.SandboxRunStatusEnum;
+import com.liren.judge.sandbox.CaseChecker;
+import com.liren.judge.sandbox.CodeSandbox;
+import com.liren.judge.sandbox.cache.CompileArtifactCache;
+import com.liren.judge.sandbox.model.CaseResult;
+import com.liren.judge.sandbox.model.ExecuteCodeRequest;
+import com.liren.judge.sandbox.model.ExecuteCodeResponse;
+import com.liren.judge.sandbox.model.JudgeInfo;
+import com.liren.judge.sandbox.pool.SandboxPool;
+import com.liren.judge.sandbox.support.RunnerUsage;
+import com.liren.judge.sandbox.support.WarmRunnerFrame;
+import com.liren.judge.strategy.comparator.CompareResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.StopWatch;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+
+/**
+ * 通用代码沙箱 (支持 Java, C++, Python)
+ * 安全检查、编译缓存、用例运行与判定的流程都在这里，所有命令都经由 oj-runner 启动；
+ * 子类只负责在沙箱内执行命令、上传/下载文件 (Docker 容器或本机工作目录)
+ * 沙箱ID 由 SandboxPool 借出，命令的工作目录即沙箱的工作目录，文件路径都相对于它
+ */
+@Slf4j
+public abstract class AbstractCodeSandbox implements CodeSandbox {
+
+    @Autowired
+    private CompileArtifactCache compileArtifactCache;
+
+    @Autowired
+    private SandboxPool sandboxPool;
+
+    /**
+     * 单个用例的输出上限 (KB)，超过后立即结束进程并判为输出超限
+     */
+    @Value("${oj.judge.docker.output-limit-kb:16384}")
+    private int outputLimitKb;
+
+    /**
+     * 单次提交在同一个沙箱内最多同时运行的用例数 (1 表示逐个串行运行)
+     */
+    @Value("${oj.judge.docker.case-parallelism:1}")
+    private int caseParallelism;
+
+    /**
+     * 特判程序单次运行的时间上限 (ms)
+     */
+    @Value("${oj.judge.checker.time-limit-ms:5000}")
+    private long checkerTimeLimit;
+
+    /**
+     * Java 用例是否由常驻启动器成组运行 (一个 JVM 连续运行多个用例，省去每个用例的 JVM 启动)
+     */
+    @Value("${oj.judge.warm-runner.enabled:true}")
+    private boolean warmRunnerEnabled;
+
+    /**
+     * 常驻启动器一个 JVM 连续运行的用例数
+     */
+    @Value("${oj.judge.warm-runner.batch-size:8}")
+    private int warmBatchSize;
+
+    /**
+     * 常驻启动器额外的 JVM 参数 (如本机沙箱使用 JDK 17+ 时需要 -Djava.security.manager=allow)
+     */
+    @Value("${oj.judge.warm-runner.jvm-options:}")
+    private String warmJvmOptions;
+
+    // 停止文件：并行用例需要提前结束时写入，之后启动的用例看到它直接退出 (清理沙箱时一并删除)
+    private static final String STOP_FILE = "cases.stop";
+
+    // 发出 SIGTERM 后留给启动器清理的时间，之后对仍存活的进程 SIGKILL (后接进程号)
+    private static final String KILL_FALLBACK = "sleep 0.1; kill -9 2>/dev/null";
+
+    // 估算并行度时，未限制地址空间的用例 (JVM 的堆外内存等) 在题目内存限制之外额外计入的内存 (MB)
+    private static final long CASE_MEMORY_OVERHEAD_MB = 64;
+
+    // 常驻启动器每帧在用户输出之外的额外字节 (错误输出最多 64KB + 帧头)
+    private static final int WARM_FRAME_OVERHEAD = 64 * 1024 + 256;
+
+    // 核对常驻启动器的 CPU 时间：整个 JVM 最多允许为各帧之和的这么多倍 (另加 SANDBOX_TIME_SLACK)，超出部分视为漏计
+    private static final int WARM_CPU_OVERHEAD_FACTOR = 2;
+
+    // 特判程序的编译命令 (与用户代码一样经 compileCommand 在工作目录编译，编译完产物移入判题数据目录)
+    private static final String CHECKER_COMPILE_CMD = "g++ -O2 -o checker checker.cpp";
+
+    // 运行时自身的峰值内存 (Key: 测量命令，Value: KB)
+    private final Map<String, Long> memoryBaselines = new ConcurrentHashMap<>();
+
+    // 用例运行线程池 (所有提交共享，大小 = 沙箱数上限 * 单沙箱并发数)
+    private ExecutorService caseExecutor;
+
+    /**
+     * 系统启动时初始化用例运行线程池 (沙箱由 SandboxPool 管理)
+     */
+    @PostConstruct
+    public void init() {
+        if (caseParallelism > 1) {
+            int threads = sandboxPool.getMaxSize() * caseParallelism;
+            caseExecutor = ExecutorBuilder.create()
+                    .setCorePoolSize(threads)
+                    .setMaxPoolSize(threads)
+                    .setThreadFactory(new NamedThreadFactory("sandbox-case-", true))
+                    .build();
+            log.info("用例并行运行已开启，单沙箱并发数: {}", caseParallelism);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (caseExecutor != null) {
+            caseExecutor.shutdownNow();
+        }
+    }
+
+    // 分语言黑名单 (Key: 语言, Value: 黑名单正则列表)
+    private static final Map<String, List<Pattern>> SECURITY_RULES = new HashMap<>();
+
+    static {
+        // Java 黑名单: 封禁文件读写、网络、反射、运行时执行
+        List<String> javaRegex = Arrays.asList(
+                "\\bFiles\\b", "\\bFile\\b", "\\bFileInputStream\\b", "\\bFileOutputStream\\b", // 文件IO
+                "\\bRuntime\\b", "\\bexec\\b", "\\bProcessBuilder\\b", "\\bProcess\\b",         // 进程执行
+                "\\bnet\\b", "\\bSocket\\b", "\\bServerSocket\\b",                              // 网络
+                "\\breflect\\b", "\\bMethod\\b", "\\bClass\\.forName\\b"                        // 反射(防绕过)
+        );
+        SECURITY_RULES.put("java", compileRegex(javaRegex));
+
+        // C++ 黑名单: 封禁系统调用
+        List<String> cppRegex = Arrays.asList(
+                "\\bsystem\\b", "\\bfork\\b", "\\bopen\\b", "\\bexec\\b", "\\bsocket\\b"
+        );
+        SECURITY_RULES.put("cpp", compileRegex(cppRegex));
+        SECURITY_RULES.put("c++", compileRegex(cppRegex));
+
+        // Python 黑名单
+        List<String> pythonRegex = Arrays.asList(
+                "\\bos\\.system\\b", "\\bos\\.popen\\b", "\\bsubprocess\\b", "\\bexec\\b", "\\beval\\b", "\\bopen\\b",
+                "\\bsocket\\b", "\\burllib\\b", "\\bhttp\\.client\\b", "\\brequests\\b"
+        );
+        SECURITY_RULES.put("python", compileRegex(pythonRegex));
+        SECURITY_RULES.put("python3", compileRegex(pythonRegex));
+    }
+
+    // 辅助方法：预编译正则
+    private static List<Pattern> compileRegex(List<String> rules) {
+        return rules.stream().map(Pattern::compile).collect(Collectors.toList());
+    }
+
+    @Override
+    public ExecuteCodeResponse executeCode(ExecuteCodeRequest executeCodeRequest) {
+        String code = executeCodeRequest.getCode();
+        String language = executeCodeRequest.getLanguage();
+
+        // 1. 恶意代码静态安全检查
+        FoundWord found = checkMaliciousCode(code, language); // 传入语言
+        if (found != null) {
+            return ExecuteCodeResponse.builder()
+                    .status(SandboxRunStatusEnum.SYSTEM_ERROR.getCode()) // 保持约定
+                    .message("MaliciousCode detected: Sensitive operation [" + found.word + "]")
+                    .build();
+        }
+        // ----------------------------------
+
+        List<String> inputList = executeCodeRequest.getInputList();
+
+        // 2. 从池中获取沙箱 (最多等待 borrow-timeout，超时抛出 SANDBOX_BUSY 由上层重新投递)
+        log.info("等待获取沙箱...");
+        String sandboxId;
+        try {
+            sandboxId = sandboxPool.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ExecuteCodeResponse.builder()
+                    .status(SandboxRunStatusEnum.SYSTEM_ERROR.getCode())
+                    .message("等待沙箱被中断")
+                    .build();
+        }
+        log.info("获取到沙箱: {}", sandboxId);
+        boolean broken = false;
+
+        try {
+            // 借出后的准备 (如 Docker 沙箱启动判题代理)
+            onBorrow(sandboxId);
+
+            // 3. 预处理：根据语言确定文件名和命令
+            String sourceFileName;
+            String compileCmd;
+            String runCmd; // 运行命令 (不含输入重定向)
+            String warmCmd = null; // 常驻启动器命令 (不含用例参数)，为空表示逐个用例启动
+            String baselineCmd = null; // 测量运行时自身内存占用的命令，为空表示不扣除
+            boolean limitAddressSpace = false; // 是否由启动器通过 RLIMIT_AS 限制内存 (JVM 改用 -Xmx)
+
+            // 题目的时间/内存限制 (为空时使用沙箱默认值)
+            long timeLimit = executeCodeRequest.getTimeLimit() != null
+                    ? executeCodeRequest.getTimeLimit() : Constants.SANDBOX_TIME_OUT;
+            Integer memoryLimit = executeCodeRequest.getMemoryLimit();
+
+            // 简单的归一化处理 (防止传过来是 "JAVA" 或 "java ")
+            String lang = language.toLowerCase().trim();
+
+            switch (lang) {
+                case "java":
+                    sourceFileName = "Main.java";
+                    compileCmd = "javac -encoding utf-8 Main.java";
+                    runCmd = memoryLimit != null ? "java -Xmx" + memoryLimit + "m -cp . Main" : "java -cp . Main";
+                    // 与常驻启动器按增量统计保持一致：逐个启动时扣除 JVM 自身的常驻内存
+                    baselineCmd = memoryLimit != null ? "java -Xmx" + memoryLimit + "m -version" : "java -version";
+                    if (warmRunnerEnabled) {
+                        // 启动器只在自己的类路径上，用户类由每个用例新建的类加载器从工作目录加载
+                        warmCmd = "java" + (memoryLimit != null ? " -Xmx" + memoryLimit + "m" : "")
+                                + " -XX:+UseSerialGC -XX:-UsePerfData"
+                                + (StrUtil.isNotBlank(warmJvmOptions) ? " " + warmJvmOptions.trim() : "")
+                                + " -cp " + Constants.SANDBOX_WARM_RUNNER_PATH + " OjWarmRunner";
+                    }
+                    break;
+                case "cpp":
+                case "c++":
+                    sourceFileName = "main.cpp";
+                    compileCmd = "g++ -o Main main.cpp"; // 编译输出为 Main 可执行文件
+                    runCmd = "./Main";
+                    limitAddressSpace = true;
+                    break;
+                case "python":
+                case "python3":
+                    sourceFileName = "main.py";
+                    compileCmd = null; // Python 不需要编译
+                    runCmd = "python3 main.py";
+                    break;
+                default:
+                    return ExecuteCodeResponse.builder()
+                            .status(SandboxRunStatusEnum.SYSTEM_ERROR.getCode())
+                            .message("不支持的编程语言: " + language)
+                            .build();
+            }
+
+            // 4. 清理环境 (复用前先清理上次遗留的文件)
+            cleanSandbox(sandboxId);
+
+            // 5. 上传代码 & 编译 (命中编译缓存时直接上传编译产物，跳过编译)
+            if (StrUtil.isNotBlank(compileCmd)) {
+                String cacheKey = compileArtifactCache.buildKey(lang, compileCmd, code);
+                byte[] artifact = compileArtifactCache.get(cacheKey);
+                if (artifact != null) {
+                    log.info("命中编译缓存: {}", cacheKey);
+                    uploadTar(sandboxId, artifact, ".");
+                } else {
+                    uploadFile(sandboxId, sourceFileName, code.getBytes(StandardCharsets.UTF_8));
+
+                    // 6. 编译 (编译用户代码的命令由子类决定是否隔离)
+                    ExecMessage compileMsg = execCmd(sandboxId, compileCommand(sandboxId, compileCmd), Constants.SANDBOX_TIME_OUT);
+                    if (compileMsg.getExitValue() != 0) {
+                        return ExecuteCodeResponse.builder()
+                                .status(SandboxRunStatusEnum.COMPILE_ERROR.getCode())
+                                .message("编译错误:\n" + RunnerUsage.stripUsage(compileMsg.getErrorMessage())
+                                        + "\n" + compileMsg.getMessage())
+                                .build();
+                    }
+                    // 此时工作目录只有源码和编译产物 (输入文件在后面才上传)
+                    compileArtifactCache.put(cacheKey, downloadArchive(sandboxId, "."));
+                }
+            } else {
+                uploadFile(sandboxId, sourceFileName, code.getBytes(StandardCharsets.UTF_8));
+            }
+
+            // 7. 执行代码 (针对每个输入用例)
+            // 每个用例使用独立的输入文件，这样同一沙箱内的多个用例可以同时运行
+            // 所有输入打成一个 tar 一次性上传；特判题目的标准输出一并放进判题数据目录
+            boolean special = StrUtil.isNotBlank(executeCodeRequest.getCheckerCode());
+            uploadInputs(sandboxId, inputList, special ? executeCodeRequest.getAnswerList() : null);
+            if (special) {
+                String checkerError = prepareChecker(sandboxId, executeCodeRequest.getCheckerCode());
+                if (checkerError != null) {
+                    return ExecuteCodeResponse.builder()
+                            .status(SandboxRunStatusEnum.SYSTEM_ERROR.getCode())
+                            .message("特判程序编译失败:\n" + checkerError)
+                            .build();
+                }
+            }
+
+            // 特判题目的输出要写进只有 root 可写的判题数据目录，仍逐个用例启动
+            RunSpec runSpec = new RunSpec(runCmd, special ? null : warmCmd, baselineCmd, timeLimit, memoryLimit,
+                    limitAddressSpace, special);
+            List<RunResult> runResults = runAllCases(sandboxId, runSpec, inputList.size(),
+                    executeCodeRequest.isStopOnFirstFailure(), executeCodeRequest.getCaseChecker());
+
+            // 8. 封装结果 (各用例的状态由判题策略逐个判定)
+            List<CaseResult> caseResultList = new ArrayList<>(runResults.size());
+            long maxTime = 0;
+            long maxMemory = 0;
+            for (RunResult runResult : runResults) {
+                maxTime = Math.max(maxTime, runResult.getTime());
+                maxMemory = Math.max(maxMemory, runResult.getMemory());
+                caseResultList.add(toCaseResult(runResult, runSpec));
+            }
+
+            JudgeInfo judgeInfo = new JudgeInfo();
+            judgeInfo.setTime(maxTime);
+            judgeInfo.setMemory(maxMemory); // 各用例峰值内存的最大值 (KB)
+
+            return ExecuteCodeResponse.builder()
+                    .status(SandboxRunStatusEnum.NORMAL.getCode()) // 1-用例已运行
+                    .caseResultList(caseResultList)
+                    .judgeInfo(judgeInfo)
+                    .build();
+
+        } catch (Exception e) {
+            log.error("沙箱执行异常", e);
+            // 如果沙箱坏了(比如容器被 OOM 杀死)，归还时由沙箱池销毁并替换
+            broken = true;
+            return ExecuteCodeResponse.builder()
+                    .status(SandboxRunStatusEnum.SYSTEM_ERROR.getCode())
+                    .message(e.getMessage())
+                    .build();
+        } finally {
+            // 8. 归还沙箱
+            // 这里选择直接归还，下次使用时在步骤 4 清理，减少一次命令交互
+            beforeRelease(sandboxId);
+            sandboxPool.release(sandboxId, broken);
+        }
+    }
+
+    /**
+     * 运行所有用例，结果按输入顺序返回
+     * 每个用例结束后立即比对输出 (传入了检查器时；常驻启动器为每组用例结束后)
+     * stopOnFirstFailure 为 true 时 (ACM 模式)，遇到第一个未通过的用例就停止；
+     * 并行模式下取序号最小的未通过用例，并停止同批次剩余的用例：
+     * 置停止标志 (还没开始的不再启动)，写停止文件并结束已记录进程号的用例，再等所有任务真正结束后才返回，
+     * 保证归还沙箱时里面没有仍在运行的用例
+     */
+    private List<RunResult> runAllCases(String sandboxId, RunSpec runSpec, int caseCount,
+                                        boolean stopOnFirstFailure, CaseChecker caseChecker) throws Exception {
+        // 常驻启动器每个进程运行一组用例，否则每个进程运行一个用例
+        int unitSize = runSpec.getWarmCmd() != null ? Math.max(warmBatchSize, 1) : 1;
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        int parallelism = effectiveParallelism(runSpec);
+        if (caseExecutor == null || parallelism <= 1 || caseCount <= unitSize) {
+            return runAndCheckCases(sandboxId, runSpec, 0, caseCount, unitSize, stopOnFirstFailure, caseChecker, stopped);
+        }
+
+        List<RunResult> results = new ArrayList<>(caseCount);
+        // 按批次提交，保证同一沙箱内同时运行的进程数不超过 parallelism
+        int batchSize = unitSize * parallelism;
+        for (int start = 0; start < caseCount; start += batchSize) {
+            int end = Math.min(start + batchSize, caseCount);
+            List<Future<List<RunResult>>> futures = new ArrayList<>(parallelism);
+            for (int from = start; from < end; from += unitSize) {
+                final int unitFrom = from;
+                final int unitTo = Math.min(from + unitSize, end);
+                futures.add(caseExecutor.submit(() -> runAndCheckCases(sandboxId, runSpec, unitFrom, unitTo,
+                        unitSize, stopOnFirstFailure, caseChecker, stopped)));
+            }
+
+            int failedAt = -1;
+            for (int i = 0; i < futures.size() && failedAt < 0; i++) {
+                for (RunResult runResult : futures.get(i).get()) {
+                    results.add(runResult);
+                    if (stopOnFirstFailure && runResult.isFailed()) {
+                        failedAt = i;
+                    }
+                }
+            }
+            if (failedAt >= 0) {
+                stopped.set(true);
+                List<Integer> remaining = new ArrayList<>();
+                for (int index = start + (failedAt + 1) * unitSize; index < end; index++) {
+                    remaining.add(index);
+                }
+                stopCases(sandboxId, remaining);
+                // 等剩余任务真正结束 (结果丢弃)，之后才能归还沙箱
+                for (int i = failedAt + 1; i < futures.size(); i++) {
+                    try {
+                        futures.get(i).get();
+                    } catch (ExecutionException e) {
+                        log.debug("已停止的用例任务异常结束", e.getCause());
+                    }
+                }
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 本次提交在同一沙箱内同时运行的用例数
+     * 沙箱整体有内存上限时，并行的用例各自用满题目的内存限制也不能超过它，否则沙箱的 OOM Killer
+     * 会随机结束其中一个 (并被误判为超内存)；题目没有内存限制时逐个运行
+     * 未限制地址空间的进程 (JVM、解释器) 实际占用会超过题目限制，每个用例另计 CASE_MEMORY_OVERHEAD_MB
+     */
+    private int effectiveParallelism(RunSpec runSpec) {
+        long sharedMemoryMb = sharedMemoryLimitMb();
+        if (caseParallelism <= 1 || sharedMemoryMb <= 0) {
+            return caseParallelism;
+        }
+        Integer memoryLimit = runSpec.getMemoryLimit();
+        if (memoryLimit == null || memoryLimit <= 0) {
+            return 1;
+        }
+        long caseMemoryMb = memoryLimit + (runSpec.isLimitAddressSpace() ? 0 : CASE_MEMORY_OVERHEAD_MB);
+        return (int) Math.max(1, Math.min(caseParallelism, sharedMemoryMb / caseMemoryMb));
+    }
+
+    /**
+     * 运行 [from, to) 范围内的用例，结果按输入顺序返回
+     * 常驻启动器每次最多运行 unitSize 个用例，提前结束 (超时等) 时从下一个用例重新启动
+     * stopped 被置位后不再启动新的用例
+     */
+    private List<RunResult> runAndCheckCases(String sandboxId, RunSpec runSpec, int from, int to, int unitSize,
+                                             boolean stopOnFirstFailure, CaseChecker caseChecker,
+                                             AtomicBoolean stopped) throws IOException {
+        List<RunResult> results = new ArrayList<>(to - from);
+        int next = from;
+        while (next < to && !stopped.get()) {
+            List<RunResult> unit = runSpec.getWarmCmd() != null
+                    ? runWarmCases(sandboxId, runSpec, next, Math.min(next + unitSize, to), stopOnFirstFailure)
+                    : Collections.singletonList(runCase(sandboxId, runSpec, next));
+            for (RunResult runResult : unit) {
+                checkCase(sandboxId, runSpec, next, runResult, caseChecker);
+                results.add(runResult);
+                next++;
+                if (stopOnFirstFailure && runResult.isFailed()) {
+                    return results;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 正常结束的用例立即比对输出 (特判题目在沙箱内运行特判程序)
+     */
+    private void checkCase(String sandboxId, RunSpec runSpec, int index, RunResult runResult,
+                           CaseChecker caseChecker) throws IOException {
+        if (runResult.getStatus() != SandboxRunStatusEnum.NORMAL) {
+            return;
+        }
+        if (runSpec.isSpecial()) {
+            runResult.setCompareResult(runChecker(sandboxId, index));
+        } else if (caseChecker != null) {
+            runResult.setCompareResult(caseChecker.check(index, runResult.getExecMessage().getMessage()));
+        }
+    }
+
+    /**
+     * 准备特判程序：命中编译缓存时直接上传产物，否则上传源码在沙箱内编译，并缓存产物供后续提交复用
+     * @return 编译失败时返回错误信息，成功返回 null
+     */
+    private String prepareChecker(String sandboxId, String checkerCode) throws IOException {
+        String cacheKey = compileArtifactCache.buildKey("checker", CHECKER_COMPILE_CMD, checkerCode);
+        byte[] artifact = compileArtifactCache.get(cacheKey);
+        if (artifact != null) {
+            log.info("命中特判程序编译缓存: {}", cacheKey);
+            uploadTar(sandboxId, artifact, Constants.SANDBOX_JUDGE_DIR);
+            return null;
+        }
+
+        // 特判程序的源码同样不可信，编译器的隔离方式与用户代码相同
+        uploadFile(sandboxId, "checker.cpp", checkerCode.getBytes(StandardCharsets.UTF_8));
+        ExecMessage compileMsg = execCmd(sandboxId, compileCommand(sandboxId, CHECKER_COMPILE_CMD), Constants.SANDBOX_TIME_OUT);
+        if (compileMsg.getExitValue() != 0) {
+            return RunnerUsage.stripUsage(compileMsg.getErrorMessage()) + "\n" + compileMsg.getMessage();
+        }
+        // 源码删除、产物移入判题数据目录，之后运行的用户程序都读不到
+        ExecMessage moveMsg = execCmd(sandboxId, new String[]{"sh", "-c",
+                "rm -f checker.cpp && mv checker " + judgeFile("checker")});
+        if (moveMsg.getExitValue() != 0) {
+            throw new IOException("移动特判程序失败: " + moveMsg.getErrorMessage());
+        }
+        // 只缓存可执行文件 (tar 条目为 checker，还原时上传到判题数据目录)
+        compileArtifactCache.put(cacheKey, downloadArchive(sandboxId, judgeFile("checker")));
+        return null;
+    }
+
+    /**
+     * 运行特判程序判定第 index 个用例 (参数: 输入文件 用户输出 标准输出，与 testlib 约定一致)
+     * 特判程序和用户程序一样由启动器隔离运行、放弃 root；判题数据目录只有 root 能进入，
+     * 因此特判程序本身、用户输出和标准输出由 root 的 shell 打开后作为继承的文件描述符交给它 (/dev/fd/N)
+     * 退出码 0 为通过，1/2 为答案错误 (stderr 为说明)，其他视为特判程序自身异常；
+     * 判定完删除该用例的用户输出，释放沙箱磁盘
+     */
+    private CompareResult runChecker(String sandboxId, int index) {
+        String outputFile = judgeFile(outputFileName(index));
+        String checkCmd = "chmod 644 " + outputFile + " && " + Constants.SANDBOX_RUNNER
+                + " -t " + checkerTimeLimit + " -u " + checkerUid(sandboxId) + runnerIsolation()
+                + " /dev/fd/5 " + inputFileName(index) + " /dev/fd/3 /dev/fd/4"
+                + " 3< " + outputFile + " 4< " + judgeFile(answerFileName(index)) + " 5< " + judgeFile("checker")
+                + "; rc=$?; rm -f " + outputFile + "; exit $rc";
+        ExecMessage checkMsg = execCmd(sandboxId, new String[]{"sh", "-c", checkCmd},
+                checkerTimeLimit + Constants.SANDBOX_TIME_SLACK);
+
+        RunnerUsage usage = RunnerUsage.parse(checkMsg.getErrorMessage());
+        String detail = StrUtil.maxLength(StrUtil.trim(RunnerUsage.stripUsage(checkMsg.getErrorMessage())), 200);
+        if (usage == null) {
+            // 没有统计行说明启动器本身没能正常运行 (或命令在启动器之外被结束)，属于系统错误而不是特判超时
+            throw new IllegalStateException("特判程序运行失败 (未获取到运行统计), 用例: " + (index + 1) + ", "
+                    + StrUtil.maxLength(StrUtil.trim(checkMsg.getErrorMessage()), 200));
+        }
+        if (checkMsg.isTimeout() || usage.isTimeout()) {
+            throw new IllegalStateException("特判程序运行超时, 用例: " + (index + 1));
+        }
+        switch (usage.getExitCode()) {
+            case 0:
+                return CompareResult.accepted();
+            case 1:
+            case 2:
+                return CompareResult.rejected(StrUtil.isBlank(detail) ? "特判程序判定答案错误" : detail);
+            default:
+                throw new IllegalStateException("特判程序异常退出 (exit=" + usage.getExitCode() + "), 用例: "
+                        + (index + 1) + ", " + detail);
+        }
+    }
+
+    /**
+     * 转换为对外的用例结果 (已比对过的用例不再带回输出)
+     */
+    private CaseResult toCaseResult(RunResult runResult, RunSpec runSpec) {
+        CaseResult caseResult = CaseResult.builder()
+                .status(runResult.getStatus().getCode())
+                .time(runResult.getTime())
+                .memory(runResult.getMemory())
+                .build();
+        CompareResult compareResult = runResult.getCompareResult();
+        if (runResult.getStatus() != SandboxRunStatusEnum.NORMAL) {
+            caseResult.setMessage(failMessage(runResult, runSpec));
+        } else if (compareResult != null) {
+            caseResult.setAccepted(compareResult.isAccepted());
+            caseResult.setMessage(compareResult.describe());
+        } else {
+            caseResult.setOutput(runResult.getExecMessage().getMessage()); // 首尾空白由判题比对器处理，这里不再复制一份
+        }
+        return caseResult;
+    }
+
+    /**
+     * 运行单个用例
+     */
+    private RunResult runCase(String sandboxId, RunSpec runSpec, int index) {
+        // 超时以 CPU 时间判定；墙钟上限放宽若干倍，只用来结束 sleep、阻塞读等不消耗 CPU 的程序
+        long cpuLimit = runSpec.getTimeLimit() + Constants.SANDBOX_TIME_SLACK;
+        long wallLimit = runSpec.getTimeLimit() * Constants.SANDBOX_WALL_TIME_FACTOR + Constants.SANDBOX_TIME_SLACK;
+        StringBuilder runner = new StringBuilder(Constants.SANDBOX_RUNNER)
+                .append(" -t ").append(wallLimit)
+                .append(" -c ").append(cpuLimit)
+                .append(" -u ").append(runUid(sandboxId)) // 用户程序放弃 root，读不到判题数据目录
+                .append(runnerIsolation());
+        if (runSpec.isLimitAddressSpace() && runSpec.getMemoryLimit() != null) {
+            runner.append(" -m ").append(runSpec.getMemoryLimit() * 1024L);
+        }
+        // 特判题目的输出写到文件交给特判程序，输出上限改由 RLIMIT_FSIZE 限制
+        String redirect = " < " + inputFileName(index);
+        if (runSpec.isSpecial()) {
+            runner.append(" -f ").append(outputLimitKb * 1024L);
+            redirect += " > " + judgeFile(outputFileName(index));
+        }
+
+        // 构造运行命令 (使用 sh -c 支持 < 重定向)
+        // 先记录 pid 再 exec 替换为启动器，便于输出超限时精确杀掉本用例的进程
+        // 用户程序由 oj-runner 启动，结束后它会在 stderr 末尾追加资源使用统计
+        String runCmd = casePrologue(index) + runner + " " + runSpec.getRunCmd() + redirect;
+        log.info("执行命令: sh -c {}", runCmd); // 打印实际执行的命令
+
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+
+        // 执行代码 (沙箱侧再多等一个放宽时间，正常情况下启动器会先结束进程)
+        ExecMessage runMsg = execCmd(sandboxId, new String[]{"sh", "-c", runCmd}, wallLimit + Constants.SANDBOX_TIME_SLACK);
+
+        stopWatch.stop(); // 仅在拿不到启动器统计时兜底使用
+
+        if (runMsg.isOutputExceeded() || runMsg.isTimeout()) {
+            killCase(sandboxId, index);
+        }
+
+        // 解析启动器统计的 CPU 时间和峰值内存，并从错误输出中去掉统计行
+        // CPU 时间不包含命令下发的往返开销，也不受判题机负载影响
+        long time = stopWatch.getLastTaskTimeMillis();
+        long memory = 0;
+        RunnerUsage usage = RunnerUsage.parse(runMsg.getErrorMessage());
+        if (usage != null) {
+            time = usage.getCpuTime();
+            memory = Math.max(0, usage.getMemory() - memoryBaseline(sandboxId, runSpec));
+            runMsg.setErrorMessage(RunnerUsage.stripUsage(runMsg.getErrorMessage()));
+        }
+
+        SandboxRunStatusEnum status = judgeCaseStatus(runMsg, usage, time, memory, runSpec);
+        return new RunResult(status, runMsg, time, memory);
+    }
+
+    /**
+     * 运行时自身的峰值内存 (KB)，逐个启动的用例从峰值内存中扣除
+     * JVM 的基础占用 (元空间、代码缓存等) 不计入题目的内存限制，与常驻启动器只统计用例增量的口径一致；
+     * 按命令缓存 (同一部署的沙箱环境相同)，测量失败时不扣除，下次再测
+     */
+    private long memoryBaseline(String sandboxId, RunSpec runSpec) {
+        String baselineCmd = runSpec.getBaselineCmd();
+        if (baselineCmd == null) {
+            return 0;
+        }
+        Long cached = memoryBaselines.get(baselineCmd);
+        if (cached != null) {
+            return cached;
+        }
+        String cmd = Constants.SANDBOX_RUNNER + " -t " + Constants.SANDBOX_TIME_OUT + " -u " + runUid(sandboxId)
+                + runnerIsolation() + " " + baselineCmd;
+        ExecMessage baselineMsg = execCmd(sandboxId, new String[]{"sh", "-c", cmd});
+        RunnerUsage usage = RunnerUsage.parse(baselineMsg.getErrorMessage());
+        if (usage == null || usage.getExitCode() != 0) {
+            log.warn("测量运行时内存基线失败: {}, {}", baselineCmd, StrUtil.maxLength(baselineMsg.getErrorMessage(), 200));
+            return 0;
+        }
+        memoryBaselines.put(baselineCmd, usage.getMemory());
+        log.info("运行时内存基线: {} -> {} KB", baselineCmd, usage.getMemory());
+        return usage.getMemory();
+    }
+
+    /**
+     * 由 Java 常驻启动器在一个 JVM 里连续运行 [from, to) 范围内的用例
+     * 每个用例的时间、内存和状态由启动器给出 (不含 JVM 启动)；oj-runner 只对整个 JVM 兜底
+     * 启动器在超时、内存不足、输出超限 (ACM 模式下还有第一个失败的用例) 后提前结束，
+     * 这里只返回已运行完的用例，但至少返回一个
+     * 各帧 CPU 时间之和与 oj-runner 统计的整个 JVM 对不上时 (用户代码的 CPU 时间没有计入帧内)，
+     * 不采信本批结果，第一个用例改为单独启动运行
+     */
+    private List<RunResult> runWarmCases(String sandboxId, RunSpec runSpec, int from, int to, boolean stopOnFirstFailure) {
+        int count = to - from;
+        long caseWallLimit = runSpec.getTimeLimit() * Constants.SANDBOX_WALL_TIME_FACTOR;
+        // 兜底上限同时用作 CPU 上限：JIT、GC 线程的 CPU 时间也计入整个 JVM
+        long jvmLimit = (caseWallLimit + Constants.SANDBOX_TIME_SLACK) * count + Constants.SANDBOX_TIME_SLACK;
+        int outputLimit = outputLimitKb * 1024;
+        String runCmd = casePrologue(from) + Constants.SANDBOX_RUNNER
+                + " -t " + jvmLimit + " -c " + jvmLimit + " -u " + runUid(sandboxId) + runnerIsolation()
+                + " " + runSpec.getWarmCmd() + " " + runSpec.getTimeLimit() + " " + caseWallLimit + " " + outputLimit
+                + " " + from + " " + to + " " + (stopOnFirstFailure ? 1 : 0);
+        log.info("执行命令: sh -c {}", runCmd);
+
+        long rawLimit = (long) (outputLimit + WARM_FRAME_OVERHEAD) * count;
+        ExecMessage runMsg = execCmd(sandboxId, new String[]{"sh", "-c", runCmd},
+                jvmLimit + Constants.SANDBOX_TIME_SLACK, (int) Math.min(rawLimit, Integer.MAX_VALUE), true);
+        if (runMsg.isOutputExceeded() || runMsg.isTimeout()) {
+            killCase(sandboxId, from);
+        }
+
+        List<RunResult> results = new ArrayList<>(count);
+        byte[] rawOutput = runMsg.getRawOutput() != null ? runMsg.getRawOutput() : new byte[0];
+        for (WarmRunnerFrame frame : WarmRunnerFrame.parse(rawOutput)) {
+            if (frame.getIndex() != from + results.size()) {
+                break;
+            }
+            ExecMessage caseMsg = new ExecMessage();
+            caseMsg.setExitValue(frame.getExitCode());
+            caseMsg.setMessage(frame.getOutput());
+            caseMsg.setErrorMessage(frame.getError());
+            results.add(new RunResult(warmCaseStatus(frame, runSpec), caseMsg, frame.getCpuTime(), frame.getMemory()));
+        }
+        RunnerUsage usage = RunnerUsage.parse(runMsg.getErrorMessage());
+        if (!results.isEmpty()) {
+            long frameCpu = results.stream().mapToLong(RunResult::getTime).sum();
+            if (usage != null && usage.getCpuTime() > frameCpu * WARM_CPU_OVERHEAD_FACTOR + Constants.SANDBOX_TIME_SLACK) {
+                log.warn("常驻启动器 CPU 时间核对失败, 用例: [{}, {}), 各帧合计: {}ms, JVM: {}ms, 改为单独运行",
+                        from, from + results.size(), frameCpu, usage.getCpuTime());
+                return Collections.singletonList(runCase(sandboxId, runSpec, from));
+            }
+            return results;
+        }
+
+        // 一个用例都没有跑完 (JVM 启动失败、崩溃或被兜底上限结束)，按整个进程的情况判定第一个用例
+        long time = 0;
+        long memory = 0;
+        if (usage != null) {
+            time = usage.getCpuTime();
+            memory = usage.getMemory();
+            runMsg.setErrorMessage(RunnerUsage.stripUsage(runMsg.getErrorMessage()));
+        }
+        runMsg.setMessage("");
+        SandboxRunStatusEnum status = judgeCaseStatus(runMsg, usage, time, memory, runSpec);
+        results.add(new RunResult(status == SandboxRunStatusEnum.NORMAL ? SandboxRunStatusEnum.RUNTIME_ERROR : status,
+                runMsg, time, memory));
+        return results;
+    }
+
+    /**
+     * 根据常驻启动器给出的结果判定单个用例的状态
+     */
+    private SandboxRunStatusEnum warmCaseStatus(WarmRunnerFrame frame, RunSpec runSpec) {
+        switch (frame.getStatus()) {
+            case WarmRunnerFrame.OUTPUT:
+                return SandboxRunStatusEnum.OUTPUT_LIMIT_EXCEEDED;
+            case WarmRunnerFrame.TIMEOUT:
+                return SandboxRunStatusEnum.TIME_LIMIT_EXCEEDED;
+            case WarmRunnerFrame.MEMORY:
+                return SandboxRunStatusEnum.MEMORY_LIMIT_EXCEEDED;
+            case WarmRunnerFrame.EXCEPTION:
+                return SandboxRunStatusEnum.RUNTIME_ERROR;
+            default:
+                break;
+        }
+        if (frame.getCpuTime() > runSpec.getTimeLimit()) {
+            return SandboxRunStatusEnum.TIME_LIMIT_EXCEEDED;
+        }
+        if (runSpec.getMemoryLimit() != null && frame.getMemory() > runSpec.getMemoryLimit() * 1024L) {
+            return SandboxRunStatusEnum.MEMORY_LIMIT_EXCEEDED;
+        }
+        return frame.getExitCode() != 0 ? SandboxRunStatusEnum.RUNTIME_ERROR : SandboxRunStatusEnum.NORMAL;
+    }
+
+    // 超过 RLIMIT_CPU 时内核发送的信号
+    private static final int SIGXCPU = 24;
+
+    // 超过 RLIMIT_FSIZE 时内核发送的信号 (JVM 会忽略该信号，写入失败后输出被截断，通常判为答案错误)
+    private static final int SIGXFSZ = 25;
+
+    // 各语言内存不足时的典型错误输出
+    private static final List<String> MEMORY_ERROR_MARKS = Arrays.asList(
+            "java.lang.OutOfMemoryError", "std::bad_alloc", "MemoryError");
+
+    /**
+     * 根据运行情况判定单个用例的状态
+     */
+    private SandboxRunStatusEnum judgeCaseStatus(ExecMessage runMsg, RunnerUsage usage, long time, long memory, RunSpec runSpec) {
+        Integer memoryLimit = runSpec.getMemoryLimit();
+        if (runMsg.isOutputExceeded() || (usage != null && usage.getSignal() == SIGXFSZ)) {
+            return SandboxRunStatusEnum.OUTPUT_LIMIT_EXCEEDED;
+        }
+        if (runMsg.isTimeout() || (usage != null && (usage.isTimeout() || usage.getSignal() == SIGXCPU))) {
+            return SandboxRunStatusEnum.TIME_LIMIT_EXCEEDED;
+        }
+        if (time > runSpec.getTimeLimit()) {
+            return SandboxRunStatusEnum.TIME_LIMIT_EXCEEDED;
+        }
+        if (memoryLimit != null && memory > memoryLimit * 1024L) {
+            return SandboxRunStatusEnum.MEMORY_LIMIT_EXCEEDED;
+        }
+        if (runMsg.getExitValue() != 0) {
+            String stderr = StrUtil.nullToEmpty(runMsg.getErrorMessage());
+            boolean memoryError = MEMORY_ERROR_MARKS.stream().anyMatch(stderr::contains);
+            // 只有启动器确认 OOM Killer 出手时才判为内存超限；墙钟超时、输出超限、外部结束的 SIGKILL 都不算
+            boolean oomKilled = usage != null && usage.isOomKilled();
+            return memoryError || oomKilled ? SandboxRunStatusEnum.MEMORY_LIMIT_EXCEEDED : SandboxRunStatusEnum.RUNTIME_ERROR;
+        }
+        return SandboxRunStatusEnum.NORMAL;
+    }
+
+    /**
+     * 非正常结束用例的提示信息
+     */
+    private String failMessage(RunResult runResult, RunSpec runSpec) {
+        switch (runResult.getStatus()) {
+            case OUTPUT_LIMIT_EXCEEDED:
+                return "输出超限: 超过 " + outputLimitKb + " KB";
+            case TIME_LIMIT_EXCEEDED:
+                return "运行超时: 超过 " + runSpec.getTimeLimit() + " ms";
+            case MEMORY_LIMIT_EXCEEDED:
+                return "内存超限: 超过 " + runSpec.getMemoryLimit() + " MB";
+            default:
+                return "运行错误: " + runResult.getExecMessage().getErrorMessage();
+        }
+    }
+
+    /**
+     * 杀掉第 index 个用例仍在运行的进程
+     * 先发 SIGTERM，启动器会结束用户程序及其派生的全部进程后退出；稍后再 SIGKILL 兜底
+     */
+    private void killCase(String sandboxId, int index) {
+        String killCmd = "p=$(cat " + pidFileName(index) + ") || exit 1; kill -TERM $p; " + KILL_FALLBACK + " $p";
+        ExecMessage killMsg = execCmd(sandboxId, new String[]{"sh", "-c", killCmd});
+        if (killMsg.getExitValue() != 0) {
+            log.warn("结束用例进程失败, index: {}, {}", index, killMsg.getErrorMessage());
+        }
+    }
+
+    /**
+     * 停止多个用例 (一次 exec)：先写停止文件，再结束已记录进程号的用例
+     * 用例启动时先写进程号、再检查停止文件 (见 casePrologue)，两边顺序相反：
+     * 进程号写晚了没被结束的用例一定能看到停止文件，自己退出，不会漏掉
+     */
+    private void stopCases(String sandboxId, List<Integer> indexes) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        String pidFiles = indexes.stream().map(AbstractCodeSandbox::pidFileName).collect(Collectors.joining(" "));
+        String killCmd = "touch " + STOP_FILE + "; p=; for f in " + pidFiles
+                + "; do [ -f $f ] && p=\"$p $(cat $f)\"; done; [ -z \"$p\" ] || { kill -TERM $p 2>/dev/null; "
+                + KILL_FALLBACK + " $p; }; true";
+        execCmd(sandboxId, new String[]{"sh", "-c", killCmd});
+    }
+
+    /**
+     * 用例运行命令的前缀：记录进程号，已经被停止时直接退出，否则 exec 为启动器 (进程号不变)
+     */
+    private static String casePrologue(int index) {
+        return "echo $$ > " + pidFileName(index) + "; [ -e " + STOP_FILE + " ] && exit 137; exec ";
+    }
+
+    /**
+     * 第 index 个用例的输入文件名
+     */
+    private static String inputFileName(int index) {
+        return "input_" + index + ".txt";
+    }
+
+    /**
+     * 第 index 个用例的用户输出文件名 (仅特判题目，位于判题数据目录)
+     */
+    private static String outputFileName(int index) {
+        return "output_" + index + ".txt";
+    }
+
+    /**
+     * 第 index 个用例的标准输出文件名 (仅特判题目，位于判题数据目录)
+     */
+    private static String answerFileName(int index) {
+        return "answer_" + index + ".txt";
+    }
+
+    /**
+     * 判题数据目录下的文件 (相对工作目录的路径)
+     */
+    private static String judgeFile(String fileName) {
+        return Constants.SANDBOX_JUDGE_DIR + "/" + fileName;
+    }
+
+    /**
+     * 第 index 个用例的进程号文件名
+     */
+    private static String pidFileName(int index) {
+        return "case_" + index + ".pid";
+    }
+
+    /**
+     * 清理沙箱内的文件 (删除工作目录下的所有文件)
+     */
+    private void cleanSandbox(String sandboxId) {
+        try {
+            execCmd(sandboxId, new String[]{"sh", "-c", "rm -rf ./*"});
+        } catch (Exception e) {
+            log.error("清理沙箱失败", e);
+        }
+    }
+
+    // === 辅助方法 ===
+
+    /**
+     * 将文件内容上传到沙箱工作目录
+     */
+    private void uploadFile(String sandboxId, String fileName, byte[] content) throws IOException {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             TarArchiveOutputStream tar = new TarArchiveOutputStream(bos)) {
+
+            TarArchiveEntry entry = new TarArchiveEntry(fileName);
+            entry.setSize(content.length);
+            tar.putArchiveEntry(entry);
+            tar.write(content);
+            tar.closeArchiveEntry();
+            tar.finish(); // 必须 finish
+
+            uploadTar(sandboxId, bos.toByteArray(), ".");
+        }
+    }
+
+    /**
+     * 将所有输入用例打成一个 tar 一次性上传 (input_0.txt ... input_n.txt)
+     * 传入标准输出时一并放进判题数据目录 (judge/answer_0.txt ...)，目录只有 root 可以进入
+     * tar 先写入临时文件再以流的方式上传，避免在堆上拼出整个 tar 的副本
+     */
+    private void uploadInputs(String sandboxId, List<String> inputList, List<String> answerList) throws IOException {
+        File tarFile = File.createTempFile("sandbox-input-", ".tar");
+        try {
+            try (TarArchiveOutputStream tar = new TarArchiveOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tarFile)))) {
+                for (int i = 0; i < inputList.size(); i++) {
+                    putTarEntry(tar, inputFileName(i), inputList.get(i), null);
+                }
+                if (answerList != null) {
+                    TarArchiveEntry dirEntry = new TarArchiveEntry(Constants.SANDBOX_JUDGE_DIR + "/");
+                    dirEntry.setMode(JUDGE_DIR_MODE);
+                    tar.putArchiveEntry(dirEntry);
+                    tar.closeArchiveEntry();
+                    for (int i = 0; i < answerList.size(); i++) {
+                        putTarEntry(tar, judgeFile(answerFileName(i)), answerList.get(i), JUDGE_FILE_MODE);
+                    }
+                }
+                tar.finish();
+            }
+
+            try (InputStream in = new BufferedInputStream(new FileInputStream(tarFile))) {
+                uploadTar(sandboxId, in, ".");
+            }
+        } finally {
+            if (!tarFile.delete()) {
+                log.warn("临时文件删除失败: {}", tarFile.getAbsolutePath());
+            }
+        }
+    }
+
+    // 判题数据目录及其中文件的权限：只有 root 能进入目录；文件本身对其他用户可读，
+    // 特判程序通过继承的文件描述符 (/dev/fd/N) 重新打开时需要
+    private static final int JUDGE_DIR_MODE = 040700;
+    private static final int JUDGE_FILE_MODE = 0100644;
+
+    /**
+     * 写入一个 tar 文件条目
+     * @param mode 文件权限，为空时使用默认权限
+     */
+    private static void putTarEntry(TarArchiveOutputStream tar, String name, String text, Integer mode) throws IOException {
+        byte[] content = (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(content.length);
+        if (mode != null) {
+            entry.setMode(mode);
+        }
+        tar.putArchiveEntry(entry);
+        tar.write(content);
+        tar.closeArchiveEntry();
+    }
+
+    /**
+     * 上传现成的 tar 包到沙箱内的指定目录 (用于还原缓存的编译产物)
+     */
+    private void uploadTar(String sandboxId, byte[] tar, String relativeDir) throws IOException {
+        uploadTar(sandboxId, new ByteArrayInputStream(tar), relativeDir);
+    }
+
+    /**
+     * 执行命令辅助类
+     */
+    @Data
+    protected static class ExecMessage {
+        private int exitValue;
+        private String message;
+        private String errorMessage;
+        private boolean outputExceeded; // 输出是否超过上限 (超限时 message 已被截断)
+        private boolean timeout; // 等待结束超时 (进程可能仍在运行)
+        private byte[] rawOutput; // 未解码的 stdout (只在要求原始输出时设置，此时 message 为空)
+    }
+
+    /**
+     * 用例运行参数 (同一次提交的所有用例共用)
+     */
+    @Data
+    @AllArgsConstructor
+    private static class RunSpec {
+        private String runCmd;              // 运行命令 (不含输入重定向)
+        private String warmCmd;             // 常驻启动器命令，为空时逐个用例启动
+        private String baselineCmd;         // 测量运行时自身内存占用的命令 (JVM)，为空时不扣除
+        private long timeLimit;             // 时间限制 (ms)
+        private Integer memoryLimit;        // 内存限制 (MB)，可能为空
+        private boolean limitAddressSpace;  // 是否由启动器限制地址空间
+        private boolean special;            // 是否为特判题目 (输出写入文件，由沙箱内的特判程序判定)
+    }
+
+    /**
+     * 单个用例的运行结果
+     */
+    @Data
+    private static class RunResult {
+        private final SandboxRunStatusEnum status;
+        private final ExecMessage execMessage;
+        private final long time;
+        private final long memory; // 峰值内存 (KB)
+        private CompareResult compareResult; // 输出比对结果 (未传入检查器或运行未正常结束时为空)
+
+        /**
+         * 是否未通过 (运行错误、超时、超内存、输出超限，或已比对出答案错误)
+         */
+        boolean isFailed() {
+            return status != SandboxRunStatusEnum.NORMAL
+                    || (compareResult != null && !compareResult.isAccepted());
+        }
+    }
+
+    // === 沙箱实现 ===
+
+    /**
+     * 沙箱借出后、开始判题前调用
+     */
+    protected void onBorrow(String sandboxId) {
+    }
+
+    /**
+     * 判题结束、归还沙箱前调用 (无论是否异常)
+     */
+    protected void beforeRelease(String sandboxId) {
+    }
+
+    /**
+     * 追加在 oj-runner 参数后的隔离选项 (以空格开头；Docker 沙箱由容器本身隔离，不需要)
+     */
+    protected String runnerIsolation() {
+        return "";
+    }
+
+    /**
+     * 用户程序在该沙箱中的运行身份 (uid/gid 相同；Docker 沙箱由容器隔离，统一为 nobody)
+     */
+    protected int runUid(String sandboxId) {
+        return Constants.SANDBOX_RUN_UID;
+    }
+
+    /**
+     * 同一沙箱内所有进程共享的内存上限 (MB，0 表示不共享上限；Docker 沙箱为容器的内存上限)
+     */
+    protected long sharedMemoryLimitMb() {
+        return Constants.SANDBOX_MEMORY_LIMIT / (1024 * 1024);
+    }
+
+    /**
+     * 特判程序的运行身份 (Docker 沙箱使用与用户程序不同的身份，同一容器内并行运行的用户程序不能通过 /proc 读取它打开的文件)
+     */
+    protected int checkerUid(String sandboxId) {
+        return Constants.SANDBOX_CHECKER_UID;
+    }
+
+    /**
+     * 编译用户代码和特判程序的命令 (Docker 沙箱直接在容器内编译)
+     */
+    protected String[] compileCommand(String sandboxId, String compileCmd) {
+        return compileCmd.split(" ");
+    }
+
+    /**
+     * 将 tar 包解压到沙箱内的指定目录 (相对工作目录，目录必须已存在)
+     */
+    protected abstract void uploadTar(String sandboxId, InputStream tar, String relativeDir) throws IOException;
+
+    /**
+     * 将沙箱内的文件或目录打包下载 (tar 格式，路径相对工作目录)
+     * 路径为 "." 时只打包目录里的内容 (条目为相对路径)，为文件时条目名为文件名
+     */
+    protected abstract byte[] downloadArchive(String sandboxId, String relativePath) throws IOException;
+
+    /**
+     * 在沙箱内执行命令 (使用沙箱默认超时)
+     */
+    protected ExecMessage execCmd(String sandboxId, String[] cmd) {
+        return execCmd(sandboxId, cmd, Constants.SANDBOX_TIME_OUT);
+    }
+
+    /**
+     * 在沙箱内执行命令
+     * @param timeoutMillis 等待命令结束的最长时间 (毫秒)
+     */
+    protected ExecMessage execCmd(String sandboxId, String[] cmd, long timeoutMillis) {
+        return execCmd(sandboxId, cmd, timeoutMillis, outputLimitKb * 1024, false);
+    }
+
+    /**
+     * 在沙箱工作目录下执行命令
+     * @param timeoutMillis 等待命令结束的最长时间 (毫秒)
+     * @param limitBytes stdout 与 stderr 合计的上限 (字节)
+     * @param rawOutput 是否保留未解码的 stdout (放在 rawOutput 中)
+     */
+    protected abstract ExecMessage execCmd(String sandboxId, String[] cmd, long timeoutMillis, int limitBytes, boolean rawOutput);
+
+    /**
+     * 简单的静态代码检查辅助类
+     */
+    @Data
+    private static class FoundWord {
+        String word;
+        public FoundWord(String word) { this.word = word; }
+    }
+
+    /**
+     * 检查方法：支持正则、分语言
+     */
+    private FoundWord checkMaliciousCode(String code, String language) {
+        if (StrUtil.isBlank(code)) {
+            return null;
+        }
+        String langKey = language.toLowerCase().trim();
+        List<Pattern> patterns = SECURITY_RULES.get(langKey);
+
+        // 如果没有该语言的规则，默认不检查或使用通用规则（视策略而定）
+        if (patterns == null) {
+            return null;
+        }
+
+        for (Pattern pattern : patterns) {
+            // 使用 Matcher 进行正则匹配
+            if (pattern.matcher(code).find()) {
+                return new FoundWord(pattern.pattern()); // 返回匹配到的正则模式
+            }
+        }
+        return null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,419 @@
+package com.liren.judge.sandbox.impl;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.StrUtil;
+import com.liren.common.core.constant.Constants;
+import com.liren.judge.sandbox.pool.WorkspacePool;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * 本机代码沙箱 (不经过 Docker，直接在判题机上运行)
+ * 每个沙箱是 WorkspacePool 中的一个工作目录，命令由判题服务直接启动 (判题服务需要以 root 运行)；
+ * 用户程序和编译器都由 oj-runner 在新的命名空间、cgroup v2 子组和 seccomp 过滤器中，以工作目录专属的 uid 运行，
+ * 并 pivot_root 到只包含只读工具链和本工作目录的最小根目录，看不到判题机上的其他文件和其他工作目录；
+ * 省去容器池、docker exec 和文件拷贝的开销
+ * 判题机上需要安装与沙箱镜像相同的 oj-runner、Java 常驻启动器和各语言的编译/运行环境
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "oj.judge.sandbox.type", havingValue = "native")
+public class NativeCodeSandbox extends AbstractCodeSandbox {
+
+    @Autowired
+    private WorkspacePool workspacePool;
+
+    /**
+     * 用户程序所在 cgroup 的父目录 (cgroup v2，需开启 memory 和 pids 控制器)，为空时不使用 cgroup
+     */
+    @Value("${oj.judge.native.cgroup-dir:/sys/fs/cgroup/oj-judge}")
+    private String cgroupDir;
+
+    /**
+     * 单个用户进程组的内存兜底上限 (MB)，题目的内存限制仍按峰值内存判定
+     */
+    @Value("${oj.judge.native.memory-max-mb:512}")
+    private long memoryMaxMb;
+
+    /**
+     * 单个用户进程组的进程/线程数上限 (防止 Fork 炸弹，JVM 的线程也计算在内)
+     */
+    @Value("${oj.judge.native.pids-max:128}")
+    private int pidsMax;
+
+    /**
+     * 额外只读挂载到最小根目录的路径 (逗号分隔，/usr、/lib、/etc、/opt 等已默认挂载)
+     */
+    @Value("${oj.judge.native.readonly-paths:}")
+    private String readonlyPaths;
+
+    // 读取命令输出的线程池 (每条命令占用 stdout、stderr 两个线程)
+    private final ExecutorService ioExecutor =
+            Executors.newCachedThreadPool(new NamedThreadFactory("sandbox-native-io-", true));
+
+    // 命令结束后等待输出读取完毕的最长时间 (ms)
+    private static final long DRAIN_TIMEOUT_MS = 1000;
+
+    // 结束命令时发出 SIGTERM 后留给 oj-runner 清理的时间 (ms)
+    private static final long DESTROY_GRACE_MILLIS = 100;
+
+    @PreDestroy
+    public void shutdownIo() {
+        ioExecutor.shutdownNow();
+    }
+
+    @Override
+    protected String runnerIsolation() {
+        StringBuilder options = new StringBuilder(" -n -r -s");
+        for (String path : StrUtil.splitTrim(readonlyPaths, ',')) {
+            options.append(" -R ").append(path);
+        }
+        if (StrUtil.isNotBlank(cgroupDir)) {
+            options.append(" -g ").append(cgroupDir.trim())
+                    .append(" -M ").append(memoryMaxMb * 1024 * 1024)
+                    .append(" -P ").append(pidsMax);
+        }
+        return options.toString();
+    }
+
+    @Override
+    protected int runUid(String workspace) {
+        return workspacePool.runUid(workspace);
+    }
+
+    /**
+     * 每次运行都有自己的子 cgroup (内存兜底上限 memory-max-mb)，用例之间不共享内存上限
+     */
+    @Override
+    protected long sharedMemoryLimitMb() {
+        return 0;
+    }
+
+    /**
+     * 特判程序也以工作目录专属的 uid 运行 (要读取工作目录中的输入文件)；
+     * 每次运行都在独立的 pid 命名空间里，用例进程看不到特判程序打开的文件
+     */
+    @Override
+    protected int checkerUid(String workspace) {
+        return workspacePool.runUid(workspace);
+    }
+
+    /**
+     * 借出期间工作目录对本工作目录的运行用户开放读取 (root:uid 0750)，其他工作目录的用户仍无法访问
+     */
+    @Override
+    protected void onBorrow(String workspace) {
+        Path slot = Paths.get(workspace);
+        try {
+            Files.setAttribute(slot, "unix:gid", runUid(workspace), LinkOption.NOFOLLOW_LINKS);
+            Files.setPosixFilePermissions(slot, PosixFilePermissions.fromString("rwxr-x---"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("开放工作目录失败: " + workspace, e);
+        }
+    }
+
+    /**
+     * 编译器 (用户代码和特判程序) 同样在隔离环境中以运行用户的身份运行 (源码可能通过 #include 等方式读取判题机上的文件)
+     * 编译期间临时允许运行用户写入工作目录，结束后编译产物全部收归 root 并去掉组/其他用户的写权限，
+     * 运行用例时用户程序不能改动编译产物
+     */
+    @Override
+    protected String[] compileCommand(String workspace, String compileCmd) {
+        int uid = runUid(workspace);
+        String command = "chmod 770 . && " + Constants.SANDBOX_RUNNER
+                + " -t " + Constants.SANDBOX_TIME_OUT + " -u " + uid + runnerIsolation()
+                + " " + compileCmd + "; rc=$?; { chown -hR 0:0 . && chmod -R go-w . && chgrp " + uid + " .; } || rc=125;"
+                + " exit $rc";
+        return new String[]{"sh", "-c", command};
+    }
+
+    @Override
+    protected ExecMessage execCmd(String workspace, String[] cmd, long timeoutMillis, int limitBytes, boolean rawOutput) {
+        ExecMessage result = new ExecMessage();
+        Process process = null;
+        try {
+            process = new ProcessBuilder(cmd)
+                    .directory(new File(workspace))
+                    .redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")))
+                    .start();
+            Process running = process;
+            // stdout 与 stderr 共用一份上限
+            AtomicInteger budget = new AtomicInteger(limitBytes);
+            BoundedReader stdout = new BoundedReader(process.getInputStream(), budget, () -> destroyTree(running));
+            BoundedReader stderr = new BoundedReader(process.getErrorStream(), budget, () -> destroyTree(running));
+            Future<?> stdoutFuture = ioExecutor.submit(stdout);
+            Future<?> stderrFuture = ioExecutor.submit(stderr);
+
+            boolean completed = process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (!completed) {
+                destroyTree(process);
+                process.waitFor(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+            awaitDrain(stdoutFuture);
+            awaitDrain(stderrFuture);
+
+            boolean exceeded = stdout.isExceeded() || stderr.isExceeded();
+            // 输出超限时读取线程已结束进程，不算超时
+            result.setTimeout(!completed && !exceeded);
+            result.setOutputExceeded(exceeded);
+            result.setExitValue(process.isAlive() ? -1 : process.exitValue());
+            if (rawOutput) {
+                result.setRawOutput(stdout.getBytes());
+            } else {
+                result.setMessage(new String(stdout.getBytes(), StandardCharsets.UTF_8));
+            }
+            result.setErrorMessage(new String(stderr.getBytes(), StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            destroyTree(process);
+            result.setExitValue(-1);
+            result.setErrorMessage("等待命令结束被中断");
+        } catch (IOException e) {
+            result.setExitValue(-1);
+            result.setErrorMessage(e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 结束命令及其所有子进程
+     * 先发 SIGTERM：oj-runner 会结束用户程序的进程组、cgroup 和 pid 命名空间并清理子 cgroup；稍后再强制结束剩下的进程
+     */
+    private static void destroyTree(Process process) {
+        if (process == null) {
+            return;
+        }
+        process.descendants().forEach(ProcessHandle::destroy);
+        process.destroy();
+        try {
+            process.waitFor(DESTROY_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * 等待输出读取完毕 (后台子进程仍持有管道时不再等待)
+     */
+    private static void awaitDrain(Future<?> future) throws InterruptedException {
+        try {
+            future.get(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                throw (InterruptedException) e;
+            }
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * 解压 tar 包到工作目录下的指定目录 (只还原普通文件和目录，按条目设置权限)
+     */
+    @Override
+    protected void uploadTar(String workspace, InputStream in, String relativeDir) throws IOException {
+        Path dir = Paths.get(workspace).resolve(relativeDir).normalize();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(in)) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                Path target = dir.resolve(entry.getName()).normalize();
+                if (!target.startsWith(dir) || hasSymbolicLink(dir, target)) {
+                    throw new IOException("非法的 tar 条目: " + entry.getName());
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                } else if (isRegularFile(entry)) {
+                    Files.createDirectories(target.getParent());
+                    Files.deleteIfExists(target);
+                    Files.copy(tar, target);
+                } else {
+                    continue;
+                }
+                Files.setPosixFilePermissions(target, toPermissions(entry.getMode()));
+            }
+        }
+    }
+
+    /**
+     * 将工作目录下的文件或目录打包 (目录只打包其中的内容，条目为相对路径；文件的条目名为文件名)
+     */
+    @Override
+    protected byte[] downloadArchive(String workspace, String relativePath) throws IOException {
+        Path target = Paths.get(workspace).resolve(relativePath).normalize();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(bos)) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            if (Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS)) {
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(target)) {
+                    files = walk.filter(path -> !path.equals(target)).collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    putTarEntry(tar, file, target.relativize(file).toString());
+                }
+            } else {
+                putTarEntry(tar, target, target.getFileName().toString());
+            }
+            tar.finish();
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * 写入一个文件或目录条目 (跳过符号链接等特殊文件)
+     */
+    private static void putTarEntry(TarArchiveOutputStream tar, Path file, String name) throws IOException {
+        boolean directory = Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS);
+        if (!directory && !Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        TarArchiveEntry entry = new TarArchiveEntry(directory ? name + "/" : name);
+        int mode = toMode(Files.getPosixFilePermissions(file, LinkOption.NOFOLLOW_LINKS));
+        entry.setMode((directory ? 040000 : 0100000) | mode);
+        if (!directory) {
+            entry.setSize(Files.size(file));
+        }
+        tar.putArchiveEntry(entry);
+        if (!directory) {
+            Files.copy(file, tar);
+        }
+        tar.closeArchiveEntry();
+    }
+
+    /**
+     * 是否为普通文件条目 (isFile() 对名字不以 / 结尾的链接、设备等条目也返回 true)
+     */
+    private static boolean isRegularFile(TarArchiveEntry entry) {
+        return entry.isFile() && !entry.isSymbolicLink() && !entry.isLink() && !entry.isCharacterDevice()
+                && !entry.isBlockDevice() && !entry.isFIFO();
+    }
+
+    /**
+     * target 到 dir 之间 (含 target) 是否有符号链接 (避免解压时经由链接写到工作目录以外)
+     */
+    private static boolean hasSymbolicLink(Path dir, Path target) {
+        for (Path path = target; path != null && !path.equals(dir); path = path.getParent()) {
+            if (Files.isSymbolicLink(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 按 rwxrwxrwx 顺序排列，对应权限位从高到低
+    private static final PosixFilePermission[] PERMISSION_BITS = {
+            PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE,
+            PosixFilePermission.GROUP_READ, PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_EXECUTE,
+            PosixFilePermission.OTHERS_READ, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_EXECUTE
+    };
+
+    private static Set<PosixFilePermission> toPermissions(int mode) {
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (int i = 0; i < PERMISSION_BITS.length; i++) {
+            if ((mode & (0400 >> i)) != 0) {
+                permissions.add(PERMISSION_BITS[i]);
+            }
+        }
+        return permissions;
+    }
+
+    private static int toMode(Set<PosixFilePermission> permissions) {
+        int mode = 0;
+        for (int i = 0; i < PERMISSION_BITS.length; i++) {
+            if (permissions.contains(PERMISSION_BITS[i])) {
+                mode |= 0400 >> i;
+            }
+        }
+        return mode;
+    }
+
+    /**
+     * 有上限的输出读取 (超过上限后只保留上限以内的部分，并立即结束命令)
+     */
+    private static class BoundedReader implements Runnable {
+
+        private final InputStream in;
+
+        // 剩余可读取的字节数 (同一命令的 stdout、stderr 共用)
+        private final AtomicInteger budget;
+
+        private final Runnable onExceeded;
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private final AtomicBoolean exceeded = new AtomicBoolean(false);
+
+        BoundedReader(InputStream in, AtomicInteger budget, Runnable onExceeded) {
+            this.in = in;
+            this.budget = budget;
+            this.onExceeded = onExceeded;
+        }
+
+        @Override
+        public void run() {
+            byte[] chunk = new byte[64 * 1024];
+            try (InputStream stream = in) {
+                int n;
+                while ((n = stream.read(chunk)) >= 0) {
+                    int size = n;
+                    int granted = budget.getAndUpdate(remaining -> Math.max(0, remaining - size));
+                    synchronized (buffer) {
+                        buffer.write(chunk, 0, Math.min(n, granted));
+                    }
+                    if (n > granted) {
+                        exceeded.set(true);
+                    }
+                    if (exceeded.get()) {
+                        onExceeded.run();
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                // 进程被结束后管道关闭，已读到的内容仍然有效
+            }
+        }
+
+        boolean isExceeded() {
+            return exceeded.get();
+        }
+
+        byte[] getBytes() {
+            synchronized (buffer) {
+                return buffer.toByteArray();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.liren.judge.sandbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 单个用例的运行结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CaseResult {
+    /**
+     * 运行状态 (对应SandboxRunStatusEnum)
+     */
+    private Integer status;
+
+    /**
+     * 用户输出 (沙箱已比对过或运行未正常结束时为空)
+     */
+    private String output;
+
+    /**
+     * 输出是否正确 (为空表示沙箱未比对，由判题策略比对 output)
+     */
+    private Boolean accepted;
+
+    /**
+     * 未通过的原因 (运行错误信息或首个差异位置)
+     */
+    private String message;
+
+    /**
+     * CPU 时间 (ms)
+     */
+    private Long time;
+
+    /**
+     * 峰值内存 (KB)
+     */
+    private Long memory;
+}
@@ -1,5 +1,6 @@
 package com.liren.judge.sandbox.model;
 
+import com.liren.judge.sandbox.CaseChecker;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -26,4 +27,34 @@ public class ExecuteCodeRequest {
      * 输入用例列表 (比如: ["1 2", "3 4"])
      */
     private List<String> inputList;
-}
\ No newline at end of file
+
+    /**
+     * 时间限制 (ms)，为空时使用沙箱默认超时
+     */
+    private Integer timeLimit;
+
+    /**
+     * 内存限制 (MB)，为空时只受容器内存上限约束
+     */
+    private Integer memoryLimit;
+
+    /**
+     * 是否在第一个未通过的用例处停止 (ACM 模式)，否则运行全部用例 (OI 模式)
+     */
+    private boolean stopOnFirstFailure;
+
+    /**
+     * 用例输出检查器，为空时只收集输出，由判题策略统一比对
+     */
+    private transient CaseChecker caseChecker;
+
+    /**
+     * 特判程序源码 (C++)，不为空时由容器内的特判程序判定每个用例，不再使用 caseChecker
+     */
+    private String checkerCode;
+
+    /**
+     * 标准输出列表 (对应 inputList，仅特判时需要)
+     */
+    private List<String> answerList;
+}
@@ -13,9 +13,9 @@ import java.util.List;
 @AllArgsConstructor
 public class ExecuteCodeResponse {
     /**
-     * 输出用例列表 (对应 inputList)
+     * 各用例的运行结果 (按 inputList 顺序；提前停止时只包含已运行的用例)
      */
-    private List<String> outputList;
+    private List<CaseResult> caseResultList;
 
     /**
      * 执行信息 (如: 编译错误信息)
@@ -23,12 +23,12 @@ public class ExecuteCodeResponse {
     private String message;
 
     /**
-     * 执行状态 (对应SandboxRunStatusEnum，1-正常, 2-运行错误, 3-编译错误, 4-系统错误)
+     * 执行状态 (对应SandboxRunStatusEnum，1-用例已运行 (各用例状态见 caseResultList), 3-编译错误, 4-系统错误)
      */
     private Integer status;
 
     /**
-     * 判题信息 (时间、内存)
+     * 判题信息 (已运行用例的最大时间、最大内存)
      */
     private JudgeInfo judgeInfo;
 }
\ No newline at end of file
@@ -15,7 +15,7 @@ public class JudgeInfo {
     private Long memory;
 
     /**
-     * 消耗时间 (ms)
+     * 消耗时间 (ms)，取各用例 CPU 时间 (用户态 + 内核态) 的最大值
      */
     private Long time;
 }
\ No newline at end of file
@@ -0,0 +1,367 @@
+package com.liren.judge.sandbox.pool;
+
+import cn.hutool.core.thread.ExecutorBuilder;
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.CreateContainerCmd;
+import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.github.dockerjava.api.model.HostConfig;
+import com.liren.common.core.constant.Constants;
+import com.liren.common.core.result.ResultCode;
+import com.liren.judge.exception.JudgeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 弹性沙箱容器池
+ * 1. 常驻 min-size 个容器，有借用方排队时按需扩容，最多 max-size 个
+ * 2. 空闲超过 idle-timeout 的容器会被回收，直到回到 min-size
+ * 3. 定时探活空闲容器，已经停止的容器直接替换
+ * 4. 借用超过 borrow-timeout 仍拿不到容器时抛出 SANDBOX_BUSY，由调用方决定是否重试
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "oj.judge.sandbox.type", havingValue = "docker", matchIfMissing = true)
+public class ContainerPool implements SandboxPool {
+
+    @Autowired
+    private DockerClient dockerClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 常驻容器数 (兼容旧配置 oj.judge.docker.pool-size)
+     */
+    @Value("${oj.judge.docker.pool.min-size:${oj.judge.docker.pool-size:5}}")
+    private int minSize;
+
+    /**
+     * 容器数上限
+     */
+    @Value("${oj.judge.docker.pool.max-size:20}")
+    private int maxSize;
+
+    /**
+     * 借用容器最长等待时间 (ms)
+     */
+    @Value("${oj.judge.docker.pool.borrow-timeout-ms:30000}")
+    private long borrowTimeoutMs;
+
+    /**
+     * 超过 min-size 的容器空闲多久后回收 (秒)
+     */
+    @Value("${oj.judge.docker.pool.idle-timeout-seconds:300}")
+    private long idleTimeoutSeconds;
+
+    /**
+     * 同时创建容器的线程数 (启动预热、扩容共用)
+     */
+    @Value("${oj.judge.docker.pool.create-parallelism:4}")
+    private int createParallelism;
+
+    // 空闲容器 (头部是最近归还的，优先借出；尾部是最久未用的，优先回收)
+    private final BlockingDeque<String> idleContainers = new LinkedBlockingDeque<>();
+
+    // 容器最近一次归还的时间
+    private final Map<String, Long> lastReturnTime = new ConcurrentHashMap<>();
+
+    // 容器总数 (包含正在创建的)
+    private final AtomicInteger totalCount = new AtomicInteger();
+
+    // 已借出的容器数
+    private final AtomicInteger borrowedCount = new AtomicInteger();
+
+    // 正在等待容器的借用方数量
+    private final AtomicInteger waitingCount = new AtomicInteger();
+
+    // 后台创建/销毁容器的线程池
+    private ExecutorService maintainExecutor;
+
+    // 是否已经发布过 "容器池就绪" 事件
+    private final AtomicBoolean readyPublished = new AtomicBoolean();
+
+    private Timer borrowTimer;
+    private Counter borrowTimeoutCounter;
+
+    @PostConstruct
+    public void init() {
+        if (maxSize < minSize) {
+            maxSize = minSize;
+        }
+        int threads = Math.max(1, createParallelism);
+        maintainExecutor = ExecutorBuilder.create()
+                .setCorePoolSize(threads)
+                .setMaxPoolSize(threads)
+                .setThreadFactory(new NamedThreadFactory("sandbox-pool-", true))
+                .build();
+        registerMetrics();
+
+        // 异步并行预热，不阻塞 Spring 启动；第一个容器就绪后发布事件，判题消费者随即开始工作
+        log.info("开始异步预热 Docker 容器池，常驻: {}，上限: {}", minSize, maxSize);
+        for (int i = 0; i < minSize; i++) {
+            totalCount.incrementAndGet();
+            maintainExecutor.execute(this::createInto);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        maintainExecutor.shutdownNow();
+        // 只清理空闲容器，借出中的容器由正在判题的线程结束后归还时处理
+        String containerId;
+        while ((containerId = idleContainers.poll()) != null) {
+            removeQuietly(containerId);
+        }
+    }
+
+    /**
+     * 借用一个容器
+     * @throws JudgeException 超过 borrow-timeout 仍没有可用容器
+     */
+    @Override
+    public String borrow() throws InterruptedException {
+        long start = System.nanoTime();
+        String containerId = idleContainers.pollFirst();
+        if (containerId == null) {
+            // 没有空闲容器：尝试扩容，然后排队等待 (新容器或其他判题线程归还的容器，谁先到用谁)
+            waitingCount.incrementAndGet();
+            try {
+                tryGrow();
+                containerId = idleContainers.pollFirst(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+            } finally {
+                waitingCount.decrementAndGet();
+            }
+        }
+        borrowTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (containerId == null) {
+            borrowTimeoutCounter.increment();
+            log.warn("等待容器超时 ({} ms)，当前容器数: {}，已借出: {}", borrowTimeoutMs, totalCount.get(), borrowedCount.get());
+            throw new JudgeException(ResultCode.SANDBOX_BUSY);
+        }
+        borrowedCount.incrementAndGet();
+        return containerId;
+    }
+
+    /**
+     * 归还容器
+     * @param broken 容器是否已损坏 (损坏的容器直接销毁，必要时补充新容器)
+     */
+    @Override
+    public void release(String containerId, boolean broken) {
+        borrowedCount.decrementAndGet();
+        if (broken) {
+            log.warn("容器已损坏，销毁并替换: {}", containerId);
+            discard(containerId);
+            return;
+        }
+        lastReturnTime.put(containerId, System.currentTimeMillis());
+        idleContainers.offerFirst(containerId);
+    }
+
+    /**
+     * 常驻容器数 (供消费者并发度等参考)
+     */
+    @Override
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * 容器总数上限 (供消费者并发度等参考)
+     */
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 定时维护：探活空闲容器、回收多余的空闲容器、补足常驻容器
+     */
+    @Scheduled(fixedDelayString = "${oj.judge.docker.pool.health-check-interval-ms:30000}")
+    public void maintain() {
+        long now = System.currentTimeMillis();
+        long idleTimeoutMs = TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+
+        // 从最久未用的开始检查；检查期间被借走的容器直接跳过
+        List<String> snapshot = new ArrayList<>(idleContainers);
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            String containerId = snapshot.get(i);
+            if (!idleContainers.remove(containerId)) {
+                continue;
+            }
+
+            long idleMs = now - lastReturnTime.getOrDefault(containerId, now);
+            if (idleMs > idleTimeoutMs && totalCount.get() > minSize) {
+                log.info("回收空闲容器: {}，空闲 {} 秒", containerId, idleMs / 1000);
+                totalCount.decrementAndGet();
+                lastReturnTime.remove(containerId);
+                maintainExecutor.execute(() -> removeQuietly(containerId));
+                continue;
+            }
+
+            if (!isAlive(containerId)) {
+                log.warn("容器探活失败，销毁并替换: {}", containerId);
+                discard(containerId);
+                continue;
+            }
+            idleContainers.offerLast(containerId);
+        }
+
+        // 补足常驻容器；仍有借用方排队时继续扩容
+        while (totalCount.get() < minSize) {
+            totalCount.incrementAndGet();
+            maintainExecutor.execute(this::createInto);
+        }
+        if (waitingCount.get() > 0) {
+            tryGrow();
+        }
+    }
+
+    /**
+     * 未达上限时在后台新建一个容器
+     */
+    private void tryGrow() {
+        int current;
+        do {
+            current = totalCount.get();
+            if (current >= maxSize) {
+                return;
+            }
+        } while (!totalCount.compareAndSet(current, current + 1));
+
+        log.info("容器池扩容: {} -> {}", current, current + 1);
+        maintainExecutor.execute(this::createInto);
+    }
+
+    /**
+     * 销毁容器，数量低于常驻值时补一个新的
+     */
+    private void discard(String containerId) {
+        lastReturnTime.remove(containerId);
+        maintainExecutor.execute(() -> {
+            removeQuietly(containerId);
+            if (totalCount.get() <= minSize || waitingCount.get() > 0) {
+                createInto(); // 名额保留给替换的新容器
+            } else {
+                totalCount.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * 创建容器并放入空闲队列 (调用前已经占用了 totalCount 名额，失败时释放)
+     */
+    private void createInto() {
+        try {
+            String containerId = createAndStartContainer();
+            lastReturnTime.put(containerId, System.currentTimeMillis());
+            idleContainers.offerFirst(containerId);
+            if (readyPublished.compareAndSet(false, true)) {
+                log.info("第一个沙箱容器已就绪: {}", containerId);
+                eventPublisher.publishEvent(new SandboxPoolReadyEvent(this));
+            }
+        } catch (Exception e) {
+            totalCount.decrementAndGet();
+            log.error("创建容器失败", e);
+        }
+    }
+
+    /**
+     * 创建并启动一个常驻容器
+     */
+    private String createAndStartContainer() {
+        HostConfig hostConfig = new HostConfig();
+        hostConfig.withMemory(Constants.SANDBOX_MEMORY_LIMIT);
+        hostConfig.withCpuCount(Constants.SANDBOX_CPU_COUNT);
+        hostConfig.withPidsLimit(64L); // 防止 Fork 炸弹
+
+        CreateContainerCmd containerCmd = dockerClient.createContainerCmd(Constants.SANDBOX_IMAGE)
+                .withHostConfig(hostConfig)
+                .withNetworkDisabled(true) // 禁网
+                .withAttachStdin(true)
+                .withAttachStderr(true)
+                .withAttachStdout(true)
+                .withTty(true)
+                .withWorkingDir(Constants.SANDBOX_WORK_DIR) // 指定固定工作目录
+                .withCmd("tail", "-f", "/dev/null"); // 关键：让容器死循环运行，不退出
+
+        CreateContainerResponse response = containerCmd.exec();
+        String containerId = response.getId();
+        dockerClient.startContainerCmd(containerId).exec();
+        log.info("创建新容器: {}", containerId);
+        return containerId;
+    }
+
+    /**
+     * 探活：容器仍处于运行状态
+     */
+    private boolean isAlive(String containerId) {
+        try {
+            InspectContainerResponse.ContainerState state = dockerClient.inspectContainerCmd(containerId).exec().getState();
+            return Boolean.TRUE.equals(state.getRunning());
+        } catch (Exception e) {
+            log.warn("容器探活异常: {}", containerId, e);
+            return false;
+        }
+    }
+
+    private void removeQuietly(String containerId) {
+        try {
+            dockerClient.removeContainerCmd(containerId).withForce(true).exec();
+        } catch (Exception e) {
+            log.warn("删除容器失败: {}", containerId, e);
+        }
+    }
+
+    private void registerMetrics() {
+        borrowTimer = Timer.builder("oj.sandbox.pool.borrow.wait")
+                .description("借用沙箱容器的等待时间")
+                .register(meterRegistry);
+        borrowTimeoutCounter = Counter.builder("oj.sandbox.pool.borrow.timeout")
+                .description("借用沙箱容器超时次数")
+                .register(meterRegistry);
+        Gauge.builder("oj.sandbox.pool.size", totalCount, AtomicInteger::get)
+                .description("容器总数")
+                .register(meterRegistry);
+        Gauge.builder("oj.sandbox.pool.active", borrowedCount, AtomicInteger::get)
+                .description("已借出的容器数")
+                .register(meterRegistry);
+        Gauge.builder("oj.sandbox.pool.idle", idleContainers, BlockingDeque::size)
+                .description("空闲容器数")
+                .register(meterRegistry);
+        Gauge.builder("oj.sandbox.pool.pending", waitingCount, AtomicInteger::get)
+                .description("等待容器的借用方数量")
+                .register(meterRegistry);
+        Gauge.builder("oj.sandbox.pool.utilization", this, pool -> (double) pool.borrowedCount.get() / pool.maxSize)
+                .description("容器池使用率 (已借出 / 上限)")
+                .register(meterRegistry);
+    }
+}
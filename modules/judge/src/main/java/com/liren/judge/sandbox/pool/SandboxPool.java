@@ -0,0 +1,30 @@
+package com.liren.judge.sandbox.pool;
+
+/**
+ * 沙箱池 (Docker 容器池或本机工作目录池，由 oj.judge.sandbox.type 选择)
+ * 每次提交借用一个沙箱，判题结束后归还
+ */
+public interface SandboxPool {
+
+    /**
+     * 借用一个沙箱，返回沙箱ID
+     * @throws com.liren.judge.exception.JudgeException 超过 borrow-timeout 仍没有可用沙箱 (SANDBOX_BUSY)
+     */
+    String borrow() throws InterruptedException;
+
+    /**
+     * 归还沙箱
+     * @param broken 沙箱是否已损坏 (损坏的沙箱由池重建)
+     */
+    void release(String sandboxId, boolean broken);
+
+    /**
+     * 常驻沙箱数 (供消费者并发度等参考)
+     */
+    int getMinSize();
+
+    /**
+     * 沙箱总数上限 (供消费者并发度等参考)
+     */
+    int getMaxSize();
+}
@@ -0,0 +1,12 @@
+package com.liren.judge.sandbox.pool;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 沙箱池中第一个沙箱就绪 (可以开始判题) 时发布的事件
+ */
+public class SandboxPoolReadyEvent extends ApplicationEvent {
+    public SandboxPoolReadyEvent(SandboxPool source) {
+        super(source);
+    }
+}
@@ -0,0 +1,167 @@
+package com.liren.judge.sandbox.pool;
+
+import com.liren.common.core.result.ResultCode;
+import com.liren.judge.exception.JudgeException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本机沙箱的工作目录池
+ * 1. 固定 pool-size 个工作目录 ({work-dir}/slot-0 ...)，沙箱ID 即工作目录的绝对路径
+ * 2. 每次归还都删除并重建工作目录，用户程序留下的文件 (包括隐藏文件、符号链接) 不会带到下一次提交
+ * 3. 借用超过 borrow-timeout 仍拿不到工作目录时抛出 SANDBOX_BUSY，由调用方决定是否重试
+ * 4. 每个工作目录有专属的运行用户 (uid = base-uid + 序号)，空闲时目录为 root 独占 (0700)，
+ *    借出后才对本目录的运行用户开放，一个工作目录里的用户程序读不到另一个工作目录的文件
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "oj.judge.sandbox.type", havingValue = "native")
+public class WorkspacePool implements SandboxPool {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 工作目录的根目录
+     */
+    @Value("${oj.judge.native.work-dir:/var/lib/oj-judge/sandbox}")
+    private String workDir;
+
+    /**
+     * 工作目录数 (同时判题的提交数上限)
+     */
+    @Value("${oj.judge.native.pool-size:4}")
+    private int poolSize;
+
+    /**
+     * 借用工作目录最长等待时间 (ms)
+     */
+    @Value("${oj.judge.native.borrow-timeout-ms:30000}")
+    private long borrowTimeoutMs;
+
+    /**
+     * 第一个工作目录的运行用户 uid/gid (之后依次加 1，不能与判题机上已有的用户重叠)
+     */
+    @Value("${oj.judge.native.base-uid:61000}")
+    private int baseUid;
+
+    // 空闲的工作目录
+    private final BlockingDeque<String> idleWorkspaces = new LinkedBlockingDeque<>();
+
+    // 各工作目录的运行用户 (Key: 工作目录，启动后不再变化)
+    private final Map<String, Integer> runUids = new HashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        poolSize = Math.max(1, poolSize);
+        Path root = Paths.get(workDir).toAbsolutePath();
+        Files.createDirectories(root);
+        for (int i = 0; i < poolSize; i++) {
+            Path slot = root.resolve("slot-" + i);
+            reset(slot);
+            runUids.put(slot.toString(), baseUid + i);
+            idleWorkspaces.offerLast(slot.toString());
+        }
+        log.info("本机沙箱工作目录已就绪: {}，数量: {}", root, poolSize);
+    }
+
+    /**
+     * 工作目录在启动时同步创建，应用启动完成后即可开始判题
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        eventPublisher.publishEvent(new SandboxPoolReadyEvent(this));
+    }
+
+    @Override
+    public String borrow() throws InterruptedException {
+        String workspace = idleWorkspaces.pollFirst(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        if (workspace == null) {
+            log.warn("等待工作目录超时 ({} ms)，工作目录数: {}", borrowTimeoutMs, poolSize);
+            throw new JudgeException(ResultCode.SANDBOX_BUSY);
+        }
+        return workspace;
+    }
+
+    @Override
+    public void release(String workspace, boolean broken) {
+        try {
+            reset(Paths.get(workspace));
+        } catch (IOException | UncheckedIOException e) {
+            // 重建失败的工作目录不再借出，避免下一次提交读到残留文件
+            log.error("重建工作目录失败，不再使用: {}", workspace, e);
+            return;
+        }
+        idleWorkspaces.offerFirst(workspace);
+    }
+
+    /**
+     * 工作目录专属的运行用户 uid (gid 相同)
+     */
+    public int runUid(String workspace) {
+        Integer uid = runUids.get(workspace);
+        if (uid == null) {
+            throw new IllegalArgumentException("未知的工作目录: " + workspace);
+        }
+        return uid;
+    }
+
+    @Override
+    public int getMinSize() {
+        return poolSize;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return poolSize;
+    }
+
+    /**
+     * 删除并重建工作目录 (只有 root 可访问，借出后由沙箱对运行用户开放)
+     */
+    private static void reset(Path slot) throws IOException {
+        if (Files.exists(slot)) {
+            // walkFileTree 默认不跟随符号链接，只删除链接本身
+            Files.walkFileTree(slot, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    if (exc != null) {
+                        throw exc;
+                    }
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        Files.createDirectory(slot);
+        Files.setPosixFilePermissions(slot, PosixFilePermissions.fromString("rwx------"));
+    }
+}
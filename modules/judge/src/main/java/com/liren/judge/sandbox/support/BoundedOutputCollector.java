@@ -0,0 +1,78 @@
+package com.liren.judge.sandbox.support;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 有上限的 exec 输出收集器
+ * 1. stdout / stderr 只按字节累积，结束时统一解码一次，不为每个 Frame 创建 String
+ * 2. stdout 与 stderr 合计超过上限后立即截断并关闭 attach 流，由调用方负责杀掉仍在运行的进程
+ */
+@Slf4j
+public class BoundedOutputCollector extends ResultCallback.Adapter<Frame> {
+
+    private final int limitBytes;
+
+    private final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+
+    private final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+    private volatile boolean exceeded = false;
+
+    public BoundedOutputCollector(int limitBytes) {
+        this.limitBytes = limitBytes;
+    }
+
+    @Override
+    public void onNext(Frame frame) {
+        if (exceeded) {
+            return;
+        }
+        ByteArrayOutputStream target = frame.getStreamType() == StreamType.STDERR ? stderr : stdout;
+        byte[] payload = frame.getPayload();
+
+        // 上限按 stdout + stderr 合计，避免两路输出各占满一份上限
+        int remaining = limitBytes - stdout.size() - stderr.size();
+        if (payload.length <= remaining) {
+            target.write(payload, 0, payload.length);
+            return;
+        }
+
+        // 超出上限：只保留上限以内的部分，然后停止接收
+        target.write(payload, 0, Math.max(remaining, 0));
+        exceeded = true;
+        try {
+            close();
+        } catch (IOException e) {
+            log.warn("关闭 exec 输出流失败", e);
+        }
+    }
+
+    /**
+     * 输出 (stdout + stderr 合计) 是否超过上限
+     */
+    public boolean isExceeded() {
+        return exceeded;
+    }
+
+    public String getStdout() {
+        return stdout.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 未解码的 stdout (输出本身带有二进制帧格式时使用)
+     */
+    public byte[] getStdoutBytes() {
+        return stdout.toByteArray();
+    }
+
+    public String getStderr() {
+        return stderr.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,323 @@
+package com.liren.judge.sandbox.support;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.ExecCreateCmdResponse;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+import com.liren.common.core.constant.Constants;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 与容器内判题代理 (oj-agent) 的一次会话
+ * 每次提交只 docker exec 一次代理，之后的所有命令都作为请求行写入它的 stdin，
+ * 结果从它的 stdout 按帧读回 (协议见 deploy/sandbox/runner/oj_agent.c)，
+ * 每条命令不再需要 exec 创建/启动/查询三次 Docker API 调用
+ * 多个线程可以同时通过同一个会话运行命令 (用例并行运行时)
+ */
+@Slf4j
+public class JudgeAgentSession implements Closeable {
+
+    // 请求流与响应解析包内可见：单元测试不连接容器，直接读取请求、喂入响应
+    final RequestStream requests = new RequestStream();
+
+    final ResponseCallback callback = new ResponseCallback();
+
+    private final Map<Long, PendingCommand> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    private volatile boolean closed = false;
+
+    // close 只执行一次 (代理自己退出时 closed 已为 true，但仍要结束 stdin 转发线程)
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    JudgeAgentSession() {
+    }
+
+    /**
+     * 在容器内启动代理并等待它就绪
+     * @return 会话；代理没有在 readyTimeoutMillis 内就绪或已退出 (如镜像里没有代理) 时返回 null
+     */
+    public static JudgeAgentSession open(DockerClient dockerClient, String containerId, long readyTimeoutMillis) {
+        JudgeAgentSession session = new JudgeAgentSession();
+        try {
+            ExecCreateCmdResponse exec = dockerClient.execCreateCmd(containerId)
+                    .withAttachStdin(true)
+                    .withAttachStdout(true)
+                    .withAttachStderr(true)
+                    .withCmd(Constants.SANDBOX_AGENT)
+                    .exec();
+            dockerClient.execStartCmd(exec.getId())
+                    .withStdIn(session.requests)
+                    .exec(session.callback);
+            if (session.ready.await(readyTimeoutMillis, TimeUnit.MILLISECONDS) && !session.closed) {
+                return session;
+            }
+            log.warn("判题代理未就绪, 容器: {}", containerId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("启动判题代理失败, 容器: {}", containerId, e);
+        }
+        session.close();
+        return null;
+    }
+
+    /**
+     * 通过代理运行一条 shell 命令 (在容器工作目录下以 sh -c 执行)
+     * @param limitBytes stdout 与 stderr 合计的上限 (字节)，超过后代理立即结束该命令
+     * @param timeoutMillis 等待命令结束的最长时间，超时后不再等待 (命令可能仍在运行)
+     */
+    public CommandResult run(String command, int limitBytes, long timeoutMillis) throws IOException, InterruptedException {
+        if (command.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("命令不能包含换行");
+        }
+        long id = nextId.incrementAndGet();
+        PendingCommand cmd = new PendingCommand();
+        pending.put(id, cmd);
+        try {
+            if (closed) {
+                throw new IOException("判题代理会话已关闭");
+            }
+            requests.send("run " + id + " " + limitBytes + " " + command + "\n");
+            return cmd.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            CommandResult result = new CommandResult();
+            result.setExitCode(-1);
+            result.setTimeout(true);
+            result.setStdout(cmd.stdout.toByteArray());
+            result.setStderr(cmd.stderr.toByteArray());
+            return result;
+        } catch (ExecutionException e) {
+            throw new IOException("判题代理连接中断", e.getCause());
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    /**
+     * 代理是否仍可用 (连接断开后由调用方回退到 docker exec)
+     */
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * 通知代理结束所有仍在运行的命令并退出
+     */
+    @Override
+    public void close() {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+        closed = true;
+        requests.send("exit\n");
+        requests.finish();
+        try {
+            callback.awaitCompletion(1, TimeUnit.SECONDS);
+            callback.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("关闭判题代理连接失败", e);
+        }
+        failPending(new IOException("判题代理会话已关闭"));
+    }
+
+    private void failPending(Exception e) {
+        pending.values().forEach(cmd -> cmd.future.completeExceptionally(e));
+    }
+
+    /**
+     * 一条命令的运行结果
+     */
+    @Data
+    public static class CommandResult {
+        private int exitCode;
+        private boolean outputExceeded; // 输出超过上限 (代理已结束该命令)
+        private boolean timeout;        // 等待超时 (命令可能仍在运行)
+        private byte[] stdout;
+        private byte[] stderr;
+    }
+
+    private static class PendingCommand {
+        private final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        private final CompletableFuture<CommandResult> future = new CompletableFuture<>();
+    }
+
+    /**
+     * 解析代理的响应帧 (Docker 按任意边界切分，未完整的帧留到下次拼接)
+     */
+    class ResponseCallback extends ResultCallback.Adapter<Frame> {
+
+        private byte[] buffer = new byte[64 * 1024];
+
+        private int length = 0;
+
+        @Override
+        public void onNext(Frame frame) {
+            if (frame.getStreamType() == StreamType.STDERR) {
+                log.warn("判题代理: {}", new String(frame.getPayload(), StandardCharsets.UTF_8).trim());
+                return;
+            }
+            append(frame.getPayload());
+            int consumed = parse();
+            System.arraycopy(buffer, consumed, buffer, 0, length - consumed);
+            length -= consumed;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.warn("判题代理连接异常", throwable);
+            super.onError(throwable);
+            closed = true;
+            ready.countDown();
+            failPending(new IOException("判题代理连接异常", throwable));
+        }
+
+        @Override
+        public void onComplete() {
+            super.onComplete();
+            closed = true;
+            ready.countDown();
+            failPending(new IOException("判题代理已退出"));
+        }
+
+        private void append(byte[] payload) {
+            if (length + payload.length > buffer.length) {
+                byte[] larger = new byte[Math.max(buffer.length * 2, length + payload.length)];
+                System.arraycopy(buffer, 0, larger, 0, length);
+                buffer = larger;
+            }
+            System.arraycopy(payload, 0, buffer, length, payload.length);
+            length += payload.length;
+        }
+
+        /**
+         * 处理缓冲区中所有完整的帧，返回已消费的字节数
+         */
+        private int parse() {
+            int pos = 0;
+            while (pos < length) {
+                int lineEnd = -1;
+                for (int i = pos; i < length; i++) {
+                    if (buffer[i] == '\n') {
+                        lineEnd = i;
+                        break;
+                    }
+                }
+                if (lineEnd < 0) {
+                    return pos;
+                }
+                String[] header = new String(buffer, pos, lineEnd - pos, StandardCharsets.US_ASCII).split(" ");
+                int next = lineEnd + 1;
+                switch (header[0]) {
+                    case "R":
+                        ready.countDown();
+                        break;
+                    case "O":
+                    case "E":
+                        int size = Integer.parseInt(header[2]);
+                        if (next + size > length) {
+                            return pos;
+                        }
+                        PendingCommand cmd = pending.get(Long.parseLong(header[1]));
+                        if (cmd != null) {
+                            ("O".equals(header[0]) ? cmd.stdout : cmd.stderr).write(buffer, next, size);
+                        }
+                        next += size;
+                        break;
+                    case "X":
+                        PendingCommand done = pending.get(Long.parseLong(header[1]));
+                        if (done != null) {
+                            CommandResult result = new CommandResult();
+                            result.setExitCode(Integer.parseInt(header[2]));
+                            result.setOutputExceeded("1".equals(header[3]));
+                            result.setStdout(done.stdout.toByteArray());
+                            result.setStderr(done.stderr.toByteArray());
+                            done.future.complete(result);
+                        }
+                        break;
+                    default:
+                        // 心跳
+                        break;
+                }
+                pos = next;
+            }
+            return pos;
+        }
+    }
+
+    /**
+     * 代理的 stdin：请求写入队列，由 docker-java 的转发线程阻塞读取
+     */
+    static class RequestStream extends InputStream {
+
+        // 队列中的空数组表示输入结束
+        private static final byte[] END = new byte[0];
+
+        private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+
+        private byte[] current;
+
+        private int position;
+
+        private boolean finished = false;
+
+        void send(String request) {
+            queue.add(request.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void finish() {
+            queue.add(END);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (finished) {
+                return -1;
+            }
+            if (current == null || position >= current.length) {
+                try {
+                    current = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("读取判题代理请求被中断", e);
+                }
+                position = 0;
+                if (current == END) {
+                    finished = true;
+                    return -1;
+                }
+            }
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
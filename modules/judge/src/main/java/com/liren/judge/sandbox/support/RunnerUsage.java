@@ -0,0 +1,115 @@
+package com.liren.judge.sandbox.support;
+
+import lombok.Data;
+
+/**
+ * oj-runner 启动器输出的资源使用统计
+ * 启动器在用户程序结束后向 stderr 末尾追加一行:
+ *   __OJ_USAGE__ exit=0 signal=0 memory=1234 cpu=56 timeout=0 oom=0
+ */
+@Data
+public class RunnerUsage {
+    /**
+     * 统计行标记
+     */
+    public static final String USAGE_MARK = "__OJ_USAGE__";
+
+    /**
+     * 用户程序退出码 (被信号终止时为 128 + 信号值)
+     */
+    private int exitCode;
+
+    /**
+     * 终止用户程序的信号 (正常退出为 0)
+     */
+    private int signal;
+
+    /**
+     * 峰值内存 (KB)
+     */
+    private long memory;
+
+    /**
+     * CPU 时间 (ms)，用户态 + 内核态
+     */
+    private long cpuTime;
+
+    /**
+     * 是否因超过墙钟上限被启动器杀掉
+     */
+    private boolean timeout;
+
+    /**
+     * 是否被内核 OOM Killer 结束 (被 SIGKILL 结束且所在 cgroup 的 oom_kill 计数增加)
+     */
+    private boolean oomKilled;
+
+    /**
+     * 从 stderr 中解析统计行
+     * 只认最后一个标记：它由启动器在用户程序结束后写入，用户输出无法出现在它之后
+     * @return 统计信息；没有统计行 (如进程被提前杀掉) 时返回 null
+     */
+    public static RunnerUsage parse(String stderr) {
+        if (stderr == null) {
+            return null;
+        }
+        int index = stderr.lastIndexOf(USAGE_MARK);
+        if (index < 0) {
+            return null;
+        }
+
+        RunnerUsage usage = new RunnerUsage();
+        String[] fields = stderr.substring(index + USAGE_MARK.length()).trim().split("\\s+");
+        try {
+            for (String field : fields) {
+                int eq = field.indexOf('=');
+                if (eq < 0) {
+                    continue;
+                }
+                String key = field.substring(0, eq);
+                String value = field.substring(eq + 1);
+                switch (key) {
+                    case "exit":
+                        usage.setExitCode(Integer.parseInt(value));
+                        break;
+                    case "signal":
+                        usage.setSignal(Integer.parseInt(value));
+                        break;
+                    case "memory":
+                        usage.setMemory(Long.parseLong(value));
+                        break;
+                    case "cpu":
+                        usage.setCpuTime(Long.parseLong(value));
+                        break;
+                    case "timeout":
+                        usage.setTimeout("1".equals(value));
+                        break;
+                    case "oom":
+                        usage.setOomKilled("1".equals(value));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return usage;
+    }
+
+    /**
+     * 去掉 stderr 中的统计行，只保留用户程序自己的错误输出
+     */
+    public static String stripUsage(String stderr) {
+        if (stderr == null) {
+            return null;
+        }
+        int index = stderr.lastIndexOf(USAGE_MARK);
+        if (index < 0) {
+            return stderr;
+        }
+        // 启动器会在统计行前补一个换行
+        int end = index > 0 && stderr.charAt(index - 1) == '\n' ? index - 1 : index;
+        return stderr.substring(0, end);
+    }
+}
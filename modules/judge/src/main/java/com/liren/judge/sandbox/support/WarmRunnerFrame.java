@@ -0,0 +1,143 @@
+package com.liren.judge.sandbox.support;
+
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Java 常驻启动器 (OjWarmRunner) 输出的单个用例结果
+ * 启动器每运行完一个用例向 stdout 写一帧:
+ *   __OJ_CASE__ index=0 status=0 exit=0 cpu=12 memory=2048 out=6 err=0
+ * 头部之后紧跟 out 个字节的用户输出和 err 个字节的错误输出
+ */
+@Data
+public class WarmRunnerFrame {
+    /**
+     * 帧头标记
+     */
+    public static final String CASE_MARK = "__OJ_CASE__";
+
+    /**
+     * 状态: 正常结束 / 抛出异常 / 超时 / 内存不足 / 输出超限
+     */
+    public static final int NORMAL = 0;
+    public static final int EXCEPTION = 1;
+    public static final int TIMEOUT = 2;
+    public static final int MEMORY = 3;
+    public static final int OUTPUT = 4;
+
+    /**
+     * 用例序号
+     */
+    private int index;
+
+    /**
+     * 运行状态 (见上方常量)
+     */
+    private int status;
+
+    /**
+     * 用户程序退出码 (System.exit 的参数，抛出异常时为 1)
+     */
+    private int exitCode;
+
+    /**
+     * CPU 时间 (ms)，用户创建的所有线程之和，不含 JVM 启动
+     */
+    private long cpuTime;
+
+    /**
+     * 峰值内存 (KB)，取堆峰值和常驻内存峰值中增长较多者，已减去用例开始前的基线
+     */
+    private long memory;
+
+    /**
+     * 用户输出
+     */
+    private String output;
+
+    /**
+     * 错误输出
+     */
+    private String error;
+
+    /**
+     * 按顺序解析启动器的全部输出
+     * 遇到不完整的帧 (启动器被提前杀掉) 或无法识别的内容时停止，只返回此前完整的帧
+     */
+    public static List<WarmRunnerFrame> parse(byte[] stdout) {
+        List<WarmRunnerFrame> frames = new ArrayList<>();
+        int pos = 0;
+        while (pos < stdout.length) {
+            int lineEnd = indexOf(stdout, (byte) '\n', pos);
+            if (lineEnd < 0) {
+                break;
+            }
+            String header = new String(stdout, pos, lineEnd - pos, StandardCharsets.US_ASCII);
+            if (!header.startsWith(CASE_MARK)) {
+                break;
+            }
+
+            WarmRunnerFrame frame = new WarmRunnerFrame();
+            int outLength = -1;
+            int errLength = -1;
+            try {
+                for (String field : header.substring(CASE_MARK.length()).trim().split("\\s+")) {
+                    int eq = field.indexOf('=');
+                    if (eq < 0) {
+                        continue;
+                    }
+                    String value = field.substring(eq + 1);
+                    switch (field.substring(0, eq)) {
+                        case "index":
+                            frame.setIndex(Integer.parseInt(value));
+                            break;
+                        case "status":
+                            frame.setStatus(Integer.parseInt(value));
+                            break;
+                        case "exit":
+                            frame.setExitCode(Integer.parseInt(value));
+                            break;
+                        case "cpu":
+                            frame.setCpuTime(Long.parseLong(value));
+                            break;
+                        case "memory":
+                            frame.setMemory(Long.parseLong(value));
+                            break;
+                        case "out":
+                            outLength = Integer.parseInt(value);
+                            break;
+                        case "err":
+                            errLength = Integer.parseInt(value);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                break;
+            }
+
+            int bodyStart = lineEnd + 1;
+            if (outLength < 0 || errLength < 0 || (long) bodyStart + outLength + errLength > stdout.length) {
+                break;
+            }
+            frame.setOutput(new String(stdout, bodyStart, outLength, StandardCharsets.UTF_8));
+            frame.setError(new String(stdout, bodyStart + outLength, errLength, StandardCharsets.UTF_8));
+            frames.add(frame);
+            pos = bodyStart + outLength + errLength;
+        }
+        return frames;
+    }
+
+    private static int indexOf(byte[] bytes, byte target, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
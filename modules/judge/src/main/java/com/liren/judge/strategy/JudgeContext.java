@@ -31,4 +31,29 @@ public class JudgeContext {
      * 提交的语言 (未来可能根据语言选策略)
      */
     private String language;
+
+    /**
+     * 题目时间限制 (ms)，可能为空
+     */
+    private Integer timeLimit;
+
+    /**
+     * 题目内存限制 (MB)，可能为空
+     */
+    private Integer memoryLimit;
+
+    /**
+     * 判题模式 (JudgeModeEnum，0-ACM 1-OI)，为空时按 OI 处理
+     */
+    private Integer judgeMode;
+
+    /**
+     * 输出比对方式 (CheckerTypeEnum)，为空时精确比对
+     */
+    private Integer checkerType;
+
+    /**
+     * 比对参数 (浮点误差时为允许误差)
+     */
+    private String checkerArg;
 }
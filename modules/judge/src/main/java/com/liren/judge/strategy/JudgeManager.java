@@ -1,12 +1,24 @@
 package com.liren.judge.strategy;
 
 import com.liren.api.problem.dto.problem.ProblemSubmitUpdateDTO;
+import com.liren.api.problem.dto.problem.TestCaseDTO;
+import com.liren.common.core.enums.CheckerTypeEnum;
+import com.liren.judge.sandbox.CaseChecker;
+import com.liren.judge.strategy.comparator.OutputComparator;
+import com.liren.judge.strategy.comparator.OutputComparatorRegistry;
 import com.liren.judge.strategy.impl.DefaultJudgeStrategy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.StringReader;
+import java.util.List;
+
 @Component
 public class JudgeManager {
 
+    @Autowired
+    private OutputComparatorRegistry outputComparatorRegistry;
+
     /**
      * 智能选策略并执行
      */
@@ -16,9 +28,28 @@ public class JudgeManager {
         // 【扩展点】未来可以在这里根据 language 选择不同的策略
         // if ("java".equals(language)) { return new JavaJudgeStrategy().doJudge(judgeContext); }
 
-        // 目前默认都走 Default
-        JudgeStrategy judgeStrategy = new DefaultJudgeStrategy();
+        // 目前默认都走 Default，比对器按题目的比对方式选择 (特判题目由沙箱给出每个用例的结果)
+        CheckerTypeEnum checkerType = CheckerTypeEnum.getByCode(judgeContext.getCheckerType());
+        OutputComparator outputComparator = checkerType == CheckerTypeEnum.SPECIAL
+                ? null : outputComparatorRegistry.get(checkerType, judgeContext.getCheckerArg());
+        JudgeStrategy judgeStrategy = new DefaultJudgeStrategy(outputComparator);
 
         return judgeStrategy.doJudge(judgeContext);
     }
+
+    /**
+     * 构造用例输出检查器，交给沙箱在每个用例结束时比对 (与判题策略使用同一个比对器)
+     * 特判题目返回 null，由沙箱在容器内运行特判程序
+     */
+    public CaseChecker createCaseChecker(List<TestCaseDTO> testCases, CheckerTypeEnum checkerType, String checkerArg) {
+        if (checkerType == CheckerTypeEnum.SPECIAL) {
+            return null;
+        }
+        OutputComparator outputComparator = outputComparatorRegistry.get(checkerType, checkerArg);
+        return (index, output) -> {
+            String stdOut = testCases.get(index).getOutput();
+            return outputComparator.compare(new StringReader(output == null ? "" : output),
+                    new StringReader(stdOut == null ? "" : stdOut));
+        };
+    }
 }
@@ -0,0 +1,127 @@
+package com.liren.judge.strategy.comparator;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 基于复用缓冲区的字符游标：逐字符读取 Reader，并记录当前行列号
+ * 比对器通过它实现流式比对，不需要把整个输出读成 String
+ */
+public class CharCursor {
+    public static final int EOF = -1;
+
+    private final char[] buffer;
+
+    private Reader reader;
+    private int length;
+    private int position;
+
+    private long line;
+    private long column;
+
+    public CharCursor(int bufferSize) {
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * 绑定新的 Reader 并重置状态 (缓冲区复用)
+     */
+    public CharCursor reset(Reader reader) {
+        this.reader = reader;
+        this.length = 0;
+        this.position = 0;
+        this.line = 1;
+        this.column = 1;
+        return this;
+    }
+
+    /**
+     * 查看下一个字符但不移动游标
+     */
+    public int peek() throws IOException {
+        if (position >= length) {
+            length = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (length <= 0) {
+                length = 0;
+                return EOF;
+            }
+        }
+        return buffer[position];
+    }
+
+    /**
+     * 读取下一个字符并移动游标
+     */
+    public int next() throws IOException {
+        int c = peek();
+        if (c == EOF) {
+            return EOF;
+        }
+        position++;
+        if (c == '\n') {
+            line++;
+            column = 1;
+        } else {
+            column++;
+        }
+        return c;
+    }
+
+    /**
+     * 跳过空白字符 (与 String.trim 一致：所有 <= ' ' 的字符)
+     */
+    public void skipWhitespace() throws IOException {
+        int c;
+        while ((c = peek()) != EOF && isWhitespace(c)) {
+            next();
+        }
+    }
+
+    /**
+     * 跳过当前行内的空白字符 (不跨过换行)
+     */
+    public void skipBlanks() throws IOException {
+        int c;
+        while ((c = peek()) != EOF && c != '\n' && isWhitespace(c)) {
+            next();
+        }
+    }
+
+    /**
+     * 跳过一个单词 (连续的非空白字符)
+     */
+    public void skipToken() throws IOException {
+        int c;
+        while ((c = peek()) != EOF && !isWhitespace(c)) {
+            next();
+        }
+    }
+
+    /**
+     * 剩余内容是否全部为空白
+     */
+    public boolean restIsWhitespace() throws IOException {
+        skipWhitespace();
+        return peek() == EOF;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public long getColumn() {
+        return column;
+    }
+
+    public static boolean isWhitespace(int c) {
+        return c <= ' ';
+    }
+
+    /**
+     * 是否为单词结束位置 (空白或输入结束)
+     */
+    public static boolean isTokenEnd(int c) {
+        return c == EOF || isWhitespace(c);
+    }
+}
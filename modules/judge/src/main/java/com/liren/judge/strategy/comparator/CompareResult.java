@@ -0,0 +1,66 @@
+package com.liren.judge.strategy.comparator;
+
+import lombok.Getter;
+
+/**
+ * 输出比对结果
+ */
+@Getter
+public class CompareResult {
+    private static final CompareResult ACCEPTED = new CompareResult(true, 0, 0, null);
+
+    /**
+     * 是否一致
+     */
+    private final boolean accepted;
+
+    /**
+     * 首个差异所在行 (从 1 开始，按用户输出计算)
+     */
+    private final long line;
+
+    /**
+     * 首个差异所在列 (从 1 开始，按用户输出计算)
+     */
+    private final long column;
+
+    /**
+     * 特判程序给出的说明 (特判时没有行列号)
+     */
+    private final String message;
+
+    public CompareResult(boolean accepted, long line, long column, String message) {
+        this.accepted = accepted;
+        this.line = line;
+        this.column = column;
+        this.message = message;
+    }
+
+    public static CompareResult accepted() {
+        return ACCEPTED;
+    }
+
+    public static CompareResult mismatch(long line, long column) {
+        return new CompareResult(false, line, column, null);
+    }
+
+    /**
+     * 特判程序判定为不通过
+     */
+    public static CompareResult rejected(String message) {
+        return new CompareResult(false, 0, 0, message);
+    }
+
+    /**
+     * 差异描述 (用于回写 errorMessage)
+     */
+    public String describe() {
+        if (accepted) {
+            return "";
+        }
+        if (message != null) {
+            return message;
+        }
+        return "第 " + line + " 行第 " + column + " 列与标准输出不一致";
+    }
+}
@@ -0,0 +1,17 @@
+package com.liren.judge.strategy.comparator;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 输出比对器：以流的方式比对用户输出与标准输出，遇到第一个不一致就停止
+ */
+public interface OutputComparator {
+    /**
+     * 比对输出
+     * @param userOutput 用户输出
+     * @param expectedOutput 标准输出
+     * @return 比对结果 (不一致时带上首个差异的行列号)
+     */
+    CompareResult compare(Reader userOutput, Reader expectedOutput) throws IOException;
+}
@@ -0,0 +1,75 @@
+package com.liren.judge.strategy.comparator;
+
+import cn.hutool.core.util.StrUtil;
+import com.liren.common.core.enums.CheckerTypeEnum;
+import com.liren.judge.strategy.comparator.impl.ExactOutputComparator;
+import com.liren.judge.strategy.comparator.impl.FloatOutputComparator;
+import com.liren.judge.strategy.comparator.impl.TokenOutputComparator;
+import com.liren.judge.strategy.comparator.impl.WhitespaceOutputComparator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 输出比对器注册表：按题目的比对方式 (CheckerTypeEnum) 取比对器
+ * 比对器都是无状态的 (缓冲区按线程复用)，同一种比对方式所有判题共用一个实例；
+ * 浮点误差比对器按误差值缓存
+ * 特判程序不在这里，由沙箱在容器内运行
+ */
+@Slf4j
+@Component
+public class OutputComparatorRegistry {
+
+    private final Map<CheckerTypeEnum, OutputComparator> comparators = new EnumMap<>(CheckerTypeEnum.class);
+
+    private final Map<Double, OutputComparator> floatComparators = new ConcurrentHashMap<>();
+
+    /**
+     * 浮点误差比对的默认误差 (题目没有设置 checkerArg 时使用)
+     */
+    private final double defaultEpsilon;
+
+    public OutputComparatorRegistry(@Value("${oj.judge.checker.float-epsilon:1e-6}") double defaultEpsilon) {
+        this.defaultEpsilon = defaultEpsilon;
+        comparators.put(CheckerTypeEnum.EXACT, new ExactOutputComparator());
+        comparators.put(CheckerTypeEnum.WHITESPACE, new WhitespaceOutputComparator());
+        comparators.put(CheckerTypeEnum.TOKEN, new TokenOutputComparator());
+    }
+
+    /**
+     * 获取比对器
+     * @param checkerType 比对方式 (不能是特判程序)
+     * @param checkerArg 比对参数 (浮点误差时为允许误差，为空或不合法时使用默认误差)
+     */
+    public OutputComparator get(CheckerTypeEnum checkerType, String checkerArg) {
+        switch (checkerType) {
+            case FLOAT:
+                double epsilon = parseEpsilon(checkerArg);
+                return floatComparators.computeIfAbsent(epsilon, FloatOutputComparator::new);
+            case SPECIAL:
+                throw new IllegalArgumentException("特判程序没有对应的比对器");
+            default:
+                return comparators.get(checkerType);
+        }
+    }
+
+    private double parseEpsilon(String checkerArg) {
+        if (StrUtil.isBlank(checkerArg)) {
+            return defaultEpsilon;
+        }
+        try {
+            double epsilon = Double.parseDouble(checkerArg.trim());
+            if (epsilon > 0) {
+                return epsilon;
+            }
+        } catch (NumberFormatException ignored) {
+            // 落到下面使用默认误差
+        }
+        log.warn("浮点误差参数不合法，使用默认误差 {}: {}", defaultEpsilon, checkerArg);
+        return defaultEpsilon;
+    }
+}
@@ -0,0 +1,53 @@
+package com.liren.judge.strategy.comparator.impl;
+
+import com.liren.judge.strategy.comparator.CharCursor;
+import com.liren.judge.strategy.comparator.CompareResult;
+import com.liren.judge.strategy.comparator.OutputComparator;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 精确比对：忽略首尾空白后逐字符比较 (等价于 trim 之后 equals)
+ * 两边按块流式读取，每个线程复用同一组缓冲区
+ */
+public class ExactOutputComparator implements OutputComparator {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<CharCursor[]> CURSORS = ThreadLocal.withInitial(
+            () -> new CharCursor[]{new CharCursor(BUFFER_SIZE), new CharCursor(BUFFER_SIZE)});
+
+    @Override
+    public CompareResult compare(Reader userOutput, Reader expectedOutput) throws IOException {
+        CharCursor[] cursors = CURSORS.get();
+        CharCursor user = cursors[0].reset(userOutput);
+        CharCursor expected = cursors[1].reset(expectedOutput);
+
+        // 1. 跳过开头的空白
+        user.skipWhitespace();
+        expected.skipWhitespace();
+
+        // 2. 逐字符比较，直到第一个差异 (或任一方结束)
+        while (true) {
+            int u = user.peek();
+            int e = expected.peek();
+            if (u == CharCursor.EOF && e == CharCursor.EOF) {
+                return CompareResult.accepted();
+            }
+            if (u != e) {
+                break;
+            }
+            user.next();
+            expected.next();
+        }
+
+        // 3. 出现差异：只有双方剩余部分都是空白 (即仅结尾空白不同) 才算一致
+        long line = user.getLine();
+        long column = user.getColumn();
+        if (user.restIsWhitespace() && expected.restIsWhitespace()) {
+            return CompareResult.accepted();
+        }
+        return CompareResult.mismatch(line, column);
+    }
+}
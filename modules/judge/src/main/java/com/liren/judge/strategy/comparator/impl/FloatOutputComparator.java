@@ -0,0 +1,121 @@
+package com.liren.judge.strategy.comparator.impl;
+
+import com.liren.judge.strategy.comparator.CharCursor;
+import com.liren.judge.strategy.comparator.CompareResult;
+import com.liren.judge.strategy.comparator.OutputComparator;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 浮点误差比对：逐词比较，双方都是数字的单词按误差比较 (绝对误差或相对误差不超过 epsilon 即视为相同)，
+ * 其他单词要求完全一致
+ */
+public class FloatOutputComparator implements OutputComparator {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // 超过这个长度的单词不可能是合法的数字，直接按字符比较
+    private static final int MAX_NUMBER_LENGTH = 64;
+
+    private static final ThreadLocal<CharCursor[]> CURSORS = ThreadLocal.withInitial(
+            () -> new CharCursor[]{new CharCursor(BUFFER_SIZE), new CharCursor(BUFFER_SIZE)});
+
+    private static final ThreadLocal<StringBuilder[]> TOKENS = ThreadLocal.withInitial(
+            () -> new StringBuilder[]{new StringBuilder(), new StringBuilder()});
+
+    private final double epsilon;
+
+    public FloatOutputComparator(double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public CompareResult compare(Reader userOutput, Reader expectedOutput) throws IOException {
+        CharCursor[] cursors = CURSORS.get();
+        CharCursor user = cursors[0].reset(userOutput);
+        CharCursor expected = cursors[1].reset(expectedOutput);
+        StringBuilder[] tokens = TOKENS.get();
+
+        while (true) {
+            user.skipWhitespace();
+            expected.skipWhitespace();
+            if (user.peek() == CharCursor.EOF && expected.peek() == CharCursor.EOF) {
+                return CompareResult.accepted();
+            }
+            long line = user.getLine();
+            long column = user.getColumn();
+
+            // 读取双方的下一个单词 (过长的单词只读前缀，剩余部分逐字符比较)
+            String userToken = readToken(user, tokens[0]);
+            String expectedToken = readToken(expected, tokens[1]);
+            boolean truncated = !CharCursor.isTokenEnd(user.peek()) || !CharCursor.isTokenEnd(expected.peek());
+
+            if (!truncated && numberEquals(userToken, expectedToken)) {
+                continue;
+            }
+            if (!userToken.equals(expectedToken) || !restOfTokenEquals(user, expected)) {
+                return CompareResult.mismatch(line, column);
+            }
+        }
+    }
+
+    private static String readToken(CharCursor cursor, StringBuilder token) throws IOException {
+        token.setLength(0);
+        while (token.length() < MAX_NUMBER_LENGTH && !CharCursor.isTokenEnd(cursor.peek())) {
+            token.append((char) cursor.next());
+        }
+        return token.toString();
+    }
+
+    private static boolean restOfTokenEquals(CharCursor user, CharCursor expected) throws IOException {
+        int u = user.peek();
+        int e = expected.peek();
+        while (!CharCursor.isTokenEnd(u) || !CharCursor.isTokenEnd(e)) {
+            if (u != e) {
+                return false;
+            }
+            user.next();
+            expected.next();
+            u = user.peek();
+            e = expected.peek();
+        }
+        return true;
+    }
+
+    /**
+     * 双方都能解析为有限的数字，且误差在允许范围内
+     */
+    private boolean numberEquals(String userToken, String expectedToken) {
+        Double u = parseNumber(userToken);
+        Double e = parseNumber(expectedToken);
+        if (u == null || e == null) {
+            return false;
+        }
+        double diff = Math.abs(u - e);
+        return diff <= epsilon || diff <= epsilon * Math.abs(e);
+    }
+
+    private static Double parseNumber(String token) {
+        if (token.isEmpty()) {
+            return null;
+        }
+        // 只接受数字形式，排除 Java 额外支持的 NaN、Infinity、十六进制和类型后缀 (如 1d、1f)
+        char last = token.charAt(token.length() - 1);
+        if (!Character.isDigit(last) && last != '.') {
+            return null;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (!Character.isDigit(c) && c != '.' && c != '-' && c != '+' && c != 'e' && c != 'E') {
+                return null;
+            }
+        }
+        try {
+            double value = Double.parseDouble(token);
+            return Double.isFinite(value) ? value : null;
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.liren.judge.strategy.comparator.impl;
+
+import com.liren.judge.strategy.comparator.CharCursor;
+import com.liren.judge.strategy.comparator.CompareResult;
+import com.liren.judge.strategy.comparator.OutputComparator;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 逐词比对：只比较以空白 (空格、制表符、换行) 分隔的单词序列，单词之间的空白数量和换行位置不影响结果
+ */
+public class TokenOutputComparator implements OutputComparator {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<CharCursor[]> CURSORS = ThreadLocal.withInitial(
+            () -> new CharCursor[]{new CharCursor(BUFFER_SIZE), new CharCursor(BUFFER_SIZE)});
+
+    @Override
+    public CompareResult compare(Reader userOutput, Reader expectedOutput) throws IOException {
+        CharCursor[] cursors = CURSORS.get();
+        CharCursor user = cursors[0].reset(userOutput);
+        CharCursor expected = cursors[1].reset(expectedOutput);
+
+        while (true) {
+            user.skipWhitespace();
+            expected.skipWhitespace();
+            int u = user.peek();
+            int e = expected.peek();
+            if (u == CharCursor.EOF && e == CharCursor.EOF) {
+                return CompareResult.accepted();
+            }
+            // 逐字符比较当前单词，直到双方同时结束
+            while (!CharCursor.isTokenEnd(u) || !CharCursor.isTokenEnd(e)) {
+                if (CharCursor.isTokenEnd(u) != CharCursor.isTokenEnd(e) || u != e) {
+                    return CompareResult.mismatch(user.getLine(), user.getColumn());
+                }
+                user.next();
+                expected.next();
+                u = user.peek();
+                e = expected.peek();
+            }
+        }
+    }
+}
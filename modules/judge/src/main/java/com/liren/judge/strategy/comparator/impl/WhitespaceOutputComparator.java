@@ -0,0 +1,70 @@
+package com.liren.judge.strategy.comparator.impl;
+
+import com.liren.judge.strategy.comparator.CharCursor;
+import com.liren.judge.strategy.comparator.CompareResult;
+import com.liren.judge.strategy.comparator.OutputComparator;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 忽略空白比对：按行比较，每行忽略行首行尾的空白，行内连续空白视为一个，末尾的空行忽略
+ * 与逐词比对的区别是换行位置必须一致
+ */
+public class WhitespaceOutputComparator implements OutputComparator {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<CharCursor[]> CURSORS = ThreadLocal.withInitial(
+            () -> new CharCursor[]{new CharCursor(BUFFER_SIZE), new CharCursor(BUFFER_SIZE)});
+
+    @Override
+    public CompareResult compare(Reader userOutput, Reader expectedOutput) throws IOException {
+        CharCursor[] cursors = CURSORS.get();
+        CharCursor user = cursors[0].reset(userOutput);
+        CharCursor expected = cursors[1].reset(expectedOutput);
+
+        while (true) {
+            user.skipBlanks();
+            expected.skipBlanks();
+            int u = user.peek();
+            int e = expected.peek();
+
+            // 1. 双方都到了行尾 (或输入结束)
+            if (isLineEnd(u) && isLineEnd(e)) {
+                if (u == '\n' && e == '\n') {
+                    user.next();
+                    expected.next();
+                    continue;
+                }
+                // 有一方已经结束：另一方剩下的只能是空行
+                long line = user.getLine();
+                long column = user.getColumn();
+                if (user.restIsWhitespace() && expected.restIsWhitespace()) {
+                    return CompareResult.accepted();
+                }
+                return CompareResult.mismatch(line, column);
+            }
+
+            // 2. 只有一方到了行尾
+            if (isLineEnd(u) || isLineEnd(e)) {
+                return CompareResult.mismatch(user.getLine(), user.getColumn());
+            }
+
+            // 3. 逐字符比较当前单词
+            while (!CharCursor.isTokenEnd(u) || !CharCursor.isTokenEnd(e)) {
+                if (CharCursor.isTokenEnd(u) != CharCursor.isTokenEnd(e) || u != e) {
+                    return CompareResult.mismatch(user.getLine(), user.getColumn());
+                }
+                user.next();
+                expected.next();
+                u = user.peek();
+                e = expected.peek();
+            }
+        }
+    }
+
+    private static boolean isLineEnd(int c) {
+        return c == CharCursor.EOF || c == '\n';
+    }
+}
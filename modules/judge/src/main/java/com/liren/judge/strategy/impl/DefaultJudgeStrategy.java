@@ -2,18 +2,32 @@ package com.liren.judge.strategy.impl;
 
 import com.liren.api.problem.dto.problem.ProblemSubmitUpdateDTO;
 import com.liren.api.problem.dto.problem.TestCaseDTO;
+import com.liren.common.core.enums.JudgeModeEnum;
 import com.liren.common.core.enums.JudgeResultEnum;
 import com.liren.common.core.enums.SandboxRunStatusEnum;
 import com.liren.common.core.enums.SubmitStatusEnum;
+import com.liren.judge.sandbox.model.CaseResult;
 import com.liren.judge.sandbox.model.ExecuteCodeResponse;
 import com.liren.judge.sandbox.model.JudgeInfo;
 import com.liren.judge.strategy.JudgeContext;
 import com.liren.judge.strategy.JudgeStrategy;
+import com.liren.judge.strategy.comparator.CompareResult;
+import com.liren.judge.strategy.comparator.OutputComparator;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 public class DefaultJudgeStrategy implements JudgeStrategy {
 
+    // 为空表示特判题目：沙箱已给出每个用例的比对结果
+    private final OutputComparator outputComparator;
+
+    public DefaultJudgeStrategy(OutputComparator outputComparator) {
+        this.outputComparator = outputComparator;
+    }
+
     @Override
     public ProblemSubmitUpdateDTO doJudge(JudgeContext judgeContext) {
         ProblemSubmitUpdateDTO updateDTO = new ProblemSubmitUpdateDTO();
@@ -43,19 +57,12 @@ public class DefaultJudgeStrategy implements JudgeStrategy {
             updateDTO.setErrorMessage(executeResponse.getMessage()); // 编译报错详情
         }
 
-        // 情况 B: 运行错误（RE）
-        else if (runStatus == SandboxRunStatusEnum.RUNTIME_ERROR) {
-            updateDTO.setJudgeResult(JudgeResultEnum.RUNTIME_ERROR.getCode());
-            updateDTO.setErrorMessage(executeResponse.getMessage()); // 运行报错详情
-        }
-
-        // 情况 C: 正常运行 (可能是 AC, WA, TLE, MLE)
+        // 情况 B: 用例已运行，逐个判定 (AC, WA, RE, TLE, MLE, OLE)
         else if (runStatus == SandboxRunStatusEnum.NORMAL) {
-            // 此时代码跑通了，需要检查：输出对不对、是否超时超内存
-            processNormalResult(executeResponse, updateDTO, testCases);
+            processCaseResults(judgeContext, executeResponse, updateDTO);
         }
 
-        // 情况 D: 沙箱系统错误
+        // 情况 C: 沙箱系统错误
         else {
             updateDTO.setJudgeResult(JudgeResultEnum.SYSTEM_ERROR.getCode());
             updateDTO.setErrorMessage("沙箱系统异常: " + executeResponse.getMessage());
@@ -74,50 +81,146 @@ public class DefaultJudgeStrategy implements JudgeStrategy {
     }
 
     /**
-     * 处理沙箱正常运行后的结果比对
-     * @param response 沙箱返回结果
-     * @param updateDTO 待更新对象
-     * @param testCases 标准测试用例列表 (这里直接用 List，不用 ProblemDTO)
+     * 最大 CPU 时间 (ms) 是否超过题目限制 (ms)
+     */
+    private boolean isTimeExceeded(JudgeInfo judgeInfo, Integer timeLimit) {
+        return timeLimit != null && judgeInfo != null && judgeInfo.getTime() != null
+                && judgeInfo.getTime() > timeLimit;
+    }
+
+    /**
+     * 峰值内存 (KB) 是否超过题目限制 (MB)
+     */
+    private boolean isMemoryExceeded(JudgeInfo judgeInfo, Integer memoryLimit) {
+        return memoryLimit != null && judgeInfo != null && judgeInfo.getMemory() != null
+                && judgeInfo.getMemory() > memoryLimit * 1024L;
+    }
+
+    /**
+     * 逐个判定用例结果，统计通过数量，并以第一个未通过的用例作为最终结果
+     * ACM 模式下第一个未通过的用例之后不再计入通过数 (沙箱通常也已停止运行)
      */
-    private void processNormalResult(ExecuteCodeResponse response,
-                                     ProblemSubmitUpdateDTO updateDTO,
-                                     List<TestCaseDTO> testCases) {
-        List<String> userOutputs = response.getOutputList();
+    private void processCaseResults(JudgeContext judgeContext,
+                                    ExecuteCodeResponse response,
+                                    ProblemSubmitUpdateDTO updateDTO) {
+        List<TestCaseDTO> testCases = judgeContext.getTestCases();
+        List<CaseResult> caseResults = response.getCaseResultList();
+        boolean stopOnFirstFailure = JudgeModeEnum.getByCode(judgeContext.getJudgeMode()) == JudgeModeEnum.ACM;
 
-        // 防御性检查：如果没有输出或者输出数量不对
-        if (userOutputs == null || userOutputs.size() != testCases.size()) {
+        // 防御性检查：没有任何用例结果，或者结果数量超过用例数量
+        if (caseResults == null || caseResults.isEmpty() || caseResults.size() > testCases.size()) {
             updateDTO.setJudgeResult(JudgeResultEnum.WRONG_ANSWER.getCode());
             updateDTO.setErrorMessage("用户输出数量与用例数量不一致");
             return;
         }
 
         int passCount = 0;
-        boolean hasError = false;
-
-        // ✅ 2. 遍历所有结果，统计通过数量，而不是遇到错误就 return
-        for (int i = 0; i < testCases.size(); i++) {
-            String userOut = userOutputs.get(i) == null ? "" : userOutputs.get(i).trim();
-            String stdOut = testCases.get(i).getOutput() == null ? "" : testCases.get(i).getOutput().trim();
-
-            if (userOut.equals(stdOut)) {
+        for (int i = 0; i < caseResults.size(); i++) {
+            boolean firstFailure = updateDTO.getJudgeResult() == null;
+            String failure = judgeCase(judgeContext, caseResults.get(i), testCases.get(i), updateDTO);
+            if (failure == null) {
                 passCount++;
-            } else {
-                hasError = true;
-                // 如果是第一次发现错误，标记状态为 WA
-                if (updateDTO.getJudgeResult() == null) {
-                    updateDTO.setJudgeResult(JudgeResultEnum.WRONG_ANSWER.getCode());
-                    // 可选：记录第一个错误的详情，如 "Case 1 failed"
-                    // updateDTO.setErrorMessage("Case " + (i + 1) + " Answer Wrong");
-                }
+                continue;
+            }
+            // 只记录第一个未通过用例的详情
+            if (firstFailure) {
+                updateDTO.setErrorMessage("用例 " + (i + 1) + " " + failure);
+            }
+            if (stopOnFirstFailure) {
+                break;
             }
         }
 
-        // ✅ 3. 设置通过的用例数
         updateDTO.setPassCaseCount(passCount);
 
-        // 如果全程没有错误，才算是 AC
-        if (!hasError) {
+        // 全部用例都运行且通过，才算是 AC
+        if (passCount == testCases.size()) {
             updateDTO.setJudgeResult(JudgeResultEnum.ACCEPTED.getCode());
+        } else if (updateDTO.getJudgeResult() == null) {
+            // 沙箱没有停止却少了用例结果
+            updateDTO.setJudgeResult(JudgeResultEnum.WRONG_ANSWER.getCode());
+            updateDTO.setErrorMessage("用户输出数量与用例数量不一致");
+        }
+    }
+
+    /**
+     * 判定单个用例
+     * @return 通过时返回 null，否则返回未通过的原因 (并在尚未设置时写入该用例的判题结果)
+     */
+    private String judgeCase(JudgeContext judgeContext, CaseResult caseResult, TestCaseDTO testCase,
+                             ProblemSubmitUpdateDTO updateDTO) {
+        JudgeResultEnum judgeResult;
+        String failure;
+        SandboxRunStatusEnum caseStatus = SandboxRunStatusEnum.getByCode(caseResult.getStatus());
+        JudgeInfo caseInfo = new JudgeInfo();
+        caseInfo.setTime(caseResult.getTime());
+        caseInfo.setMemory(caseResult.getMemory());
+
+        if (caseStatus != SandboxRunStatusEnum.NORMAL) {
+            judgeResult = toJudgeResult(caseStatus);
+            failure = caseResult.getMessage();
+        } else if (isTimeExceeded(caseInfo, judgeContext.getTimeLimit())) {
+            judgeResult = JudgeResultEnum.TIME_LIMIT_EXCEEDED;
+            failure = "运行超时: 超过 " + judgeContext.getTimeLimit() + " ms";
+        } else if (isMemoryExceeded(caseInfo, judgeContext.getMemoryLimit())) {
+            judgeResult = JudgeResultEnum.MEMORY_LIMIT_EXCEEDED;
+            failure = "内存超限: 超过 " + judgeContext.getMemoryLimit() + " MB";
+        } else if (caseResult.getAccepted() != null) {
+            // 沙箱已在用例结束时比对过
+            if (caseResult.getAccepted()) {
+                return null;
+            }
+            judgeResult = JudgeResultEnum.WRONG_ANSWER;
+            failure = "答案错误: " + caseResult.getMessage();
+        } else if (outputComparator == null) {
+            judgeResult = JudgeResultEnum.SYSTEM_ERROR;
+            failure = "特判程序没有给出结果";
+        } else {
+            CompareResult compareResult = compareOutput(caseResult, testCase);
+            if (compareResult.isAccepted()) {
+                return null;
+            }
+            judgeResult = JudgeResultEnum.WRONG_ANSWER;
+            failure = "答案错误: " + compareResult.describe();
+        }
+
+        if (updateDTO.getJudgeResult() == null) {
+            updateDTO.setJudgeResult(judgeResult.getCode());
+        }
+        return failure;
+    }
+
+    /**
+     * 流式比对输出 (忽略首尾空白)，遇到第一个差异就停止，不再复制整段输出
+     */
+    private CompareResult compareOutput(CaseResult caseResult, TestCaseDTO testCase) {
+        String userOut = caseResult.getOutput() == null ? "" : caseResult.getOutput();
+        String stdOut = testCase.getOutput() == null ? "" : testCase.getOutput();
+        try {
+            return outputComparator.compare(new StringReader(userOut), new StringReader(stdOut));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 单个用例的运行状态 -> 判题结果
+     */
+    private JudgeResultEnum toJudgeResult(SandboxRunStatusEnum caseStatus) {
+        if (caseStatus == null) {
+            return JudgeResultEnum.SYSTEM_ERROR;
+        }
+        switch (caseStatus) {
+            case RUNTIME_ERROR:
+                return JudgeResultEnum.RUNTIME_ERROR;
+            case OUTPUT_LIMIT_EXCEEDED:
+                return JudgeResultEnum.OUTPUT_LIMIT_EXCEEDED;
+            case TIME_LIMIT_EXCEEDED:
+                return JudgeResultEnum.TIME_LIMIT_EXCEEDED;
+            case MEMORY_LIMIT_EXCEEDED:
+                return JudgeResultEnum.MEMORY_LIMIT_EXCEEDED;
+            default:
+                return JudgeResultEnum.SYSTEM_ERROR;
         }
     }
 }
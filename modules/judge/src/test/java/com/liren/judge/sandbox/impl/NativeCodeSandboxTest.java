@@ -0,0 +1,181 @@
+package com.liren.judge.sandbox.impl;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NativeCodeSandboxTest {
+
+    private final NativeCodeSandbox sandbox = new NativeCodeSandbox();
+
+    @TempDir
+    Path root;
+
+    @AfterEach
+    public void tearDown() {
+        sandbox.shutdownIo();
+    }
+
+    @Test
+    public void extractsFilesAndDirectoriesWithModes() throws IOException {
+        Path workspace = Files.createDirectories(root.resolve("ws"));
+        byte[] tar = tar(new Entry("bin/", 040755, null),
+                new Entry("bin/run", 0100755, "#!/bin/sh\n"),
+                new Entry("data.txt", 0100600, "42\n"));
+
+        sandbox.uploadTar(workspace.toString(), new ByteArrayInputStream(tar), "work");
+
+        Path work = workspace.resolve("work");
+        assertEquals("#!/bin/sh\n", Files.readString(work.resolve("bin/run")));
+        assertEquals("rwxr-xr-x", PosixFilePermissions.toString(Files.getPosixFilePermissions(work.resolve("bin"))));
+        assertEquals("rwxr-xr-x", PosixFilePermissions.toString(Files.getPosixFilePermissions(work.resolve("bin/run"))));
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(work.resolve("data.txt"))));
+    }
+
+    @Test
+    public void existingFileIsReplaced() throws IOException {
+        Path workspace = Files.createDirectories(root.resolve("ws"));
+        Files.writeString(Files.createDirectories(workspace.resolve("work")).resolve("data.txt"), "old content\n");
+
+        sandbox.uploadTar(workspace.toString(), new ByteArrayInputStream(tar(new Entry("data.txt", 0100644, "new\n"))), "work");
+
+        assertEquals("new\n", Files.readString(workspace.resolve("work/data.txt")));
+    }
+
+    @Test
+    public void rejectsParentTraversal() throws IOException {
+        Path workspace = Files.createDirectories(root.resolve("ws"));
+        byte[] tar = tar(new Entry("../escape.txt", 0100644, "x"));
+
+        assertThrows(IOException.class,
+                () -> sandbox.uploadTar(workspace.toString(), new ByteArrayInputStream(tar), "work"));
+        assertFalse(Files.exists(workspace.resolve("escape.txt")));
+    }
+
+    @Test
+    public void rejectsAbsolutePath() throws IOException {
+        Path workspace = Files.createDirectories(root.resolve("ws"));
+        Path outside = root.resolve("outside.txt");
+        byte[] tar = tar(new Entry(outside.toString(), 0100644, "x"));
+
+        assertThrows(IOException.class,
+                () -> sandbox.uploadTar(workspace.toString(), new ByteArrayInputStream(tar), "work"));
+        assertFalse(Files.exists(outside));
+    }
+
+    @Test
+    public void rejectsWritingThroughSymlinkedDirectory() throws IOException {
+        Path workspace = Files.createDirectories(root.resolve("ws"));
+        Path outside = Files.createDirectories(root.resolve("outside"));
+        // 用户程序在工作目录里留下的指向外部的链接
+        Files.createSymbolicLink(Files.createDirectories(workspace.resolve("work")).resolve("link"), outside);
+        byte[] tar = tar(new Entry("link/evil.txt", 0100644, "x"));
+
+        assertThrows(IOException.class,
+                () -> sandbox.uploadTar(workspace.toString(), new ByteArrayInputStream(tar), "work"));
+        assertFalse(Files.exists(outside.resolve("evil.txt")));
+    }
+
+    @Test
+    public void rejectsReplacingSymlinkedFile() throws IOException {
+        Path workspace = Files.createDirectories(root.resolve("ws"));
+        Path outside = Files.writeString(root.resolve("outside.txt"), "keep");
+        Files.createSymbolicLink(Files.createDirectories(workspace.resolve("work")).resolve("data.txt"), outside);
+        byte[] tar = tar(new Entry("data.txt", 0100644, "x"));
+
+        assertThrows(IOException.class,
+                () -> sandbox.uploadTar(workspace.toString(), new ByteArrayInputStream(tar), "work"));
+        assertEquals("keep", Files.readString(outside));
+    }
+
+    @Test
+    public void skipsLinkEntries() throws IOException {
+        Path workspace = Files.createDirectories(root.resolve("ws"));
+        TarArchiveEntry symlink = new TarArchiveEntry("passwd", TarConstants.LF_SYMLINK);
+        symlink.setLinkName("/etc/passwd");
+        TarArchiveEntry hardlink = new TarArchiveEntry("shadow", TarConstants.LF_LINK);
+        hardlink.setLinkName("/etc/shadow");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream out = new TarArchiveOutputStream(bos)) {
+            for (TarArchiveEntry link : new TarArchiveEntry[]{symlink, hardlink}) {
+                out.putArchiveEntry(link);
+                out.closeArchiveEntry();
+            }
+            write(out, new Entry("data.txt", 0100644, "42\n"));
+            out.finish();
+        }
+
+        sandbox.uploadTar(workspace.toString(), new ByteArrayInputStream(bos.toByteArray()), "work");
+
+        // 链接条目不还原 (也不能变成同名的空文件)
+        assertFalse(Files.exists(workspace.resolve("work/passwd"), LinkOption.NOFOLLOW_LINKS));
+        assertFalse(Files.exists(workspace.resolve("work/shadow"), LinkOption.NOFOLLOW_LINKS));
+        assertTrue(Files.exists(workspace.resolve("work/data.txt")));
+    }
+
+    @Test
+    public void downloadedArchiveExtractsBack() throws IOException {
+        Path workspace = Files.createDirectories(root.resolve("ws"));
+        sandbox.uploadTar(workspace.toString(), new ByteArrayInputStream(tar(new Entry("out/", 040755, null),
+                new Entry("out/a.out", 0100755, "binary"))), "work");
+
+        byte[] archive = sandbox.downloadArchive(workspace.toString(), "work/out");
+        sandbox.uploadTar(workspace.toString(), new ByteArrayInputStream(archive), "copy");
+
+        assertEquals("binary", Files.readString(workspace.resolve("copy/a.out")));
+        assertEquals("rwxr-xr-x", PosixFilePermissions.toString(Files.getPosixFilePermissions(workspace.resolve("copy/a.out"))));
+    }
+
+    private static byte[] tar(Entry... entries) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream out = new TarArchiveOutputStream(bos)) {
+            for (Entry entry : entries) {
+                write(out, entry);
+            }
+            out.finish();
+        }
+        return bos.toByteArray();
+    }
+
+    private static void write(TarArchiveOutputStream out, Entry entry) throws IOException {
+        // 保留绝对路径，构造恶意条目
+        TarArchiveEntry tarEntry = new TarArchiveEntry(entry.name, true);
+        tarEntry.setMode(entry.mode);
+        byte[] content = entry.content == null ? new byte[0] : entry.content.getBytes(StandardCharsets.UTF_8);
+        if (entry.content != null) {
+            tarEntry.setSize(content.length);
+        }
+        out.putArchiveEntry(tarEntry);
+        out.write(content);
+        out.closeArchiveEntry();
+    }
+
+    private static class Entry {
+        private final String name;
+        private final int mode;
+        private final String content; // 为空表示目录
+
+        private Entry(String name, int mode, String content) {
+            this.name = name;
+            this.mode = mode;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.liren.judge.sandbox.support;
+
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JudgeAgentSessionTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final JudgeAgentSession session = new JudgeAgentSession();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void collectsOutputSplitAtArbitraryBoundaries() throws Exception {
+        Future<JudgeAgentSession.CommandResult> future = run("echo hello", 1024, 5000);
+        assertEquals("run 1 1024 echo hello", readRequest());
+
+        // 用户输出中的换行和伪造的结束帧按长度跳过
+        byte[] out = "hello\nX 1 0 0\n".getBytes(StandardCharsets.UTF_8);
+        byte[] responses = concat(
+                ("O 1 " + out.length + "\n").getBytes(StandardCharsets.US_ASCII), out,
+                "P\n".getBytes(StandardCharsets.US_ASCII),
+                "E 1 3\nerr".getBytes(StandardCharsets.US_ASCII),
+                "X 1 0 0\n".getBytes(StandardCharsets.US_ASCII));
+        // Docker 按任意边界切分：逐字节送入
+        for (byte b : responses) {
+            receive(new byte[]{b});
+        }
+
+        JudgeAgentSession.CommandResult result = future.get(5, TimeUnit.SECONDS);
+        assertEquals(0, result.getExitCode());
+        assertFalse(result.isOutputExceeded());
+        assertFalse(result.isTimeout());
+        assertArrayEquals(out, result.getStdout());
+        assertEquals("err", new String(result.getStderr(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void reportsExitCodeAndOutputExceeded() throws Exception {
+        Future<JudgeAgentSession.CommandResult> future = run("yes", 4, 5000);
+        readRequest();
+
+        receive("O 1 4\ny\ny\nX 1 143 1\n".getBytes(StandardCharsets.US_ASCII));
+
+        JudgeAgentSession.CommandResult result = future.get(5, TimeUnit.SECONDS);
+        assertEquals(143, result.getExitCode());
+        assertTrue(result.isOutputExceeded());
+        assertEquals("y\ny\n", new String(result.getStdout(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void ignoresFramesOfOtherCommands() throws Exception {
+        Future<JudgeAgentSession.CommandResult> future = run("true", 1024, 5000);
+        readRequest();
+
+        receive("O 7 3\nabcX 7 0 0\nO 1 2\nokX 1 0 0\n".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals("ok", new String(future.get(5, TimeUnit.SECONDS).getStdout(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void timesOutWithPartialOutput() throws Exception {
+        Future<JudgeAgentSession.CommandResult> future = run("sleep 10", 1024, 200);
+        readRequest();
+        receive("O 1 4\npart".getBytes(StandardCharsets.US_ASCII));
+
+        JudgeAgentSession.CommandResult result = future.get(5, TimeUnit.SECONDS);
+        assertTrue(result.isTimeout());
+        assertEquals(-1, result.getExitCode());
+        assertEquals("part", new String(result.getStdout(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void agentExitFailsPendingCommands() throws Exception {
+        Future<JudgeAgentSession.CommandResult> future = run("sleep 10", 1024, 5000);
+        readRequest();
+
+        session.callback.onComplete();
+
+        Exception e = assertThrows(Exception.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IOException);
+        assertFalse(session.isOpen());
+    }
+
+    @Test
+    public void rejectsCommandWithNewline() {
+        assertThrows(IllegalArgumentException.class, () -> session.run("a\nexit", 1024, 100));
+    }
+
+    private Future<JudgeAgentSession.CommandResult> run(String command, int limitBytes, long timeoutMillis) {
+        Callable<JudgeAgentSession.CommandResult> task = () -> session.run(command, limitBytes, timeoutMillis);
+        return executor.submit(task);
+    }
+
+    /**
+     * 读取会话写给代理的一行请求 (读到即说明命令已登记，之后送入的响应不会丢失)
+     */
+    private String readRequest() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = session.requests.read()) != '\n') {
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private void receive(byte[] payload) {
+        session.callback.onNext(new Frame(StreamType.STDOUT, Arrays.copyOf(payload, payload.length)));
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            bos.write(part, 0, part.length);
+        }
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,101 @@
+package com.liren.judge.sandbox.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WarmRunnerFrameTest {
+
+    @Test
+    public void parsesConsecutiveFrames() {
+        byte[] stdout = concat(
+                frame("index=0 status=0 exit=0 cpu=12 memory=2048", "6\n", ""),
+                frame("index=1 status=1 exit=1 cpu=3 memory=100", "", "java.lang.RuntimeException\n"));
+
+        List<WarmRunnerFrame> frames = WarmRunnerFrame.parse(stdout);
+
+        assertEquals(2, frames.size());
+        WarmRunnerFrame first = frames.get(0);
+        assertEquals(0, first.getIndex());
+        assertEquals(WarmRunnerFrame.NORMAL, first.getStatus());
+        assertEquals(12, first.getCpuTime());
+        assertEquals(2048, first.getMemory());
+        assertEquals("6\n", first.getOutput());
+        assertEquals("", first.getError());
+        WarmRunnerFrame second = frames.get(1);
+        assertEquals(1, second.getIndex());
+        assertEquals(WarmRunnerFrame.EXCEPTION, second.getStatus());
+        assertEquals(1, second.getExitCode());
+        assertEquals("java.lang.RuntimeException\n", second.getError());
+    }
+
+    @Test
+    public void userOutputCannotForgeFrames() {
+        // 用户输出里的帧头只是输出内容，按长度跳过
+        String forged = "__OJ_CASE__ index=1 status=0 exit=0 cpu=0 memory=0 out=0 err=0\n";
+        byte[] stdout = frame("index=0 status=0 exit=0 cpu=5 memory=10", forged, "");
+
+        List<WarmRunnerFrame> frames = WarmRunnerFrame.parse(stdout);
+
+        assertEquals(1, frames.size());
+        assertEquals(forged, frames.get(0).getOutput());
+    }
+
+    @Test
+    public void multiByteOutputUsesByteLengths() {
+        byte[] stdout = concat(
+                frame("index=0 status=0 exit=0 cpu=1 memory=1", "你好\n", "错误"),
+                frame("index=1 status=0 exit=0 cpu=1 memory=1", "ok", ""));
+
+        List<WarmRunnerFrame> frames = WarmRunnerFrame.parse(stdout);
+
+        assertEquals(2, frames.size());
+        assertEquals("你好\n", frames.get(0).getOutput());
+        assertEquals("错误", frames.get(0).getError());
+        assertEquals("ok", frames.get(1).getOutput());
+    }
+
+    @Test
+    public void stopsAtTruncatedFrame() {
+        byte[] complete = frame("index=0 status=0 exit=0 cpu=1 memory=1", "a", "");
+        byte[] truncated = frame("index=1 status=0 exit=0 cpu=1 memory=1", "abcdef", "");
+        byte[] stdout = concat(complete, Arrays.copyOf(truncated, truncated.length - 3));
+
+        List<WarmRunnerFrame> frames = WarmRunnerFrame.parse(stdout);
+
+        assertEquals(1, frames.size());
+        assertEquals(0, frames.get(0).getIndex());
+    }
+
+    @Test
+    public void stopsAtUnknownContentOrBadHeader() {
+        assertTrue(WarmRunnerFrame.parse("Error: Could not find or load main class\n".getBytes(StandardCharsets.UTF_8)).isEmpty());
+        assertTrue(WarmRunnerFrame.parse("__OJ_CASE__ index=x out=0 err=0\n".getBytes(StandardCharsets.UTF_8)).isEmpty());
+        // 缺少长度字段无法定位下一帧
+        assertTrue(WarmRunnerFrame.parse("__OJ_CASE__ index=0 status=0\n".getBytes(StandardCharsets.UTF_8)).isEmpty());
+        // 没有换行的帧头 (启动器写到一半被结束)
+        assertTrue(WarmRunnerFrame.parse("__OJ_CASE__ index=0 status=0 exit=0".getBytes(StandardCharsets.UTF_8)).isEmpty());
+        assertTrue(WarmRunnerFrame.parse(new byte[0]).isEmpty());
+    }
+
+    private static byte[] frame(String fields, String out, String err) {
+        byte[] outBytes = out.getBytes(StandardCharsets.UTF_8);
+        byte[] errBytes = err.getBytes(StandardCharsets.UTF_8);
+        String header = WarmRunnerFrame.CASE_MARK + " " + fields + " out=" + outBytes.length + " err=" + errBytes.length + "\n";
+        return concat(header.getBytes(StandardCharsets.US_ASCII), outBytes, errBytes);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            bos.write(part, 0, part.length);
+        }
+        return bos.toByteArray();
+    }
+}
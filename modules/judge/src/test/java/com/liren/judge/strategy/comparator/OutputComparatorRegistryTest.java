@@ -0,0 +1,114 @@
+package com.liren.judge.strategy.comparator;
+
+import com.liren.common.core.enums.CheckerTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutputComparatorRegistryTest {
+
+    private final OutputComparatorRegistry registry = new OutputComparatorRegistry(1e-6);
+
+    @Test
+    public void exactIgnoresOnlySurroundingWhitespace() throws IOException {
+        assertTrue(accepted(CheckerTypeEnum.EXACT, null, "1 2\n3\n\n", "  1 2\n3"));
+        assertFalse(accepted(CheckerTypeEnum.EXACT, null, "1  2\n3", "1 2\n3"));
+        assertFalse(accepted(CheckerTypeEnum.EXACT, null, "1 2 3", "1 2\n3"));
+        assertFalse(accepted(CheckerTypeEnum.EXACT, null, "1 2", "1 2\n3"));
+    }
+
+    @Test
+    public void exactReportsFirstDifferenceInUserOutput() throws IOException {
+        CompareResult result = compare(CheckerTypeEnum.EXACT, null, "abc\nabd\n", "abc\nabc\n");
+
+        assertFalse(result.isAccepted());
+        assertEquals(2, result.getLine());
+        assertEquals(3, result.getColumn());
+    }
+
+    @Test
+    public void whitespaceKeepsLineStructure() throws IOException {
+        assertTrue(accepted(CheckerTypeEnum.WHITESPACE, null, "  1   2 \n3\t\n\n\n", "1 2\n3"));
+        assertFalse(accepted(CheckerTypeEnum.WHITESPACE, null, "1 2 3", "1 2\n3"));
+        assertFalse(accepted(CheckerTypeEnum.WHITESPACE, null, "12\n3", "1 2\n3"));
+        assertFalse(accepted(CheckerTypeEnum.WHITESPACE, null, "1 2\n\n3", "1 2\n3"));
+        assertFalse(accepted(CheckerTypeEnum.WHITESPACE, null, "1 2", "1 2\n3"));
+    }
+
+    @Test
+    public void tokenIgnoresLineBreaks() throws IOException {
+        assertTrue(accepted(CheckerTypeEnum.TOKEN, null, "1\n2   3\n\n", "1 2 3"));
+        assertFalse(accepted(CheckerTypeEnum.TOKEN, null, "1 23", "1 2 3"));
+        assertFalse(accepted(CheckerTypeEnum.TOKEN, null, "1 2", "1 2 3"));
+        assertFalse(accepted(CheckerTypeEnum.TOKEN, null, "1 2 3 4", "1 2 3"));
+
+        CompareResult result = compare(CheckerTypeEnum.TOKEN, null, "1\n2 4", "1 2 3");
+        assertEquals(2, result.getLine());
+        assertEquals(3, result.getColumn());
+    }
+
+    @Test
+    public void floatComparesNumbersWithinEpsilon() throws IOException {
+        assertTrue(accepted(CheckerTypeEnum.FLOAT, null, "0.3333334 yes", "0.333333 yes"));
+        assertFalse(accepted(CheckerTypeEnum.FLOAT, null, "0.3334", "0.333333"));
+        // 相对误差
+        assertTrue(accepted(CheckerTypeEnum.FLOAT, null, "1000000.5", "1000000"));
+        // 非数字单词要求完全一致
+        assertFalse(accepted(CheckerTypeEnum.FLOAT, null, "0.333333 no", "0.333333 yes"));
+        // NaN、Infinity、类型后缀不当作数字
+        assertFalse(accepted(CheckerTypeEnum.FLOAT, null, "NaN", "0"));
+        assertFalse(accepted(CheckerTypeEnum.FLOAT, null, "1d", "1"));
+        assertFalse(accepted(CheckerTypeEnum.FLOAT, null, "1 2", "1 2 3"));
+    }
+
+    @Test
+    public void floatUsesCheckerArgAsEpsilon() throws IOException {
+        assertTrue(accepted(CheckerTypeEnum.FLOAT, "0.01", "3.145", "3.14"));
+        assertFalse(accepted(CheckerTypeEnum.FLOAT, "0.0001", "3.145", "3.14"));
+        // 不合法的误差使用默认误差
+        assertFalse(accepted(CheckerTypeEnum.FLOAT, "abc", "3.145", "3.14"));
+        assertFalse(accepted(CheckerTypeEnum.FLOAT, "-1", "3.145", "3.14"));
+    }
+
+    @Test
+    public void comparatorsAreShared() {
+        assertSame(registry.get(CheckerTypeEnum.TOKEN, null), registry.get(CheckerTypeEnum.TOKEN, "0.1"));
+        assertSame(registry.get(CheckerTypeEnum.FLOAT, "0.01"), registry.get(CheckerTypeEnum.FLOAT, " 0.01 "));
+        assertSame(registry.get(CheckerTypeEnum.FLOAT, null), registry.get(CheckerTypeEnum.FLOAT, "bad"));
+    }
+
+    @Test
+    public void specialHasNoComparator() {
+        assertThrows(IllegalArgumentException.class, () -> registry.get(CheckerTypeEnum.SPECIAL, null));
+    }
+
+    @Test
+    public void longOutputSpansBuffers() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            expected.append(i).append(i % 10 == 9 ? '\n' : ' ');
+        }
+        String user = expected.toString().replace(" ", "  ");
+
+        assertTrue(accepted(CheckerTypeEnum.TOKEN, null, user, expected.toString()));
+        assertTrue(accepted(CheckerTypeEnum.WHITESPACE, null, user, expected.toString()));
+        assertTrue(accepted(CheckerTypeEnum.FLOAT, null, user, expected.toString()));
+        assertFalse(accepted(CheckerTypeEnum.EXACT, null, user, expected.toString()));
+        assertTrue(accepted(CheckerTypeEnum.EXACT, null, expected.toString(), expected.toString()));
+    }
+
+    private boolean accepted(CheckerTypeEnum type, String arg, String user, String expected) throws IOException {
+        return compare(type, arg, user, expected).isAccepted();
+    }
+
+    private CompareResult compare(CheckerTypeEnum type, String arg, String user, String expected) throws IOException {
+        return registry.get(type, arg).compare(new StringReader(user), new StringReader(expected));
+    }
+}
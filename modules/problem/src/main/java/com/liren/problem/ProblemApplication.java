@@ -5,8 +5,10 @@ import com.liren.api.problem.api.user.UserInterface;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @EnableFeignClients(clients = {ContestInterface.class, UserInterface.class})
+@EnableScheduling
 @SpringBootApplication
 public class ProblemApplication {
     public static void main(String[] args) {
@@ -1,12 +1,23 @@
 package com.liren.problem.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.liren.common.core.constant.Constants;
+import com.liren.common.core.enums.JudgeLaneEnum;
 import org.apache.tomcat.util.bcel.Const;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
     @Bean("judgeQueue")
@@ -24,4 +35,109 @@ public class RabbitMQConfig {
                            @Qualifier("judgeExchange") DirectExchange exchange) {
         return BindingBuilder.bind(queue).to(exchange).with(Constants.JUDGE_ROUTING_KEY);
     }
+
+    /**
+     * 判题通道队列：每个通道一个队列，路由键 oj.judge.{lane}
+     * (上面的 judgeQueue 是通道拆分前的旧队列，保留到存量消息消费完)
+     */
+    @Bean("judgeLaneDeclarables")
+    public Declarables judgeLaneDeclarables(@Qualifier("judgeExchange") DirectExchange exchange) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (JudgeLaneEnum lane : JudgeLaneEnum.values()) {
+            Queue queue = QueueBuilder.durable(lane.getQueue()).build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with(lane.getRoutingKey()));
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * 判题结果队列 (判题服务投递，本服务批量消费回写)
+     */
+    @Bean("judgeResultQueue")
+    public Queue judgeResultQueue() {
+        return QueueBuilder.durable(Constants.JUDGE_RESULT_QUEUE).build();
+    }
+
+    /**
+     * 判题结果死信队列 (批量回写失败且逐条回写也失败的结果)
+     */
+    @Bean("judgeResultDlq")
+    public Queue judgeResultDlq() {
+        return QueueBuilder.durable(Constants.JUDGE_RESULT_DLQ).build();
+    }
+
+    @Bean("judgeResultExchange")
+    public DirectExchange judgeResultExchange() {
+        return ExchangeBuilder.directExchange(Constants.JUDGE_RESULT_EXCHANGE).build();
+    }
+
+    @Bean("judgeResultBinding")
+    public Binding judgeResultBinding(@Qualifier("judgeResultQueue") Queue queue,
+                                      @Qualifier("judgeResultExchange") DirectExchange exchange) {
+        return BindingBuilder.bind(queue).to(exchange).with(Constants.JUDGE_RESULT_ROUTING_KEY);
+    }
+
+    /**
+     * 判题事件交换机 (Fanout：每个事件处理器一个队列，互不影响)
+     */
+    @Bean("submitEventExchange")
+    public FanoutExchange submitEventExchange() {
+        return ExchangeBuilder.fanoutExchange(Constants.SUBMIT_EVENT_EXCHANGE).build();
+    }
+
+    @Bean("submitEventRankQueue")
+    public Queue submitEventRankQueue() {
+        return QueueBuilder.durable(Constants.SUBMIT_EVENT_RANK_QUEUE).build();
+    }
+
+    @Bean("submitEventRankBinding")
+    public Binding submitEventRankBinding(@Qualifier("submitEventRankQueue") Queue queue,
+                                          @Qualifier("submitEventExchange") FanoutExchange exchange) {
+        return BindingBuilder.bind(queue).to(exchange);
+    }
+
+    @Bean("submitEventProblemStatsQueue")
+    public Queue submitEventProblemStatsQueue() {
+        return QueueBuilder.durable(Constants.SUBMIT_EVENT_PROBLEM_STATS_QUEUE).build();
+    }
+
+    @Bean("submitEventProblemStatsBinding")
+    public Binding submitEventProblemStatsBinding(@Qualifier("submitEventProblemStatsQueue") Queue queue,
+                                                  @Qualifier("submitEventExchange") FanoutExchange exchange) {
+        return BindingBuilder.bind(queue).to(exchange);
+    }
+
+    /**
+     * 批量消费者容器工厂 (判题结果回写、判题事件处理共用)
+     * 每次最多攒 batch-size 条消息 (或等待 receive-timeout-ms 后不足一批也交付) 一起处理；
+     * 整批处理成功后自动确认，处理异常时整批重新投递
+     */
+    @Bean("batchListenerContainerFactory")
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${oj.problem.result-batch.size:100}") int batchSize,
+            @Value("${oj.problem.result-batch.receive-timeout-ms:200}") long receiveTimeoutMs,
+            @Value("${oj.problem.result-batch.consumers:2}") int consumers) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setPrefetchCount(batchSize * 2); // 预取至少一批，否则永远攒不满
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setConcurrentConsumers(consumers);
+        factory.setMaxConcurrentConsumers(consumers);
+        return factory;
+    }
+
+    /**
+     * 消息统一使用 JSON 序列化 (RabbitTemplate 自动使用该转换器)
+     */
+    @Bean
+    public MessageConverter jsonMessageConverter(ObjectMapper objectMapper) {
+        return new Jackson2JsonMessageConverter(objectMapper);
+    }
 }
@@ -24,9 +24,13 @@ import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -66,6 +70,30 @@ public class ProblemController {
     }
 
 
+    @PostMapping(value = "/test-case/upload/{problemId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+            summary = "上传测试用例压缩包",
+            description = "管理员接口。zip 包内为 1.in/1.out、2.in/2.out ... 整体替换题目原有的用例，返回用例组数"
+    )
+    public Result<Integer> uploadTestCases(@PathVariable("problemId") Long problemId,
+                                           @RequestPart("file") MultipartFile file) throws IOException {
+        // 流式读取，不把整个压缩包读进内存
+        try (InputStream zipStream = file.getInputStream()) {
+            return Result.success(problemService.uploadTestCases(problemId, zipStream));
+        }
+    }
+
+
+    @PostMapping("/rejudge/{problemId}")
+    @Operation(
+            summary = "重判题目",
+            description = "管理员接口。题目的全部提交重新判题 (进入重判通道，不影响新提交)，返回重判的提交数"
+    )
+    public Result<Integer> rejudgeProblem(@PathVariable("problemId") Long problemId) {
+        return Result.success(problemService.rejudgeProblem(problemId));
+    }
+
+
     @PostMapping("/list/page")
     @Operation(
             summary = "分页获取题目列表",
@@ -49,6 +49,18 @@ public class ProblemAddDTO {
     @Schema(description = "栈限制(MB)")
     private Integer stackLimit;
 
+    @Schema(description = "判题模式：0-ACM(遇到未通过的用例即停止) 1-OI(按通过的用例数给分)，默认 OI")
+    private Integer judgeMode;
+
+    @Schema(description = "输出比对方式：0-精确 1-忽略空白 2-逐词 3-浮点误差 4-特判程序，默认精确比对")
+    private Integer checkerType;
+
+    @Schema(description = "比对参数 (浮点误差时为允许误差，如 1e-6)")
+    private String checkerArg;
+
+    @Schema(description = "特判程序源码 (C++，参数: 输入文件 用户输出 标准输出，返回 0 表示通过)")
+    private String checkerCode;
+
     @Schema(description = "样例输入")
     private String sampleInput;
 
@@ -41,6 +41,22 @@ public class ProblemEntity extends BaseEntity {
 
     private Integer stackLimit; // 栈空间限制MB
 
+    private Integer caseVersion; // 测试用例版本 (用例变更时递增)
+
+    /**
+     * 判题模式：0-ACM 1-OI
+     */
+    private Integer judgeMode;
+
+    /**
+     * 输出比对方式：0-精确 1-忽略空白 2-逐词 3-浮点误差 4-特判程序
+     */
+    private Integer checkerType;
+
+    private String checkerArg; // 比对参数 (浮点误差时为允许误差)
+
+    private String checkerCode; // 特判程序源码 (C++)
+
     private String sampleInput; // 样例输入
 
     private String sampleOutput; // 样例输出
@@ -0,0 +1,26 @@
+package com.liren.problem.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 首次 AC 记录：主键 (user_id, problem_id)，与判题结果在同一事务中写入，先写入的提交就是首次 AC
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("tb_problem_first_ac")
+public class ProblemFirstAcEntity implements Serializable {
+    private Long userId;
+
+    private Long problemId;
+
+    private Long submitId; // 首次 AC 的提交ID
+
+    private LocalDateTime createTime;
+}
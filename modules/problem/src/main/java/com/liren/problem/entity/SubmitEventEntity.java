@@ -0,0 +1,82 @@
+package com.liren.problem.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 判题事件发件箱：与判题结果在同一事务中写入，由 SubmitEventRelay 投递到 MQ 后标记为已投递
+ * 已投递的记录保留一段时间 (墓碑)，同一提交结果被重复回写时 INSERT IGNORE 不会再产生新事件
+ * 重判改变了已投递的结果时另外写入一条更正事件 (新的事件ID)，携带更正前后的结果
+ */
+@Data
+@TableName("tb_submit_event")
+public class SubmitEventEntity implements Serializable {
+    @TableId(value = "event_id", type = IdType.INPUT)
+    private Long eventId; // 判题事件等于提交ID
+
+    private Long submitId;
+
+    private Long problemId;
+
+    private Long contestId;
+
+    private Long userId;
+
+    private Integer judgeResult;
+
+    private Integer score;
+
+    private Boolean firstAc;
+
+    private Boolean correction; // 是否为重判更正事件
+
+    private Integer oldJudgeResult; // 更正前的判题结果
+
+    private Integer oldScore; // 更正前的得分
+
+    private Integer firstAcDelta; // 更正后用户通过题数的变化 (-1/0/1)
+
+    private Boolean sent; // 是否已投递
+
+    private LocalDateTime createTime;
+
+    /**
+     * 提交的判题事件 (事件ID等于提交ID)
+     */
+    public static SubmitEventEntity judged(ProblemSubmitRecordEntity record, boolean firstAc, boolean sent) {
+        SubmitEventEntity event = new SubmitEventEntity();
+        event.setEventId(record.getSubmitId());
+        event.setSubmitId(record.getSubmitId());
+        event.setProblemId(record.getProblemId());
+        event.setContestId(record.getContestId());
+        event.setUserId(record.getUserId());
+        event.setJudgeResult(record.getJudgeResult());
+        event.setScore(record.getScore());
+        event.setFirstAc(firstAc);
+        event.setCorrection(false);
+        event.setFirstAcDelta(0);
+        event.setSent(sent);
+        return event;
+    }
+
+    /**
+     * 重判更正事件 (事件ID与提交ID同一个生成器，不会与判题事件冲突)
+     * @param record 更正后的提交记录
+     * @param previous 更正前的提交记录
+     */
+    public static SubmitEventEntity corrected(ProblemSubmitRecordEntity record, ProblemSubmitRecordEntity previous, int firstAcDelta) {
+        SubmitEventEntity event = judged(record, false, false);
+        event.setEventId(IdWorker.getId());
+        event.setCorrection(true);
+        event.setOldJudgeResult(previous.getJudgeResult());
+        event.setOldScore(previous.getScore());
+        event.setFirstAcDelta(firstAcDelta);
+        return event;
+    }
+}
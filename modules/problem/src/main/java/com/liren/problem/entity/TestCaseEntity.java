@@ -18,7 +18,21 @@ public class TestCaseEntity extends BaseTimeEntity {
 
     private Long problemId;
 
-    private String input; // 输入数据
+    private Integer caseIndex; // 用例序号 (从 0 开始)
 
-    private String output; // 期望输出
+    private String input; // 输入数据 (仅旧数据，新数据存放在 TestCaseStorage 中)
+
+    private String output; // 期望输出 (仅旧数据)
+
+    private String inputKey; // 输入文件的存储 Key
+
+    private Long inputSize; // 输入文件大小 (字节)
+
+    private String inputSha256; // 输入文件 SHA-256
+
+    private String outputKey; // 输出文件的存储 Key
+
+    private Long outputSize; // 输出文件大小 (字节)
+
+    private String outputSha256; // 输出文件 SHA-256
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package com.liren.problem.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.liren.common.core.enums.JudgeResultEnum;
+import com.liren.problem.entity.ProblemFirstAcEntity;
+import com.liren.problem.entity.ProblemSubmitRecordEntity;
+import com.liren.problem.mapper.ProblemFirstAcMapper;
+import com.liren.problem.mapper.ProblemSubmitMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 首次 AC 判定 (需在回写判题结果的同一事务内调用)
+ * 本批 AC 的 用户+题目 先 INSERT IGNORE 到 tb_problem_first_ac，唯一主键保证并发事务中只有一条写入成功；
+ * 再查回记录，记录中的提交ID等于自己的才是首次 AC，重复处理同一提交结果时结论不变
+ * 重判改变了结果时按提交记录重新确定首次 AC (最早的 AC 提交)，并给出用户通过题数的变化
+ */
+@Component
+public class FirstAcLedger {
+
+    @Autowired
+    private ProblemFirstAcMapper problemFirstAcMapper;
+
+    @Autowired
+    private ProblemSubmitMapper problemSubmitMapper;
+
+    /**
+     * @param records 已更新的提交记录 (需带 userId、problemId、judgeResult)
+     * @return 其中属于首次 AC 的提交ID
+     */
+    public Set<Long> resolve(List<ProblemSubmitRecordEntity> records) {
+        // 用户+题目 -> 候选记录 (本批内同一用户同一题目有多个 AC 时取最早的提交)；
+        // 按 Key 排序写入，并发事务加锁顺序一致，避免死锁
+        TreeMap<String, ProblemFirstAcEntity> candidates = new TreeMap<>();
+        for (ProblemSubmitRecordEntity record : records) {
+            if (!JudgeResultEnum.ACCEPTED.getCode().equals(record.getJudgeResult())) {
+                continue;
+            }
+            ProblemFirstAcEntity candidate = new ProblemFirstAcEntity(record.getUserId(), record.getProblemId(),
+                    record.getSubmitId(), null);
+            candidates.merge(key(record.getUserId(), record.getProblemId()), candidate,
+                    (a, b) -> a.getSubmitId() <= b.getSubmitId() ? a : b);
+        }
+        if (candidates.isEmpty()) {
+            return Collections.emptySet();
+        }
+        problemFirstAcMapper.insertIgnoreBatch(new ArrayList<>(candidates.values()));
+
+        LambdaQueryWrapper<ProblemFirstAcEntity> wrapper = new LambdaQueryWrapper<>();
+        wrapper.in(ProblemFirstAcEntity::getUserId,
+                        candidates.values().stream().map(ProblemFirstAcEntity::getUserId).collect(Collectors.toSet()))
+                .in(ProblemFirstAcEntity::getProblemId,
+                        candidates.values().stream().map(ProblemFirstAcEntity::getProblemId).collect(Collectors.toSet()));
+        Set<Long> firstAcSubmitIds = new HashSet<>();
+        for (ProblemFirstAcEntity ledger : problemFirstAcMapper.selectList(wrapper)) {
+            ProblemFirstAcEntity candidate = candidates.get(key(ledger.getUserId(), ledger.getProblemId()));
+            if (candidate != null && candidate.getSubmitId().equals(ledger.getSubmitId())) {
+                firstAcSubmitIds.add(ledger.getSubmitId());
+            }
+        }
+        return firstAcSubmitIds;
+    }
+
+    /**
+     * 重判更正后重新确定首次 AC (需在回写重判结果的同一事务内、提交记录更新之后调用)
+     * 以该用户该题最早的 AC 提交为准：原来没有记录的补写，不再有 AC 的删除，最早的 AC 变了的改写
+     * @param records 结果被重判改变的提交记录 (需带 submitId、userId、problemId)
+     * @return 提交ID -> 用户通过题数的变化 (-1/0/1)，同一用户同一题目的变化只记在本批内的第一条上，其余为 0
+     */
+    public Map<Long, Integer> reresolve(List<ProblemSubmitRecordEntity> records) {
+        // 按 Key 排序加锁，与 resolve 一致
+        TreeMap<String, ProblemSubmitRecordEntity> pairs = new TreeMap<>();
+        for (ProblemSubmitRecordEntity record : records) {
+            pairs.putIfAbsent(key(record.getUserId(), record.getProblemId()), record);
+        }
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (ProblemSubmitRecordEntity record : records) {
+            deltas.put(record.getSubmitId(), 0);
+        }
+        for (ProblemSubmitRecordEntity record : pairs.values()) {
+            LambdaQueryWrapper<ProblemFirstAcEntity> ledgerWrapper = new LambdaQueryWrapper<>();
+            ledgerWrapper.eq(ProblemFirstAcEntity::getUserId, record.getUserId())
+                    .eq(ProblemFirstAcEntity::getProblemId, record.getProblemId())
+                    .last("for update");
+            ProblemFirstAcEntity ledger = problemFirstAcMapper.selectOne(ledgerWrapper);
+
+            LambdaQueryWrapper<ProblemSubmitRecordEntity> acWrapper = new LambdaQueryWrapper<>();
+            acWrapper.select(ProblemSubmitRecordEntity::getSubmitId)
+                    .eq(ProblemSubmitRecordEntity::getUserId, record.getUserId())
+                    .eq(ProblemSubmitRecordEntity::getProblemId, record.getProblemId())
+                    .eq(ProblemSubmitRecordEntity::getJudgeResult, JudgeResultEnum.ACCEPTED.getCode())
+                    .orderByAsc(ProblemSubmitRecordEntity::getSubmitId)
+                    .last("limit 1");
+            ProblemSubmitRecordEntity earliest = problemSubmitMapper.selectOne(acWrapper);
+
+            if (earliest == null) {
+                if (ledger != null) {
+                    LambdaQueryWrapper<ProblemFirstAcEntity> deleteWrapper = new LambdaQueryWrapper<>();
+                    deleteWrapper.eq(ProblemFirstAcEntity::getUserId, record.getUserId())
+                            .eq(ProblemFirstAcEntity::getProblemId, record.getProblemId());
+                    problemFirstAcMapper.delete(deleteWrapper);
+                    deltas.put(record.getSubmitId(), -1);
+                }
+            } else if (ledger == null) {
+                problemFirstAcMapper.insertIgnoreBatch(Collections.singletonList(
+                        new ProblemFirstAcEntity(record.getUserId(), record.getProblemId(), earliest.getSubmitId(), null)));
+                deltas.put(record.getSubmitId(), 1);
+            } else if (!earliest.getSubmitId().equals(ledger.getSubmitId())) {
+                LambdaUpdateWrapper<ProblemFirstAcEntity> updateWrapper = new LambdaUpdateWrapper<>();
+                updateWrapper.eq(ProblemFirstAcEntity::getUserId, record.getUserId())
+                        .eq(ProblemFirstAcEntity::getProblemId, record.getProblemId())
+                        .set(ProblemFirstAcEntity::getSubmitId, earliest.getSubmitId());
+                problemFirstAcMapper.update(null, updateWrapper);
+            }
+        }
+        return deltas;
+    }
+
+    private static String key(Long userId, Long problemId) {
+        return userId + ":" + problemId;
+    }
+}
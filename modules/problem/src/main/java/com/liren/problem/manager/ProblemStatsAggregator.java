@@ -0,0 +1,164 @@
+package com.liren.problem.manager;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.liren.common.core.constant.Constants;
+import com.liren.problem.entity.ProblemEntity;
+import com.liren.problem.mapper.ProblemMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 题目提交数/通过数聚合器 (Write-Behind)
+ * 判题事件只在 Redis Hash 中累加增量，定时把增量合并写入 tb_problem，避免比赛期间热门题目行锁排队
+ * 读取时叠加尚未刷盘的增量 (read-your-writes)
+ */
+@Slf4j
+@Component
+public class ProblemStatsAggregator {
+
+    private static final String SUBMIT_SUFFIX = ":submit";
+    private static final String ACCEPTED_SUFFIX = ":accepted";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private ProblemMapper problemMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${oj.problem.stats.flush-lock-seconds:60}")
+    private long flushLockSeconds;
+
+    /**
+     * 累加增量 (一个 pipeline 内完成)
+     * @param deltas problemId -> [提交数增量, 通过数增量]
+     */
+    public void add(Map<Long, int[]> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                deltas.forEach((problemId, delta) -> {
+                    if (delta[0] != 0) {
+                        ops.opsForHash().increment(Constants.PROBLEM_STATS_DELTA_KEY, problemId + SUBMIT_SUFFIX, delta[0]);
+                    }
+                    if (delta[1] != 0) {
+                        ops.opsForHash().increment(Constants.PROBLEM_STATS_DELTA_KEY, problemId + ACCEPTED_SUFFIX, delta[1]);
+                    }
+                });
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 查询尚未刷盘的增量 (包括正在刷盘的部分)
+     * @return problemId -> [提交数增量, 通过数增量]，没有增量的题目不在结果中
+     */
+    public Map<Long, int[]> getPendingDeltas(Collection<Long> problemIds) {
+        Map<Long, int[]> result = new HashMap<>();
+        if (problemIds.isEmpty()) {
+            return result;
+        }
+        List<Object> fields = new ArrayList<>(problemIds.size() * 2);
+        for (Long problemId : problemIds) {
+            fields.add(problemId + SUBMIT_SUFFIX);
+            fields.add(problemId + ACCEPTED_SUFFIX);
+        }
+        for (String key : List.of(Constants.PROBLEM_STATS_DELTA_KEY, Constants.PROBLEM_STATS_FLUSHING_KEY)) {
+            List<Object> values = redisTemplate.opsForHash().multiGet(key, fields);
+            int i = 0;
+            for (Long problemId : problemIds) {
+                int submit = toInt(values.get(i++));
+                int accepted = toInt(values.get(i++));
+                if (submit != 0 || accepted != 0) {
+                    int[] delta = result.computeIfAbsent(problemId, k -> new int[2]);
+                    delta[0] += submit;
+                    delta[1] += accepted;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 定时刷盘
+     * 1. 抢锁，保证同一时刻只有一个实例刷盘
+     * 2. 上次刷盘失败遗留的 flushing 先处理；否则把当前增量原子改名为 flushing，之后的增量写入新的 Hash
+     * 3. 一个事务内按题目写入增量，成功后删除 flushing；失败时保留，下次重试
+     * 注意：数据库提交成功但删除 flushing 之前进程崩溃，这一批增量会被重复写入一次
+     */
+    @Scheduled(fixedDelayString = "${oj.problem.stats.flush-interval-ms:5000}")
+    public void flush() {
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(Constants.PROBLEM_STATS_FLUSH_LOCK_KEY, 1,
+                flushLockSeconds, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(Constants.PROBLEM_STATS_FLUSHING_KEY))) {
+                if (!Boolean.TRUE.equals(redisTemplate.hasKey(Constants.PROBLEM_STATS_DELTA_KEY))) {
+                    return;
+                }
+                redisTemplate.rename(Constants.PROBLEM_STATS_DELTA_KEY, Constants.PROBLEM_STATS_FLUSHING_KEY);
+            }
+
+            Map<Long, int[]> deltas = parse(redisTemplate.opsForHash().entries(Constants.PROBLEM_STATS_FLUSHING_KEY));
+            transactionTemplate.executeWithoutResult(status -> deltas.forEach(this::applyDelta));
+            redisTemplate.delete(Constants.PROBLEM_STATS_FLUSHING_KEY);
+            log.info("题目统计刷盘完成, 题目数: {}", deltas.size());
+        } catch (Exception e) {
+            log.error("题目统计刷盘失败，下次重试", e);
+        } finally {
+            redisTemplate.delete(Constants.PROBLEM_STATS_FLUSH_LOCK_KEY);
+        }
+    }
+
+    private void applyDelta(Long problemId, int[] delta) {
+        if (delta[0] == 0 && delta[1] == 0) {
+            return;
+        }
+        LambdaUpdateWrapper<ProblemEntity> problemUpdateWrapper = new LambdaUpdateWrapper<>();
+        problemUpdateWrapper.eq(ProblemEntity::getProblemId, problemId);
+        // 增量都是整数，直接拼接不存在注入问题
+        problemUpdateWrapper.setSql("submit_num = IFNULL(submit_num, 0) + " + delta[0]
+                + ", accepted_num = IFNULL(accepted_num, 0) + " + delta[1]);
+        problemMapper.update(null, problemUpdateWrapper);
+    }
+
+    private static Map<Long, int[]> parse(Map<Object, Object> entries) {
+        Map<Long, int[]> deltas = new HashMap<>();
+        entries.forEach((field, value) -> {
+            String name = field.toString();
+            int split = name.lastIndexOf(':');
+            int[] delta = deltas.computeIfAbsent(Long.parseLong(name.substring(0, split)), k -> new int[2]);
+            if (name.endsWith(SUBMIT_SUFFIX)) {
+                delta[0] += toInt(value);
+            } else {
+                delta[1] += toInt(value);
+            }
+        });
+        return deltas;
+    }
+
+    private static int toInt(Object value) {
+        return value == null ? 0 : Integer.parseInt(value.toString());
+    }
+}
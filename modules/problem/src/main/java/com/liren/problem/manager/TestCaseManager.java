@@ -0,0 +1,367 @@
+package com.liren.problem.manager;
+
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liren.api.problem.dto.problem.TestCaseDTO;
+import com.liren.common.core.result.ResultCode;
+import com.liren.problem.entity.TestCaseEntity;
+import com.liren.problem.exception.ProblemException;
+import com.liren.problem.storage.StoredObject;
+import com.liren.problem.storage.TestCaseStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 测试数据管理：用例内容写入 TestCaseStorage，数据库只保存 Key、大小、哈希等元数据
+ * 存储布局: {problemId}/v{caseVersion}/{index}.in|.out + manifest.json (新建题目时的用例)
+ *          {problemId}/u{uploadId}/{number}.in|.out + manifest.json (压缩包上传，每次上传一个独立目录)
+ */
+@Slf4j
+@Component
+public class TestCaseManager {
+
+    @Autowired
+    private TestCaseStorage testCaseStorage;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    /**
+     * 单次上传的测试数据解压后的总大小上限 (MB)
+     */
+    @Value("${oj.problem.case-storage.max-upload-mb:1024}")
+    private long maxUploadMb;
+
+    /**
+     * 用例被替换后，旧文件延迟多久删除 (ms)，留给正在读取旧用例的判题任务
+     */
+    @Value("${oj.problem.case-storage.cleanup-delay-ms:600000}")
+    private long cleanupDelayMs;
+
+    // 用例文件名: 编号.in / 编号.out
+    private static final Pattern CASE_FILE_PATTERN = Pattern.compile("(\\d+)\\.(in|out)");
+
+    /**
+     * 保存一组用例内容，返回待入库的元数据实体 (input/output 列不再保存内容)
+     */
+    public List<TestCaseEntity> store(Long problemId, int caseVersion, List<TestCaseDTO> testCases) {
+        List<TestCaseEntity> entities = new ArrayList<>(testCases.size());
+        TestCaseManifest manifest = newManifest(problemId, caseVersion);
+        try {
+            for (int i = 0; i < testCases.size(); i++) {
+                TestCaseDTO dto = testCases.get(i);
+                StoredObject input = testCaseStorage.put(caseKey(problemId, caseVersion, i, "in"), toStream(dto.getInput()));
+                StoredObject output = testCaseStorage.put(caseKey(problemId, caseVersion, i, "out"), toStream(dto.getOutput()));
+                entities.add(toEntity(problemId, i, input, output));
+                manifest.getCases().add(toManifestEntry(i, input, output));
+            }
+            writeManifest(manifest);
+        } catch (IOException e) {
+            log.error("保存测试数据失败, problemId: {}", problemId, e);
+            throw new ProblemException(ResultCode.IO_ERROR);
+        }
+        return entities;
+    }
+
+    /**
+     * 从 zip 包流式导入用例 (1.in/1.out、2.in/2.out ...)
+     * 逐个条目直接写入存储，边写边计算大小和哈希，不会把整个压缩包读进内存；
+     * 用例按文件名中的编号排序，每个编号必须同时有 .in 和 .out，且各只能有一个
+     * (a/1.in 与 b/1.in、1.in 与 01.in 都是重复的编号，直接拒绝，不会互相覆盖)；
+     * 每次上传写入独立的目录，并发上传之间互不覆盖，清理时也只会删除自己的文件
+     * @return 待入库的元数据实体；导入失败时本次上传已写入的文件会被清理
+     */
+    public List<TestCaseEntity> storeZip(Long problemId, InputStream zipStream) {
+        String prefix = uploadPrefix(problemId, IdWorker.getId());
+        // 编号 -> [输入, 输出]
+        TreeMap<Integer, StoredObject[]> stored = new TreeMap<>();
+        // 存储 Key -> zip 条目名 (用于提示重复的文件)
+        Map<String, String> entryNames = new HashMap<>();
+        long remaining = maxUploadMb * 1024 * 1024;
+        try {
+            ZipInputStream zip = new ZipInputStream(zipStream);
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                Matcher matcher = entry.isDirectory() ? null : CASE_FILE_PATTERN.matcher(baseName(entry.getName()));
+                if (matcher == null || !matcher.matches() || entry.getName().contains("__MACOSX")) {
+                    continue; // 忽略目录和无关文件
+                }
+                int number = Integer.parseInt(matcher.group(1));
+                boolean isInput = "in".equals(matcher.group(2));
+                String key = prefix + number + "." + matcher.group(2);
+                String previous = entryNames.putIfAbsent(key, entry.getName());
+                if (previous != null) {
+                    throw new ProblemException(ResultCode.PARAM_ERROR.getCode(),
+                            "用例 " + number + " 的 ." + matcher.group(2) + " 文件重复: " + previous + ", " + entry.getName());
+                }
+
+                // 限制解压后的总大小，防止压缩炸弹
+                StoredObject object = testCaseStorage.put(key, new LimitedInputStream(zip, remaining));
+                remaining -= object.getSize();
+                stored.computeIfAbsent(number, k -> new StoredObject[2])[isInput ? 0 : 1] = object;
+            }
+
+            if (stored.isEmpty()) {
+                throw new ProblemException(ResultCode.PARAM_ERROR.getCode(), "压缩包中没有找到用例文件 (1.in/1.out ...)");
+            }
+            for (Map.Entry<Integer, StoredObject[]> pair : stored.entrySet()) {
+                if (pair.getValue()[0] == null || pair.getValue()[1] == null) {
+                    throw new ProblemException(ResultCode.PARAM_ERROR.getCode(), "用例 " + pair.getKey() + " 缺少 .in 或 .out 文件");
+                }
+            }
+
+            List<TestCaseEntity> entities = new ArrayList<>(stored.size());
+            int index = 0;
+            for (StoredObject[] pair : stored.values()) {
+                entities.add(toEntity(problemId, index, pair[0], pair[1]));
+                index++;
+            }
+            return entities;
+        } catch (UploadTooLargeException e) {
+            deleteQuietly(prefix);
+            throw new ProblemException(ResultCode.PARAM_ERROR.getCode(), "测试数据解压后超过 " + maxUploadMb + " MB");
+        } catch (IOException e) {
+            deleteQuietly(prefix);
+            log.error("导入测试数据失败, problemId: {}", problemId, e);
+            throw new ProblemException(ResultCode.IO_ERROR);
+        } catch (RuntimeException e) {
+            deleteQuietly(prefix);
+            throw e;
+        }
+    }
+
+    /**
+     * 上传生效后写入清单 (此时才确定用例版本；清单只用于排查，写入失败只记录日志)
+     */
+    public void writeUploadManifest(Long problemId, int caseVersion, List<TestCaseEntity> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        TestCaseManifest manifest = newManifest(problemId, caseVersion);
+        for (TestCaseEntity entity : entities) {
+            manifest.getCases().add(toManifestEntry(entity));
+        }
+        try {
+            writeManifest(parentPrefix(entities.get(0).getInputKey()), manifest);
+        } catch (IOException e) {
+            log.warn("写入测试数据清单失败, problemId: {}", problemId, e);
+        }
+    }
+
+    /**
+     * 一组用例文件所在的存储目录 (旧数据没有 Key，不包含在内)
+     */
+    public static Set<String> prefixesOf(List<TestCaseEntity> entities) {
+        Set<String> prefixes = new LinkedHashSet<>();
+        for (TestCaseEntity entity : entities) {
+            if (entity.getInputKey() != null) {
+                prefixes.add(parentPrefix(entity.getInputKey()));
+            }
+            if (entity.getOutputKey() != null) {
+                prefixes.add(parentPrefix(entity.getOutputKey()));
+            }
+        }
+        return prefixes;
+    }
+
+    /**
+     * 延迟删除被替换下来的用例文件 (立即删除会让正在读取旧版本的判题任务失败)
+     * 延迟任务只保存在内存中，服务重启时未执行的清理会留下孤立文件，但不影响判题
+     */
+    public void deleteLater(String prefix) {
+        taskScheduler.schedule(() -> deleteQuietly(prefix), Instant.now().plusMillis(cleanupDelayMs));
+    }
+
+    /**
+     * 删除某个用例版本的全部文件 (失败只记录日志)
+     */
+    public void deleteQuietly(String prefix) {
+        try {
+            testCaseStorage.deleteByPrefix(prefix);
+        } catch (IOException e) {
+            log.warn("清理测试数据失败: {}", prefix, e);
+        }
+    }
+
+    /**
+     * 读取用例内容
+     * 新数据从存储读取；尚未迁移的旧数据内容仍在 input/output 列中，直接使用
+     */
+    public List<TestCaseDTO> load(List<TestCaseEntity> entities) {
+        List<TestCaseDTO> result = new ArrayList<>(entities.size());
+        try {
+            for (TestCaseEntity entity : entities) {
+                TestCaseDTO dto = new TestCaseDTO();
+                dto.setInput(entity.getInputKey() != null ? readString(entity.getInputKey()) : entity.getInput());
+                dto.setOutput(entity.getOutputKey() != null ? readString(entity.getOutputKey()) : entity.getOutput());
+                result.add(dto);
+            }
+        } catch (IOException e) {
+            log.error("读取测试数据失败", e);
+            throw new ProblemException(ResultCode.IO_ERROR);
+        }
+        return result;
+    }
+
+    /**
+     * 用例文件的存储 Key
+     */
+    public static String caseKey(Long problemId, int caseVersion, int index, String suffix) {
+        return versionPrefix(problemId, caseVersion) + index + "." + suffix;
+    }
+
+    /**
+     * 某个用例版本的存储前缀
+     */
+    public static String versionPrefix(Long problemId, int caseVersion) {
+        return problemId + "/v" + caseVersion + "/";
+    }
+
+    /**
+     * 某次压缩包上传的存储前缀
+     */
+    public static String uploadPrefix(Long problemId, long uploadId) {
+        return problemId + "/u" + uploadId + "/";
+    }
+
+    private static String parentPrefix(String key) {
+        return key.substring(0, key.lastIndexOf('/') + 1);
+    }
+
+    private TestCaseManifest newManifest(Long problemId, int caseVersion) {
+        TestCaseManifest manifest = new TestCaseManifest();
+        manifest.setProblemId(problemId);
+        manifest.setCaseVersion(caseVersion);
+        return manifest;
+    }
+
+    private TestCaseEntity toEntity(Long problemId, int index, StoredObject input, StoredObject output) {
+        TestCaseEntity entity = new TestCaseEntity();
+        entity.setCaseId(IdWorker.getId());
+        entity.setProblemId(problemId);
+        entity.setCaseIndex(index);
+        entity.setInputKey(input.getKey());
+        entity.setInputSize(input.getSize());
+        entity.setInputSha256(input.getSha256());
+        entity.setOutputKey(output.getKey());
+        entity.setOutputSize(output.getSize());
+        entity.setOutputSha256(output.getSha256());
+        return entity;
+    }
+
+    private TestCaseManifest.Entry toManifestEntry(int index, StoredObject input, StoredObject output) {
+        TestCaseManifest.Entry entry = new TestCaseManifest.Entry();
+        entry.setIndex(index);
+        entry.setInputKey(input.getKey());
+        entry.setInputSize(input.getSize());
+        entry.setInputSha256(input.getSha256());
+        entry.setOutputKey(output.getKey());
+        entry.setOutputSize(output.getSize());
+        entry.setOutputSha256(output.getSha256());
+        return entry;
+    }
+
+    private TestCaseManifest.Entry toManifestEntry(TestCaseEntity entity) {
+        TestCaseManifest.Entry entry = new TestCaseManifest.Entry();
+        entry.setIndex(entity.getCaseIndex());
+        entry.setInputKey(entity.getInputKey());
+        entry.setInputSize(entity.getInputSize());
+        entry.setInputSha256(entity.getInputSha256());
+        entry.setOutputKey(entity.getOutputKey());
+        entry.setOutputSize(entity.getOutputSize());
+        entry.setOutputSha256(entity.getOutputSha256());
+        return entry;
+    }
+
+    private void writeManifest(TestCaseManifest manifest) throws IOException {
+        writeManifest(versionPrefix(manifest.getProblemId(), manifest.getCaseVersion()), manifest);
+    }
+
+    private void writeManifest(String prefix, TestCaseManifest manifest) throws IOException {
+        testCaseStorage.put(prefix + "manifest.json", new ByteArrayInputStream(objectMapper.writeValueAsBytes(manifest)));
+    }
+
+    private static String baseName(String entryName) {
+        int slash = Math.max(entryName.lastIndexOf('/'), entryName.lastIndexOf('\\'));
+        return entryName.substring(slash + 1);
+    }
+
+    /**
+     * 超过剩余额度时抛出异常的输入流 (不关闭底层的 zip 流)
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                consume(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0) {
+                consume(n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // 由 ZipInputStream 的调用方统一关闭
+        }
+
+        private void consume(int n) throws UploadTooLargeException {
+            remaining -= n;
+            if (remaining < 0) {
+                throw new UploadTooLargeException();
+            }
+        }
+    }
+
+    private static class UploadTooLargeException extends IOException {
+    }
+
+    private String readString(String key) throws IOException {
+        try (InputStream in = testCaseStorage.get(key)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static InputStream toStream(String content) {
+        return new ByteArrayInputStream((content == null ? "" : content).getBytes(StandardCharsets.UTF_8));
+    }
+}
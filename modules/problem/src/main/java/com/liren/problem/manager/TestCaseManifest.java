@@ -0,0 +1,27 @@
+package com.liren.problem.manager;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 测试数据清单 (与用例文件存放在同一目录，记录每个文件的大小和哈希)
+ */
+@Data
+public class TestCaseManifest {
+    private Long problemId;
+    private Integer caseVersion;
+    private List<Entry> cases = new ArrayList<>();
+
+    @Data
+    public static class Entry {
+        private Integer index;
+        private String inputKey;
+        private Long inputSize;
+        private String inputSha256;
+        private String outputKey;
+        private Long outputSize;
+        private String outputSha256;
+    }
+}
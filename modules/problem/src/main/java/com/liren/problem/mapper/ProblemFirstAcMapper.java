@@ -0,0 +1,16 @@
+package com.liren.problem.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.liren.problem.entity.ProblemFirstAcEntity;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface ProblemFirstAcMapper extends BaseMapper<ProblemFirstAcEntity> {
+    /**
+     * 批量写入首次 AC 记录 (同一用户同一题目已有记录时忽略，唯一主键保证只有一条)
+     */
+    void insertIgnoreBatch(@Param("records") List<ProblemFirstAcEntity> records);
+}
@@ -0,0 +1,16 @@
+package com.liren.problem.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.liren.problem.entity.SubmitEventEntity;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface SubmitEventMapper extends BaseMapper<SubmitEventEntity> {
+    /**
+     * 批量写入判题事件 (同一提交已存在事件时忽略，保证一个提交只产生一次事件)
+     */
+    void insertIgnoreBatch(@Param("events") List<SubmitEventEntity> events);
+}
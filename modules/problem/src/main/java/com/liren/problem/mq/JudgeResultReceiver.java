@@ -0,0 +1,28 @@
+package com.liren.problem.mq;
+
+import com.liren.api.problem.dto.problem.ProblemSubmitUpdateDTO;
+import com.liren.common.core.constant.Constants;
+import com.liren.problem.service.IProblemService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 判题结果消费者：按批接收判题服务投递的结果，合并后在一个事务内回写
+ */
+@Slf4j
+@Component
+public class JudgeResultReceiver {
+
+    @Autowired
+    private IProblemService problemService;
+
+    @RabbitListener(queues = Constants.JUDGE_RESULT_QUEUE, containerFactory = "batchListenerContainerFactory")
+    public void receiveJudgeResults(List<ProblemSubmitUpdateDTO> results) {
+        log.info("接收到判题结果, 本批数量: {}", results.size());
+        problemService.batchUpdateSubmitResult(results);
+    }
+}
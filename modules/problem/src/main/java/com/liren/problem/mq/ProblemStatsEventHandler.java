@@ -0,0 +1,64 @@
+package com.liren.problem.mq;
+
+import com.liren.api.problem.dto.problem.SubmitJudgedEvent;
+import com.liren.common.core.constant.Constants;
+import com.liren.common.core.enums.JudgeResultEnum;
+import com.liren.common.redis.EventDeduplicator;
+import com.liren.problem.manager.ProblemStatsAggregator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 判题事件处理器：题目提交数/通过数
+ * 同一事件只累加一次 (累加成功后写入 Redis 完成标记)，同一题目的多个事件合并后写入聚合器 (定时刷盘)
+ * 重判更正事件不计提交数，通过数按更正前后是否 AC 调整
+ */
+@Slf4j
+@Component
+public class ProblemStatsEventHandler {
+
+    private static final String HANDLER = "problem-stats";
+
+    @Autowired
+    private ProblemStatsAggregator problemStatsAggregator;
+
+    @Autowired
+    private EventDeduplicator eventDeduplicator;
+
+    @RabbitListener(queues = Constants.SUBMIT_EVENT_PROBLEM_STATS_QUEUE, containerFactory = "batchListenerContainerFactory")
+    public void handle(List<SubmitJudgedEvent> events) {
+        List<SubmitJudgedEvent> newEvents = eventDeduplicator.filterUnprocessed(HANDLER, events, SubmitJudgedEvent::getEventId);
+        if (newEvents.isEmpty()) {
+            return;
+        }
+
+        // 同一题目的多次提交合并: [提交数, 通过数]
+        Map<Long, int[]> problemCounters = new HashMap<>();
+        for (SubmitJudgedEvent event : newEvents) {
+            int[] counter = problemCounters.computeIfAbsent(event.getProblemId(), k -> new int[2]);
+            if (Boolean.TRUE.equals(event.getCorrection())) {
+                counter[1] += accepted(event.getJudgeResult()) - accepted(event.getOldJudgeResult());
+                continue;
+            }
+            counter[0]++;
+            counter[1] += accepted(event.getJudgeResult());
+        }
+
+        // 只在 Redis 中累加，由 ProblemStatsAggregator 定时合并写入 tb_problem
+        problemStatsAggregator.add(problemCounters);
+        // 累加成功后才写入完成标记 (失败时异常抛出，消息重新投递后再次累加)
+        eventDeduplicator.markProcessed(HANDLER, newEvents.stream().map(SubmitJudgedEvent::getEventId).collect(Collectors.toList()));
+        log.info("题目统计事件处理完成, 事件数: {}, 题目数: {}", newEvents.size(), problemCounters.size());
+    }
+
+    private static int accepted(Integer judgeResult) {
+        return JudgeResultEnum.ACCEPTED.getCode().equals(judgeResult) ? 1 : 0;
+    }
+}
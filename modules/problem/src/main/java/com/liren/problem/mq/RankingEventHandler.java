@@ -0,0 +1,116 @@
+package com.liren.problem.mq;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.liren.api.problem.dto.problem.SubmitJudgedEvent;
+import com.liren.common.core.constant.Constants;
+import com.liren.common.core.enums.JudgeResultEnum;
+import com.liren.common.redis.RankingManager;
+import com.liren.problem.entity.ProblemFirstAcEntity;
+import com.liren.problem.entity.ProblemSubmitRecordEntity;
+import com.liren.problem.mapper.ProblemFirstAcMapper;
+import com.liren.problem.mapper.ProblemSubmitMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 判题事件处理器：排行榜
+ * 本身是幂等的 (首次 AC 由 SADD 去重，比赛只在分数提高时更新)，重复事件不会重复加分，因此不需要额外去重标记
+ * 重判更正事件按数据库中的当前结果重新计算 (与事件到达的先后无关，重复处理结果不变)
+ */
+@Slf4j
+@Component
+public class RankingEventHandler {
+
+    @Autowired
+    private RankingManager rankingManager;
+
+    @Autowired
+    private ProblemFirstAcMapper problemFirstAcMapper;
+
+    @Autowired
+    private ProblemSubmitMapper problemSubmitMapper;
+
+    @RabbitListener(queues = Constants.SUBMIT_EVENT_RANK_QUEUE, containerFactory = "batchListenerContainerFactory")
+    public void handle(List<SubmitJudgedEvent> events) {
+        List<Long> acUserIds = new ArrayList<>();
+        List<Long> acProblemIds = new ArrayList<>();
+        List<RankingManager.ContestScore> contestScores = new ArrayList<>();
+        List<SubmitJudgedEvent> corrections = new ArrayList<>();
+        for (SubmitJudgedEvent event : events) {
+            if (Boolean.TRUE.equals(event.getCorrection())) {
+                corrections.add(event);
+                continue;
+            }
+            // --- 普通排行榜 (只看 AC) ---
+            if (JudgeResultEnum.ACCEPTED.getCode().equals(event.getJudgeResult())) {
+                acUserIds.add(event.getUserId());
+                acProblemIds.add(event.getProblemId());
+            }
+            // --- 比赛排行榜 (看分数) ---
+            if (event.getContestId() != null && event.getContestId() > 0) {
+                contestScores.add(new RankingManager.ContestScore(event.getContestId(), event.getUserId(),
+                        event.getProblemId(), event.getScore()));
+            }
+        }
+        if (!acUserIds.isEmpty()) {
+            rankingManager.batchUserAcProblem(acUserIds, acProblemIds);
+        }
+        if (!contestScores.isEmpty()) {
+            rankingManager.batchUpdateContestScoreRank(contestScores);
+        }
+        if (!corrections.isEmpty()) {
+            applyCorrections(corrections);
+        }
+        log.info("排行榜事件处理完成, 数量: {}", events.size());
+    }
+
+    /**
+     * 重判更正 (同一比赛+用户+题目只处理一次)
+     * 1. 用户在该题仍有 AC (首次 AC 记录存在) 的补记为已解决，没有了的从已解决集合移除并扣回总榜分数
+     * 2. 比赛得分重新取该用户该题所有比赛提交的最高分，可能降低
+     */
+    private void applyCorrections(List<SubmitJudgedEvent> corrections) {
+        Map<String, SubmitJudgedEvent> unique = new LinkedHashMap<>();
+        for (SubmitJudgedEvent event : corrections) {
+            unique.putIfAbsent(event.getContestId() + ":" + event.getUserId() + ":" + event.getProblemId(), event);
+        }
+        List<Long> acUserIds = new ArrayList<>();
+        List<Long> acProblemIds = new ArrayList<>();
+        for (SubmitJudgedEvent event : unique.values()) {
+            LambdaQueryWrapper<ProblemFirstAcEntity> ledgerWrapper = new LambdaQueryWrapper<>();
+            ledgerWrapper.eq(ProblemFirstAcEntity::getUserId, event.getUserId())
+                    .eq(ProblemFirstAcEntity::getProblemId, event.getProblemId());
+            if (problemFirstAcMapper.selectCount(ledgerWrapper) > 0) {
+                acUserIds.add(event.getUserId());
+                acProblemIds.add(event.getProblemId());
+            } else {
+                rankingManager.revokeUserAc(event.getUserId(), event.getProblemId());
+            }
+
+            if (event.getContestId() != null && event.getContestId() > 0) {
+                LambdaQueryWrapper<ProblemSubmitRecordEntity> bestWrapper = new LambdaQueryWrapper<>();
+                bestWrapper.select(ProblemSubmitRecordEntity::getScore)
+                        .eq(ProblemSubmitRecordEntity::getContestId, event.getContestId())
+                        .eq(ProblemSubmitRecordEntity::getUserId, event.getUserId())
+                        .eq(ProblemSubmitRecordEntity::getProblemId, event.getProblemId())
+                        .isNotNull(ProblemSubmitRecordEntity::getScore)
+                        .orderByDesc(ProblemSubmitRecordEntity::getScore)
+                        .last("limit 1");
+                ProblemSubmitRecordEntity best = problemSubmitMapper.selectOne(bestWrapper);
+                rankingManager.resetContestScore(event.getContestId(), event.getUserId(), event.getProblemId(),
+                        best == null ? 0 : best.getScore());
+            }
+        }
+        if (!acUserIds.isEmpty()) {
+            rankingManager.batchUserAcProblem(acUserIds, acProblemIds);
+        }
+        log.info("排行榜更正完成, 数量: {}", unique.size());
+    }
+}
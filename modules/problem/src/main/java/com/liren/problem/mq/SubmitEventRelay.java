@@ -0,0 +1,118 @@
+package com.liren.problem.mq;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.liren.api.problem.dto.problem.SubmitJudgedEvent;
+import com.liren.common.core.constant.Constants;
+import com.liren.problem.entity.SubmitEventEntity;
+import com.liren.problem.mapper.SubmitEventMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 判题事件发件箱投递
+ * 1. 快速路径：判题结果事务提交后立即投递
+ * 2. 补偿路径：定时扫描超过 relay-delay-ms 仍未投递的事件 (进程崩溃、MQ 不可用等) 重新投递
+ * 投递成功后标记为已投递 (不删除，作为墓碑防止同一提交结果重复回写时再次产生事件)，超过保留时间后清理；
+ * 两条路径可能重复投递同一事件，由消费端按 eventId 去重
+ */
+@Slf4j
+@Component
+public class SubmitEventRelay {
+
+    @Autowired
+    private SubmitEventMapper submitEventMapper;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Value("${oj.problem.submit-event.relay-batch-size:500}")
+    private int relayBatchSize;
+
+    @Value("${oj.problem.submit-event.relay-delay-ms:10000}")
+    private long relayDelayMs;
+
+    @Value("${oj.problem.submit-event.retention-days:7}")
+    private long retentionDays;
+
+    /**
+     * 投递事件并标记已投递 (投递失败的保持未投递，等待定时补偿)
+     */
+    public void publish(List<SubmitEventEntity> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<Long> sentIds = new ArrayList<>(events.size());
+        for (SubmitEventEntity event : events) {
+            try {
+                rabbitTemplate.convertAndSend(Constants.SUBMIT_EVENT_EXCHANGE, "", toMessage(event));
+                sentIds.add(event.getEventId());
+            } catch (Exception e) {
+                log.warn("判题事件投递失败，等待定时补偿, eventId: {}", event.getEventId(), e);
+                break; // MQ 不可用时后面的也不用再试了
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            LambdaUpdateWrapper<SubmitEventEntity> updateWrapper = new LambdaUpdateWrapper<>();
+            updateWrapper.in(SubmitEventEntity::getEventId, sentIds)
+                    .set(SubmitEventEntity::getSent, true);
+            submitEventMapper.update(null, updateWrapper);
+        }
+    }
+
+    /**
+     * 定时补偿：投递滞留的事件
+     */
+    @Scheduled(fixedDelayString = "${oj.problem.submit-event.relay-interval-ms:5000}")
+    public void relayPending() {
+        LambdaQueryWrapper<SubmitEventEntity> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(SubmitEventEntity::getSent, false)
+                .lt(SubmitEventEntity::getCreateTime, LocalDateTime.now().minusNanos(relayDelayMs * 1_000_000))
+                .orderByAsc(SubmitEventEntity::getCreateTime)
+                .last("limit " + relayBatchSize);
+        List<SubmitEventEntity> pending = submitEventMapper.selectList(wrapper);
+        if (!pending.isEmpty()) {
+            log.info("补偿投递滞留的判题事件, 数量: {}", pending.size());
+            publish(pending);
+        }
+    }
+
+    /**
+     * 清理超过保留时间的已投递事件 (保留时间需覆盖判题结果可能被重复回写的时间窗口)
+     */
+    @Scheduled(cron = "${oj.problem.submit-event.purge-cron:0 30 3 * * ?}")
+    public void purgeSent() {
+        LambdaQueryWrapper<SubmitEventEntity> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(SubmitEventEntity::getSent, true)
+                .lt(SubmitEventEntity::getCreateTime, LocalDateTime.now().minusDays(retentionDays));
+        int deleted = submitEventMapper.delete(wrapper);
+        if (deleted > 0) {
+            log.info("清理已投递的判题事件, 数量: {}", deleted);
+        }
+    }
+
+    private static SubmitJudgedEvent toMessage(SubmitEventEntity entity) {
+        SubmitJudgedEvent event = new SubmitJudgedEvent();
+        event.setEventId(entity.getEventId());
+        event.setSubmitId(entity.getSubmitId() == null ? entity.getEventId() : entity.getSubmitId());
+        event.setProblemId(entity.getProblemId());
+        event.setContestId(entity.getContestId());
+        event.setUserId(entity.getUserId());
+        event.setJudgeResult(entity.getJudgeResult());
+        event.setScore(entity.getScore());
+        event.setFirstAc(entity.getFirstAc());
+        event.setCorrection(entity.getCorrection());
+        event.setOldJudgeResult(entity.getOldJudgeResult());
+        event.setOldScore(entity.getOldScore());
+        event.setFirstAcDelta(entity.getFirstAcDelta());
+        return event;
+    }
+}
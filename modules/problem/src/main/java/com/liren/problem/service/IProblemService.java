@@ -16,6 +16,7 @@ import com.liren.problem.vo.ProblemVO;
 import com.liren.problem.vo.SubmitRecordVO;
 import jakarta.validation.Valid;
 
+import java.io.InputStream;
 import java.util.List;
 
 public interface IProblemService extends IService<ProblemEntity> {
@@ -34,9 +35,18 @@ public interface IProblemService extends IService<ProblemEntity> {
     // 更新提交结果
     Boolean updateSubmitResult(ProblemSubmitUpdateDTO problemSubmitUpdateDTO);
 
+    // 批量更新提交结果 (判题结果队列批量消费)
+    void batchUpdateSubmitResult(List<ProblemSubmitUpdateDTO> updateDTOs);
+
     // 获取测试用例
     List<TestCaseDTO> getTestCases(Long problemId);
 
+    // 上传测试用例压缩包 (整体替换题目的用例)，返回用例数量
+    Integer uploadTestCases(Long problemId, InputStream zipStream);
+
+    // 重判题目的全部提交 (管理员)，返回重判的提交数
+    Integer rejudgeProblem(Long problemId);
+
     // 获取提交记录（内部接口，用于MQ拿到代码和编程语言进行操作）
     SubmitRecordDTO getInnerSubmitRecord(Long submitId);
 
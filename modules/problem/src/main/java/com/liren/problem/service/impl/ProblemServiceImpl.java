@@ -2,29 +2,38 @@ package com.liren.problem.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.baomidou.mybatisplus.extension.toolkit.Db;
 import com.liren.api.problem.api.contest.ContestInterface;
-import com.liren.api.problem.api.user.UserInterface;
 import com.liren.api.problem.dto.problem.ProblemBasicInfoDTO;
 import com.liren.api.problem.dto.problem.ProblemSubmitUpdateDTO;
 import com.liren.api.problem.dto.problem.SubmitRecordDTO;
+import com.liren.api.problem.dto.problem.JudgeTaskMessage;
 import com.liren.api.problem.dto.problem.TestCaseDTO;
 import com.liren.common.core.constant.Constants;
 import com.liren.common.core.context.UserContext;
+import com.liren.common.core.enums.CheckerTypeEnum;
+import com.liren.common.core.enums.JudgeLaneEnum;
+import com.liren.common.core.enums.JudgeModeEnum;
 import com.liren.common.core.enums.JudgeResultEnum;
 import com.liren.common.core.enums.ProblemStatusEnum;
+import com.liren.common.core.enums.SubmitStatusEnum;
 import com.liren.common.core.result.Result;
 import com.liren.common.core.result.ResultCode;
-import com.liren.common.redis.RankingManager;
 import com.liren.common.redis.RedisUtil;
 import com.liren.problem.dto.ProblemAddDTO;
 import com.liren.problem.dto.ProblemQueryRequest;
 import com.liren.problem.dto.ProblemSubmitDTO;
 import com.liren.problem.dto.ProblemSubmitQueryRequest;
 import com.liren.problem.entity.*;
+import com.liren.problem.manager.FirstAcLedger;
+import com.liren.problem.manager.ProblemStatsAggregator;
+import com.liren.problem.manager.TestCaseManager;
+import com.liren.problem.mq.SubmitEventRelay;
 import com.liren.problem.mapper.*;
 import com.liren.problem.vo.ProblemDetailVO;
 import com.liren.problem.exception.ProblemException;
@@ -37,14 +46,21 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
+import java.io.InputStream;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, ProblemEntity> implements IProblemService {
+    /**
+     * 重判时每批加载的提交数
+     */
+    private static final int REJUDGE_BATCH_SIZE = 200;
+
     @Autowired
     private ProblemTagRelationMapper problemTagRelationMapper;
 
@@ -60,17 +76,30 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, ProblemEntity
     @Autowired
     private TestCaseMapper testCaseMapper;
 
+    @Autowired
+    private TestCaseManager testCaseManager;
+
+    @Autowired
+    private ProblemStatsAggregator problemStatsAggregator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Autowired
     private ContestInterface contestService;
 
     @Autowired
-    private RankingManager rankingManager;
+    private SubmitEventMapper submitEventMapper;
+
     @Autowired
-    private UserInterface userInterface;
+    private SubmitEventRelay submitEventRelay;
 
     @Autowired
     private RedisUtil redisUtil;
 
+    @Autowired
+    private FirstAcLedger firstAcLedger;
+
     /**
      * 新增题目
      */
@@ -99,6 +128,13 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, ProblemEntity
         if(problemEntity.getStatus() == null) {
             problemEntity.setStatus(1);
         }
+        if(problemEntity.getCaseVersion() == null) {
+            problemEntity.setCaseVersion(1);
+        }
+        if(problemEntity.getJudgeMode() == null) {
+            problemEntity.setJudgeMode(JudgeModeEnum.OI.getCode());
+        }
+        checkChecker(problemEntity);
 
         // 2. 保存实体
         boolean isSave = this.save(problemEntity);
@@ -121,17 +157,11 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, ProblemEntity
             problemTagRelationMapper.saveBatch(relationList);
         }
 
-        // 4. 保存测试样例
+        // 4. 保存测试样例 (内容写入测试数据存储，数据库只保存元数据)
         List<TestCaseDTO> testCases = problemAddDTO.getTestCases();
         if(CollectionUtil.isNotEmpty(testCases)) {
-            List<TestCaseEntity> testCaseEntities = testCases.stream().map(entity -> {
-                TestCaseEntity testCaseEntity = new TestCaseEntity();
-                testCaseEntity.setProblemId(problemId);
-                testCaseEntity.setInput(entity.getInput());
-                testCaseEntity.setOutput(entity.getOutput());
-                return testCaseEntity;
-            }).collect(Collectors.toList());
-
+            // 新题目的用例为初始版本；之后的用例变更走 uploadTestCases，由它递增版本
+            List<TestCaseEntity> testCaseEntities = testCaseManager.store(problemId, problemEntity.getCaseVersion(), testCases);
             testCaseMapper.saveBatch(testCaseEntities);
         }
 
@@ -290,11 +320,18 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, ProblemEntity
         }
 
         // ================= 5. 组装 VO =================
+        // 叠加尚未刷盘的提交数/通过数增量，刚判完的提交立即可见
+        Map<Long, int[]> pendingStats = problemStatsAggregator.getPendingDeltas(pids);
         Page<ProblemVO> problemVOPage = new Page<>(current, size, problemEntityPage.getTotal());
         List<ProblemVO> collect = records.stream()
                 .map(entity -> {
                     ProblemVO problemVO = ProblemVO.objToVo(entity);
                     problemVO.setTags(pTagMap.get(entity.getProblemId()));
+                    int[] pending = pendingStats.get(entity.getProblemId());
+                    if (pending != null) {
+                        problemVO.setSubmitNum((problemVO.getSubmitNum() == null ? 0 : problemVO.getSubmitNum()) + pending[0]);
+                        problemVO.setAcceptedNum((problemVO.getAcceptedNum() == null ? 0 : problemVO.getAcceptedNum()) + pending[1]);
+                    }
                     return problemVO;
                 }).collect(Collectors.toList());
         problemVOPage.setRecords(collect);
@@ -472,22 +509,178 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, ProblemEntity
         problemSubmitMapper.insert(submitRecord);
 
         // 4. 发送消息到MQ
-        rabbitTemplate.convertAndSend(Constants.JUDGE_EXCHANGE, Constants.JUDGE_ROUTING_KEY, submitRecord.getSubmitId());
-        log.info("Send submitId={} to MQ", submitRecord.getSubmitId());
+        sendJudgeTask(problem, submitRecord, false);
 
         return submitRecord.getSubmitId();
     }
 
 
+    /**
+     * 重判某道题目的全部提交 (管理员，通常在修正测试用例后使用)
+     * 提交记录重置为等待判题 (保留原结果，回写时据此判断结果是否变化)，任务进入重判通道，不挤占新提交；
+     * 已判完的提交确保有判题事件墓碑，重判结果回写时不会再当作新提交累加，结果变化时产生更正事件
+     * @return 重判的提交数
+     */
+    @Override
+    public Integer rejudgeProblem(Long problemId) {
+        if (!"admin".equals(UserContext.getUserRole())) {
+            throw new ProblemException(ResultCode.FORBIDDEN);
+        }
+        ProblemEntity problem = this.getById(problemId);
+        if (problem == null) {
+            throw new ProblemException(ResultCode.SUBJECT_NOT_FOUND);
+        }
+
+        // 按提交ID分批处理，避免一次加载全部代码
+        int total = 0;
+        long lastSubmitId = 0;
+        while (true) {
+            LambdaQueryWrapper<ProblemSubmitRecordEntity> wrapper = new LambdaQueryWrapper<>();
+            wrapper.eq(ProblemSubmitRecordEntity::getProblemId, problemId)
+                    .gt(ProblemSubmitRecordEntity::getSubmitId, lastSubmitId)
+                    .orderByAsc(ProblemSubmitRecordEntity::getSubmitId)
+                    .last("limit " + REJUDGE_BATCH_SIZE);
+            List<ProblemSubmitRecordEntity> records = problemSubmitMapper.selectList(wrapper);
+            if (records.isEmpty()) {
+                break;
+            }
+
+            LambdaUpdateWrapper<ProblemSubmitRecordEntity> resetWrapper = new LambdaUpdateWrapper<>();
+            resetWrapper.in(ProblemSubmitRecordEntity::getSubmitId,
+                            records.stream().map(ProblemSubmitRecordEntity::getSubmitId).collect(Collectors.toList()))
+                    .set(ProblemSubmitRecordEntity::getStatus, SubmitStatusEnum.WAITING.getCode());
+            problemSubmitMapper.update(null, resetWrapper);
+            // 墓碑可能已被清理，为已判完的提交补写已投递的事件 (尚未判完的提交等首次回写时正常产生事件)
+            List<SubmitEventEntity> tombstones = records.stream()
+                    .filter(r -> SubmitStatusEnum.SUCCEED.getCode().equals(r.getStatus())
+                            || SubmitStatusEnum.FAILED.getCode().equals(r.getStatus()))
+                    .map(r -> SubmitEventEntity.judged(r, false, true))
+                    .collect(Collectors.toList());
+            if (!tombstones.isEmpty()) {
+                submitEventMapper.insertIgnoreBatch(tombstones);
+            }
+
+            for (ProblemSubmitRecordEntity record : records) {
+                sendJudgeTask(problem, record, true);
+            }
+            total += records.size();
+            lastSubmitId = records.get(records.size() - 1).getSubmitId();
+        }
+        log.info("题目 {} 已提交重判, 提交数: {}", problemId, total);
+        return total;
+    }
+
+
+    /**
+     * 发送判题任务 (携带判题所需的全部信息，判题服务无需再回查提交记录和题目限制)
+     * 按来源进入不同的判题通道；时间戳用于判题端统计排队时间
+     */
+    private void sendJudgeTask(ProblemEntity problem, ProblemSubmitRecordEntity submitRecord, boolean rejudge) {
+        JudgeTaskMessage judgeTask = new JudgeTaskMessage();
+        judgeTask.setVersion(JudgeTaskMessage.CURRENT_VERSION);
+        judgeTask.setSubmitId(submitRecord.getSubmitId());
+        judgeTask.setProblemId(problem.getProblemId());
+        judgeTask.setUserId(submitRecord.getUserId());
+        judgeTask.setContestId(submitRecord.getContestId());
+        judgeTask.setLanguage(submitRecord.getLanguage());
+        judgeTask.setCode(submitRecord.getCode());
+        judgeTask.setTimeLimit(problem.getTimeLimit());
+        judgeTask.setMemoryLimit(problem.getMemoryLimit());
+        judgeTask.setCaseVersion(problem.getCaseVersion());
+        judgeTask.setJudgeMode(problem.getJudgeMode());
+        judgeTask.setCheckerType(problem.getCheckerType());
+        judgeTask.setCheckerArg(problem.getCheckerArg());
+        judgeTask.setCheckerCode(problem.getCheckerCode());
+        judgeTask.setRejudge(rejudge);
+        JudgeLaneEnum lane = JudgeLaneEnum.of(submitRecord.getContestId(), rejudge);
+        rabbitTemplate.convertAndSend(Constants.JUDGE_EXCHANGE, lane.getRoutingKey(), judgeTask, message -> {
+            message.getMessageProperties().setTimestamp(new Date());
+            return message;
+        });
+        log.info("Send submitId={} to MQ, lane={}", submitRecord.getSubmitId(), lane.getCode());
+    }
+
+
     /**
      * 更新提交结果
+     * 判题结果和判题事件在同一个事务内写入；排行榜、用户统计、题目统计由事件处理器异步完成
      */
     @Override
     public Boolean updateSubmitResult(ProblemSubmitUpdateDTO updateDTO) {
-        // ================================================================
-        // 1. 先计算分数 (Pre-calculate Score)
-        //    必须在 entity 初始化之前算出分数，才能存入数据库
-        // ================================================================
+        // 1. 计算分数并准备更新数据
+        ProblemSubmitRecordEntity entity = buildSubmitResultEntity(updateDTO);
+
+        // 2. 更新提交记录并写入发件箱
+        List<SubmitEventEntity> events = transactionTemplate.execute(status -> {
+            Map<Long, ProblemSubmitRecordEntity> previous = lockSubmitRecords(List.of(entity.getSubmitId()));
+            // 只有这里更新成功了，才写入判题事件
+            if (problemSubmitMapper.updateById(entity) <= 0) {
+                return null;
+            }
+            return saveSubmitEvents(List.of(entity), previous);
+        });
+        if (events == null) {
+            return false;
+        }
+
+        // 3. 事务提交后立即投递事件 (失败时由定时补偿投递)
+        submitEventRelay.publish(events);
+        return true;
+    }
+
+    /**
+     * 批量更新提交结果 (判题结果队列按批消费)
+     * 1. 合并：同一提交在批次内只保留最后一条结果
+     * 2. 一个事务内批量更新提交记录，并批量写入判题事件
+     * 3. 事务提交后投递事件，由各事件处理器异步完成后续统计
+     * 批量事务失败时退回逐条 updateSubmitResult，避免一条坏数据拖累整批；
+     * 逐条仍失败的结果转入死信队列 (消费者是自动确认，吞掉异常结果就丢了)，
+     * 转入死信队列也失败时抛出异常，让整批重新投递 (已回写的结果重复处理不影响正确性)
+     */
+    @Override
+    public void batchUpdateSubmitResult(List<ProblemSubmitUpdateDTO> updateDTOs) {
+        Map<Long, ProblemSubmitUpdateDTO> latestResults = new LinkedHashMap<>();
+        for (ProblemSubmitUpdateDTO updateDTO : updateDTOs) {
+            if (updateDTO != null && updateDTO.getSubmitId() != null) {
+                latestResults.put(updateDTO.getSubmitId(), updateDTO);
+            }
+        }
+        if (latestResults.isEmpty()) {
+            return;
+        }
+
+        List<ProblemSubmitRecordEntity> entities = latestResults.values().stream()
+                .map(this::buildSubmitResultEntity)
+                .collect(Collectors.toList());
+        List<SubmitEventEntity> events;
+        try {
+            events = transactionTemplate.execute(status -> {
+                Map<Long, ProblemSubmitRecordEntity> previous = lockSubmitRecords(latestResults.keySet());
+                // 批量执行器：一次往返提交所有 UPDATE
+                Db.updateBatchById(entities);
+                return saveSubmitEvents(entities, previous);
+            });
+        } catch (Exception e) {
+            log.error("批量回写判题结果失败，改为逐条回写, size={}", entities.size(), e);
+            for (ProblemSubmitUpdateDTO updateDTO : latestResults.values()) {
+                try {
+                    updateSubmitResult(updateDTO);
+                } catch (Exception ex) {
+                    log.error("回写判题结果失败，转入死信队列: submitId={}", updateDTO.getSubmitId(), ex);
+                    rabbitTemplate.convertAndSend(Constants.JUDGE_RESULT_DLQ, updateDTO);
+                }
+            }
+            return;
+        }
+        log.info("批量回写判题结果完成, 收到: {}, 合并后: {}", updateDTOs.size(), entities.size());
+        submitEventRelay.publish(events);
+    }
+
+    /**
+     * 计算分数并构造提交记录的更新实体 (只设置非空字段)
+     */
+    private ProblemSubmitRecordEntity buildSubmitResultEntity(ProblemSubmitUpdateDTO updateDTO) {
+        // 先计算分数 (Pre-calculate Score)，必须在 entity 初始化之前算出分数，才能存入数据库
         int score = 0;
         int fullscore = Constants.CONTEST_QUESTION_SCORE;
         int passCount = updateDTO.getPassCaseCount() == null ? 0 : updateDTO.getPassCaseCount();
@@ -502,9 +695,6 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, ProblemEntity
             score = (int) (ratio * fullscore);
         }
 
-        // ================================================================
-        // 2. 准备更新数据
-        // ================================================================
         ProblemSubmitRecordEntity entity = new ProblemSubmitRecordEntity();
         entity.setSubmitId(updateDTO.getSubmitId());
         entity.setScore(score);
@@ -515,63 +705,166 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, ProblemEntity
         if (updateDTO.getErrorMessage() != null) entity.setErrorMessage(updateDTO.getErrorMessage());
         entity.setPassCaseCount(passCount);
         entity.setTotalCaseCount(totalCount);
+        return entity;
+    }
 
-        // ================================================================
-        // 3. 执行数据库更新
-        // ================================================================
-        // 只有这里更新成功了，才继续往下更新其他信息，防止消息重复消费导致的重复计数
-        boolean updateSuccess = problemSubmitMapper.updateById(entity) > 0;
+    /**
+     * 锁定并读取回写前的提交记录 (需在回写判题结果的同一事务内、更新之前调用)
+     * 只读取事件需要的字段；加锁让同一提交的并发回写依次比较结果，不会都当作结果变化
+     * @return 提交ID -> 回写前的提交记录
+     */
+    private Map<Long, ProblemSubmitRecordEntity> lockSubmitRecords(Collection<Long> submitIds) {
+        LambdaQueryWrapper<ProblemSubmitRecordEntity> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(ProblemSubmitRecordEntity::getSubmitId, ProblemSubmitRecordEntity::getProblemId,
+                        ProblemSubmitRecordEntity::getContestId, ProblemSubmitRecordEntity::getUserId,
+                        ProblemSubmitRecordEntity::getJudgeResult, ProblemSubmitRecordEntity::getScore)
+                .in(ProblemSubmitRecordEntity::getSubmitId, submitIds)
+                .orderByAsc(ProblemSubmitRecordEntity::getSubmitId)
+                .last("for update");
+        return problemSubmitMapper.selectList(wrapper).stream()
+                .collect(Collectors.toMap(ProblemSubmitRecordEntity::getSubmitId, r -> r));
+    }
 
-        // ================================================================
-        // 4. 后置处理 (Redis 排行榜 & User 统计)
-        // ================================================================
-        if (updateSuccess) {
+    /**
+     * 为已更新的提交记录写入判题事件 (需在更新提交记录的同一事务内调用)
+     * 1. 还没有事件的提交：写入判题事件，首次 AC 由 tb_problem_first_ac 的唯一记录判定 (同一事务写入)，
+     *    并发回写和重复处理同一提交结果都不会算错
+     * 2. 已有事件 (包括已投递的墓碑) 且结果与回写前相同：重复回写，不再产生事件
+     * 3. 已有事件但结果变了 (重判)：重新确定首次 AC，写入携带更正前后结果的更正事件
+     * @param previous 回写前的提交记录
+     * @return 写入的事件
+     */
+    private List<SubmitEventEntity> saveSubmitEvents(List<ProblemSubmitRecordEntity> entities,
+                                                     Map<Long, ProblemSubmitRecordEntity> previous) {
+        LambdaQueryWrapper<SubmitEventEntity> existWrapper = new LambdaQueryWrapper<>();
+        existWrapper.select(SubmitEventEntity::getEventId).in(SubmitEventEntity::getEventId,
+                entities.stream().map(ProblemSubmitRecordEntity::getSubmitId).collect(Collectors.toList()));
+        Set<Long> existEventIds = submitEventMapper.selectList(existWrapper).stream()
+                .map(SubmitEventEntity::getEventId).collect(Collectors.toSet());
+
+        // 回写后的提交记录 (判题结果为空时数据库保留原值)
+        Map<Long, ProblemSubmitRecordEntity> judgedRecords = new LinkedHashMap<>();
+        Map<Long, ProblemSubmitRecordEntity> correctedRecords = new LinkedHashMap<>();
+        for (ProblemSubmitRecordEntity entity : entities) {
+            ProblemSubmitRecordEntity before = previous.get(entity.getSubmitId());
+            if (before == null) {
+                continue;
+            }
+            ProblemSubmitRecordEntity after = new ProblemSubmitRecordEntity();
+            after.setSubmitId(before.getSubmitId());
+            after.setProblemId(before.getProblemId());
+            after.setContestId(before.getContestId());
+            after.setUserId(before.getUserId());
+            after.setJudgeResult(entity.getJudgeResult() != null ? entity.getJudgeResult() : before.getJudgeResult());
+            after.setScore(entity.getScore());
+            if (!existEventIds.contains(after.getSubmitId())) {
+                judgedRecords.put(after.getSubmitId(), after);
+            } else if (!Objects.equals(before.getJudgeResult(), after.getJudgeResult())
+                    || !Objects.equals(before.getScore(), after.getScore())) {
+                correctedRecords.put(after.getSubmitId(), after);
+            }
+        }
+        if (judgedRecords.isEmpty() && correctedRecords.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<SubmitEventEntity> events = new ArrayList<>(judgedRecords.size() + correctedRecords.size());
+        if (!judgedRecords.isEmpty()) {
+            Set<Long> firstAcSubmitIds = firstAcLedger.resolve(new ArrayList<>(judgedRecords.values()));
+            for (ProblemSubmitRecordEntity record : judgedRecords.values()) {
+                events.add(SubmitEventEntity.judged(record, firstAcSubmitIds.contains(record.getSubmitId()), false));
+            }
+        }
+        if (!correctedRecords.isEmpty()) {
+            Map<Long, Integer> firstAcDeltas = firstAcLedger.reresolve(new ArrayList<>(correctedRecords.values()));
+            for (ProblemSubmitRecordEntity record : correctedRecords.values()) {
+                events.add(SubmitEventEntity.corrected(record, previous.get(record.getSubmitId()),
+                        firstAcDeltas.getOrDefault(record.getSubmitId(), 0)));
+            }
+            log.info("重判结果变化，写入更正事件, 数量: {}", correctedRecords.size());
+        }
+        submitEventMapper.insertIgnoreBatch(events);
+        return events;
+    }
+
+
+    /**
+     * 校验输出比对方式的参数：浮点误差必须是正数，特判题目必须带特判程序
+     */
+    private void checkChecker(ProblemEntity problemEntity) {
+        CheckerTypeEnum checkerType = CheckerTypeEnum.getByCode(problemEntity.getCheckerType());
+        problemEntity.setCheckerType(checkerType.getCode());
+        if (checkerType == CheckerTypeEnum.FLOAT && StrUtil.isNotBlank(problemEntity.getCheckerArg())) {
             try {
-                // 查询提交记录详情 (为了拿到 userId, problemId, contestId)
-                ProblemSubmitRecordEntity submitRecord = problemSubmitMapper.selectById(updateDTO.getSubmitId());
+                if (!(Double.parseDouble(problemEntity.getCheckerArg().trim()) > 0)) {
+                    throw new ProblemException(ResultCode.PARAM_ILLEGAL);
+                }
+            } catch (NumberFormatException e) {
+                throw new ProblemException(ResultCode.PARAM_FORMAT_ERROR);
+            }
+        }
+        if (checkerType == CheckerTypeEnum.SPECIAL && StrUtil.isBlank(problemEntity.getCheckerCode())) {
+            throw new ProblemException(ResultCode.CHECKER_NOT_FOUND);
+        }
+    }
 
-                if (submitRecord != null) {
-                    boolean isAc = JudgeResultEnum.ACCEPTED.getCode().equals(updateDTO.getJudgeResult());
+    /**
+     * 递增题目的用例版本 (需在事务内调用，UPDATE 持有行锁直到事务提交)
+     * 版本变化后判题节点的本地用例缓存随之失效
+     * @return 递增后的版本
+     */
+    private int bumpCaseVersion(Long problemId) {
+        LambdaUpdateWrapper<ProblemEntity> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.eq(ProblemEntity::getProblemId, problemId)
+                .setSql("case_version = case_version + 1");
+        this.update(updateWrapper);
+        return this.getById(problemId).getCaseVersion();
+    }
 
-                    // --- 4.1 普通排行榜 (只看 AC) ---
-                    boolean isFirstAc = false; // 该用户是否是第一次解决这道题？
-                    if (isAc) {
-                        // userAcProblem 返回 true 表示是“首次AC”，返回 false 表示“重复AC”
-                        isFirstAc = rankingManager.userAcProblem(submitRecord.getUserId(), submitRecord.getProblemId());
-                    }
 
-                    // --- 4.2 比赛排行榜 (看分数) ---
-                    if (submitRecord.getContestId() != null && submitRecord.getContestId() > 0) {
-                        rankingManager.updateContestScoreRank(
-                                submitRecord.getContestId(),
-                                submitRecord.getUserId(),
-                                submitRecord.getProblemId(),
-                                score // 传入上面算好的分数
-                        );
-                    }
+    /**
+     * 上传测试用例压缩包 (管理员)
+     * 1. 压缩包流式写入本次上传独有的目录 (不占用数据库连接，并发上传互不覆盖)
+     * 2. 短事务内切换版本：递增 case_version (行锁让并发上传依次生效，后提交的覆盖先提交的)，替换用例元数据
+     * 3. 提交成功后延迟清理被替换的用例文件；事务失败只清理本次上传的文件
+     */
+    @Override
+    public Integer uploadTestCases(Long problemId, InputStream zipStream) {
+        if (!"admin".equals(UserContext.getUserRole())) {
+            throw new ProblemException(ResultCode.FORBIDDEN);
+        }
+        if (this.getById(problemId) == null) {
+            throw new ProblemException(ResultCode.SUBJECT_NOT_FOUND);
+        }
 
-                    // --- 4.3 更新统计信息 ---
-                    userInterface.updateUserStats(submitRecord.getUserId(), isAc && isFirstAc);
+        List<TestCaseEntity> testCaseEntities = testCaseManager.storeZip(problemId, zipStream);
+        String uploadPrefix = TestCaseManager.prefixesOf(testCaseEntities).iterator().next();
 
-                    // 更新题目表
-                    LambdaUpdateWrapper<ProblemEntity> problemUpdateWrapper = new LambdaUpdateWrapper<>();
-                    problemUpdateWrapper.eq(ProblemEntity::getProblemId, submitRecord.getProblemId());
+        // 被替换下来的用例文件目录
+        Set<String> replacedPrefixes = new HashSet<>();
+        int newVersion;
+        try {
+            newVersion = transactionTemplate.execute(status -> {
+                int version = bumpCaseVersion(problemId);
 
-                    String sql = "submit_num = IFNULL(submit_num, 0) + 1";
-                    if (isAc) {
-                        sql += ", accepted_num = IFNULL(accepted_num, 0) + 1";
-                    }
-                    problemUpdateWrapper.setSql(sql);
+                LambdaQueryWrapper<TestCaseEntity> oldWrapper = new LambdaQueryWrapper<>();
+                oldWrapper.eq(TestCaseEntity::getProblemId, problemId);
+                replacedPrefixes.addAll(TestCaseManager.prefixesOf(testCaseMapper.selectList(oldWrapper)));
 
-                    this.update(problemUpdateWrapper);
-                }
-            } catch (Exception e) {
-                // 捕获异常，防止因为统计更新失败导致判题任务回滚 (判题结果才是最重要的)
-                log.error("更新统计信息失败: submitId={}", updateDTO.getSubmitId(), e);
-            }
+                testCaseMapper.delete(oldWrapper);
+                testCaseMapper.saveBatch(testCaseEntities);
+                return version;
+            });
+        } catch (RuntimeException e) {
+            testCaseManager.deleteQuietly(uploadPrefix);
+            throw e;
         }
 
-        return updateSuccess;
+        testCaseManager.writeUploadManifest(problemId, newVersion, testCaseEntities);
+        replacedPrefixes.remove(uploadPrefix);
+        replacedPrefixes.forEach(testCaseManager::deleteLater);
+        log.info("题目 {} 的测试用例已更新为版本 {}，共 {} 组", problemId, newVersion, testCaseEntities.size());
+        return testCaseEntities.size();
     }
 
 
@@ -582,17 +875,12 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, ProblemEntity
     public List<TestCaseDTO> getTestCases(Long problemId) {
         // 把测试用例都找出来
         LambdaQueryWrapper<TestCaseEntity> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(TestCaseEntity::getProblemId, problemId);
+        wrapper.eq(TestCaseEntity::getProblemId, problemId)
+                .orderByAsc(TestCaseEntity::getCaseIndex, TestCaseEntity::getCaseId);
         List<TestCaseEntity> caseEntities = testCaseMapper.selectList(wrapper);
 
-        // 转化为DTO返回
-        List<TestCaseDTO> caseDTOS = caseEntities.stream().map(entity -> {
-            TestCaseDTO dto = new TestCaseDTO();
-            dto.setInput(entity.getInput());
-            dto.setOutput(entity.getOutput());
-            return dto;
-        }).collect(Collectors.toList());
-        return caseDTOS;
+        // 转化为DTO返回 (内容从测试数据存储读取，旧数据直接取数据库中的内容)
+        return testCaseManager.load(caseEntities);
     }
 
 
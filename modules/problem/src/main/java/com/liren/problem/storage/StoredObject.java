@@ -0,0 +1,25 @@
+package com.liren.problem.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 已写入存储的对象元数据
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredObject {
+    private String key;
+
+    /**
+     * 大小 (字节)
+     */
+    private Long size;
+
+    /**
+     * 内容的 SHA-256 (十六进制)
+     */
+    private String sha256;
+}
@@ -0,0 +1,27 @@
+package com.liren.problem.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 测试数据存储 (对象存储风格的 Key-Value 接口)
+ * 目前提供本地文件系统实现，后续可以按同样的接口接入 MinIO / S3
+ */
+public interface TestCaseStorage {
+
+    /**
+     * 写入对象，写入过程中计算大小和 SHA-256
+     * @param key 对象 Key (以 / 分隔的相对路径)
+     */
+    StoredObject put(String key, InputStream content) throws IOException;
+
+    /**
+     * 读取对象，调用方负责关闭流
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * 删除某个前缀下的所有对象
+     */
+    void deleteByPrefix(String prefix) throws IOException;
+}
@@ -0,0 +1,103 @@
+package com.liren.problem.storage.impl;
+
+import com.liren.problem.storage.StoredObject;
+import com.liren.problem.storage.TestCaseStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+/**
+ * 本地文件系统实现：对象 Key 直接映射为根目录下的相对路径
+ * 多实例部署时根目录需要放在共享存储上 (NFS 等)，或者改用对象存储实现
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "oj.problem.case-storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalTestCaseStorage implements TestCaseStorage {
+
+    private final Path rootDir;
+
+    public LocalTestCaseStorage(@Value("${oj.problem.case-storage.local-dir:${user.home}/oj-data/cases}") String dir) {
+        this.rootDir = Paths.get(dir).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public StoredObject put(String key, InputStream content) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+
+        // 先写临时文件，写完再原子改名，读方不会看到写了一半的文件
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        MessageDigest digest = sha256();
+        long size;
+        try {
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                size = content.transferTo(out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new StoredObject(key, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public void deleteByPrefix(String prefix) throws IOException {
+        Path dir = resolve(prefix);
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Key 转为本地路径，禁止跳出根目录
+     */
+    private Path resolve(String key) {
+        Path path = rootDir.resolve(key).normalize();
+        if (!path.startsWith(rootDir) || path.equals(rootDir)) {
+            throw new IllegalArgumentException("非法的存储 Key: " + key);
+        }
+        return path;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
@@ -26,6 +26,15 @@ public class ProblemDetailVO extends ProblemVO {
     @Schema(description = "栈空间限制MB")
     private Integer stackLimit;
 
+    @Schema(description = "判题模式：0-ACM 1-OI")
+    private Integer judgeMode;
+
+    @Schema(description = "输出比对方式：0-精确 1-忽略空白 2-逐词 3-浮点误差 4-特判程序")
+    private Integer checkerType;
+
+    @Schema(description = "比对参数 (浮点误差时为允许误差)")
+    private String checkerArg;
+
     @Schema(description = "样例输入")
     private String sampleInput;
 
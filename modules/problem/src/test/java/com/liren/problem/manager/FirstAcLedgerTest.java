@@ -0,0 +1,183 @@
+package com.liren.problem.manager;
+
+import com.liren.common.core.enums.JudgeResultEnum;
+import com.liren.common.core.support.MybatisPlusTestSupport;
+import com.liren.problem.entity.ProblemFirstAcEntity;
+import com.liren.problem.entity.ProblemSubmitRecordEntity;
+import com.liren.problem.mapper.ProblemFirstAcMapper;
+import com.liren.problem.mapper.ProblemSubmitMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class FirstAcLedgerTest {
+
+    @Mock
+    private ProblemFirstAcMapper problemFirstAcMapper;
+
+    @Mock
+    private ProblemSubmitMapper problemSubmitMapper;
+
+    @InjectMocks
+    private FirstAcLedger firstAcLedger;
+
+    @BeforeAll
+    public static void initTableInfo() {
+        MybatisPlusTestSupport.initTableInfo(ProblemFirstAcEntity.class, ProblemSubmitRecordEntity.class);
+    }
+
+    @Test
+    public void noAcceptedSubmissionSkipsLedger() {
+        Set<Long> firstAc = firstAcLedger.resolve(Collections.singletonList(record(1L, 10L, 100L, JudgeResultEnum.WRONG_ANSWER)));
+
+        assertTrue(firstAc.isEmpty());
+        verify(problemFirstAcMapper, never()).insertIgnoreBatch(any());
+        verify(problemFirstAcMapper, never()).selectList(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void earliestAcceptedSubmissionInBatchIsCandidate() {
+        when(problemFirstAcMapper.selectList(any())).thenReturn(Arrays.asList(
+                new ProblemFirstAcEntity(10L, 100L, 3L, null),
+                new ProblemFirstAcEntity(20L, 100L, 4L, null)));
+
+        Set<Long> firstAc = firstAcLedger.resolve(Arrays.asList(
+                record(5L, 10L, 100L, JudgeResultEnum.ACCEPTED),
+                record(3L, 10L, 100L, JudgeResultEnum.ACCEPTED),
+                record(6L, 10L, 100L, JudgeResultEnum.WRONG_ANSWER),
+                record(4L, 20L, 100L, JudgeResultEnum.ACCEPTED)));
+
+        assertEquals(Set.of(3L, 4L), firstAc);
+        ArgumentCaptor<List<ProblemFirstAcEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(problemFirstAcMapper).insertIgnoreBatch(captor.capture());
+        List<ProblemFirstAcEntity> inserted = captor.getValue();
+        assertEquals(2, inserted.size());
+        // 按 用户+题目 排序写入，并发事务加锁顺序一致
+        assertEquals(3L, inserted.get(0).getSubmitId());
+        assertEquals(4L, inserted.get(1).getSubmitId());
+    }
+
+    @Test
+    public void earlierLedgerEntryWins() {
+        // 另一个事务 (或更早的批次) 已经写入了首次 AC
+        when(problemFirstAcMapper.selectList(any())).thenReturn(
+                Collections.singletonList(new ProblemFirstAcEntity(10L, 100L, 1L, null)));
+
+        Set<Long> firstAc = firstAcLedger.resolve(
+                Collections.singletonList(record(7L, 10L, 100L, JudgeResultEnum.ACCEPTED)));
+
+        assertTrue(firstAc.isEmpty());
+    }
+
+    @Test
+    public void redeliveredResultKeepsItsFirstAc() {
+        // 同一提交结果重复回写：INSERT IGNORE 不生效，但记录中的提交ID仍是自己
+        when(problemFirstAcMapper.selectList(any())).thenReturn(
+                Collections.singletonList(new ProblemFirstAcEntity(10L, 100L, 7L, null)));
+
+        List<ProblemSubmitRecordEntity> records = Collections.singletonList(record(7L, 10L, 100L, JudgeResultEnum.ACCEPTED));
+
+        assertEquals(Set.of(7L), firstAcLedger.resolve(records));
+        assertEquals(Set.of(7L), firstAcLedger.resolve(records));
+    }
+
+    @Test
+    public void ledgerRowMustMatchItsOwnPair() {
+        // 按 userId IN / problemId IN 查询会带回组合之外的记录
+        when(problemFirstAcMapper.selectList(any())).thenReturn(Arrays.asList(
+                new ProblemFirstAcEntity(10L, 200L, 8L, null),
+                new ProblemFirstAcEntity(10L, 100L, 8L, null)));
+
+        Set<Long> firstAc = firstAcLedger.resolve(Arrays.asList(
+                record(8L, 10L, 100L, JudgeResultEnum.ACCEPTED),
+                record(9L, 10L, 200L, JudgeResultEnum.ACCEPTED)));
+
+        assertEquals(Set.of(8L), firstAc);
+    }
+
+    @Test
+    public void reresolveRemovesLedgerWhenNoAcLeft() {
+        when(problemFirstAcMapper.selectOne(any())).thenReturn(new ProblemFirstAcEntity(10L, 100L, 7L, null));
+        when(problemSubmitMapper.selectOne(any())).thenReturn(null);
+
+        Map<Long, Integer> deltas = firstAcLedger.reresolve(Arrays.asList(
+                record(7L, 10L, 100L, JudgeResultEnum.WRONG_ANSWER),
+                record(9L, 10L, 100L, JudgeResultEnum.WRONG_ANSWER)));
+
+        // 同一用户同一题目只记一次
+        assertEquals(Map.of(7L, -1, 9L, 0), deltas);
+        verify(problemFirstAcMapper).delete(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reresolveAddsLedgerForNewAc() {
+        when(problemFirstAcMapper.selectOne(any())).thenReturn(null);
+        when(problemSubmitMapper.selectOne(any())).thenReturn(record(7L, 10L, 100L, JudgeResultEnum.ACCEPTED));
+
+        Map<Long, Integer> deltas = firstAcLedger.reresolve(
+                Collections.singletonList(record(7L, 10L, 100L, JudgeResultEnum.ACCEPTED)));
+
+        assertEquals(Map.of(7L, 1), deltas);
+        ArgumentCaptor<List<ProblemFirstAcEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(problemFirstAcMapper).insertIgnoreBatch(captor.capture());
+        assertEquals(7L, captor.getValue().get(0).getSubmitId());
+    }
+
+    @Test
+    public void reresolveMovesLedgerToEarliestAc() {
+        // 原首次 AC 被判错，但之后还有 AC 的提交：通过题数不变
+        when(problemFirstAcMapper.selectOne(any())).thenReturn(new ProblemFirstAcEntity(10L, 100L, 7L, null));
+        when(problemSubmitMapper.selectOne(any())).thenReturn(record(9L, 10L, 100L, JudgeResultEnum.ACCEPTED));
+
+        Map<Long, Integer> deltas = firstAcLedger.reresolve(
+                Collections.singletonList(record(7L, 10L, 100L, JudgeResultEnum.WRONG_ANSWER)));
+
+        assertEquals(Map.of(7L, 0), deltas);
+        verify(problemFirstAcMapper).update(isNull(), any());
+        verify(problemFirstAcMapper, never()).delete(any());
+        verify(problemFirstAcMapper, never()).insertIgnoreBatch(any());
+    }
+
+    @Test
+    public void reresolveKeepsUnchangedLedger() {
+        when(problemFirstAcMapper.selectOne(any())).thenReturn(new ProblemFirstAcEntity(10L, 100L, 3L, null));
+        when(problemSubmitMapper.selectOne(any())).thenReturn(record(3L, 10L, 100L, JudgeResultEnum.ACCEPTED));
+
+        Map<Long, Integer> deltas = firstAcLedger.reresolve(
+                Collections.singletonList(record(7L, 10L, 100L, JudgeResultEnum.WRONG_ANSWER)));
+
+        assertEquals(Map.of(7L, 0), deltas);
+        verify(problemFirstAcMapper, never()).update(any(), any());
+        verify(problemFirstAcMapper, never()).delete(any());
+    }
+
+    private static ProblemSubmitRecordEntity record(Long submitId, Long userId, Long problemId, JudgeResultEnum result) {
+        ProblemSubmitRecordEntity record = new ProblemSubmitRecordEntity();
+        record.setSubmitId(submitId);
+        record.setUserId(userId);
+        record.setProblemId(problemId);
+        record.setJudgeResult(result.getCode());
+        return record;
+    }
+}
@@ -0,0 +1,207 @@
+package com.liren.problem.manager;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.liren.common.core.constant.Constants;
+import com.liren.common.core.support.MybatisPlusTestSupport;
+import com.liren.problem.entity.ProblemEntity;
+import com.liren.problem.mapper.ProblemMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class ProblemStatsAggregatorTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private ProblemMapper problemMapper;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private ProblemStatsAggregator problemStatsAggregator;
+
+    @BeforeAll
+    public static void initTableInfo() {
+        MybatisPlusTestSupport.initTableInfo(ProblemEntity.class);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.opsForHash()).thenReturn((HashOperations) hashOperations);
+        when(valueOperations.setIfAbsent(eq(Constants.PROBLEM_STATS_FLUSH_LOCK_KEY), any(), anyLong(), eq(TimeUnit.SECONDS)))
+                .thenReturn(true);
+        // 事务模板直接执行回调
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    public void flushMergesFieldsPerProblem() {
+        when(redisTemplate.hasKey(Constants.PROBLEM_STATS_FLUSHING_KEY)).thenReturn(false);
+        when(redisTemplate.hasKey(Constants.PROBLEM_STATS_DELTA_KEY)).thenReturn(true);
+        Map<Object, Object> entries = new LinkedHashMap<>();
+        entries.put("1:submit", "3");
+        entries.put("2:submit", 2);
+        entries.put("1:accepted", "1");
+        when(hashOperations.entries(Constants.PROBLEM_STATS_FLUSHING_KEY)).thenReturn(entries);
+
+        problemStatsAggregator.flush();
+
+        verify(redisTemplate).rename(Constants.PROBLEM_STATS_DELTA_KEY, Constants.PROBLEM_STATS_FLUSHING_KEY);
+        Map<Long, String> updates = capturedUpdates(2);
+        assertTrue(updates.get(1L).endsWith("+ 3, accepted_num = IFNULL(accepted_num, 0) + 1"), updates.get(1L));
+        assertTrue(updates.get(2L).endsWith("+ 2, accepted_num = IFNULL(accepted_num, 0) + 0"), updates.get(2L));
+        verify(redisTemplate).delete(Constants.PROBLEM_STATS_FLUSHING_KEY);
+        verify(redisTemplate).delete(Constants.PROBLEM_STATS_FLUSH_LOCK_KEY);
+    }
+
+    @Test
+    public void leftoverFlushingIsRetriedBeforeNewDeltas() {
+        when(redisTemplate.hasKey(Constants.PROBLEM_STATS_FLUSHING_KEY)).thenReturn(true);
+        when(hashOperations.entries(Constants.PROBLEM_STATS_FLUSHING_KEY)).thenReturn(Map.of("7:accepted", "1"));
+
+        problemStatsAggregator.flush();
+
+        verify(redisTemplate, never()).rename(any(), any());
+        Map<Long, String> updates = capturedUpdates(1);
+        assertTrue(updates.get(7L).endsWith("+ 0, accepted_num = IFNULL(accepted_num, 0) + 1"), updates.get(7L));
+        verify(redisTemplate).delete(Constants.PROBLEM_STATS_FLUSHING_KEY);
+    }
+
+    @Test
+    public void negativeCorrectionIsWritten() {
+        // 重判把 AC 改判为错误：通过数减一
+        when(redisTemplate.hasKey(Constants.PROBLEM_STATS_FLUSHING_KEY)).thenReturn(true);
+        when(hashOperations.entries(Constants.PROBLEM_STATS_FLUSHING_KEY)).thenReturn(Map.of("7:accepted", "-1"));
+
+        problemStatsAggregator.flush();
+
+        Map<Long, String> updates = capturedUpdates(1);
+        assertTrue(updates.get(7L).endsWith("+ 0, accepted_num = IFNULL(accepted_num, 0) + -1"), updates.get(7L));
+    }
+
+    @Test
+    public void failedFlushKeepsFlushing() {
+        when(redisTemplate.hasKey(Constants.PROBLEM_STATS_FLUSHING_KEY)).thenReturn(false);
+        when(redisTemplate.hasKey(Constants.PROBLEM_STATS_DELTA_KEY)).thenReturn(true);
+        when(hashOperations.entries(Constants.PROBLEM_STATS_FLUSHING_KEY)).thenReturn(Map.of("1:submit", "1"));
+        doThrow(new RuntimeException("db down")).when(transactionTemplate).executeWithoutResult(any());
+
+        problemStatsAggregator.flush();
+
+        verify(redisTemplate, never()).delete(Constants.PROBLEM_STATS_FLUSHING_KEY);
+        verify(redisTemplate).delete(Constants.PROBLEM_STATS_FLUSH_LOCK_KEY);
+    }
+
+    @Test
+    public void zeroDeltaIsNotWritten() {
+        when(redisTemplate.hasKey(Constants.PROBLEM_STATS_FLUSHING_KEY)).thenReturn(true);
+        when(hashOperations.entries(Constants.PROBLEM_STATS_FLUSHING_KEY))
+                .thenReturn(Map.of("1:submit", "0", "1:accepted", "0"));
+
+        problemStatsAggregator.flush();
+
+        verify(problemMapper, never()).update(any(), any());
+        verify(redisTemplate).delete(Constants.PROBLEM_STATS_FLUSHING_KEY);
+    }
+
+    @Test
+    public void nothingToFlush() {
+        when(redisTemplate.hasKey(Constants.PROBLEM_STATS_FLUSHING_KEY)).thenReturn(false);
+        when(redisTemplate.hasKey(Constants.PROBLEM_STATS_DELTA_KEY)).thenReturn(false);
+
+        problemStatsAggregator.flush();
+
+        verify(redisTemplate, never()).rename(any(), any());
+        verify(transactionTemplate, never()).executeWithoutResult(any());
+        verify(redisTemplate).delete(Constants.PROBLEM_STATS_FLUSH_LOCK_KEY);
+    }
+
+    @Test
+    public void flushWithoutLockDoesNothing() {
+        when(valueOperations.setIfAbsent(eq(Constants.PROBLEM_STATS_FLUSH_LOCK_KEY), any(), anyLong(), eq(TimeUnit.SECONDS)))
+                .thenReturn(false);
+
+        problemStatsAggregator.flush();
+
+        verify(redisTemplate, never()).hasKey(any());
+        verify(redisTemplate, never()).delete(Constants.PROBLEM_STATS_FLUSH_LOCK_KEY);
+    }
+
+    @Test
+    public void pendingDeltasAddDeltaAndFlushing() {
+        List<Object> fields = List.of("5:submit", "5:accepted", "6:submit", "6:accepted");
+        when(hashOperations.multiGet(Constants.PROBLEM_STATS_DELTA_KEY, fields)).thenReturn(Arrays.asList("2", null, null, null));
+        when(hashOperations.multiGet(Constants.PROBLEM_STATS_FLUSHING_KEY, fields)).thenReturn(Arrays.asList(3, "1", "0", null));
+
+        Map<Long, int[]> pending = problemStatsAggregator.getPendingDeltas(List.of(5L, 6L));
+
+        assertEquals(1, pending.size());
+        assertArrayEquals(new int[]{5, 1}, pending.get(5L));
+    }
+
+    /**
+     * 捕获写入数据库的增量 (Key: 题目ID，Value: SET 片段)
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, String> capturedUpdates(int expected) {
+        ArgumentCaptor<LambdaUpdateWrapper<ProblemEntity>> captor = ArgumentCaptor.forClass(LambdaUpdateWrapper.class);
+        verify(problemMapper, times(expected)).update(isNull(), captor.capture());
+        Map<Long, String> updates = new HashMap<>();
+        for (LambdaUpdateWrapper<ProblemEntity> wrapper : captor.getAllValues()) {
+            wrapper.getSqlSegment(); // 生成 SQL 片段时才会登记条件参数
+            Long problemId = (Long) wrapper.getParamNameValuePairs().values().iterator().next();
+            updates.put(problemId, wrapper.getSqlSet());
+        }
+        return updates;
+    }
+}
@@ -0,0 +1,155 @@
+package com.liren.problem.manager;
+
+import com.liren.common.core.result.ResultCode;
+import com.liren.problem.entity.TestCaseEntity;
+import com.liren.problem.exception.ProblemException;
+import com.liren.problem.storage.impl.LocalTestCaseStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestCaseManagerTest {
+
+    private static final Long PROBLEM_ID = 100L;
+
+    @TempDir
+    Path storageDir;
+
+    private TestCaseManager testCaseManager;
+
+    @BeforeEach
+    public void setUp() {
+        testCaseManager = new TestCaseManager();
+        ReflectionTestUtils.setField(testCaseManager, "testCaseStorage", new LocalTestCaseStorage(storageDir.toString()));
+        ReflectionTestUtils.setField(testCaseManager, "maxUploadMb", 1L);
+    }
+
+    @Test
+    public void casesAreOrderedByNumberAndOtherFilesIgnored() throws IOException {
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("10.in", "ten");
+        files.put("10.out", "TEN");
+        files.put("data/2.in", "two");
+        files.put("data/2.out", "TWO");
+        files.put("readme.txt", "ignored");
+        files.put("__MACOSX/data/._2.in", "ignored");
+
+        List<TestCaseEntity> entities = testCaseManager.storeZip(PROBLEM_ID, zip(files));
+
+        assertEquals(2, entities.size());
+        assertEquals(0, entities.get(0).getCaseIndex());
+        assertTrue(entities.get(0).getInputKey().endsWith("/2.in"), entities.get(0).getInputKey());
+        assertEquals(3L, entities.get(0).getInputSize());
+        assertTrue(entities.get(1).getOutputKey().endsWith("/10.out"), entities.get(1).getOutputKey());
+        assertEquals("TEN", read(entities.get(1).getOutputKey()));
+    }
+
+    @Test
+    public void duplicateCaseInDifferentDirectoriesIsRejected() throws IOException {
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("a/1.in", "first");
+        files.put("a/1.out", "1");
+        files.put("b/1.in", "second");
+
+        ProblemException e = assertThrows(ProblemException.class, () -> testCaseManager.storeZip(PROBLEM_ID, zip(files)));
+
+        assertEquals(ResultCode.PARAM_ERROR.getCode(), e.getCode());
+        assertTrue(e.getMessage().contains("a/1.in") && e.getMessage().contains("b/1.in"), e.getMessage());
+        assertNoFilesLeft();
+    }
+
+    @Test
+    public void leadingZerosMapToTheSameCase() throws IOException {
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("1.out", "1");
+        files.put("01.out", "1");
+
+        ProblemException e = assertThrows(ProblemException.class, () -> testCaseManager.storeZip(PROBLEM_ID, zip(files)));
+
+        assertEquals(ResultCode.PARAM_ERROR.getCode(), e.getCode());
+        assertNoFilesLeft();
+    }
+
+    @Test
+    public void caseWithoutOutputIsRejected() throws IOException {
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("1.in", "1");
+        files.put("1.out", "1");
+        files.put("2.in", "2");
+
+        ProblemException e = assertThrows(ProblemException.class, () -> testCaseManager.storeZip(PROBLEM_ID, zip(files)));
+
+        assertEquals(ResultCode.PARAM_ERROR.getCode(), e.getCode());
+        assertTrue(e.getMessage().contains("用例 2"), e.getMessage());
+        assertNoFilesLeft();
+    }
+
+    @Test
+    public void zipWithoutCasesIsRejected() throws IOException {
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("readme.txt", "no cases");
+
+        ProblemException e = assertThrows(ProblemException.class, () -> testCaseManager.storeZip(PROBLEM_ID, zip(files)));
+
+        assertEquals(ResultCode.PARAM_ERROR.getCode(), e.getCode());
+    }
+
+    @Test
+    public void uploadOverSizeCapIsRejected() throws IOException {
+        // 单个文件不超过上限，合计超过 1 MB
+        String content = "x".repeat(600 * 1024);
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("1.in", content);
+        files.put("1.out", content);
+
+        ProblemException e = assertThrows(ProblemException.class, () -> testCaseManager.storeZip(PROBLEM_ID, zip(files)));
+
+        assertEquals(ResultCode.PARAM_ERROR.getCode(), e.getCode());
+        assertTrue(e.getMessage().contains("1 MB"), e.getMessage());
+        assertNoFilesLeft();
+    }
+
+    private static ByteArrayInputStream zip(Map<String, String> files) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bos)) {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                zip.putNextEntry(new ZipEntry(file.getKey()));
+                zip.write(file.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return new ByteArrayInputStream(bos.toByteArray());
+    }
+
+    private String read(String key) throws IOException {
+        return Files.readString(storageDir.resolve(key));
+    }
+
+    /**
+     * 导入失败后本次上传写入的文件已全部清理
+     */
+    private void assertNoFilesLeft() throws IOException {
+        try (Stream<Path> walk = Files.walk(storageDir)) {
+            List<Path> left = walk.filter(Files::isRegularFile).toList();
+            assertTrue(left.isEmpty(), left.toString());
+        }
+    }
+}
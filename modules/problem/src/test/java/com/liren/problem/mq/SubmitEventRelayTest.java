@@ -0,0 +1,163 @@
+package com.liren.problem.mq;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.liren.api.problem.dto.problem.SubmitJudgedEvent;
+import com.liren.common.core.constant.Constants;
+import com.liren.common.core.support.MybatisPlusTestSupport;
+import com.liren.problem.entity.ProblemSubmitRecordEntity;
+import com.liren.problem.entity.SubmitEventEntity;
+import com.liren.problem.mapper.SubmitEventMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SubmitEventRelayTest {
+
+    @Mock
+    private SubmitEventMapper submitEventMapper;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @InjectMocks
+    private SubmitEventRelay submitEventRelay;
+
+    @BeforeAll
+    public static void initTableInfo() {
+        MybatisPlusTestSupport.initTableInfo(SubmitEventEntity.class);
+    }
+
+    @Test
+    public void marksPublishedEventsAsSentInsteadOfDeleting() {
+        submitEventRelay.publish(Arrays.asList(event(1L, true), event(2L, false)));
+
+        ArgumentCaptor<SubmitJudgedEvent> messages = ArgumentCaptor.forClass(SubmitJudgedEvent.class);
+        verify(rabbitTemplate, times(2)).convertAndSend(eq(Constants.SUBMIT_EVENT_EXCHANGE), eq(""), messages.capture());
+        assertEquals(1L, messages.getAllValues().get(0).getEventId());
+        assertTrue(messages.getAllValues().get(0).getFirstAc());
+        assertEquals(Arrays.asList(1L, 2L), markedIds());
+        verify(submitEventMapper, never()).delete(any());
+        verify(submitEventMapper, never()).deleteBatchIds(any());
+    }
+
+    @Test
+    public void correctionCarriesPreviousResult() {
+        SubmitEventEntity correction = SubmitEventEntity.corrected(record(7L, 2, 0), record(7L, 1, 100), -1);
+
+        submitEventRelay.publish(Collections.singletonList(correction));
+
+        ArgumentCaptor<SubmitJudgedEvent> messages = ArgumentCaptor.forClass(SubmitJudgedEvent.class);
+        verify(rabbitTemplate).convertAndSend(eq(Constants.SUBMIT_EVENT_EXCHANGE), eq(""), messages.capture());
+        SubmitJudgedEvent message = messages.getValue();
+        // 更正事件有自己的事件ID，指向原提交
+        assertNotEquals(7L, message.getEventId());
+        assertEquals(7L, message.getSubmitId());
+        assertTrue(message.getCorrection());
+        assertEquals(2, message.getJudgeResult());
+        assertEquals(1, message.getOldJudgeResult());
+        assertEquals(100, message.getOldScore());
+        assertEquals(-1, message.getFirstAcDelta());
+        assertEquals(Collections.singletonList(correction.getEventId()), markedIds());
+    }
+
+    @Test
+    public void stopsAtFirstFailureAndMarksOnlyDelivered() {
+        doNothing().doThrow(new AmqpException("broker down"))
+                .when(rabbitTemplate).convertAndSend(eq(Constants.SUBMIT_EVENT_EXCHANGE), eq(""), any(Object.class));
+
+        submitEventRelay.publish(Arrays.asList(event(1L, false), event(2L, false), event(3L, false)));
+
+        // 第 3 个事件不再尝试，留给定时补偿
+        verify(rabbitTemplate, times(2)).convertAndSend(eq(Constants.SUBMIT_EVENT_EXCHANGE), eq(""), any(Object.class));
+        assertEquals(Collections.singletonList(1L), markedIds());
+    }
+
+    @Test
+    public void nothingDeliveredLeavesEventsPending() {
+        doThrow(new AmqpException("broker down"))
+                .when(rabbitTemplate).convertAndSend(eq(Constants.SUBMIT_EVENT_EXCHANGE), eq(""), any(Object.class));
+
+        submitEventRelay.publish(Collections.singletonList(event(1L, false)));
+
+        verify(submitEventMapper, never()).update(any(), any());
+    }
+
+    @Test
+    public void relayPendingPublishesStaleUnsentEvents() {
+        when(submitEventMapper.selectList(any())).thenReturn(new ArrayList<>(Collections.singletonList(event(5L, false))));
+
+        submitEventRelay.relayPending();
+
+        verify(rabbitTemplate).convertAndSend(eq(Constants.SUBMIT_EVENT_EXCHANGE), eq(""), any(Object.class));
+        assertEquals(Collections.singletonList(5L), markedIds());
+    }
+
+    @Test
+    public void relayPendingWithNothingToDo() {
+        when(submitEventMapper.selectList(any())).thenReturn(Collections.emptyList());
+
+        submitEventRelay.relayPending();
+
+        verify(rabbitTemplate, never()).convertAndSend(any(String.class), any(String.class), any(Object.class));
+        verify(submitEventMapper, never()).update(any(), any());
+    }
+
+    /**
+     * 被标记为已投递的事件ID (按 IN 条件中的顺序)
+     */
+    @SuppressWarnings("unchecked")
+    private List<Long> markedIds() {
+        ArgumentCaptor<LambdaUpdateWrapper<SubmitEventEntity>> captor = ArgumentCaptor.forClass(LambdaUpdateWrapper.class);
+        verify(submitEventMapper).update(isNull(), captor.capture());
+        LambdaUpdateWrapper<SubmitEventEntity> wrapper = captor.getValue();
+        assertTrue(wrapper.getSqlSet().contains("sent"));
+        wrapper.getSqlSegment(); // 生成 SQL 片段时才会登记 IN 条件的参数
+        List<Long> ids = new ArrayList<>();
+        for (Object value : wrapper.getParamNameValuePairs().values()) {
+            if (value instanceof Long) {
+                ids.add((Long) value);
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private static SubmitEventEntity event(Long eventId, boolean firstAc) {
+        return SubmitEventEntity.judged(record(eventId, 1, 100), firstAc, false);
+    }
+
+    private static ProblemSubmitRecordEntity record(Long submitId, Integer judgeResult, Integer score) {
+        ProblemSubmitRecordEntity record = new ProblemSubmitRecordEntity();
+        record.setSubmitId(submitId);
+        record.setProblemId(100L);
+        record.setUserId(10L);
+        record.setJudgeResult(judgeResult);
+        record.setScore(score);
+        return record;
+    }
+}
@@ -0,0 +1,66 @@
+package com.liren.user.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liren.common.core.constant.Constants;
+import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RabbitMQConfig {
+
+    /**
+     * 判题事件交换机 (由题目服务投递，与题目服务中的声明一致)
+     */
+    @Bean("submitEventExchange")
+    public FanoutExchange submitEventExchange() {
+        return ExchangeBuilder.fanoutExchange(Constants.SUBMIT_EVENT_EXCHANGE).build();
+    }
+
+    @Bean("submitEventUserStatsQueue")
+    public Queue submitEventUserStatsQueue() {
+        return QueueBuilder.durable(Constants.SUBMIT_EVENT_USER_STATS_QUEUE).build();
+    }
+
+    @Bean("submitEventUserStatsBinding")
+    public Binding submitEventUserStatsBinding(@Qualifier("submitEventUserStatsQueue") Queue queue,
+                                               @Qualifier("submitEventExchange") FanoutExchange exchange) {
+        return BindingBuilder.bind(queue).to(exchange);
+    }
+
+    /**
+     * 批量消费者容器工厂
+     * 每次最多攒 batch-size 条事件一起处理，整批成功后自动确认，异常时整批重新投递
+     */
+    @Bean("batchListenerContainerFactory")
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${oj.user.event-batch.size:100}") int batchSize,
+            @Value("${oj.user.event-batch.receive-timeout-ms:200}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setPrefetchCount(batchSize * 2); // 预取至少一批，否则永远攒不满
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        return factory;
+    }
+
+    /**
+     * 消息统一使用 JSON 序列化
+     */
+    @Bean
+    public MessageConverter jsonMessageConverter(ObjectMapper objectMapper) {
+        return new Jackson2JsonMessageConverter(objectMapper);
+    }
+}
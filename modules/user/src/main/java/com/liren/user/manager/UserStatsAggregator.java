@@ -0,0 +1,261 @@
+package com.liren.user.manager;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.liren.api.problem.dto.user.UserStatsDeltaDTO;
+import com.liren.common.core.constant.Constants;
+import com.liren.user.entity.UserEntity;
+import com.liren.user.mapper.UserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户提交数/通过数聚合器 (Write-Behind)
+ * 1. 判题事件只在 Redis Hash 中累加增量，同一个脚本内就地累加已缓存的计数 (不再删除缓存)
+ * 2. 定时把增量合并写入 tb_user
+ * 3. 用户信息缓存未命中时，由脚本在 Redis 内把数据库的值与尚未刷盘的增量相加后写入计数缓存
+ * 缓存的计数单独存放在 user:stats:count:{userId} Hash 中，与用户信息缓存一起写入，读取时覆盖用户信息里的计数
+ * 累加增量和建立计数缓存各自是一个 Lua 脚本：两者互不穿插，增量要么已计入建立时的计数，要么在建立之后累加到缓存上，
+ * 不会重复也不会遗漏
+ */
+@Slf4j
+@Component
+public class UserStatsAggregator {
+
+    private static final String SUBMITTED_SUFFIX = ":submitted";
+    private static final String ACCEPTED_SUFFIX = ":accepted";
+    private static final String SUBMITTED_FIELD = "submitted";
+    private static final String ACCEPTED_FIELD = "accepted";
+
+    // 脚本参数和返回值按纯文本读写 (模板默认的 JSON 序列化会给字符串加引号)
+    private static final StringRedisSerializer STRING_SERIALIZER = new StringRedisSerializer();
+    private static final GenericToStringSerializer<Long> LONG_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    /**
+     * 累加增量，并就地累加已缓存的计数 (计数缓存不存在时不创建，保留原有过期时间)
+     * KEYS[1] 为增量 Hash，KEYS[2..n] 为各用户的计数缓存；ARGV 每三个一组: 用户ID、提交数增量、通过数增量
+     */
+    private static final RedisScript<Long> ADD_DELTA_SCRIPT = new DefaultRedisScript<>(
+            "for i = 2, #KEYS do "
+                    + "local base = (i - 2) * 3 "
+                    + "local submitted = tonumber(ARGV[base + 2]) "
+                    + "local accepted = tonumber(ARGV[base + 3]) "
+                    + "if submitted ~= 0 then redis.call('HINCRBY', KEYS[1], ARGV[base + 1] .. '" + SUBMITTED_SUFFIX + "', submitted) end "
+                    + "if accepted ~= 0 then redis.call('HINCRBY', KEYS[1], ARGV[base + 1] .. '" + ACCEPTED_SUFFIX + "', accepted) end "
+                    + "if redis.call('EXISTS', KEYS[i]) == 1 then "
+                    + "redis.call('HINCRBY', KEYS[i], '" + SUBMITTED_FIELD + "', submitted) "
+                    + "redis.call('HINCRBY', KEYS[i], '" + ACCEPTED_FIELD + "', accepted) "
+                    + "end "
+                    + "end "
+                    + "return 1", Long.class);
+
+    /**
+     * 建立计数缓存：数据库的值加上增量 Hash 和正在刷盘的 Hash 中该用户的增量
+     * 刷盘序号与读取数据库前不同 (读取期间开始过刷盘，数据库和增量可能重复或遗漏) 时不写入，返回空
+     * KEYS: 计数缓存、增量 Hash、正在刷盘的 Hash、刷盘序号；ARGV: 数据库提交数、数据库通过数、用户ID、读取数据库前的刷盘序号、过期时间
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> BUILD_COUNT_CACHE_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[4]) or '0') ~= ARGV[4] then return nil end "
+                    + "local submitted = tonumber(ARGV[1]) "
+                    + "local accepted = tonumber(ARGV[2]) "
+                    + "for i = 2, 3 do "
+                    + "submitted = submitted + tonumber(redis.call('HGET', KEYS[i], ARGV[3] .. '" + SUBMITTED_SUFFIX + "') or '0') "
+                    + "accepted = accepted + tonumber(redis.call('HGET', KEYS[i], ARGV[3] .. '" + ACCEPTED_SUFFIX + "') or '0') "
+                    + "end "
+                    + "redis.call('HSET', KEYS[1], '" + SUBMITTED_FIELD + "', submitted, '" + ACCEPTED_FIELD + "', accepted) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[5]) "
+                    + "return {submitted, accepted}", List.class);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${oj.user.stats.flush-lock-seconds:60}")
+    private long flushLockSeconds;
+
+    /**
+     * 累加增量，并就地更新已缓存的计数 (一个脚本内完成，失败时异常抛出，由调用方重试)
+     */
+    public void add(List<UserStatsDeltaDTO> deltas) {
+        List<String> keys = new ArrayList<>(deltas.size() + 1);
+        List<String> args = new ArrayList<>(deltas.size() * 3);
+        keys.add(Constants.USER_STATS_DELTA_KEY);
+        for (UserStatsDeltaDTO delta : deltas) {
+            if (delta.getUserId() == null) {
+                continue;
+            }
+            keys.add(countCacheKey(delta.getUserId()));
+            args.add(String.valueOf(delta.getUserId()));
+            args.add(String.valueOf(nullToZero(delta.getSubmittedDelta())));
+            args.add(String.valueOf(nullToZero(delta.getAcceptedDelta())));
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        redisTemplate.execute(ADD_DELTA_SCRIPT, STRING_SERIALIZER, LONG_SERIALIZER, keys, args.toArray());
+    }
+
+    /**
+     * 以数据库中的计数为基础建立计数缓存 (与用户信息缓存一起写入)，成功时把叠加了增量的计数写回 user
+     * @param flushSeq 读取数据库之前的刷盘序号
+     * @return 读取期间发生了刷盘 (或正在刷盘) 时不写入缓存，返回 false，计数仍为数据库中的值
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public boolean cacheCounts(UserEntity user, long flushSeq, long expireSeconds) {
+        if (flushSeq % 2 != 0) {
+            return false;
+        }
+        // 脚本返回整数数组，元素不经过结果序列化器，这里只为满足签名
+        List<?> counts = redisTemplate.execute(BUILD_COUNT_CACHE_SCRIPT, STRING_SERIALIZER, (RedisSerializer) LONG_SERIALIZER,
+                List.of(countCacheKey(user.getUserId()), Constants.USER_STATS_DELTA_KEY,
+                        Constants.USER_STATS_FLUSHING_KEY, Constants.USER_STATS_FLUSH_SEQ_KEY),
+                String.valueOf(nullToZero(user.getSubmittedCount())),
+                String.valueOf(nullToZero(user.getAcceptedCount())),
+                String.valueOf(user.getUserId()),
+                String.valueOf(flushSeq),
+                String.valueOf(expireSeconds));
+        if (counts == null || counts.size() < 2) {
+            return false;
+        }
+        user.setSubmittedCount(toInt(counts.get(0)));
+        user.setAcceptedCount(toInt(counts.get(1)));
+        return true;
+    }
+
+    /**
+     * 用缓存的计数覆盖用户信息中的计数
+     * @return 计数缓存不存在时返回 false，需要重新加载
+     */
+    public boolean fillCachedCounts(UserEntity user) {
+        List<Object> values = redisTemplate.opsForHash().multiGet(countCacheKey(user.getUserId()),
+                List.of(SUBMITTED_FIELD, ACCEPTED_FIELD));
+        if (values.get(0) == null || values.get(1) == null) {
+            return false;
+        }
+        user.setSubmittedCount(toInt(values.get(0)));
+        user.setAcceptedCount(toInt(values.get(1)));
+        return true;
+    }
+
+    /**
+     * 读取刷盘序号，奇数表示正在刷盘
+     */
+    public long getFlushSeq() {
+        Object seq = redisTemplate.opsForValue().get(Constants.USER_STATS_FLUSH_SEQ_KEY);
+        return seq == null ? 0 : Long.parseLong(seq.toString());
+    }
+
+    /**
+     * 在数据库的值上叠加尚未刷盘的增量 (包括正在刷盘的部分)
+     */
+    public void applyPending(UserEntity user) {
+        List<Object> fields = List.of(user.getUserId() + SUBMITTED_SUFFIX, user.getUserId() + ACCEPTED_SUFFIX);
+        int submitted = 0;
+        int accepted = 0;
+        for (String key : List.of(Constants.USER_STATS_DELTA_KEY, Constants.USER_STATS_FLUSHING_KEY)) {
+            List<Object> values = redisTemplate.opsForHash().multiGet(key, fields);
+            submitted += toInt(values.get(0));
+            accepted += toInt(values.get(1));
+        }
+        user.setSubmittedCount(nullToZero(user.getSubmittedCount()) + submitted);
+        user.setAcceptedCount(nullToZero(user.getAcceptedCount()) + accepted);
+    }
+
+    /**
+     * 定时刷盘
+     * 1. 抢锁，保证同一时刻只有一个实例刷盘
+     * 2. 刷盘序号置为奇数 (在改名之前，读取方跨过改名时一定能发现)，期间加载的用户信息不写入缓存
+     * 3. 上次刷盘失败遗留的 flushing 先处理；否则把当前增量原子改名为 flushing
+     * 4. 一个事务内按用户写入增量，成功后删除 flushing，刷盘序号恢复为偶数
+     */
+    @Scheduled(fixedDelayString = "${oj.user.stats.flush-interval-ms:5000}")
+    public void flush() {
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(Constants.USER_STATS_FLUSH_LOCK_KEY, 1,
+                flushLockSeconds, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            boolean hasFlushing = Boolean.TRUE.equals(redisTemplate.hasKey(Constants.USER_STATS_FLUSHING_KEY));
+            if (!hasFlushing && !Boolean.TRUE.equals(redisTemplate.hasKey(Constants.USER_STATS_DELTA_KEY))) {
+                return;
+            }
+            if (getFlushSeq() % 2 == 0) {
+                redisTemplate.opsForValue().increment(Constants.USER_STATS_FLUSH_SEQ_KEY);
+            }
+            if (!hasFlushing) {
+                redisTemplate.rename(Constants.USER_STATS_DELTA_KEY, Constants.USER_STATS_FLUSHING_KEY);
+            }
+
+            Map<Long, int[]> deltas = parse(redisTemplate.opsForHash().entries(Constants.USER_STATS_FLUSHING_KEY));
+            transactionTemplate.executeWithoutResult(status -> deltas.forEach(this::applyDelta));
+            redisTemplate.delete(Constants.USER_STATS_FLUSHING_KEY);
+            redisTemplate.opsForValue().increment(Constants.USER_STATS_FLUSH_SEQ_KEY);
+            log.info("用户统计刷盘完成, 用户数: {}", deltas.size());
+        } catch (Exception e) {
+            log.error("用户统计刷盘失败，下次重试", e);
+        } finally {
+            redisTemplate.delete(Constants.USER_STATS_FLUSH_LOCK_KEY);
+        }
+    }
+
+    private void applyDelta(Long userId, int[] delta) {
+        if (delta[0] == 0 && delta[1] == 0) {
+            return;
+        }
+        LambdaUpdateWrapper<UserEntity> wrapper = new LambdaUpdateWrapper<>();
+        wrapper.eq(UserEntity::getUserId, userId);
+        // 增量都是整数，直接拼接不存在注入问题
+        wrapper.setSql("submitted_count = IFNULL(submitted_count, 0) + " + delta[0]
+                + ", accepted_count = IFNULL(accepted_count, 0) + " + delta[1]);
+        userMapper.update(null, wrapper);
+    }
+
+    private static Map<Long, int[]> parse(Map<Object, Object> entries) {
+        Map<Long, int[]> deltas = new HashMap<>();
+        entries.forEach((field, value) -> {
+            String name = field.toString();
+            int split = name.lastIndexOf(':');
+            int[] delta = deltas.computeIfAbsent(Long.parseLong(name.substring(0, split)), k -> new int[2]);
+            if (name.endsWith(SUBMITTED_SUFFIX)) {
+                delta[0] += toInt(value);
+            } else {
+                delta[1] += toInt(value);
+            }
+        });
+        return deltas;
+    }
+
+    private static String countCacheKey(Long userId) {
+        return Constants.USER_STATS_COUNT_CACHE_PREFIX + userId;
+    }
+
+    private static int toInt(Object value) {
+        return value == null ? 0 : Integer.parseInt(value.toString());
+    }
+
+    private static int nullToZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
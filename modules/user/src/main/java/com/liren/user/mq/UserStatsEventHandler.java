@@ -0,0 +1,65 @@
+package com.liren.user.mq;
+
+import com.liren.api.problem.dto.problem.SubmitJudgedEvent;
+import com.liren.api.problem.dto.user.UserStatsDeltaDTO;
+import com.liren.common.core.constant.Constants;
+import com.liren.common.redis.EventDeduplicator;
+import com.liren.user.manager.UserStatsAggregator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 判题事件处理器：用户提交数/通过数
+ * 同一事件只累加一次 (累加成功后写入 Redis 完成标记)，同一用户的多个事件合并后写入聚合器 (定时刷盘)
+ * 重判更正事件不计提交数，通过题数按更正后首次 AC 的变化调整
+ */
+@Slf4j
+@Component
+public class UserStatsEventHandler {
+
+    private static final String HANDLER = "user-stats";
+
+    @Autowired
+    private UserStatsAggregator userStatsAggregator;
+
+    @Autowired
+    private EventDeduplicator eventDeduplicator;
+
+    @RabbitListener(queues = Constants.SUBMIT_EVENT_USER_STATS_QUEUE, containerFactory = "batchListenerContainerFactory")
+    public void handle(List<SubmitJudgedEvent> events) {
+        List<SubmitJudgedEvent> newEvents = eventDeduplicator.filterUnprocessed(HANDLER, events, SubmitJudgedEvent::getEventId);
+        if (newEvents.isEmpty()) {
+            return;
+        }
+
+        // userId -> [提交数, 首次AC数]
+        Map<Long, int[]> userCounters = new LinkedHashMap<>();
+        for (SubmitJudgedEvent event : newEvents) {
+            int[] counter = userCounters.computeIfAbsent(event.getUserId(), k -> new int[2]);
+            if (Boolean.TRUE.equals(event.getCorrection())) {
+                counter[1] += event.getFirstAcDelta() == null ? 0 : event.getFirstAcDelta();
+                continue;
+            }
+            counter[0]++;
+            if (Boolean.TRUE.equals(event.getFirstAc())) {
+                counter[1]++;
+            }
+        }
+        List<UserStatsDeltaDTO> deltas = new ArrayList<>(userCounters.size());
+        userCounters.forEach((userId, counter) -> deltas.add(new UserStatsDeltaDTO(userId, counter[0], counter[1])));
+
+        // 只在 Redis 中累加 (并就地更新用户信息缓存)，由 UserStatsAggregator 定时合并写入 tb_user
+        userStatsAggregator.add(deltas);
+        // 累加成功后才写入完成标记 (失败时异常抛出，消息重新投递后再次累加)
+        eventDeduplicator.markProcessed(HANDLER, newEvents.stream().map(SubmitJudgedEvent::getEventId).collect(Collectors.toList()));
+        log.info("用户统计事件处理完成, 事件数: {}, 用户数: {}", newEvents.size(), userCounters.size());
+    }
+}
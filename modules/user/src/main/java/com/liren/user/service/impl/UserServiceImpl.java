@@ -4,9 +4,9 @@ import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.liren.api.problem.dto.user.UserBasicInfoDTO;
+import com.liren.api.problem.dto.user.UserStatsDeltaDTO;
 import com.liren.common.core.constant.Constants;
 import com.liren.common.core.context.UserContext;
 import com.liren.common.redis.RedisUtil;
@@ -20,6 +20,7 @@ import com.liren.common.core.utils.BCryptUtil;
 import com.liren.common.core.utils.JwtUtil;
 import com.liren.user.dto.UserLoginDTO;
 import com.liren.user.exception.UserException;
+import com.liren.user.manager.UserStatsAggregator;
 import com.liren.user.mapper.UserMapper;
 import com.liren.user.service.IMailService;
 import com.liren.user.service.IUserService;
@@ -37,6 +38,9 @@ import java.util.stream.Collectors;
 
 @Service
 public class UserServiceImpl extends ServiceImpl<UserMapper, UserEntity> implements IUserService {
+    @Autowired
+    private UserStatsAggregator userStatsAggregator;
+
     @Autowired
     private UserMapper userMapper;
 
@@ -124,25 +128,12 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, UserEntity> impleme
 
     /**
      * 更新用户的提交统计信息（内部接口，用于更新用户提交数量）
+     * 增量先在 Redis 中聚合，定时写入数据库；已缓存的用户信息就地更新，不再删除缓存
      */
     @Override
     public boolean updateUserStats(Long userId, boolean isAc) {
-        LambdaUpdateWrapper<UserEntity> wrapper = new LambdaUpdateWrapper<>();
-        wrapper.eq(UserEntity::getUserId, userId);
-
-        // 提交数 +1 (使用 IFNULL 防止字段默认为 null 导致计算失败)
-        wrapper.setSql("submitted_count = IFNULL(submitted_count, 0) + 1");
-
-        // 如果 AC 了，通过数也 +1
-        if (isAc) {
-            wrapper.setSql("accepted_count = IFNULL(accepted_count, 0) + 1");
-        }
-
-        boolean result = this.update(wrapper);
-        if(result) {
-            redisUtil.del(Constants.USER_INFO_CACHE_PREFIX + userId);
-        }
-        return result;
+        userStatsAggregator.add(List.of(new UserStatsDeltaDTO(userId, 1, isAc ? 1 : 0)));
+        return true;
     }
 
 
@@ -154,16 +145,26 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, UserEntity> impleme
         // 1. 先查询数据库获取基础信息（需要获取 userId 作为缓存 key）
         String infoCacheKey = Constants.USER_INFO_CACHE_PREFIX + userId;
         UserEntity user = redisUtil.get(infoCacheKey, UserEntity.class);
+        // 提交数/通过数以单独缓存的计数为准 (判题事件只原子累加计数)，计数缓存不存在时整体重新加载
+        if (user != null && !userStatsAggregator.fillCachedCounts(user)) {
+            user = null;
+        }
 
         if (user == null) {
             // 2. 缓存没命中，直接查询数据库
+            long flushSeq = userStatsAggregator.getFlushSeq();
             user = this.getById(userId);
             if(user == null) {
                 throw new UserException(ResultCode.USER_NOT_FOUND);
             }
 
-            // 3. 查询成功，则写入缓存
-            redisUtil.set(infoCacheKey, user, Constants.USER_LOGIN_CACHE_EXPIRE_TIME);
+            // 3. 查询成功，则写入缓存：计数缓存由脚本在 Redis 内叠加尚未刷盘的增量
+            // (读取期间发生了刷盘时数据库和增量可能重复或遗漏，不写缓存，只在本次返回值上叠加增量)
+            if (userStatsAggregator.cacheCounts(user, flushSeq, Constants.USER_LOGIN_CACHE_EXPIRE_TIME)) {
+                redisUtil.set(infoCacheKey, user, Constants.USER_LOGIN_CACHE_EXPIRE_TIME);
+            } else {
+                userStatsAggregator.applyPending(user);
+            }
         }
 
         // 4. 转换为 VO
@@ -0,0 +1,276 @@
+package com.liren.user.manager;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.liren.api.problem.dto.user.UserStatsDeltaDTO;
+import com.liren.common.core.constant.Constants;
+import com.liren.common.core.support.MybatisPlusTestSupport;
+import com.liren.user.entity.UserEntity;
+import com.liren.user.mapper.UserMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class UserStatsAggregatorTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private UserMapper userMapper;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private UserStatsAggregator userStatsAggregator;
+
+    @BeforeAll
+    public static void initTableInfo() {
+        MybatisPlusTestSupport.initTableInfo(UserEntity.class);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.opsForHash()).thenReturn((HashOperations) hashOperations);
+        when(valueOperations.setIfAbsent(eq(Constants.USER_STATS_FLUSH_LOCK_KEY), any(), anyLong(), eq(TimeUnit.SECONDS)))
+                .thenReturn(true);
+        // 事务模板直接执行回调
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    public void flushMergesFieldsPerUser() {
+        when(redisTemplate.hasKey(Constants.USER_STATS_FLUSHING_KEY)).thenReturn(false);
+        when(redisTemplate.hasKey(Constants.USER_STATS_DELTA_KEY)).thenReturn(true);
+        when(valueOperations.get(Constants.USER_STATS_FLUSH_SEQ_KEY)).thenReturn(2);
+        Map<Object, Object> entries = new LinkedHashMap<>();
+        entries.put("1:submitted", "3");
+        entries.put("2:submitted", 2);
+        entries.put("1:accepted", "1");
+        when(hashOperations.entries(Constants.USER_STATS_FLUSHING_KEY)).thenReturn(entries);
+
+        userStatsAggregator.flush();
+
+        verify(redisTemplate).rename(Constants.USER_STATS_DELTA_KEY, Constants.USER_STATS_FLUSHING_KEY);
+        Map<Long, String> updates = capturedUpdates(2);
+        assertTrue(updates.get(1L).endsWith("+ 3, accepted_count = IFNULL(accepted_count, 0) + 1"), updates.get(1L));
+        assertTrue(updates.get(2L).endsWith("+ 2, accepted_count = IFNULL(accepted_count, 0) + 0"), updates.get(2L));
+        // 刷盘前后各加一次，序号回到偶数
+        verify(valueOperations, times(2)).increment(Constants.USER_STATS_FLUSH_SEQ_KEY);
+        verify(redisTemplate).delete(Constants.USER_STATS_FLUSHING_KEY);
+        verify(redisTemplate).delete(Constants.USER_STATS_FLUSH_LOCK_KEY);
+    }
+
+    @Test
+    public void leftoverFlushingIsRetriedBeforeNewDeltas() {
+        when(redisTemplate.hasKey(Constants.USER_STATS_FLUSHING_KEY)).thenReturn(true);
+        // 上次刷盘失败，序号仍是奇数
+        when(valueOperations.get(Constants.USER_STATS_FLUSH_SEQ_KEY)).thenReturn("3");
+        when(hashOperations.entries(Constants.USER_STATS_FLUSHING_KEY)).thenReturn(Map.of("7:accepted", "1"));
+
+        userStatsAggregator.flush();
+
+        verify(redisTemplate, never()).rename(any(), any());
+        Map<Long, String> updates = capturedUpdates(1);
+        assertTrue(updates.get(7L).endsWith("+ 0, accepted_count = IFNULL(accepted_count, 0) + 1"), updates.get(7L));
+        verify(valueOperations, times(1)).increment(Constants.USER_STATS_FLUSH_SEQ_KEY);
+        verify(redisTemplate).delete(Constants.USER_STATS_FLUSHING_KEY);
+    }
+
+    @Test
+    public void failedFlushKeepsFlushingAndOddSeq() {
+        when(redisTemplate.hasKey(Constants.USER_STATS_FLUSHING_KEY)).thenReturn(false);
+        when(redisTemplate.hasKey(Constants.USER_STATS_DELTA_KEY)).thenReturn(true);
+        when(valueOperations.get(Constants.USER_STATS_FLUSH_SEQ_KEY)).thenReturn(null);
+        when(hashOperations.entries(Constants.USER_STATS_FLUSHING_KEY)).thenReturn(Map.of("1:submitted", "1"));
+        doThrow(new RuntimeException("db down")).when(transactionTemplate).executeWithoutResult(any());
+
+        userStatsAggregator.flush();
+
+        verify(valueOperations, times(1)).increment(Constants.USER_STATS_FLUSH_SEQ_KEY);
+        verify(redisTemplate, never()).delete(Constants.USER_STATS_FLUSHING_KEY);
+        verify(redisTemplate).delete(Constants.USER_STATS_FLUSH_LOCK_KEY);
+    }
+
+    @Test
+    public void zeroDeltaIsNotWritten() {
+        when(redisTemplate.hasKey(Constants.USER_STATS_FLUSHING_KEY)).thenReturn(true);
+        when(valueOperations.get(Constants.USER_STATS_FLUSH_SEQ_KEY)).thenReturn(1);
+        when(hashOperations.entries(Constants.USER_STATS_FLUSHING_KEY))
+                .thenReturn(Map.of("1:submitted", "0", "1:accepted", "0"));
+
+        userStatsAggregator.flush();
+
+        verify(userMapper, never()).update(any(), any());
+        verify(redisTemplate).delete(Constants.USER_STATS_FLUSHING_KEY);
+    }
+
+    @Test
+    public void flushWithoutLockDoesNothing() {
+        when(valueOperations.setIfAbsent(eq(Constants.USER_STATS_FLUSH_LOCK_KEY), any(), anyLong(), eq(TimeUnit.SECONDS)))
+                .thenReturn(false);
+
+        userStatsAggregator.flush();
+
+        verify(redisTemplate, never()).hasKey(any());
+        verify(redisTemplate, never()).delete(Constants.USER_STATS_FLUSH_LOCK_KEY);
+    }
+
+    @Test
+    public void applyPendingAddsDeltaAndFlushing() {
+        List<Object> fields = List.of("5:submitted", "5:accepted");
+        when(hashOperations.multiGet(Constants.USER_STATS_DELTA_KEY, fields)).thenReturn(Arrays.asList("2", null));
+        when(hashOperations.multiGet(Constants.USER_STATS_FLUSHING_KEY, fields)).thenReturn(List.of(3, "1"));
+        UserEntity user = new UserEntity();
+        user.setUserId(5L);
+        user.setSubmittedCount(10);
+
+        userStatsAggregator.applyPending(user);
+
+        assertEquals(15, user.getSubmittedCount());
+        assertEquals(1, user.getAcceptedCount());
+    }
+
+    @Test
+    public void addAppliesAllDeltasInOneScript() {
+        List<List<?>> calls = stubScript(1L);
+
+        userStatsAggregator.add(List.of(new UserStatsDeltaDTO(1L, 1, 0),
+                new UserStatsDeltaDTO(2L, 1, null), new UserStatsDeltaDTO(null, 1, 1)));
+
+        assertEquals(1, calls.size());
+        assertEquals(List.of(Constants.USER_STATS_DELTA_KEY, Constants.USER_STATS_COUNT_CACHE_PREFIX + 1,
+                Constants.USER_STATS_COUNT_CACHE_PREFIX + 2), calls.get(0).get(0));
+        assertEquals(List.of("1", "1", "0", "2", "1", "0"), calls.get(0).subList(1, calls.get(0).size()));
+    }
+
+    @Test
+    public void addWithoutDeltasSkipsRedis() {
+        List<List<?>> calls = stubScript(1L);
+
+        userStatsAggregator.add(List.of());
+
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    public void cacheCountsUsesServerSideSum() {
+        List<List<?>> calls = stubScript(List.of(13L, 4L));
+        UserEntity user = new UserEntity();
+        user.setUserId(5L);
+        user.setSubmittedCount(10);
+
+        assertTrue(userStatsAggregator.cacheCounts(user, 4, 7200));
+
+        assertEquals(List.of(Constants.USER_STATS_COUNT_CACHE_PREFIX + 5, Constants.USER_STATS_DELTA_KEY,
+                Constants.USER_STATS_FLUSHING_KEY, Constants.USER_STATS_FLUSH_SEQ_KEY), calls.get(0).get(0));
+        // 数据库的值、用户ID、读取前的刷盘序号、过期时间
+        assertEquals(List.of("10", "0", "5", "4", "7200"), calls.get(0).subList(1, calls.get(0).size()));
+        assertEquals(13, user.getSubmittedCount());
+        assertEquals(4, user.getAcceptedCount());
+    }
+
+    @Test
+    public void cacheCountsRejectsChangedSeq() {
+        stubScript(null);
+        UserEntity user = new UserEntity();
+        user.setUserId(5L);
+        user.setSubmittedCount(10);
+
+        assertFalse(userStatsAggregator.cacheCounts(user, 4, 7200));
+        assertEquals(10, user.getSubmittedCount());
+    }
+
+    @Test
+    public void cacheCountsSkipsDuringFlush() {
+        List<List<?>> calls = stubScript(List.of(1L, 1L));
+        UserEntity user = new UserEntity();
+        user.setUserId(5L);
+
+        assertFalse(userStatsAggregator.cacheCounts(user, 3, 7200));
+        assertTrue(calls.isEmpty());
+    }
+
+    /**
+     * 脚本调用返回 result，记录每次调用的参数 (第一个元素为 KEYS，其后为 ARGV)
+     */
+    @SuppressWarnings("unchecked")
+    private List<List<?>> stubScript(Object result) {
+        List<List<?>> calls = new ArrayList<>();
+        when(redisTemplate.execute(any(RedisScript.class), any(), any(), anyList(), any())).thenAnswer(invocation -> {
+            Object[] arguments = invocation.getArguments();
+            List<Object> call = new ArrayList<>();
+            call.add(arguments[3]);
+            call.addAll(Arrays.asList(arguments).subList(4, arguments.length));
+            calls.add(call);
+            return result;
+        });
+        return calls;
+    }
+
+    /**
+     * 捕获写入数据库的增量 (Key: 用户ID，Value: SET 片段)
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, String> capturedUpdates(int expected) {
+        ArgumentCaptor<LambdaUpdateWrapper<UserEntity>> captor = ArgumentCaptor.forClass(LambdaUpdateWrapper.class);
+        verify(userMapper, times(expected)).update(isNull(), captor.capture());
+        Map<Long, String> updates = new HashMap<>();
+        for (LambdaUpdateWrapper<UserEntity> wrapper : captor.getAllValues()) {
+            wrapper.getSqlSegment(); // 生成 SQL 片段时才会登记条件参数
+            Long userId = (Long) wrapper.getParamNameValuePairs().values().iterator().next();
+            updates.put(userId, wrapper.getSqlSet());
+        }
+        return updates;
+    }
+}